@@ -254,6 +254,80 @@ public class FitbitRestSourceConnectorConfig extends RestSourceConnectorConfig {
   private static final String FITBIT_FORBIDDEN_BACKOFF_DISPLAY = "Forbidden backoff time (s)";
   private static final int FITBIT_FORBIDDEN_BACKOFF_DEFAULT = 86400; // 24 hours
 
+  private static final String FITBIT_RATE_LIMIT_RESERVE_CONFIG = "fitbit.rate.limit.reserve";
+  private static final String FITBIT_RATE_LIMIT_RESERVE_DOC = "Number of requests per user in the Fitbit rate limit window that is reserved for high priority routes (sleep, intraday heart rate and intraday steps). When the remaining rate limit reported by Fitbit drops to this number, other routes pause for that user until the rate limit resets. High priority routes pause when no requests remain.";
+  private static final String FITBIT_RATE_LIMIT_RESERVE_DISPLAY = "Rate limit reserve for high priority routes";
+  private static final int FITBIT_RATE_LIMIT_RESERVE_DEFAULT = 20;
+
+  private static final String FITBIT_DEVICE_SYNC_GATE_ENABLED_CONFIG = "fitbit.device.sync.gate.enabled";
+  private static final String FITBIT_DEVICE_SYNC_GATE_ENABLED_DOC = "Poll the devices of each user for their last sync time, and only poll data routes of a user when a device has synced after the latest record of that route. This requires the settings scope, and fitbit.time.zone.enabled to read the local sync times of each user.";
+  private static final String FITBIT_DEVICE_SYNC_GATE_ENABLED_DISPLAY = "Device sync gate enabled";
+  private static final boolean FITBIT_DEVICE_SYNC_GATE_ENABLED_DEFAULT = false;
+
+  private static final String FITBIT_INTRADAY_REALTIME_ENABLED_CONFIG = "fitbit.intraday.realtime.enabled";
+  private static final String FITBIT_INTRADAY_REALTIME_ENABLED_DOC = "Poll intraday heart rate, steps and calories in short windows directly after the latest record, instead of leaving out the most recent day. Each request re-scans a short window before the latest record to read data that arrived late.";
+  private static final String FITBIT_INTRADAY_REALTIME_ENABLED_DISPLAY = "Near-real-time intraday polling enabled";
+  private static final boolean FITBIT_INTRADAY_REALTIME_ENABLED_DEFAULT = false;
+
+  private static final String FITBIT_INTRADAY_REALTIME_INTERVAL_CONFIG = "fitbit.intraday.realtime.interval.s";
+  private static final String FITBIT_INTRADAY_REALTIME_INTERVAL_DOC = "Polling interval per Fitbit user of near-real-time intraday routes in seconds.";
+  private static final String FITBIT_INTRADAY_REALTIME_INTERVAL_DISPLAY = "Near-real-time intraday polling interval (s)";
+  private static final int FITBIT_INTRADAY_REALTIME_INTERVAL_DEFAULT = 300;
+
+  private static final String FITBIT_INTRADAY_REALTIME_RESCAN_CONFIG = "fitbit.intraday.realtime.rescan.s";
+  private static final String FITBIT_INTRADAY_REALTIME_RESCAN_DOC = "Time in seconds before the latest record that near-real-time intraday routes poll again for data that arrived late.";
+  private static final String FITBIT_INTRADAY_REALTIME_RESCAN_DISPLAY = "Near-real-time intraday re-scan window (s)";
+  private static final int FITBIT_INTRADAY_REALTIME_RESCAN_DEFAULT = 900;
+
+  private static final String FITBIT_BACKFILL_LANE_ENABLED_CONFIG = "fitbit.backfill.lane.enabled";
+  private static final String FITBIT_BACKFILL_LANE_ENABLED_DOC = "Poll historical data of users that are behind in a separate backfill lane, with its own rate limit reserve and request budget, while the live lane polls their recent days. This keeps recent data of all users flowing while new users are backfilled. Applies to routes that poll date ranges.";
+  private static final String FITBIT_BACKFILL_LANE_ENABLED_DISPLAY = "Backfill lane enabled";
+  private static final boolean FITBIT_BACKFILL_LANE_ENABLED_DEFAULT = false;
+
+  private static final String FITBIT_LIVE_LANE_DAYS_CONFIG = "fitbit.live.lane.days";
+  private static final String FITBIT_LIVE_LANE_DAYS_DOC = "Number of recent days polled by the live lane when the backfill lane is enabled.";
+  private static final String FITBIT_LIVE_LANE_DAYS_DISPLAY = "Live lane days";
+  private static final int FITBIT_LIVE_LANE_DAYS_DEFAULT = 3;
+
+  private static final String FITBIT_BACKFILL_LANE_MAX_REQUESTS_CONFIG = "fitbit.backfill.lane.max.requests";
+  private static final String FITBIT_BACKFILL_LANE_MAX_REQUESTS_DOC = "Maximum number of requests of the backfill lane of a single route per poll, after the requests of all live lanes.";
+  private static final String FITBIT_BACKFILL_LANE_MAX_REQUESTS_DISPLAY = "Backfill lane requests per poll";
+  private static final int FITBIT_BACKFILL_LANE_MAX_REQUESTS_DEFAULT = 20;
+
+  private static final String FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_CONFIG = "fitbit.backfill.lane.max.concurrent.requests";
+  private static final String FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_DOC = "Maximum number of requests of all backfill lanes together that are in flight at the same time. With 0, this is half of rest.source.max.concurrent.requests. The backfill lanes always leave at least one concurrent request for the live lanes if rest.source.max.concurrent.requests is larger than 1.";
+  private static final String FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_DISPLAY = "Backfill lane concurrent requests";
+  private static final int FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_DEFAULT = 0;
+
+  private static final String FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_CONFIG = "fitbit.backfill.lane.rate.limit.reserve";
+  private static final String FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_DOC = "Number of requests per user in the Fitbit rate limit window that the backfill lane leaves for the live lanes. When the remaining rate limit reported by Fitbit drops to this number, the backfill lane pauses for that user until the rate limit resets.";
+  private static final String FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_DISPLAY = "Backfill lane rate limit reserve";
+  private static final int FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_DEFAULT = 50;
+
+  private static final String FITBIT_BACKFILL_LANE_ORDER_CONFIG = "fitbit.backfill.lane.order";
+  private static final String FITBIT_BACKFILL_LANE_ORDER_DOC = "Order in which the backfill lane polls the days of a user: oldest_first or newest_first. Days may be polled concurrently and in any order; the offsets keep track of the days that were polled, so the backfill resumes without gaps or duplicates after a restart.";
+  private static final String FITBIT_BACKFILL_LANE_ORDER_DISPLAY = "Backfill lane order";
+  private static final String FITBIT_BACKFILL_LANE_ORDER_DEFAULT = "oldest_first";
+
+  private static final String FITBIT_ADAPTIVE_POLLING_ENABLED_CONFIG = "fitbit.adaptive.polling.enabled";
+  private static final String FITBIT_ADAPTIVE_POLLING_ENABLED_DOC = "Learn at which hours of the day each user syncs their device, from the device sync times of the devices endpoint. This requires the settings scope, and fitbit.time.zone.enabled to read the local sync times of each user. Polls that fall in hours in which the user rarely syncs are postponed until the next hour in which the user usually syncs.";
+  private static final String FITBIT_ADAPTIVE_POLLING_ENABLED_DISPLAY = "Adaptive polling enabled";
+  private static final boolean FITBIT_ADAPTIVE_POLLING_ENABLED_DEFAULT = false;
+
+  private static final String FITBIT_ADAPTIVE_POLLING_MAX_DELAY_CONFIG = "fitbit.adaptive.polling.max.delay.s";
+  private static final String FITBIT_ADAPTIVE_POLLING_MAX_DELAY_DOC = "Maximum time in seconds that adaptive polling postpones a poll of a user. Unexpected syncs are picked up within this time.";
+  private static final String FITBIT_ADAPTIVE_POLLING_MAX_DELAY_DISPLAY = "Adaptive polling maximum delay (s)";
+  private static final int FITBIT_ADAPTIVE_POLLING_MAX_DELAY_DEFAULT = 10800;
+
+  private static final String FITBIT_IDLE_BACKOFF_ENABLED_CONFIG = "fitbit.idle.backoff.enabled";
+  private static final String FITBIT_IDLE_BACKOFF_ENABLED_DOC = "Double the polling interval of a route for a user with each consecutive response without data for the most recent day, after the first two. As soon as any route returns data for that user, all its routes are polled at the normal interval again. This reduces the requests for users that stopped wearing their device.";
+  private static final String FITBIT_IDLE_BACKOFF_ENABLED_DISPLAY = "Idle backoff enabled";
+  private static final boolean FITBIT_IDLE_BACKOFF_ENABLED_DEFAULT = false;
+
+  private static final String FITBIT_IDLE_BACKOFF_MAX_INTERVAL_CONFIG = "fitbit.idle.backoff.max.interval.s";
+  private static final String FITBIT_IDLE_BACKOFF_MAX_INTERVAL_DOC = "Maximum polling interval in seconds per user per route that idle backoff grows to.";
+  private static final String FITBIT_IDLE_BACKOFF_MAX_INTERVAL_DISPLAY = "Idle backoff maximum interval (s)";
+  private static final int FITBIT_IDLE_BACKOFF_MAX_INTERVAL_DEFAULT = 21600;
 
   private UserRepository userRepository;
   private final Headers clientCredentials;
@@ -689,6 +763,166 @@ public class FitbitRestSourceConnectorConfig extends RestSourceConnectorConfig {
             ++orderInGroup,
             Width.SHORT,
             FITBIT_FORBIDDEN_BACKOFF_DISPLAY)
+
+        .define(FITBIT_RATE_LIMIT_RESERVE_CONFIG,
+            Type.INT,
+            FITBIT_RATE_LIMIT_RESERVE_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            FITBIT_RATE_LIMIT_RESERVE_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_RATE_LIMIT_RESERVE_DISPLAY)
+
+        .define(FITBIT_DEVICE_SYNC_GATE_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            FITBIT_DEVICE_SYNC_GATE_ENABLED_DEFAULT,
+            Importance.LOW,
+            FITBIT_DEVICE_SYNC_GATE_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_DEVICE_SYNC_GATE_ENABLED_DISPLAY)
+
+        .define(FITBIT_INTRADAY_REALTIME_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            FITBIT_INTRADAY_REALTIME_ENABLED_DEFAULT,
+            Importance.LOW,
+            FITBIT_INTRADAY_REALTIME_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_INTRADAY_REALTIME_ENABLED_DISPLAY)
+
+        .define(FITBIT_INTRADAY_REALTIME_INTERVAL_CONFIG,
+            Type.INT,
+            FITBIT_INTRADAY_REALTIME_INTERVAL_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            FITBIT_INTRADAY_REALTIME_INTERVAL_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_INTRADAY_REALTIME_INTERVAL_DISPLAY)
+
+        .define(FITBIT_INTRADAY_REALTIME_RESCAN_CONFIG,
+            Type.INT,
+            FITBIT_INTRADAY_REALTIME_RESCAN_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            FITBIT_INTRADAY_REALTIME_RESCAN_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_INTRADAY_REALTIME_RESCAN_DISPLAY)
+
+        .define(FITBIT_BACKFILL_LANE_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            FITBIT_BACKFILL_LANE_ENABLED_DEFAULT,
+            Importance.LOW,
+            FITBIT_BACKFILL_LANE_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_BACKFILL_LANE_ENABLED_DISPLAY)
+
+        .define(FITBIT_LIVE_LANE_DAYS_CONFIG,
+            Type.INT,
+            FITBIT_LIVE_LANE_DAYS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            FITBIT_LIVE_LANE_DAYS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_LIVE_LANE_DAYS_DISPLAY)
+
+        .define(FITBIT_BACKFILL_LANE_MAX_REQUESTS_CONFIG,
+            Type.INT,
+            FITBIT_BACKFILL_LANE_MAX_REQUESTS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            FITBIT_BACKFILL_LANE_MAX_REQUESTS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_BACKFILL_LANE_MAX_REQUESTS_DISPLAY)
+
+        .define(FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_CONFIG,
+            Type.INT,
+            FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_DISPLAY)
+
+        .define(FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_CONFIG,
+            Type.INT,
+            FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_DISPLAY)
+
+        .define(FITBIT_BACKFILL_LANE_ORDER_CONFIG,
+            Type.STRING,
+            FITBIT_BACKFILL_LANE_ORDER_DEFAULT,
+            ConfigDef.CaseInsensitiveValidString.in("oldest_first", "newest_first"),
+            Importance.LOW,
+            FITBIT_BACKFILL_LANE_ORDER_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_BACKFILL_LANE_ORDER_DISPLAY)
+
+        .define(FITBIT_ADAPTIVE_POLLING_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            FITBIT_ADAPTIVE_POLLING_ENABLED_DEFAULT,
+            Importance.LOW,
+            FITBIT_ADAPTIVE_POLLING_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_ADAPTIVE_POLLING_ENABLED_DISPLAY)
+
+        .define(FITBIT_ADAPTIVE_POLLING_MAX_DELAY_CONFIG,
+            Type.INT,
+            FITBIT_ADAPTIVE_POLLING_MAX_DELAY_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            FITBIT_ADAPTIVE_POLLING_MAX_DELAY_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_ADAPTIVE_POLLING_MAX_DELAY_DISPLAY)
+
+        .define(FITBIT_IDLE_BACKOFF_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            FITBIT_IDLE_BACKOFF_ENABLED_DEFAULT,
+            Importance.LOW,
+            FITBIT_IDLE_BACKOFF_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_IDLE_BACKOFF_ENABLED_DISPLAY)
+
+        .define(FITBIT_IDLE_BACKOFF_MAX_INTERVAL_CONFIG,
+            Type.INT,
+            FITBIT_IDLE_BACKOFF_MAX_INTERVAL_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            FITBIT_IDLE_BACKOFF_MAX_INTERVAL_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            FITBIT_IDLE_BACKOFF_MAX_INTERVAL_DISPLAY)
         ;
   }
 
@@ -896,4 +1130,75 @@ public class FitbitRestSourceConnectorConfig extends RestSourceConnectorConfig {
   public int getForbiddenBackoff() {
     return getInt(FITBIT_FORBIDDEN_BACKOFF_CONFIG);
   }
+
+  public int getRateLimitReserve() {
+    return getInt(FITBIT_RATE_LIMIT_RESERVE_CONFIG);
+  }
+
+  public boolean getFitbitDeviceSyncGateEnabled() {
+    return getBoolean(FITBIT_DEVICE_SYNC_GATE_ENABLED_CONFIG);
+  }
+
+  public boolean getFitbitIntradayRealtimeEnabled() {
+    return getBoolean(FITBIT_INTRADAY_REALTIME_ENABLED_CONFIG);
+  }
+
+  public Duration getFitbitIntradayRealtimeInterval() {
+    return Duration.ofSeconds(getInt(FITBIT_INTRADAY_REALTIME_INTERVAL_CONFIG));
+  }
+
+  public Duration getFitbitIntradayRealtimeRescan() {
+    return Duration.ofSeconds(getInt(FITBIT_INTRADAY_REALTIME_RESCAN_CONFIG));
+  }
+
+  public boolean getFitbitBackfillLaneEnabled() {
+    return getBoolean(FITBIT_BACKFILL_LANE_ENABLED_CONFIG);
+  }
+
+  public int getFitbitLiveLaneDays() {
+    return getInt(FITBIT_LIVE_LANE_DAYS_CONFIG);
+  }
+
+  public int getFitbitBackfillLaneMaxRequests() {
+    return getInt(FITBIT_BACKFILL_LANE_MAX_REQUESTS_CONFIG);
+  }
+
+  /**
+   * Maximum number of requests of all backfill lanes that are in flight at the same time. If the
+   * task makes concurrent requests, this is always less than its maximum number of concurrent
+   * requests.
+   */
+  public int getFitbitBackfillLaneMaxConcurrentRequests() {
+    int maxConcurrentRequests = getMaxConcurrentRequests();
+    int maxRequests = getInt(FITBIT_BACKFILL_LANE_MAX_CONCURRENT_REQUESTS_CONFIG);
+    if (maxRequests == 0) {
+      maxRequests = maxConcurrentRequests / 2;
+    }
+    return Math.max(1, Math.min(maxRequests, maxConcurrentRequests - 1));
+  }
+
+  public int getFitbitBackfillLaneRateLimitReserve() {
+    return getInt(FITBIT_BACKFILL_LANE_RATE_LIMIT_RESERVE_CONFIG);
+  }
+
+  /** Whether the backfill lane polls the most recent days of a user first. */
+  public boolean getFitbitBackfillLaneNewestFirst() {
+    return getString(FITBIT_BACKFILL_LANE_ORDER_CONFIG).equalsIgnoreCase("newest_first");
+  }
+
+  public boolean getFitbitAdaptivePollingEnabled() {
+    return getBoolean(FITBIT_ADAPTIVE_POLLING_ENABLED_CONFIG);
+  }
+
+  public Duration getFitbitAdaptivePollingMaxDelay() {
+    return Duration.ofSeconds(getInt(FITBIT_ADAPTIVE_POLLING_MAX_DELAY_CONFIG));
+  }
+
+  public boolean getFitbitIdleBackoffEnabled() {
+    return getBoolean(FITBIT_IDLE_BACKOFF_ENABLED_CONFIG);
+  }
+
+  public Duration getFitbitIdleBackoffMaxInterval() {
+    return Duration.ofSeconds(getInt(FITBIT_IDLE_BACKOFF_MAX_INTERVAL_CONFIG));
+  }
 }
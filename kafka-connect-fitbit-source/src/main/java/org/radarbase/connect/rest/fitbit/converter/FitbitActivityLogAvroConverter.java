@@ -21,7 +21,6 @@ import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
-import java.time.Instant;
 import java.time.OffsetDateTime;
 import java.util.Comparator;
 import java.util.Optional;
@@ -29,6 +28,7 @@ import java.util.stream.Stream;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.util.TimestampParser;
 import org.radarcns.connector.fitbit.FitbitActivityHeartRate;
 import org.radarcns.connector.fitbit.FitbitActivityHeartRate.Builder;
 import org.radarcns.connector.fitbit.FitbitActivityLevels;
@@ -63,6 +63,7 @@ public class FitbitActivityLogAvroConverter extends FitbitAvroConverter {
     if (array == null || !array.isArray()) {
       return Stream.empty();
     }
+    request.setHasNextPage(hasNextPage(root));
 
     return iterableToStream(array)
         .sorted(Comparator.comparing(s -> s.get("startTime").textValue()))
@@ -79,7 +80,8 @@ public class FitbitActivityLogAvroConverter extends FitbitAvroConverter {
     return FitbitActivityLogRecord.newBuilder()
         .setTime(startTime.toInstant().toEpochMilli() / 1000d)
         .setTimeReceived(System.currentTimeMillis() / 1000d)
-        .setTimeLastModified(Instant.parse(s.get("lastModified").asText()).toEpochMilli() / 1000d)
+        .setTimeLastModified(
+            TimestampParser.parseOffsetDateTime(s.get("lastModified").asText()) / 1000d)
         .setId(optLong(s, "logId").orElseThrow(
             () -> new IllegalArgumentException("Activity log ID not specified")))
         .setLogType(optString(s, "logType").orElse(null))
@@ -17,12 +17,17 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
+import static org.radarbase.connect.rest.fitbit.request.FitbitRequestGenerator.JSON_FACTORY;
 import static org.radarbase.connect.rest.fitbit.request.FitbitRequestGenerator.JSON_READER;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.MissingNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.confluent.connect.avro.AvroData;
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
@@ -41,6 +46,7 @@ import org.apache.kafka.connect.source.SourceRecord;
 import org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
 import org.radarbase.connect.rest.fitbit.user.User;
+import org.radarbase.connect.rest.util.AvroStructConverter;
 import org.radarbase.connect.rest.request.RestRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -63,9 +69,11 @@ public abstract class FitbitAvroConverter implements PayloadToSourceRecordConver
   }
 
   private final AvroData avroData;
+  private final AvroStructConverter structConverter;
 
   public FitbitAvroConverter(AvroData avroData) {
     this.avroData = avroData;
+    this.structConverter = new AvroStructConverter(avroData);
   }
 
   @Override
@@ -74,23 +82,58 @@ public abstract class FitbitAvroConverter implements PayloadToSourceRecordConver
     if (data == null) {
       throw new IOException("Failed to read body");
     }
-    JsonNode activities = JSON_READER.readTree(data);
+    try (JsonParser parser = createParser(data)) {
+      return convert(restRequest, parser).collect(Collectors.toList());
+    }
+  }
 
+  /**
+   * Convert a response body while it is read, with a streaming parser. The body is never held in
+   * memory as a whole.
+   */
+  @Override
+  public Collection<SourceRecord> convert(
+      RestRequest restRequest, Headers headers, InputStream body) throws IOException {
+    if (body == null) {
+      throw new IOException("Failed to read body");
+    }
+    try (JsonParser parser = createParser(body)) {
+      return convert(restRequest, parser).collect(Collectors.toList());
+    }
+  }
+
+  private Stream<SourceRecord> convert(
+      RestRequest restRequest, JsonParser parser) throws IOException {
     User user = ((FitbitRestRequest) restRequest).getUser();
     final SchemaAndValue key = user.getObservationKey(avroData);
     double timeReceived = System.currentTimeMillis() / 1000d;
+    Map<String, Object> offsetAttributes =
+        ((FitbitRestRequest) restRequest).getOffsetAttributes();
 
-    return processRecords((FitbitRestRequest)restRequest, activities, timeReceived)
+    return processRecords((FitbitRestRequest)restRequest, parser, timeReceived)
         .filter(t -> validateRecord((FitbitRestRequest)restRequest, t))
         .map(t -> {
-          SchemaAndValue avro = avroData.toConnectData(t.value.getSchema(), t.value);
-          Map<String, ?> offset = Collections.singletonMap(
-              TIMESTAMP_OFFSET_KEY, t.sourceOffset.toEpochMilli());
+          SchemaAndValue avro = structConverter.toConnectData(t.value);
+          Map<String, ?> offset = getOffset(offsetAttributes, t);
 
-          return new SourceRecord(restRequest.getPartition(), offset, t.topic,
+          Map<String, ?> partition = t.sourcePartition != null
+              ? t.sourcePartition : restRequest.getPartition();
+          return new SourceRecord(partition, offset, t.topic,
               key.schema(), key.value(), avro.schema(), avro.value());
-        })
-        .collect(Collectors.toList());
+        });
+  }
+
+  /**
+   * Source offset of a record. Records in the partition of the request also store given offset
+   * attributes of the request.
+   */
+  private static Map<String, ?> getOffset(Map<String, Object> attributes, TopicData record) {
+    if (attributes.isEmpty() || record.sourcePartition != null) {
+      return Collections.singletonMap(TIMESTAMP_OFFSET_KEY, record.sourceOffset.toEpochMilli());
+    }
+    Map<String, Object> offset = new HashMap<>(attributes);
+    offset.put(TIMESTAMP_OFFSET_KEY, record.sourceOffset.toEpochMilli());
+    return offset;
   }
 
   private boolean validateRecord(FitbitRestRequest request, TopicData record) {
@@ -98,15 +141,33 @@ public abstract class FitbitAvroConverter implements PayloadToSourceRecordConver
       return false;
     }
     Instant endDate = request.getUser().getEndDate();
-    if (endDate == null) {
-      return true;
-    }
-    Field timeField = record.value.getSchema().getField("time");
-    if (timeField != null) {
-      long time = (long) (((Double)record.value.get(timeField.pos()) * 1000.0));
-      return Instant.ofEpochMilli(time).isBefore(endDate);
+    if (endDate != null) {
+      Field timeField = record.value.getSchema().getField("time");
+      if (timeField != null) {
+        long time = (long) (((Double)record.value.get(timeField.pos()) * 1000.0));
+        if (!Instant.ofEpochMilli(time).isBefore(endDate)) {
+          return false;
+        }
+      }
     }
-    return true;
+    // records shared with another route are not part of the samples of this request
+    return record.sourcePartition != null || request.isNewSample(record.sourceOffset);
+  }
+
+  /**
+   * Process the JSON body generated by given request, with the parser positioned at its first
+   * token. By default, this reads the full JSON tree and processes it with
+   * {@link #processRecords(FitbitRestRequest, JsonNode, double)}. Converters of large responses
+   * can override this to read records with the streaming parser. The returned stream may not
+   * use the parser anymore.
+   */
+  protected Stream<TopicData> processRecords(
+      FitbitRestRequest request,
+      JsonParser parser,
+      double timeReceived) throws IOException {
+    JsonNode root = JSON_READER.readTree(parser);
+    return processRecords(request, root != null ? root : MissingNode.getInstance(),
+        timeReceived);
   }
 
   /** Process the JSON records generated by given request. */
@@ -115,6 +176,19 @@ public abstract class FitbitAvroConverter implements PayloadToSourceRecordConver
       JsonNode root,
       double timeReceived);
 
+  /**
+   * Whether a paginated list response links to a next page. Fitbit list endpoints return an empty
+   * {@code pagination.next} link on the last page.
+   */
+  protected static boolean hasNextPage(JsonNode root) {
+    JsonNode pagination = root.get("pagination");
+    if (pagination == null) {
+      return false;
+    }
+    JsonNode next = pagination.get("next");
+    return next != null && next.isTextual() && !next.textValue().isEmpty();
+  }
+
   /** Get Fitbit dataset interval used in some intraday API calls. */
   protected static int getRecordInterval(JsonNode root, int defaultValue) {
     JsonNode type = root.get("datasetType");
@@ -123,9 +197,82 @@ public abstract class FitbitAvroConverter implements PayloadToSourceRecordConver
       logger.warn("Failed to get data interval; using {} instead", defaultValue);
       return defaultValue;
     }
+    return getRecordInterval(type.asText(), interval.asLong());
+  }
+
+  /** Get Fitbit dataset interval in seconds from its type and its value. */
+  protected static int getRecordInterval(String type, long interval) {
     return (int)TIME_UNIT_MAP
-        .getOrDefault(type.asText(), TimeUnit.SECONDS)
-        .toSeconds(interval.asLong());
+        .getOrDefault(type, TimeUnit.SECONDS)
+        .toSeconds(interval);
+  }
+
+  /** Create a streaming parser for given JSON data, positioned at its first token. */
+  protected static JsonParser createParser(byte[] data) throws IOException {
+    JsonParser parser = JSON_FACTORY.createParser(data);
+    parser.nextToken();
+    return parser;
+  }
+
+  /** Create a streaming parser that reads given JSON stream, positioned at its first token. */
+  protected static JsonParser createParser(InputStream data) throws IOException {
+    JsonParser parser = JSON_FACTORY.createParser(data);
+    parser.nextToken();
+    return parser;
+  }
+
+  /** Create a streaming parser over given JSON tree, positioned at its first token. */
+  protected static JsonParser createParser(JsonNode root) throws IOException {
+    JsonParser parser = root.traverse();
+    parser.nextToken();
+    return parser;
+  }
+
+  /**
+   * Read a JSON object, passing each field to given reader with the parser positioned at the
+   * start of the field value. The reader must consume the complete value, for example with
+   * {@link JsonParser#skipChildren()}. If the current token is not the start of an object, the
+   * value is skipped.
+   */
+  protected static void readObject(JsonParser parser, JsonFieldReader reader) throws IOException {
+    if (parser.currentToken() != JsonToken.START_OBJECT) {
+      parser.skipChildren();
+      return;
+    }
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      String name = parser.getCurrentName();
+      parser.nextToken();
+      reader.read(name, parser);
+    }
+  }
+
+  /**
+   * Read a JSON array, passing the parser to given reader at the start of each element. The
+   * reader must consume the complete element. If the current token is not the start of an array,
+   * the value is skipped.
+   */
+  protected static void readArray(JsonParser parser, JsonElementReader reader) throws IOException {
+    if (parser.currentToken() != JsonToken.START_ARRAY) {
+      parser.skipChildren();
+      return;
+    }
+    JsonToken token = parser.nextToken();
+    while (token != null && token != JsonToken.END_ARRAY) {
+      reader.read(parser);
+      token = parser.nextToken();
+    }
+  }
+
+  /** Reads a single field of a JSON object. */
+  @FunctionalInterface
+  protected interface JsonFieldReader {
+    void read(String name, JsonParser parser) throws IOException;
+  }
+
+  /** Reads a single element of a JSON array. */
+  @FunctionalInterface
+  protected interface JsonElementReader {
+    void read(JsonParser parser) throws IOException;
   }
 
   /** Converts an iterable (like a JsonNode containing an array) to a stream. */
@@ -174,11 +321,22 @@ public abstract class FitbitAvroConverter implements PayloadToSourceRecordConver
     Instant sourceOffset;
     final String topic;
     final IndexedRecord value;
+    final Map<String, Object> sourcePartition;
 
     public TopicData(Instant sourceOffset, String topic, IndexedRecord value) {
+      this(sourceOffset, topic, value, null);
+    }
+
+    /**
+     * Record with an explicit source partition, for records that belong to another route than
+     * the route of the request they were read from.
+     */
+    public TopicData(Instant sourceOffset, String topic, IndexedRecord value,
+        Map<String, Object> sourcePartition) {
       this.sourceOffset = sourceOffset;
       this.topic = topic;
       this.value = value;
+      this.sourcePartition = sourcePartition;
     }
   }
 }
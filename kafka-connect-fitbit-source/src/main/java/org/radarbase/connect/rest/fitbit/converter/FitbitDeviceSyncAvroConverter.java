@@ -0,0 +1,109 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.converter;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.connect.avro.AvroData;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.stream.Stream;
+import org.radarbase.connect.rest.RestSourceConnectorConfig;
+import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
+import org.radarbase.connect.rest.fitbit.request.FitbitDeviceSyncTimes;
+import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.fitbit.request.FitbitUserTimeZones;
+import org.radarbase.connect.rest.util.SyncPatterns;
+import org.radarbase.connect.rest.util.TimestampParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads the last sync time of the devices of a user into {@link FitbitDeviceSyncTimes} if the
+ * device sync gate is enabled, and into {@link SyncPatterns} if adaptive polling is enabled. No
+ * records are produced. The sync times are local times of the user, so they are only read if the
+ * time zone of the user is known.
+ */
+public class FitbitDeviceSyncAvroConverter extends FitbitAvroConverter {
+  private static final Logger logger = LoggerFactory.getLogger(
+      FitbitDeviceSyncAvroConverter.class);
+  private final FitbitDeviceSyncTimes deviceSyncTimes;
+  private final FitbitUserTimeZones userTimeZones;
+  private final SyncPatterns syncPatterns;
+  private boolean isGateEnabled;
+  private boolean isAdaptivePollingEnabled;
+
+  public FitbitDeviceSyncAvroConverter(AvroData avroData, FitbitDeviceSyncTimes deviceSyncTimes,
+      FitbitUserTimeZones userTimeZones, SyncPatterns syncPatterns) {
+    super(avroData);
+    this.deviceSyncTimes = deviceSyncTimes;
+    this.userTimeZones = userTimeZones;
+    this.syncPatterns = syncPatterns;
+  }
+
+  @Override
+  public void initialize(RestSourceConnectorConfig config) {
+    FitbitRestSourceConnectorConfig fitbitConfig = (FitbitRestSourceConnectorConfig) config;
+    isGateEnabled = fitbitConfig.getFitbitDeviceSyncGateEnabled();
+    isAdaptivePollingEnabled = fitbitConfig.getFitbitAdaptivePollingEnabled();
+  }
+
+  @Override
+  protected Stream<TopicData> processRecords(
+      FitbitRestRequest request, JsonNode root, double timeReceived) {
+    if (!root.isArray()) {
+      logger.warn("Failed to get devices from {}, {}", request.getRequest().url(), root);
+      return Stream.empty();
+    }
+    ZoneId timeZone = userTimeZones.get(request.getUser());
+    if (timeZone == null) {
+      // without a sync time, routes of the user are not gated
+      logger.debug("Time zone of user {} is not known yet, ignoring device sync times",
+          request.getUser());
+      if (isGateEnabled) {
+        deviceSyncTimes.update(request.getUser(), null);
+      }
+      return Stream.empty();
+    }
+    TimestampParser parser = new TimestampParser(timeZone);
+    Instant lastSync = null;
+    for (JsonNode device : root) {
+      JsonNode syncTime = device.get("lastSyncTime");
+      if (syncTime == null || !syncTime.isTextual()) {
+        continue;
+      }
+      try {
+        Instant deviceSync = Instant.ofEpochMilli(parser.parseLocalDateTime(syncTime.textValue()));
+        if (lastSync == null || deviceSync.isAfter(lastSync)) {
+          lastSync = deviceSync;
+        }
+      } catch (DateTimeParseException ex) {
+        logger.warn("Failed to parse device sync time {} of user {}",
+            syncTime.textValue(), request.getUser());
+      }
+    }
+    if (isGateEnabled) {
+      deviceSyncTimes.update(request.getUser(), lastSync);
+    }
+    if (isAdaptivePollingEnabled && lastSync != null) {
+      // the same sync time is read again until the next sync, but it is only counted once
+      syncPatterns.observe(request.getUser().getId(), lastSync);
+    }
+    return Stream.empty();
+  }
+}
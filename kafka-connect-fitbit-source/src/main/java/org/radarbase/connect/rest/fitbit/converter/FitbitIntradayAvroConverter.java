@@ -0,0 +1,194 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.converter;
+
+import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.JsonNode;
+import io.confluent.connect.avro.AvroData;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.util.TimestampParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Converter for Fitbit intraday activity time series, like
+ * {@code activities-heart-intraday}. The dataset is read with a streaming parser, so that no
+ * JSON tree is built for large intraday responses.
+ */
+public abstract class FitbitIntradayAvroConverter extends FitbitAvroConverter {
+  private static final Logger logger = LoggerFactory.getLogger(FitbitIntradayAvroConverter.class);
+
+  private final String intradayField;
+  private final int defaultInterval;
+
+  /**
+   * Intraday converter.
+   * @param avroData Avro data converter.
+   * @param intradayField name of the field that contains the intraday dataset.
+   * @param defaultInterval record interval in seconds, if it is not given in the response.
+   */
+  public FitbitIntradayAvroConverter(AvroData avroData, String intradayField,
+      int defaultInterval) {
+    super(avroData);
+    this.intradayField = intradayField;
+    this.defaultInterval = defaultInterval;
+  }
+
+  @Override
+  protected Stream<TopicData> processRecords(
+      FitbitRestRequest request, JsonNode root, double timeReceived) {
+    try (JsonParser parser = createParser(root)) {
+      return processRecords(request, parser, timeReceived);
+    } catch (IOException ex) {
+      throw new UncheckedIOException(ex);
+    }
+  }
+
+  @Override
+  protected Stream<TopicData> processRecords(
+      FitbitRestRequest request, JsonParser parser, double timeReceived) throws IOException {
+    Dataset dataset = new Dataset();
+    List<TopicData> summaryRecords = new ArrayList<>();
+    readObject(parser, (name, p) -> {
+      if (name.equals(intradayField)) {
+        readDataset(p, dataset);
+      } else {
+        readSummary(request, name, p, timeReceived, summaryRecords);
+      }
+    });
+    if (dataset.entries == null) {
+      return summaryRecords.stream();
+    }
+
+    int interval;
+    if (dataset.type == null || dataset.interval == null) {
+      logger.warn("Failed to get data interval; using {} instead", defaultInterval);
+      interval = defaultInterval;
+    } else {
+      interval = getRecordInterval(dataset.type, dataset.interval);
+    }
+
+    // Used as the date to convert the local times in the dataset to absolute times.
+    ZonedDateTime date = getDatasetDate(request);
+    LocalDate localDate = date.toLocalDate();
+    TimestampParser timestampParser = new TimestampParser(date.getZone());
+
+    return Stream.concat(summaryRecords.stream(), dataset.entries.stream()
+        .map(tryOrNull(entry -> {
+          Instant time = Instant.ofEpochMilli(
+              timestampParser.parseLocalTime(localDate, entry.time));
+          return createRecord(time, entry, interval, timeReceived);
+        }, (e, ex) -> logger.warn(
+            "Failed to convert {} from request {} of user {}, {}",
+            intradayField, request.getRequest().url(), request.getUser(), e.time, ex))));
+  }
+
+  /**
+   * Read a top-level field of the response other than the intraday dataset, with the parser
+   * positioned at the start of its value. The value must be fully consumed. By default, it is
+   * skipped.
+   * @param records list to add any records read from the field to.
+   */
+  protected void readSummary(FitbitRestRequest request, String field, JsonParser parser,
+      double timeReceived, List<TopicData> records) throws IOException {
+    parser.skipChildren();
+  }
+
+  private static void readDataset(JsonParser parser, Dataset dataset) throws IOException {
+    readObject(parser, (name, p) -> {
+      switch (name) {
+        case "dataset":
+          dataset.entries = new ArrayList<>();
+          readArray(p, e -> dataset.entries.add(readEntry(e)));
+          break;
+        case "datasetType":
+          dataset.type = p.getValueAsString();
+          break;
+        case "datasetInterval":
+          dataset.interval = p.currentToken().isNumeric() ? p.getLongValue() : null;
+          break;
+        default:
+          p.skipChildren();
+          break;
+      }
+    });
+  }
+
+  private static DatasetEntry readEntry(JsonParser parser) throws IOException {
+    DatasetEntry entry = new DatasetEntry();
+    readObject(parser, (name, p) -> {
+      switch (name) {
+        case "time":
+          entry.time = p.getValueAsString();
+          break;
+        case "value":
+          entry.value = p.getValueAsDouble(Double.NaN);
+          break;
+        case "level":
+          entry.level = p.getValueAsInt(-1);
+          break;
+        case "mets":
+          entry.mets = p.getValueAsDouble(Double.NaN);
+          break;
+        default:
+          p.skipChildren();
+          break;
+      }
+    });
+    return entry;
+  }
+
+  /** Date that the local times in the dataset of given request refer to. */
+  protected abstract ZonedDateTime getDatasetDate(FitbitRestRequest request);
+
+  /**
+   * Create a record from a dataset entry.
+   * @param time time of the entry.
+   * @param entry parsed dataset entry.
+   * @param interval record interval in seconds.
+   * @param timeReceived time that the request was received.
+   * @return record or {@code null} if no record should be created.
+   * @throws IllegalArgumentException if the entry is missing required values.
+   */
+  protected abstract TopicData createRecord(
+      Instant time, DatasetEntry entry, int interval, double timeReceived);
+
+  /** Single entry of an intraday dataset. Missing values are NaN or -1. */
+  protected static class DatasetEntry {
+    String time;
+    double value = Double.NaN;
+    int level = -1;
+    double mets = Double.NaN;
+  }
+
+  private static class Dataset {
+    private List<DatasetEntry> entries;
+    private String type;
+    private Long interval;
+  }
+}
@@ -1,13 +1,8 @@
 package org.radarbase.connect.rest.fitbit.converter;
 
-import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
-
-import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
 import java.time.Instant;
-import java.time.LocalTime;
 import java.time.ZonedDateTime;
-import java.util.stream.Stream;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
@@ -15,7 +10,7 @@ import org.radarcns.connector.fitbit.FitbitIntradayCalories;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FitbitIntradayCaloriesAvroConverter extends FitbitAvroConverter {
+public class FitbitIntradayCaloriesAvroConverter extends FitbitIntradayAvroConverter {
 
   private static final Logger logger =
       LoggerFactory.getLogger(FitbitIntradayCaloriesAvroConverter.class);
@@ -23,52 +18,30 @@ public class FitbitIntradayCaloriesAvroConverter extends FitbitAvroConverter {
   private String caloriesTopic;
 
   public FitbitIntradayCaloriesAvroConverter(AvroData avroData) {
-    super(avroData);
+    super(avroData, "activities-calories-intraday", 60);
   }
 
   @Override
-  protected Stream<TopicData> processRecords(
-      FitbitRestRequest request, JsonNode root, double timeReceived) {
-    JsonNode intraday = root.get("activities-calories-intraday");
-    if (intraday == null) {
-      return Stream.empty();
-    }
+  protected ZonedDateTime getDatasetDate(FitbitRestRequest request) {
+    return request.getDateRange().end();
+  }
 
-    JsonNode dataset = intraday.get("dataset");
-    if (dataset == null) {
-      return Stream.empty();
+  @Override
+  protected TopicData createRecord(
+      Instant time, DatasetEntry entry, int interval, double timeReceived) {
+    if (Double.isNaN(entry.value) || entry.level == -1 || Double.isNaN(entry.mets)) {
+      throw new IllegalArgumentException("Missing calories value, level or mets");
     }
-
-    int interval = getRecordInterval(intraday, 60);
-
-    // Used as the date to convert the local times in the dataset to absolute times.
-    ZonedDateTime startDate = request.getDateRange().end();
-
-    return iterableToStream(dataset)
-        .map(
-            tryOrNull(
-                activity -> {
-                  Instant time =
-                      startDate.with(LocalTime.parse(activity.get("time").asText())).toInstant();
-
-                  FitbitIntradayCalories calories =
-                      new FitbitIntradayCalories(
-                          time.toEpochMilli() / 1000d,
-                          timeReceived,
-                          interval,
-                          activity.get("value").asDouble(),
-                          activity.get("level").asInt(),
-                          activity.get("mets").asDouble());
-
-                  return new TopicData(time, caloriesTopic, calories);
-                },
-                (a, ex) ->
-                    logger.warn(
-                        "Failed to convert calories from request {} of user {}, {}",
-                        request.getRequest().url(),
-                        request.getUser(),
-                        a,
-                        ex)));
+    FitbitIntradayCalories calories =
+        new FitbitIntradayCalories(
+            time.toEpochMilli() / 1000d,
+            timeReceived,
+            interval,
+            entry.value,
+            entry.level,
+            entry.mets);
+
+    return new TopicData(time, caloriesTopic, calories);
   }
 
   @Override
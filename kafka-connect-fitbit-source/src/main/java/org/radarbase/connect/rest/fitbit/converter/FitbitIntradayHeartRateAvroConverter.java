@@ -17,68 +17,129 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
-import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
-
-import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.core.JsonParser;
 import io.confluent.connect.avro.AvroData;
+import java.io.IOException;
 import java.time.Instant;
-import java.time.LocalTime;
 import java.time.ZonedDateTime;
-import java.util.stream.Stream;
+import java.util.List;
+import java.util.Map;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.fitbit.user.User;
 import org.radarcns.connector.fitbit.FitbitIntradayHeartRate;
+import org.radarcns.connector.fitbit.FitbitRestingHeartRate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FitbitIntradayHeartRateAvroConverter extends FitbitAvroConverter {
+public class FitbitIntradayHeartRateAvroConverter extends FitbitIntradayAvroConverter {
   private static final Logger logger = LoggerFactory.getLogger(
       FitbitIntradayHeartRateAvroConverter.class);
+
   private String heartRateTopic;
+  private String restingHeartRateTopic;
+  private RestingHeartRateReceiver restingHeartRateReceiver;
 
   public FitbitIntradayHeartRateAvroConverter(AvroData avroData) {
-    super(avroData);
+    super(avroData, "activities-heart-intraday", 1);
   }
 
   @Override
   public void initialize(RestSourceConnectorConfig config) {
-    heartRateTopic = ((FitbitRestSourceConnectorConfig) config).getFitbitIntradayHeartRateTopic();
+    FitbitRestSourceConnectorConfig fitbitConfig = (FitbitRestSourceConnectorConfig) config;
+    heartRateTopic = fitbitConfig.getFitbitIntradayHeartRateTopic();
+    restingHeartRateTopic = fitbitConfig.getFitbitRestingHeartRateTopic();
     logger.info("Using heart rate topic {}", heartRateTopic);
   }
 
+  /**
+   * Also convert the resting heart rate in the daily summary of intraday responses. The records
+   * are added to the partition of the receiver. The route of the request notifies the receiver
+   * of their offsets once the whole response was converted.
+   */
+  public void setRestingHeartRateReceiver(RestingHeartRateReceiver receiver) {
+    this.restingHeartRateReceiver = receiver;
+  }
+
   @Override
-  protected Stream<TopicData> processRecords(
-      FitbitRestRequest request, JsonNode root, double timeReceived) {
-    JsonNode intraday = root.get("activities-heart-intraday");
-    if (intraday == null || !intraday.isObject()) {
-      return Stream.empty();
+  protected void readSummary(FitbitRestRequest request, String field, JsonParser parser,
+      double timeReceived, List<TopicData> records) throws IOException {
+    RestingHeartRateReceiver receiver = restingHeartRateReceiver;
+    if (receiver == null || !field.equals("activities-heart")) {
+      parser.skipChildren();
+      return;
     }
-
-    JsonNode dataset = intraday.get("dataset");
-    if (dataset == null || !dataset.isArray()) {
-      return Stream.empty();
+    User user = request.getUser();
+    Map<String, Object> partition = receiver.getRestingHeartRatePartition(user);
+    if (partition == null) {
+      parser.skipChildren();
+      return;
     }
+    Instant offset = request.getDateRange().start().toInstant();
+    readArray(parser, p -> {
+      DailySummary summary = new DailySummary();
+      readObject(p, (name, v) -> {
+        if (name.equals("dateTime")) {
+          summary.date = v.getValueAsString();
+        } else if (name.equals("value")) {
+          // time range requests have a plain value instead of an object
+          readObject(v, (valueName, rv) -> {
+            if (valueName.equals("restingHeartRate") && rv.currentToken().isNumeric()) {
+              summary.restingHeartRate = rv.getIntValue();
+            } else {
+              rv.skipChildren();
+            }
+          });
+        } else {
+          v.skipChildren();
+        }
+      });
+      if (summary.date != null && summary.restingHeartRate != null) {
+        records.add(new TopicData(offset, restingHeartRateTopic,
+            new FitbitRestingHeartRate(summary.date, timeReceived, summary.restingHeartRate),
+            partition));
+      }
+    });
+  }
 
-    int interval = getRecordInterval(intraday, 1);
+  @Override
+  protected ZonedDateTime getDatasetDate(FitbitRestRequest request) {
+    return request.getDateRange().start();
+  }
+
+  @Override
+  protected TopicData createRecord(
+      Instant time, DatasetEntry entry, int interval, double timeReceived) {
+    if (Double.isNaN(entry.value)) {
+      throw new IllegalArgumentException("Missing heart rate value");
+    }
+    FitbitIntradayHeartRate heartRate = new FitbitIntradayHeartRate(
+        time.toEpochMilli() / 1000d,
+        timeReceived,
+        interval,
+        (int) entry.value);
 
-    // Used as the date to convert the local times in the dataset to absolute times.
-    ZonedDateTime startDate = request.getDateRange().start();
+    return new TopicData(time, heartRateTopic, heartRate);
+  }
 
-    return iterableToStream(dataset)
-        .map(tryOrNull(activity -> {
-          Instant time = startDate.with(LocalTime.parse(activity.get("time").asText()))
-              .toInstant();
+  /** Receiver of resting heart rates that are read from intraday heart rate responses. */
+  public interface RestingHeartRateReceiver {
+    /**
+     * Source partition of the resting heart rate records of given user, or {@code null} if the
+     * records of the user should not be shared.
+     */
+    Map<String, Object> getRestingHeartRatePartition(User user);
 
-          FitbitIntradayHeartRate heartRate = new FitbitIntradayHeartRate(
-              time.toEpochMilli() / 1000d,
-              timeReceived,
-              interval,
-              activity.get("value").asInt());
+    /**
+     * Called when a response with resting heart rate records of given user was fully converted,
+     * with the latest offset of those records.
+     */
+    void restingHeartRateReceived(User user, Instant offset);
+  }
 
-          return new TopicData(time, heartRateTopic, heartRate);
-        }, (a, ex) -> logger.warn(
-            "Failed to convert heart rate from request {} of user {}, {}",
-            request.getRequest().url(), request.getUser(), a, ex)));
+  private static class DailySummary {
+    private String date;
+    private Integer restingHeartRate;
   }
 }
@@ -17,22 +17,26 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.util.TimestampParser;
 import org.radarcns.connector.fitbit.FitbitIntradayHeartRateVariability;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
-import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
-
 public class FitbitIntradayHeartRateVariabilityAvroConverter extends FitbitAvroConverter {
     private static final Logger logger = LoggerFactory.getLogger(FitbitIntradayHeartRateVariabilityAvroConverter.class);
     private String heartRateVariabilityTopic;
@@ -49,34 +53,97 @@ public class FitbitIntradayHeartRateVariabilityAvroConverter extends FitbitAvroC
 
     @Override
     protected Stream<TopicData> processRecords(FitbitRestRequest request, JsonNode root, double timeReceived) {
-        JsonNode hrv = root.get("hrv");
-        if (hrv == null || !hrv.isArray()) {
-            logger.warn("No HRV is provided for {}: {}", request, root);
-            return Stream.empty();
+        try (JsonParser parser = createParser(root)) {
+            return processRecords(request, parser, timeReceived);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
+    }
+
+    @Override
+    protected Stream<TopicData> processRecords(FitbitRestRequest request, JsonParser parser, double timeReceived) throws IOException {
         ZonedDateTime startDate = request.getDateRange().end();
+        TimestampParser timestampParser = new TimestampParser(startDate.getZone());
 
-        return iterableToStream(hrv)
-                .filter(m -> m != null && m.isObject())
-                .map(m -> m.get("minutes"))
-                .filter(minutes -> minutes != null && minutes.isArray())
-                .flatMap(FitbitAvroConverter::iterableToStream)
-                .map(tryOrNull(minuteData -> parseHrv(minuteData, startDate, timeReceived),
-                        (a, ex) -> logger.warn("Failed to convert heart rate variability from request {}, {}", request, a, ex)));
+        List<TopicData> records = new ArrayList<>();
+        readObject(parser, (field, hrv) -> {
+            if (field.equals("hrv") && hrv.currentToken() == JsonToken.START_ARRAY) {
+                readArray(hrv, day -> readObject(day, (name, p) -> {
+                    if (name.equals("minutes")) {
+                        readArray(p, minuteData -> {
+                            TopicData record = parseHrv(request, minuteData, timestampParser, timeReceived);
+                            if (record != null) {
+                                records.add(record);
+                            }
+                        });
+                    } else {
+                        p.skipChildren();
+                    }
+                }));
+            } else {
+                hrv.skipChildren();
+            }
+        });
+        if (records.isEmpty()) {
+            logger.warn("No HRV is provided for {}", request);
+        }
+        return records.stream();
     }
 
-    private TopicData parseHrv(JsonNode minuteData, ZonedDateTime startDate, double timeReceived) {
-      Instant time = startDate.with(LocalDateTime.parse(minuteData.get("minute").asText())).toInstant();
-      JsonNode value = minuteData.get("value");
-      if (value == null || !value.isObject()) {
+    private TopicData parseHrv(FitbitRestRequest request, JsonParser parser, TimestampParser timestampParser, double timeReceived) throws IOException {
+      HrvMinute minuteData = new HrvMinute();
+      readObject(parser, (name, p) -> {
+        if (name.equals("minute")) {
+          minuteData.minute = p.getValueAsString();
+        } else if (name.equals("value") && p.currentToken() == JsonToken.START_OBJECT) {
+          minuteData.hasValue = true;
+          readObject(p, (valueName, v) -> {
+            switch (valueName) {
+              case "rmssd":
+                minuteData.rmssd = v.getValueAsDouble();
+                break;
+              case "coverage":
+                minuteData.coverage = v.getValueAsDouble();
+                break;
+              case "hf":
+                minuteData.hf = v.getValueAsDouble();
+                break;
+              case "lf":
+                minuteData.lf = v.getValueAsDouble();
+                break;
+              default:
+                v.skipChildren();
+                break;
+            }
+          });
+        } else {
+          p.skipChildren();
+        }
+      });
+      try {
+        Instant time = Instant.ofEpochMilli(timestampParser.parseLocalDateTime(minuteData.minute));
+        if (!minuteData.hasValue) {
+          return null;
+        }
+        FitbitIntradayHeartRateVariability fitbitHrv = new FitbitIntradayHeartRateVariability(time.toEpochMilli() / 1000d,
+                timeReceived,
+                (float) minuteData.rmssd,
+                (float) minuteData.coverage,
+                (float) minuteData.hf,
+                (float) minuteData.lf);
+        return new TopicData(time, heartRateVariabilityTopic, fitbitHrv);
+      } catch (RuntimeException ex) {
+        logger.warn("Failed to convert heart rate variability from request {}, {}", request, minuteData.minute, ex);
         return null;
       }
-      FitbitIntradayHeartRateVariability fitbitHrv = new FitbitIntradayHeartRateVariability(time.toEpochMilli() / 1000d,
-              timeReceived,
-              (float) value.get("rmssd").asDouble(),
-              (float) value.get("coverage").asDouble(),
-              (float) value.get("hf").asDouble(),
-              (float) value.get("lf").asDouble());
-      return new TopicData(time, heartRateVariabilityTopic, fitbitHrv);
+    }
+
+    private static class HrvMinute {
+        private String minute;
+        private boolean hasValue;
+        private double rmssd;
+        private double coverage;
+        private double hf;
+        private double lf;
     }
 }
@@ -17,22 +17,26 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.util.TimestampParser;
 import org.radarcns.connector.fitbit.FitbitIntradaySpo2;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.Instant;
-import java.time.LocalDateTime;
 import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.stream.Stream;
 
-import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
-
 public class FitbitIntradaySpo2AvroConverter extends FitbitAvroConverter {
     private static final Logger logger = LoggerFactory.getLogger(FitbitIntradaySpo2AvroConverter.class);
     private String spo2Topic;
@@ -49,31 +53,66 @@ public class FitbitIntradaySpo2AvroConverter extends FitbitAvroConverter {
 
     @Override
     protected Stream<TopicData> processRecords(FitbitRestRequest request, JsonNode root, double timeReceived) {
-        JsonNode spo2 = root;
-        if (spo2 == null || !spo2.isArray()) {
-            logger.warn("No Spo2 is provided for {}: {}", request, root);
+        try (JsonParser parser = createParser(root)) {
+            return processRecords(request, parser, timeReceived);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    @Override
+    protected Stream<TopicData> processRecords(FitbitRestRequest request, JsonParser parser, double timeReceived) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            logger.warn("No Spo2 is provided for {}", request);
             return Stream.empty();
         }
         ZonedDateTime startDate = request.getDateRange().end();
+        TimestampParser timestampParser = new TimestampParser(startDate.getZone());
 
-        return iterableToStream(spo2)
-                .filter(m -> m != null && m.isObject())
-                .map(m -> m.get("minutes"))
-                .filter(minutes -> minutes != null && minutes.isArray())
-                .flatMap(FitbitAvroConverter::iterableToStream)
-                .map(tryOrNull(minuteData -> parseSpo2(minuteData, startDate, timeReceived),
-                        (a, ex) -> logger.warn("Failed to convert spo2 from request {}, {}", request, a, ex)));
+        List<TopicData> records = new ArrayList<>();
+        readArray(parser, day -> readObject(day, (name, p) -> {
+            if (name.equals("minutes")) {
+                readArray(p, minuteData -> {
+                    TopicData record = parseSpo2(request, minuteData, timestampParser, timeReceived);
+                    if (record != null) {
+                        records.add(record);
+                    }
+                });
+            } else {
+                p.skipChildren();
+            }
+        }));
+        return records.stream();
     }
 
-    private TopicData parseSpo2(JsonNode minuteData, ZonedDateTime startDate, double timeReceived) {
-      Instant time = startDate.with(LocalDateTime.parse(minuteData.get("minute").asText())).toInstant();
-      Float value = (float) minuteData.get("value").asDouble();
-      if (value == null) {
+    private TopicData parseSpo2(FitbitRestRequest request, JsonParser parser, TimestampParser timestampParser, double timeReceived) throws IOException {
+      Spo2Minute minuteData = new Spo2Minute();
+      readObject(parser, (name, p) -> {
+        if (name.equals("minute")) {
+          minuteData.minute = p.getValueAsString();
+        } else if (name.equals("value")) {
+          minuteData.value = p.getValueAsDouble(Double.NaN);
+        } else {
+          p.skipChildren();
+        }
+      });
+      try {
+        Instant time = Instant.ofEpochMilli(timestampParser.parseLocalDateTime(minuteData.minute));
+        if (Double.isNaN(minuteData.value)) {
+          throw new IllegalArgumentException("Missing spo2 value");
+        }
+        FitbitIntradaySpo2 fitbitSpo2 = new FitbitIntradaySpo2(time.toEpochMilli() / 1000d,
+                timeReceived,
+                (float) minuteData.value);
+        return new TopicData(time, spo2Topic, fitbitSpo2);
+      } catch (RuntimeException ex) {
+        logger.warn("Failed to convert spo2 from request {}, {}", request, minuteData.minute, ex);
         return null;
       }
-      FitbitIntradaySpo2 fitbitSpo2 = new FitbitIntradaySpo2(time.toEpochMilli() / 1000d,
-              timeReceived,
-              (float) value);
-      return new TopicData(time, spo2Topic, fitbitSpo2);
+    }
+
+    private static class Spo2Minute {
+        private String minute;
+        private double value = Double.NaN;
     }
 }
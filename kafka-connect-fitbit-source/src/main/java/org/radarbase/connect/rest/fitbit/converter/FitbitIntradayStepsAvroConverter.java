@@ -17,14 +17,9 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
-import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
-
-import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
 import java.time.Instant;
-import java.time.LocalTime;
 import java.time.ZonedDateTime;
-import java.util.stream.Stream;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
@@ -32,14 +27,14 @@ import org.radarcns.connector.fitbit.FitbitIntradaySteps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-public class FitbitIntradayStepsAvroConverter extends FitbitAvroConverter {
+public class FitbitIntradayStepsAvroConverter extends FitbitIntradayAvroConverter {
   private static final Logger logger = LoggerFactory.getLogger(
       FitbitIntradayStepsAvroConverter.class);
 
   private String stepTopic;
 
   public FitbitIntradayStepsAvroConverter(AvroData avroData) {
-    super(avroData);
+    super(avroData, "activities-steps-intraday", 60);
   }
 
   @Override
@@ -49,39 +44,22 @@ public class FitbitIntradayStepsAvroConverter extends FitbitAvroConverter {
   }
 
   @Override
-  protected Stream<TopicData> processRecords(
-      FitbitRestRequest request, JsonNode root, double timeReceived) {
-    JsonNode intraday = root.get("activities-steps-intraday");
-    if (intraday == null) {
-      return Stream.empty();
-    }
+  protected ZonedDateTime getDatasetDate(FitbitRestRequest request) {
+    return request.getDateRange().end();
+  }
 
-    JsonNode dataset = intraday.get("dataset");
-    if (dataset == null) {
-      return Stream.empty();
+  @Override
+  protected TopicData createRecord(
+      Instant time, DatasetEntry entry, int interval, double timeReceived) {
+    if (Double.isNaN(entry.value)) {
+      throw new IllegalArgumentException("Missing step value");
     }
+    FitbitIntradaySteps steps = new FitbitIntradaySteps(
+        time.toEpochMilli() / 1000d,
+        timeReceived,
+        interval,
+        (int) entry.value);
 
-    int interval = getRecordInterval(intraday, 60);
-
-    // Used as the date to convert the local times in the dataset to absolute times.
-    ZonedDateTime startDate = request.getDateRange().end();
-
-    return iterableToStream(dataset)
-        .map(tryOrNull(activity -> {
-
-          Instant time = startDate
-              .with(LocalTime.parse(activity.get("time").asText()))
-              .toInstant();
-
-          FitbitIntradaySteps steps = new FitbitIntradaySteps(
-              time.toEpochMilli() / 1000d,
-              timeReceived,
-              interval,
-              activity.get("value").asInt());
-
-          return new TopicData(time, stepTopic, steps);
-        }, (a, ex) -> logger.warn(
-            "Failed to convert steps from request {} of user {}, {}",
-            request.getRequest().url(), request.getUser(), a, ex)));
+    return new TopicData(time, stepTopic, steps);
   }
 }
@@ -17,9 +17,14 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
+import static java.time.ZoneOffset.UTC;
+
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
 
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
 import java.util.stream.Stream;
 import java.util.stream.StreamSupport;
 
@@ -83,8 +88,15 @@ public class FitbitRestingHeartRateAvroConverter extends FitbitAvroConverter {
           FitbitRestingHeartRate fitbitRestingHeartRate
               = new FitbitRestingHeartRate(date, timeReceived, restingHeartRate);
 
-          return new TopicData(request.getDateRange().start().toInstant(),
-              restingHeartRateTopic, fitbitRestingHeartRate);
+          // a range request returns one entry per day
+          Instant offset;
+          try {
+            offset = LocalDate.parse(date).atStartOfDay(UTC).toInstant();
+          } catch (DateTimeParseException ex) {
+            logger.warn("Failed to get resting heart rate from {}, {} : invalid 'dateTime' {}.", request.getRequest().url(), root, date);
+            return null;
+          }
+          return new TopicData(offset, restingHeartRateTopic, fitbitRestingHeartRate);
         })
         .filter(java.util.Objects::nonNull);
   }
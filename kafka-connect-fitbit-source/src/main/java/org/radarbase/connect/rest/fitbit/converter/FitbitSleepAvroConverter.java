@@ -17,7 +17,7 @@
 
 package org.radarbase.connect.rest.fitbit.converter;
 
-import static org.radarbase.connect.rest.fitbit.route.FitbitSleepRoute.DATE_TIME_FORMAT;
+import static java.time.ZoneOffset.UTC;
 import static org.radarbase.connect.rest.util.ThrowingFunction.tryOrNull;
 
 import com.fasterxml.jackson.databind.JsonNode;
@@ -36,6 +36,7 @@ import org.apache.avro.generic.IndexedRecord;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.util.TimestampParser;
 import org.radarcns.connector.fitbit.FitbitSleepClassic;
 import org.radarcns.connector.fitbit.FitbitSleepClassicLevel;
 import org.radarcns.connector.fitbit.FitbitSleepStage;
@@ -89,11 +90,15 @@ public class FitbitSleepAvroConverter extends FitbitAvroConverter {
     if (sleepArray == null) {
       return Stream.empty();
     }
+    request.setHasNextPage(hasNextPage(root));
+
+    TimestampParser timestampParser = new TimestampParser(UTC);
 
     return iterableToStream(sleepArray)
         .sorted(Comparator.comparing(s -> s.get("startTime").asText()))
         .flatMap(tryOrNull(s -> {
-          Instant startTime = Instant.from(DATE_TIME_FORMAT.parse(s.get("startTime").asText()));
+          Instant startTime = Instant.ofEpochMilli(
+              timestampParser.parseLocalDateTime(s.get("startTime").asText()));
           boolean isStages = s.get("type") == null || s.get("type").asText().equals("stages");
           int efficiency = s.has("efficiency") ? s.get("efficiency").asInt() : null;
 
@@ -19,10 +19,14 @@ package org.radarbase.connect.rest.fitbit.converter;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import io.confluent.connect.avro.AvroData;
+import java.time.DateTimeException;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.util.stream.Stream;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.fitbit.request.FitbitUserTimeZones;
 import org.radarcns.connector.fitbit.FitbitTimeZone;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -30,10 +34,12 @@ import org.slf4j.LoggerFactory;
 public class FitbitTimeZoneAvroConverter extends FitbitAvroConverter {
   private static final Logger logger = LoggerFactory.getLogger(FitbitTimeZoneAvroConverter.class);
 
+  private final FitbitUserTimeZones userTimeZones;
   private String timeZoneTopic;
 
-  public FitbitTimeZoneAvroConverter(AvroData avroData) {
+  public FitbitTimeZoneAvroConverter(AvroData avroData, FitbitUserTimeZones userTimeZones) {
     super(avroData);
+    this.userTimeZones = userTimeZones;
   }
 
   @Override
@@ -54,10 +60,26 @@ public class FitbitTimeZoneAvroConverter extends FitbitAvroConverter {
     }
     JsonNode offsetNode = user.get("offsetFromUTCMillis");
     Integer offset = offsetNode == null ? null : (int) (offsetNode.asLong() / 1000L);
+    userTimeZones.update(request.getUser(), parseTimeZone(user.get("timezone"), offset));
 
     FitbitTimeZone timeZone = new FitbitTimeZone(timeReceived, offset);
 
     return Stream.of(new TopicData(request.getDateRange().start().toInstant(),
         timeZoneTopic, timeZone));
   }
+
+  /**
+   * Time zone of the user profile. If the profile has no valid time zone ID, its current UTC
+   * offset is used.
+   */
+  private static ZoneId parseTimeZone(JsonNode timeZoneNode, Integer offset) {
+    if (timeZoneNode != null && timeZoneNode.isTextual()) {
+      try {
+        return ZoneId.of(timeZoneNode.textValue());
+      } catch (DateTimeException ex) {
+        logger.warn("Failed to parse time zone {}", timeZoneNode.textValue());
+      }
+    }
+    return offset != null ? ZoneOffset.ofTotalSeconds(offset) : null;
+  }
 }
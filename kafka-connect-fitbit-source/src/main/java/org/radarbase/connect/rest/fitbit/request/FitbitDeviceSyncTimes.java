@@ -0,0 +1,74 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.request;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.radarbase.connect.rest.fitbit.user.User;
+
+/**
+ * Latest time that any device of a user synced with Fitbit, as reported by the devices endpoint.
+ * Routes use it to skip polling a user whose data cannot have changed since the last record.
+ */
+public class FitbitDeviceSyncTimes {
+  /** Sync times that were not confirmed for this long are no longer trusted. */
+  static final Duration MAX_AGE = Duration.ofDays(1);
+
+  private final Map<String, SyncTime> syncTimes;
+
+  public FitbitDeviceSyncTimes() {
+    syncTimes = new ConcurrentHashMap<>();
+  }
+
+  /** Update the last sync time of a user, or remove it if {@code null}. */
+  public void update(User user, Instant lastSync) {
+    if (lastSync == null) {
+      syncTimes.remove(user.getId());
+    } else {
+      syncTimes.put(user.getId(), new SyncTime(lastSync, Instant.now()));
+    }
+  }
+
+  /**
+   * Latest sync time of any device of given user.
+   * @return sync time or {@code null} if it is not known or was not updated recently.
+   */
+  public Instant lastSync(User user) {
+    SyncTime syncTime = syncTimes.get(user.getId());
+    if (syncTime == null) {
+      return null;
+    }
+    if (syncTime.updated.plus(MAX_AGE).isBefore(Instant.now())) {
+      syncTimes.remove(user.getId(), syncTime);
+      return null;
+    }
+    return syncTime.lastSync;
+  }
+
+  private static class SyncTime {
+    private final Instant lastSync;
+    private final Instant updated;
+
+    private SyncTime(Instant lastSync, Instant updated) {
+      this.lastSync = lastSync;
+      this.updated = updated;
+    }
+  }
+}
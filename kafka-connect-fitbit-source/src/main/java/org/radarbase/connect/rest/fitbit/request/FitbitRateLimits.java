@@ -0,0 +1,84 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.request;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import okhttp3.Headers;
+import org.radarbase.connect.rest.fitbit.user.User;
+
+/**
+ * Remaining Fitbit API budget per user, as reported by the {@code Fitbit-Rate-Limit-*} headers
+ * of the latest response. The budget is shared by all routes of a user.
+ */
+public class FitbitRateLimits {
+  static final String REMAINING_HEADER = "Fitbit-Rate-Limit-Remaining";
+  static final String RESET_HEADER = "Fitbit-Rate-Limit-Reset";
+
+  private final Map<String, Budget> budgets;
+
+  public FitbitRateLimits() {
+    budgets = new ConcurrentHashMap<>();
+  }
+
+  /** Update the budget of a user from the headers of a response. */
+  public void update(User user, Headers headers) {
+    String remaining = headers.get(REMAINING_HEADER);
+    String reset = headers.get(RESET_HEADER);
+    if (remaining == null || reset == null) {
+      return;
+    }
+    try {
+      budgets.put(user.getId(), new Budget(Integer.parseInt(remaining.trim()),
+          Instant.now().plusSeconds(Long.parseLong(reset.trim()))));
+    } catch (NumberFormatException ex) {
+      // ignore malformed headers, the previous budget is kept
+    }
+  }
+
+  /**
+   * Until when requests for given user should be paused, so that given number of requests remains
+   * available for other routes.
+   * @param user Fitbit user
+   * @param reserve number of requests that should remain in the budget.
+   * @return time that the budget is reset, or {@code null} if requests can be made now.
+   */
+  public Instant pausedUntil(User user, int reserve) {
+    Budget budget = budgets.get(user.getId());
+    if (budget == null || budget.remaining > reserve) {
+      return null;
+    }
+    Instant now = Instant.now();
+    if (!now.isBefore(budget.reset)) {
+      budgets.remove(user.getId(), budget);
+      return null;
+    }
+    return budget.reset;
+  }
+
+  private static class Budget {
+    private final int remaining;
+    private final Instant reset;
+
+    private Budget(int remaining, Instant reset) {
+      this.remaining = remaining;
+      this.reset = reset;
+    }
+  }
+}
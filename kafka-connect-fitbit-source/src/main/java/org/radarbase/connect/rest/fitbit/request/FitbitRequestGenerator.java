@@ -28,6 +28,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -36,10 +37,15 @@ import okhttp3.OkHttpClient;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.FitbitRestSourceConnectorConfig;
 import org.radarbase.connect.rest.fitbit.route.*;
+import org.radarbase.connect.rest.fitbit.route.FitbitPollingRoute.Lane;
 import org.radarbase.connect.rest.fitbit.user.User;
 import org.radarbase.connect.rest.fitbit.user.UserRepository;
+import org.radarbase.connect.rest.fitbit.util.BackfillRanges;
+import org.radarbase.connect.rest.request.ConcurrencyBudget;
 import org.radarbase.connect.rest.request.RequestGeneratorRouter;
 import org.radarbase.connect.rest.request.RequestRoute;
+import org.radarbase.connect.rest.util.IdleBackoff;
+import org.radarbase.connect.rest.util.SyncPatterns;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,11 +61,22 @@ public class FitbitRequestGenerator extends RequestGeneratorRouter {
 
   private OkHttpClient baseClient;
   private final Map<String, OkHttpClient> clients;
+  private final FitbitRateLimits rateLimits;
+  private final FitbitDeviceSyncTimes deviceSyncTimes;
+  private final FitbitUserTimeZones userTimeZones;
+  private final SyncPatterns syncPatterns;
+  private final IdleBackoff idleBackoff;
   private UserRepository userRepository;
   private List<RequestRoute> routes;
+  private ConcurrencyBudget backfillBudget;
 
   public FitbitRequestGenerator() {
     clients = new HashMap<>();
+    rateLimits = new FitbitRateLimits();
+    deviceSyncTimes = new FitbitDeviceSyncTimes();
+    userTimeZones = new FitbitUserTimeZones();
+    syncPatterns = new SyncPatterns();
+    idleBackoff = new IdleBackoff();
   }
 
   @Override
@@ -81,6 +98,12 @@ public class FitbitRequestGenerator extends RequestGeneratorRouter {
   private List<RequestRoute> getRoutes(FitbitRestSourceConnectorConfig config) {
     AvroData avroData = new AvroData(20);
     List<RequestRoute> localRoutes = new ArrayList<>(5);
+    // backfill lanes are polled after all live lanes
+    List<RequestRoute> backfillRoutes = config.getFitbitBackfillLaneEnabled()
+        ? new ArrayList<>() : null;
+    if (backfillRoutes != null) {
+      backfillBudget = new ConcurrencyBudget(config.getFitbitBackfillLaneMaxConcurrentRequests());
+    }
 
     if (config.getFitbitSleepStagesEnabled() || config.getFitbitSleepClassicEnabled()) {
       localRoutes.add(new FitbitSleepRoute(this, userRepository, avroData));
@@ -90,61 +113,155 @@ public class FitbitRequestGenerator extends RequestGeneratorRouter {
       localRoutes.add(new FitbitTimeZoneRoute(this, userRepository, avroData));
     }
 
+    if (config.getFitbitDeviceSyncGateEnabled() || config.getFitbitAdaptivePollingEnabled()) {
+      if (!config.getFitbitTimeZoneEnabled()) {
+        logger.warn("Device sync times need the user time zones of the time zone route."
+            + " Enable fitbit.time.zone.enabled to gate routes by device sync time or to"
+            + " learn the sync hours of users.");
+      }
+      localRoutes.add(new FitbitDeviceSyncRoute(this, userRepository, avroData));
+    }
+
     if (config.getFitbitActivityLogEnabled()) {
       localRoutes.add(new FitbitActivityLogRoute(this, userRepository, avroData));
     }
 
+    FitbitRestingHeartRateRoute restingHeartRateRoute = null;
     if (config.getFitbitRestingHeartRateEnabled()) {
-      localRoutes.add(new FitbitRestingHeartRateRoute(this, userRepository, avroData));
+      restingHeartRateRoute = addDateRangeRoute(FitbitRestingHeartRateRoute::new,
+          avroData, localRoutes, backfillRoutes);
     }
 
     if (config.hasIntradayAccess()) {
 
       if (config.getFitbitIntradayStepsEnabled()) {
-        localRoutes.add(new FitbitIntradayStepsRoute(this, userRepository, avroData));
+        addDateRangeRoute(FitbitIntradayStepsRoute::new, avroData, localRoutes, backfillRoutes);
       }
       if (config.getFitbitIntradayHeartRateEnabled()) {
-        localRoutes.add(new FitbitIntradayHeartRateRoute(this, userRepository, avroData));
+        FitbitIntradayHeartRateRoute heartRateRoute = addDateRangeRoute(
+            FitbitIntradayHeartRateRoute::new, avroData, localRoutes, backfillRoutes);
+        if (restingHeartRateRoute != null) {
+          heartRateRoute.shareRestingHeartRate(restingHeartRateRoute);
+        }
       }
       if (config.getFitbitIntradayHeartRateVariabilityEnabled()) {
-        localRoutes.add(new FitbitIntradayHeartRateVariabilityRoute(this, userRepository, avroData));
+        addDateRangeRoute(FitbitIntradayHeartRateVariabilityRoute::new,
+            avroData, localRoutes, backfillRoutes);
       }
       if (config.getFitbitBreathingRateEnabled()) {
-        localRoutes.add(new FitbitBreathingRateRoute(this, userRepository, avroData));
+        addDateRangeRoute(FitbitBreathingRateRoute::new, avroData, localRoutes, backfillRoutes);
       }
       if (config.getFitbitSkinTemperatureEnabled()) {
-        localRoutes.add(new FitbitSkinTemperatureRoute(this, userRepository, avroData));
+        addDateRangeRoute(FitbitSkinTemperatureRoute::new, avroData, localRoutes, backfillRoutes);
       }
       if (config.getFitbitIntradayCaloriesEnabled()) {
-        localRoutes.add(new FitbitIntradayCaloriesRoute(this, userRepository, avroData));
+        addDateRangeRoute(FitbitIntradayCaloriesRoute::new, avroData, localRoutes, backfillRoutes);
       }
       if (config.getFitbitIntradaySpo2Enabled()) {
-        localRoutes.add(new FitbitIntradaySpo2Route(this, userRepository, avroData));
+        addDateRangeRoute(FitbitIntradaySpo2Route::new, avroData, localRoutes, backfillRoutes);
       }
     }
+    if (backfillRoutes != null) {
+      localRoutes.addAll(backfillRoutes);
+    }
     return localRoutes;
   }
 
+  /**
+   * Create a route that polls date ranges and add it to the live routes. If backfill routes are
+   * given, a second instance of the route that polls the backfill lane is added to them.
+   * @return the route of the live lane.
+   */
+  private <T extends FitbitPollingRoute> T addDateRangeRoute(RouteFactory<T> factory,
+      AvroData avroData, List<RequestRoute> liveRoutes, List<RequestRoute> backfillRoutes) {
+    T route = factory.create(this, userRepository, avroData);
+    liveRoutes.add(route);
+    if (backfillRoutes != null) {
+      BackfillRanges backfillRanges = new BackfillRanges();
+      route.useLane(Lane.LIVE, backfillRanges);
+      T backfillRoute = factory.create(this, userRepository, avroData);
+      backfillRoute.useLane(Lane.BACKFILL, backfillRanges);
+      backfillRoutes.add(backfillRoute);
+    }
+    return route;
+  }
+
   public OkHttpClient getClient(User user) {
     return clients.computeIfAbsent(user.getId(), u -> baseClient.newBuilder()
         .authenticator(new TokenAuthenticator(user, userRepository))
         .build());
   }
 
+  /** Remaining Fitbit API budget per user, shared by all routes. */
+  public FitbitRateLimits getRateLimits() {
+    return rateLimits;
+  }
+
+  /** Last device sync time per user, shared by all routes. */
+  public FitbitDeviceSyncTimes getDeviceSyncTimes() {
+    return deviceSyncTimes;
+  }
+
+  /** Time zone per user, shared by all routes. */
+  public FitbitUserTimeZones getUserTimeZones() {
+    return userTimeZones;
+  }
+
+  /**
+   * Learned sync times of day per user ID, shared by all routes. It is fed by the device sync
+   * times that {@link FitbitDeviceSyncRoute} reads.
+   */
+  public SyncPatterns getSyncPatterns() {
+    return syncPatterns;
+  }
+
+  /**
+   * Concurrent requests of the backfill lanes, shared by all backfill lanes, or {@code null} if
+   * there are no backfill lanes.
+   */
+  public ConcurrencyBudget getBackfillBudget() {
+    return backfillBudget;
+  }
+
+  /** Consecutive empty responses per user ID and route, shared by all routes. */
+  public IdleBackoff getIdleBackoff() {
+    return idleBackoff;
+  }
+
   public Map<String, Map<String, Object>> getPartitions(String route) {
+    return getPartitions(route, Lane.LIVE);
+  }
+
+  /** Source partitions of all users of given route and lane. */
+  public Map<String, Map<String, Object>> getPartitions(String route, Lane lane) {
     try {
       return userRepository.stream()
-          .collect(Collectors.toMap(User::getVersionedId, u -> getPartition(route, u)));
+          .collect(Collectors.toMap(User::getVersionedId, u -> getPartition(route, lane, u)));
     } catch (IOException e) {
       logger.warn("Failed to initialize user partitions for route {}: {}", route, e.toString());
       return Collections.emptyMap();
     }
   }
 
+  /** Immutable source partition of given route and user. */
   public Map<String, Object> getPartition(String route, User user) {
-    Map<String, Object> partition = new HashMap<>(4);
-    partition.put("user", user.getVersionedId());
-    partition.put("route", route);
-    return partition;
+    return Map.of("user", user.getVersionedId(), "route", route);
+  }
+
+  /**
+   * Immutable source partition of given route, lane and user. The live lane uses the same
+   * partition as a route without lanes.
+   */
+  public Map<String, Object> getPartition(String route, Lane lane, User user) {
+    if (lane == Lane.LIVE) {
+      return getPartition(route, user);
+    }
+    return Map.of("user", user.getVersionedId(), "route", route,
+        "lane", lane.name().toLowerCase(Locale.US));
+  }
+
+  /** Constructor of a route. */
+  private interface RouteFactory<T extends FitbitPollingRoute> {
+    T create(FitbitRequestGenerator generator, UserRepository userRepository, AvroData avroData);
   }
 }
@@ -17,8 +17,10 @@
 
 package org.radarbase.connect.rest.fitbit.request;
 
+import java.time.Instant;
 import java.util.Map;
 import java.util.function.Predicate;
+import java.util.function.Supplier;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import org.radarbase.connect.rest.fitbit.user.User;
@@ -33,6 +35,10 @@ import org.radarbase.connect.rest.request.RestRequest;
 public class FitbitRestRequest extends RestRequest {
   private final User user;
   private final DateRange dateRange;
+  private volatile boolean hasNextPage;
+  private volatile Predicate<Instant> isNewSample;
+  private volatile Supplier<Map<String, Object>> offsetAttributes;
+  private volatile boolean isFetchedInOrder;
 
   public FitbitRestRequest(
       RequestRoute requestRoute, Request request, User user,
@@ -41,6 +47,8 @@ public class FitbitRestRequest extends RestRequest {
     super(requestRoute, client, request, partition, isValid);
     this.user = user;
     this.dateRange = dateRange;
+    this.offsetAttributes = Map::of;
+    this.isFetchedInOrder = true;
   }
 
   public User getUser() {
@@ -51,6 +59,52 @@ public class FitbitRestRequest extends RestRequest {
     return dateRange;
   }
 
+  /** Whether the response is a page of a list, with more pages after it. */
+  public boolean hasNextPage() {
+    return hasNextPage;
+  }
+
+  public void setHasNextPage(boolean hasNextPage) {
+    this.hasNextPage = hasNextPage;
+  }
+
+  /**
+   * Whether a sample at given time should be emitted. Requests that re-scan previously polled
+   * times only emit samples that were not emitted before.
+   */
+  public boolean isNewSample(Instant time) {
+    return isNewSample == null || isNewSample.test(time);
+  }
+
+  public void setNewSampleFilter(Predicate<Instant> isNewSample) {
+    this.isNewSample = isNewSample;
+  }
+
+  /**
+   * Additional values to store in the source offset of each record of this request. The values
+   * are computed when the response is converted.
+   */
+  public Map<String, Object> getOffsetAttributes() {
+    return offsetAttributes.get();
+  }
+
+  public void setOffsetAttributes(Map<String, Object> offsetAttributes) {
+    this.offsetAttributes = () -> offsetAttributes;
+  }
+
+  public void setOffsetAttributes(Supplier<Map<String, Object>> offsetAttributes) {
+    this.offsetAttributes = offsetAttributes;
+  }
+
+  @Override
+  public boolean isFetchedInOrder() {
+    return isFetchedInOrder;
+  }
+
+  public void setFetchedInOrder(boolean isFetchedInOrder) {
+    this.isFetchedInOrder = isFetchedInOrder;
+  }
+
   @Override
   public String toString() {
     return "FitbitRestRequest{"
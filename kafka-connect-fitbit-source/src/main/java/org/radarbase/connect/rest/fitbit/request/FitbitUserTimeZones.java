@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.request;
+
+import java.time.ZoneId;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.radarbase.connect.rest.fitbit.user.User;
+
+/**
+ * Time zone of each user, as reported by their Fitbit profile. Some endpoints, like the devices
+ * endpoint, return local times of the user that can only be read with this time zone.
+ */
+public class FitbitUserTimeZones {
+  private final Map<String, ZoneId> timeZones;
+
+  public FitbitUserTimeZones() {
+    timeZones = new ConcurrentHashMap<>();
+  }
+
+  /** Update the time zone of a user, or remove it if {@code null}. */
+  public void update(User user, ZoneId timeZone) {
+    if (timeZone == null) {
+      timeZones.remove(user.getId());
+    } else {
+      timeZones.put(user.getId(), timeZone);
+    }
+  }
+
+  /**
+   * Time zone of given user.
+   * @return time zone or {@code null} if it is not known.
+   */
+  public ZoneId get(User user) {
+    return timeZones.get(user.getId());
+  }
+}
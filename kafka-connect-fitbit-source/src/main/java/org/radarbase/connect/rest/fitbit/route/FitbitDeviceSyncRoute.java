@@ -0,0 +1,83 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.route;
+
+import static java.time.ZoneOffset.UTC;
+
+import io.confluent.connect.avro.AvroData;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.util.stream.Stream;
+import org.radarbase.connect.rest.fitbit.converter.FitbitDeviceSyncAvroConverter;
+import org.radarbase.connect.rest.fitbit.request.FitbitRequestGenerator;
+import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.fitbit.user.User;
+import org.radarbase.connect.rest.fitbit.user.UserRepository;
+import org.radarbase.connect.rest.fitbit.util.DateRange;
+
+/**
+ * Route that reads the last sync time of the devices of each user. With the device sync gate,
+ * other routes skip a user until a device has synced after their latest record. With adaptive
+ * polling, the sync times teach at which hours of the day the user syncs. Sync times are local
+ * times, so they are only read for users whose time zone was read by {@link FitbitTimeZoneRoute}.
+ */
+public class FitbitDeviceSyncRoute extends FitbitPollingRoute {
+  private final FitbitDeviceSyncAvroConverter converter;
+
+  public FitbitDeviceSyncRoute(FitbitRequestGenerator generator,
+      UserRepository userRepository, AvroData avroData) {
+    super(generator, userRepository, "device_sync");
+    this.converter = new FitbitDeviceSyncAvroConverter(
+        avroData, generator.getDeviceSyncTimes(), generator.getUserTimeZones(),
+        generator.getSyncPatterns());
+  }
+
+  @Override
+  protected String getUrlFormat(String baseUrl) {
+    return baseUrl + "/1/user/%s/devices.json";
+  }
+
+  protected Stream<FitbitRestRequest> createRequests(User user) {
+    ZonedDateTime now = ZonedDateTime.now(UTC);
+    return Stream.of(newRequest(user, new DateRange(now, now), user.getExternalUserId()));
+  }
+
+  @Override
+  public FitbitDeviceSyncAvroConverter converter() {
+    return converter;
+  }
+
+  /**
+   * Poll the devices twice as often as the data routes, so that data routes rarely wait for a
+   * sync time that is out of date.
+   */
+  @Override
+  protected Duration getPollIntervalPerUser() {
+    return super.getPollIntervalPerUser().dividedBy(2);
+  }
+
+  @Override
+  protected Duration getLookbackTime() {
+    return Duration.ZERO;
+  }
+
+  @Override
+  protected boolean isGatedByDeviceSync() {
+    return false;
+  }
+}
@@ -23,7 +23,7 @@ public class FitbitIntradayCaloriesRoute extends FitbitPollingRoute {
 
   @Override
   protected Stream<FitbitRestRequest> createRequests(User user) {
-    return startDateGenerator(this.getOffset(user).plus(ONE_MINUTE).truncatedTo(MINUTES))
+    return startDateGenerator(user, MINUTES)
         .map(
             dateRange ->
                 newRequest(
@@ -44,4 +44,9 @@ public class FitbitIntradayCaloriesRoute extends FitbitPollingRoute {
   public PayloadToSourceRecordConverter converter() {
     return caloriesAvroConverter;
   }
+
+  @Override
+  protected boolean supportsRealtime() {
+    return true;
+  }
 }
@@ -19,17 +19,23 @@ package org.radarbase.connect.rest.fitbit.route;
 
 import static java.time.format.DateTimeFormatter.ISO_LOCAL_TIME;
 import static java.time.temporal.ChronoUnit.SECONDS;
+import static org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter.TIMESTAMP_OFFSET_KEY;
 
 import io.confluent.connect.avro.AvroData;
+import java.time.Instant;
+import java.util.Comparator;
 import java.util.stream.Stream;
 import org.radarbase.connect.rest.fitbit.converter.FitbitIntradayHeartRateAvroConverter;
 import org.radarbase.connect.rest.fitbit.request.FitbitRequestGenerator;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
 import org.radarbase.connect.rest.fitbit.user.User;
 import org.radarbase.connect.rest.fitbit.user.UserRepository;
+import org.radarbase.connect.rest.request.RecordSummary;
+import org.radarbase.connect.rest.request.RestRequest;
 
 public class FitbitIntradayHeartRateRoute extends FitbitPollingRoute {
   private final FitbitIntradayHeartRateAvroConverter converter;
+  private FitbitRestingHeartRateRoute restingHeartRateRoute;
 
   public FitbitIntradayHeartRateRoute(FitbitRequestGenerator generator,
       UserRepository userRepository, AvroData avroData) {
@@ -43,7 +49,7 @@ public class FitbitIntradayHeartRateRoute extends FitbitPollingRoute {
   }
 
   protected Stream<FitbitRestRequest> createRequests(User user) {
-    return startDateGenerator(getOffset(user).plus(ONE_SECOND).truncatedTo(SECONDS))
+    return startDateGenerator(user, SECONDS)
         .map(dateRange -> newRequest(user, dateRange,
             user.getExternalUserId(), DATE_FORMAT.format(dateRange.start()),
             ISO_LOCAL_TIME.format(dateRange.start()),
@@ -54,4 +60,43 @@ public class FitbitIntradayHeartRateRoute extends FitbitPollingRoute {
   public FitbitIntradayHeartRateAvroConverter converter() {
     return converter;
   }
+
+  /**
+   * Share the daily resting heart rate in intraday heart rate responses with given route, so
+   * that it does not need to request the same day separately.
+   */
+  public void shareRestingHeartRate(FitbitRestingHeartRateRoute restingHeartRateRoute) {
+    this.restingHeartRateRoute = restingHeartRateRoute;
+    converter.setRestingHeartRateReceiver(restingHeartRateRoute);
+  }
+
+  /**
+   * Also notify the resting heart rate route of the resting heart rates in the response. This
+   * is only done after the whole response was converted, so that the offset of that route does
+   * not advance past records that were not produced.
+   */
+  @Override
+  public void requestSucceeded(RestRequest request, RecordSummary summary) {
+    super.requestSucceeded(request, summary);
+    FitbitRestingHeartRateRoute receiver = restingHeartRateRoute;
+    if (receiver == null || summary.getSharedRecords().isEmpty()) {
+      return;
+    }
+    // the resting heart rates are the only records shared by the converter
+    summary.getSharedRecords().stream()
+        .map(r -> Instant.ofEpochMilli((Long) r.sourceOffset().get(TIMESTAMP_OFFSET_KEY)))
+        .max(Comparator.naturalOrder())
+        .ifPresent(offset -> receiver.restingHeartRateReceived(
+            ((FitbitRestRequest) request).getUser(), offset));
+  }
+
+  @Override
+  protected int getRateLimitReserve() {
+    return 0;
+  }
+
+  @Override
+  protected boolean supportsRealtime() {
+    return true;
+  }
 }
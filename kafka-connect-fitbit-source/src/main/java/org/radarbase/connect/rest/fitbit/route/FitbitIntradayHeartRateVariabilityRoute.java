@@ -45,7 +45,7 @@ public class FitbitIntradayHeartRateVariabilityRoute extends FitbitPollingRoute
   }
 
   protected Stream<FitbitRestRequest> createRequests(User user) {
-    return startDateGenerator(getOffset(user).plus(ONE_SECOND).truncatedTo(SECONDS))
+    return startDateGenerator(user, SECONDS)
         .map(dateRange -> newRequest(user, dateRange,
             user.getExternalUserId(), DATE_FORMAT.format(dateRange.start()), DATE_FORMAT.format(dateRange.end())));
   }
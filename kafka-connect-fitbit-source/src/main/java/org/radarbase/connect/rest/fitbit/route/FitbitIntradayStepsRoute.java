@@ -42,7 +42,7 @@ public class FitbitIntradayStepsRoute extends FitbitPollingRoute {
   }
 
   protected Stream<FitbitRestRequest> createRequests(User user) {
-    return startDateGenerator(this.getOffset(user).plus(ONE_MINUTE).truncatedTo(MINUTES))
+    return startDateGenerator(user, MINUTES)
         .map(dateRange -> newRequest(user, dateRange,
             user.getExternalUserId(), DATE_FORMAT.format(dateRange.start()),
             TIME_FORMAT.format(dateRange.start()), TIME_FORMAT.format(dateRange.end())));
@@ -52,4 +52,14 @@ public class FitbitIntradayStepsRoute extends FitbitPollingRoute {
   public FitbitIntradayStepsAvroConverter converter() {
     return converter;
   }
+
+  @Override
+  protected int getRateLimitReserve() {
+    return 0;
+  }
+
+  @Override
+  protected boolean supportsRealtime() {
+    return true;
+  }
 }
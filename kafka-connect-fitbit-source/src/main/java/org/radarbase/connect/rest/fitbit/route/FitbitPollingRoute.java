@@ -23,14 +23,16 @@ import java.time.Instant;
 import static java.time.ZoneOffset.UTC;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
 import static java.time.temporal.ChronoUnit.DAYS;
 import static java.time.temporal.ChronoUnit.MINUTES;
 import static java.time.temporal.ChronoUnit.NANOS;
 import static java.time.temporal.ChronoUnit.SECONDS;
 import java.time.temporal.TemporalAmount;
-import java.util.AbstractMap;
-import java.util.Comparator;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -50,10 +52,19 @@ import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
 import org.radarbase.connect.rest.fitbit.user.User;
 import org.radarbase.connect.rest.fitbit.user.UserNotAuthorizedException;
 import org.radarbase.connect.rest.fitbit.user.UserRepository;
+import org.radarbase.connect.rest.fitbit.util.BackfillRanges;
 import org.radarbase.connect.rest.fitbit.util.DateRange;
+import org.radarbase.connect.rest.fitbit.util.LaneBackfill;
+import org.radarbase.connect.rest.fitbit.util.RecentSampleTracker;
+import org.radarbase.connect.rest.fitbit.util.ResponseBackoff;
+import org.radarbase.connect.rest.fitbit.util.UserPollIndex;
+import org.radarbase.connect.rest.request.ConcurrencyBudget;
 import org.radarbase.connect.rest.request.PollingRequestRoute;
 import static org.radarbase.connect.rest.request.PollingRequestRoute.max;
+import org.radarbase.connect.rest.request.RecordSummary;
 import org.radarbase.connect.rest.request.RestRequest;
+import org.radarbase.connect.rest.util.IdleBackoff;
+import org.radarbase.connect.rest.util.SyncPatterns;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -89,11 +100,52 @@ import okhttp3.Response;
  *    added.
  * 7. When a too many records exception occurs, do not poll for given user for
  *    {@code TOO_MANY_REQUESTS_COOLDOWN}.
+ * 8. When the Fitbit rate limit headers show that a user has at most
+ *    {@link #getRateLimitReserve()} requests left, do not poll for given user until the rate limit
+ *    resets. Low priority routes keep a reserve, so high priority routes can still be polled.
+ * 9. When a paginated list response links to a next page, the user is polled again from the new
+ *    offset as soon as the rate limit allows, instead of after {@link #getPollIntervalPerUser()}.
+ *    Idle backoff and adaptive polling do not postpone the next page.
+ * 10. When the last device sync time of a user is known and it is not after the offset of this
+ *    route, the user is not polled, since no new data can be available. See
+ *    {@link #isGatedByDeviceSync()}.
+ * 11. In near-real-time mode, routes that support it poll every
+ *    {@code fitbit.intraday.realtime.interval.s} up to {@code REALTIME_LOOKBACK_TIME} ago. Each
+ *    request starts a re-scan window before the offset, and only samples that were not emitted
+ *    before are emitted, see {@link #getRequestStart(User, ChronoUnit)}.
+ * 12. With separate lanes, see {@link #useLane(Lane, BackfillRanges)}, the live lane of a route
+ *    polls only the last {@code fitbit.live.lane.days} of a user that is further behind. The
+ *    time before that is polled by the backfill lane, which has its own partition, a larger
+ *    rate limit reserve, a maximum number of requests per poll and a maximum number of
+ *    concurrent requests that all backfill lanes share. Until the backfill is complete, the
+ *    offsets of the live lane store the backfill range, so it survives restarts. See
+ *    {@link LaneBackfill}.
+ * 13. The backfill lane polls the gaps of the backfill range that were not covered yet, oldest or
+ *    newest first. Its requests may be fetched concurrently and complete in any order. The range
+ *    keeps track of the covered intervals, and its offset only advances over the time that is
+ *    covered without gaps. The offsets of the backfill lane store the covered intervals, so that
+ *    a restart neither skips nor repeats days, see {@link #startDateGenerator(User, ChronoUnit)}.
+ *    Days without data are covered right away, unless the user is known not to have synced
+ *    since, see {@link #requestEmpty(RestRequest)}.
+ * 14. With adaptive polling, the live lane learns at which hours of the day a user syncs from the
+ *    device sync times that {@link FitbitDeviceSyncRoute} reads. Polls in hours in which the user
+ *    rarely syncs are postponed until the next hour in which the user usually syncs, at most
+ *    {@code fitbit.adaptive.polling.max.delay.s} later, see {@link SyncPatterns}.
+ * 15. With idle backoff, the poll interval of a user in the live lane doubles with each
+ *    consecutive empty response of the route, up to {@code fitbit.idle.backoff.max.interval.s}.
+ *    Only responses for the most recent day count, not those for days that are caught up on.
+ *    When any route returns data for the user, all routes poll the user at
+ *    {@link #getPollIntervalPerUser()} again, see {@link IdleBackoff}.
+ *
+ * <p>The next poll time of each user is kept in a {@link UserPollIndex}, which is updated whenever
+ * a request for a user completes. The full user list is only read again from the user repository
+ * once every application loop interval.
  */
 public abstract class FitbitPollingRoute implements PollingRequestRoute {
   protected static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE;
   protected static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
   protected static final Duration LOOKBACK_TIME = Duration.ofDays(1); // 1 day
+  protected static final Duration REALTIME_LOOKBACK_TIME = Duration.ofMinutes(1);
   protected static final long HISTORICAL_TIME_DAYS = 14L;
   protected static final Duration ONE_DAY = DAYS.getDuration();
   protected static final Duration THIRTY_DAYS = Duration.ofDays(30);
@@ -103,23 +155,44 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
 
   private static final Logger logger = LoggerFactory.getLogger(FitbitPollingRoute.class);
 
+  /** Lane of a route, when recent data and historical data are polled separately. */
+  public enum Lane {
+    /** Recent data, or all data if there is no separate backfill lane. */
+    LIVE,
+    /** Historical data before the range of the live lane. */
+    BACKFILL
+  }
+
   /** Committed offsets. */
   private Map<String, Instant> offsets;
 
   private final Map<String, Map<String, Object>> partitions;
   private final Map<String, Instant> lastPollPerUser;
+  /** IDs of users whose last response linked to a next page. */
+  private final Set<String> nextPageUsers;
   private final FitbitRequestGenerator generator;
   private final UserRepository userRepository;
   private final String routeName;
   private Duration pollInterval;
-  private Instant lastPoll;
+  private volatile Instant lastPoll;
   private String baseUrl;
   private Duration pollIntervalPerUser;
-  private final Set<User> tooManyRequestsForUser;
   private Duration tooManyRequestsCooldown;
-  private final Map<String, Integer> forbidden403Counter;
-  private int maxForbiddenResponses;
-  private Duration forbidden403Cooldown;
+  private ResponseBackoff responseBackoff;
+  private int rateLimitReserve;
+  private final UserPollIndex pollIndex;
+  private Duration userSyncInterval;
+  private Instant nextUserSync;
+  private Duration realtimePollInterval;
+  private Duration realtimeRescan;
+  private RecentSampleTracker recentSamples;
+  private Lane lane;
+  private BackfillRanges backfillRanges;
+  private LaneBackfill backfill;
+  private int backfillMaxRequests;
+  private int backfillRateLimitReserve;
+  private Duration adaptivePollingMaxDelay;
+  private Duration idleBackoffMaxInterval;
 
   public FitbitPollingRoute(
       FitbitRequestGenerator generator,
@@ -127,13 +200,27 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
       String routeName) {
     this.generator = generator;
     this.userRepository = userRepository;
-    this.offsets = new HashMap<>();
-    this.partitions = new HashMap<>(generator.getPartitions(routeName));
+    this.offsets = new ConcurrentHashMap<>();
+    this.partitions = new ConcurrentHashMap<>(generator.getPartitions(routeName));
     this.routeName = routeName;
     this.lastPoll = MIN_INSTANT;
-    this.lastPollPerUser = new HashMap<>();
-    this.tooManyRequestsForUser = ConcurrentHashMap.newKeySet();
-    this.forbidden403Counter = new ConcurrentHashMap<>();
+    this.lastPollPerUser = new ConcurrentHashMap<>();
+    this.nextPageUsers = ConcurrentHashMap.newKeySet();
+    this.pollIndex = new UserPollIndex();
+    this.nextUserSync = MIN_INSTANT;
+    this.lane = Lane.LIVE;
+  }
+
+  /**
+   * Poll only given lane of this route. The live and backfill lanes of a route should be separate
+   * instances that share given backfill ranges. This must be called before the route is
+   * initialized.
+   */
+  public void useLane(Lane lane, BackfillRanges backfillRanges) {
+    this.lane = lane;
+    this.backfillRanges = backfillRanges;
+    partitions.clear();
+    partitions.putAll(generator.getPartitions(routeName, lane));
   }
 
   @Override
@@ -142,60 +229,136 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
     this.pollInterval = fitbitConfig.getPollInterval();
     this.baseUrl = fitbitConfig.getUrl();
     this.pollIntervalPerUser = fitbitConfig.getPollIntervalPerUser();
+    if (fitbitConfig.getFitbitIntradayRealtimeEnabled() && supportsRealtime()
+        && lane == Lane.LIVE) {
+      this.realtimePollInterval = fitbitConfig.getFitbitIntradayRealtimeInterval();
+      this.realtimeRescan = fitbitConfig.getFitbitIntradayRealtimeRescan();
+      this.recentSamples = new RecentSampleTracker(realtimeRescan.multipliedBy(2));
+    }
     this.tooManyRequestsCooldown = fitbitConfig.getTooManyRequestsCooldownInterval()
         .minus(getPollIntervalPerUser());
-    this.maxForbiddenResponses = fitbitConfig.getMaxForbidden();
+    this.responseBackoff = new ResponseBackoff(getTooManyRequestsCooldown(),
+        fitbitConfig.getMaxForbidden(), Duration.ofSeconds(fitbitConfig.getForbiddenBackoff()));
     this.converter().initialize(fitbitConfig);
-    this.forbidden403Cooldown = Duration.ofSeconds(fitbitConfig.getForbiddenBackoff());
+    this.userSyncInterval = fitbitConfig.getApplicationLoopInterval();
+    this.rateLimitReserve = fitbitConfig.getRateLimitReserve();
+    this.backfill = new LaneBackfill(routeName, lane, backfillRanges,
+        Duration.ofDays(fitbitConfig.getFitbitLiveLaneDays()),
+        fitbitConfig.getFitbitBackfillLaneNewestFirst());
+    this.backfillMaxRequests = fitbitConfig.getFitbitBackfillLaneMaxRequests();
+    this.backfillRateLimitReserve = fitbitConfig.getFitbitBackfillLaneRateLimitReserve();
+    if (fitbitConfig.getFitbitAdaptivePollingEnabled() && isGatedByDeviceSync()
+        && lane == Lane.LIVE) {
+      this.adaptivePollingMaxDelay = fitbitConfig.getFitbitAdaptivePollingMaxDelay();
+    }
+    if (fitbitConfig.getFitbitIdleBackoffEnabled() && isGatedByDeviceSync()
+        && lane == Lane.LIVE) {
+      this.idleBackoffMaxInterval = fitbitConfig.getFitbitIdleBackoffMaxInterval();
+      generator.getIdleBackoff().addWakeListener(this::wake);
+    }
   }
 
   @Override
   public void requestSucceeded(RestRequest request, SourceRecord record) {
-    User user = ((FitbitRestRequest) request).getUser();
-    lastPollPerUser.put(user.getId(), lastPoll);
+    requestSucceeded(request, new RecordSummary(Collections.singletonList(record)));
+  }
+
+  @Override
+  public void requestSucceeded(RestRequest request, RecordSummary summary) {
+    FitbitRestRequest fitbitRequest = (FitbitRestRequest) request;
+    User user = fitbitRequest.getUser();
     String userKey = user.getVersionedId();
-    Instant offset = Instant.ofEpochMilli((Long) record.sourceOffset().get(TIMESTAMP_OFFSET_KEY));
-    offsets.put(userKey, offset);
-    forbidden403Counter.remove(user.getId());
+    Instant offset = Instant.ofEpochMilli(
+        (Long) summary.getLastRecord().sourceOffset().get(TIMESTAMP_OFFSET_KEY));
+    backfill.cover(fitbitRequest, offset);
+    if (recentSamples != null) {
+      // only samples of fully converted responses count as emitted
+      for (SourceRecord record : summary.getRecords()) {
+        recentSamples.markEmitted(userKey, Instant.ofEpochMilli(
+            (Long) record.sourceOffset().get(TIMESTAMP_OFFSET_KEY)));
+      }
+    }
+    // a re-scan may only return samples before the current offset
+    Instant previousOffset = offsets.get(userKey);
+    offsets.merge(userKey, offset, PollingRequestRoute::max);
+    if (fitbitRequest.hasNextPage()
+        && (previousOffset == null || offset.isAfter(previousOffset))) {
+      // request the next page as soon as the rate limit allows, starting from the new offset
+      lastPollPerUser.put(user.getId(), lastPoll.minus(getPollIntervalPerUser()));
+      nextPageUsers.add(user.getId());
+    } else {
+      lastPollPerUser.put(user.getId(), lastPoll);
+      nextPageUsers.remove(user.getId());
+    }
+    responseBackoff.succeeded(user.getId());
+    if (idleBackoffMaxInterval != null) {
+      generator.getIdleBackoff().dataReceived(user.getId());
+    }
+    reschedule(user);
   }
 
+  /**
+   * An empty response of the live lane only moves the offset past the requested dates if they
+   * are at least {@code HISTORICAL_TIME_DAYS} ago, since a device may still sync data of more
+   * recent days. The backfill lane covers the requested dates of an empty response unless the
+   * last device sync of the user is known and not after them, see
+   * {@link LaneBackfill#coverEmpty(FitbitRestRequest, Instant)}. Otherwise, the backfill lane
+   * would request empty days again on every poll until they are that old.
+   */
   @Override
   public void requestEmpty(RestRequest request) {
-    lastPollPerUser.put(((FitbitRestRequest) request).getUser().getId(), lastPoll);
     FitbitRestRequest fitbitRequest = (FitbitRestRequest) request;
+    User user = fitbitRequest.getUser();
+    lastPollPerUser.put(user.getId(), lastPoll);
+    nextPageUsers.remove(user.getId());
     Instant endOffset = fitbitRequest.getDateRange().end().toInstant();
-    if (DAYS.between(endOffset, lastPoll) >= HISTORICAL_TIME_DAYS) {
-      String key = fitbitRequest.getUser().getVersionedId();
-      offsets.put(key, endOffset);
+    boolean isHistorical = DAYS.between(endOffset, lastPoll) >= HISTORICAL_TIME_DAYS;
+    if (lane == Lane.BACKFILL) {
+      backfill.coverEmpty(fitbitRequest,
+          isHistorical ? null : generator.getDeviceSyncTimes().lastSync(user));
+    } else if (isHistorical) {
+      offsets.put(user.getVersionedId(), endOffset);
     }
+    if (idleBackoffMaxInterval != null && reachesRecentDay(fitbitRequest)) {
+      generator.getIdleBackoff().responseEmpty(user.getId(), routeName);
+    }
+    reschedule(user);
+  }
+
+  /**
+   * Register that records of given user for this route were read from the response of another
+   * route, up to given offset. Polling this route for the user is postponed as if a request of
+   * this route succeeded.
+   */
+  protected void sharedRecordsReceived(User user, Instant offset) {
+    lastPollPerUser.put(user.getId(), Instant.now());
+    nextPageUsers.remove(user.getId());
+    offsets.merge(user.getVersionedId(), offset, PollingRequestRoute::max);
+    reschedule(user);
+  }
+
+  @Override
+  public void responseReceived(RestRequest request, Response response) {
+    User user = ((FitbitRestRequest) request).getUser();
+    generator.getRateLimits().update(user, response.headers());
   }
 
   @Override
   public void requestFailed(RestRequest request, Response response) {
+    nextPageUsers.remove(((FitbitRestRequest) request).getUser().getId());
     if (response != null && response.code() == 429) {
       User user = ((FitbitRestRequest) request).getUser();
-      tooManyRequestsForUser.add(user);
-      String cooldownString = response.header("Retry-After");
-      Duration cooldown = getTooManyRequestsCooldown();
-      if (cooldownString != null) {
-        try {
-          cooldown = Duration.ofSeconds(Long.parseLong(cooldownString));
-        } catch (NumberFormatException ex) {
-          cooldown = getTooManyRequestsCooldown();
-        }
-      }
-      Instant backOff = lastPoll.plus(cooldown);
+      Instant backOff = lastPoll.plus(
+          responseBackoff.tooManyRequests(user.getId(), response.header("Retry-After")));
       lastPollPerUser.put(user.getId(), backOff);
       logger.info("Too many requests for user {}. Backing off until {}",
           user, backOff.plus(getPollIntervalPerUser()));
     } else if (response != null && response.code() == 403) {
       User user = ((FitbitRestRequest) request).getUser();
-      String userId = user.getId();
-      int count = forbidden403Counter.compute(userId, (k, v) -> v == null ? 1 : v + 1);
-      if (count >= maxForbiddenResponses) {
-        Instant backOff = lastPoll.plus(this.forbidden403Cooldown);
-        lastPollPerUser.put(userId, backOff);
-        forbidden403Counter.remove(userId);
+      Duration cooldown = responseBackoff.forbidden(user.getId());
+      if (cooldown != null) {
+        Instant backOff = lastPoll.plus(cooldown);
+        lastPollPerUser.put(user.getId(), backOff);
         logger.warn("User {} reached max 403 responses for route {}. Backing off until {}",
             user, routeName, backOff.plus(getPollIntervalPerUser()));
       }
@@ -204,6 +367,7 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
     } else {
       logger.warn("Failed to make request {}", request);
     }
+    reschedule(((FitbitRestRequest) request).getUser());
   }
 
   /**
@@ -215,36 +379,145 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
 
   @Override
   public Stream<FitbitRestRequest> requests() {
-    tooManyRequestsForUser.clear();
+    responseBackoff.clearTooManyRequests();
     lastPoll = Instant.now();
-    try {
-      return userRepository.stream()
-          // Collect Instant of nextPoll for each user
-          .map(u -> new AbstractMap.SimpleImmutableEntry<>(u, nextPoll(u)))
-          // Keep users where the lastPoll is later than the nextPoll for the user (i.e., user needs to be polled)
-          .filter(u -> lastPoll.isAfter(u.getValue()))
-          // Sort users by nextPoll (old to new?)
-          .sorted(Map.Entry.comparingByValue())
-          .flatMap(u -> this.createRequests(u.getKey()))
-          .filter(Objects::nonNull);
-    } catch (IOException e) {
-      logger.warn("Cannot read users");
-      return Stream.empty();
+    syncUsers();
+    // Users where the lastPoll is later than the nextPoll for the user, sorted by nextPoll
+    List<User> pollUsers = new ArrayList<>();
+    for (User user : pollIndex.dueBefore(lastPoll)) {
+      updateBackfill(user);
+      Instant postponedPoll = getPostponedPoll(user);
+      if (postponedPoll == null) {
+        pollUsers.add(user);
+      } else {
+        lastPollPerUser.put(user.getId(), postponedPoll);
+        reschedule(user);
+      }
     }
+    Stream<FitbitRestRequest> requests = pollUsers.stream()
+        .flatMap(this::createRequests)
+        .filter(Objects::nonNull);
+    return lane == Lane.BACKFILL ? requests.limit(backfillMaxRequests) : requests;
+  }
+
+  /**
+   * Requests of the backfill lane take a slot of the concurrency budget that all backfill lanes
+   * share, so that the live lanes always have concurrent requests left.
+   */
+  @Override
+  public ConcurrencyBudget concurrencyBudget() {
+    return lane == Lane.BACKFILL ? generator.getBackfillBudget() : null;
   }
 
 
   /** Get the time that this route should be polled again. */
   @Override
   public Instant getTimeOfNextRequest() {
-    return nextPolls()
-            .min(Comparator.naturalOrder())
-            .orElse(nearFuture());
+    return nextPolls().findFirst().orElse(nearFuture());
+  }
+
+  /**
+   * Reload the users from the user repository into the poll index, at most once every user sync
+   * interval.
+   */
+  private void syncUsers() {
+    Instant now = Instant.now();
+    if (now.isBefore(nextUserSync)) {
+      return;
+    }
+    try {
+      Set<String> userIds = new HashSet<>();
+      Set<String> versionedIds = new HashSet<>();
+      userRepository.stream().forEach(u -> {
+        pollIndex.update(u, nextPoll(u));
+        userIds.add(u.getId());
+        versionedIds.add(u.getVersionedId());
+      });
+      pollIndex.retainAll(userIds);
+      nextPageUsers.retainAll(userIds);
+      // drop partitions of removed users and of previous user versions
+      partitions.keySet().retainAll(versionedIds);
+      backfill.retainAll(versionedIds);
+      if (recentSamples != null) {
+        recentSamples.retainAll(versionedIds);
+      }
+      nextUserSync = now.plus(userSyncInterval);
+    } catch (IOException e) {
+      logger.warn("Cannot read users: {}", e.toString());
+    }
+  }
+
+  /**
+   * Update the backfill range of given user before polling it, see
+   * {@link LaneBackfill#update(User, Instant, Instant)}.
+   */
+  private void updateBackfill(User user) {
+    Instant storedOffset = getStoredOffset(user);
+    Instant offset = backfill.update(user, storedOffset, lastPoll);
+    if (offset.isAfter(storedOffset)) {
+      offsets.merge(user.getVersionedId(), offset, PollingRequestRoute::max);
+    }
   }
 
-  private Map<String, Object> getPartition(User user) {
+  /**
+   * Whether polling given user should be postponed. This does not change any state.
+   * @return time to register as the last poll of the user, or {@code null} if the user should
+   *         be polled now.
+   */
+  private Instant getPostponedPoll(User user) {
+    if (!backfill.hasWork(user)) {
+      return lastPoll;
+    }
+    if (isGatedByDeviceSync()) {
+      Instant lastSync = generator.getDeviceSyncTimes().lastSync(user);
+      if (lastSync != null && !lastSync.isAfter(getOffset(user))) {
+        logger.debug("No device sync for user {} on route {} since {}",
+            user, routeName, lastSync);
+        return lastPoll;
+      }
+    }
+    Instant pausedUntil = generator.getRateLimits().pausedUntil(user, getLaneRateLimitReserve());
+    if (pausedUntil != null) {
+      logger.info("Rate limit almost reached for user {} on route {}. Pausing until {}",
+          user, routeName, pausedUntil);
+      return pausedUntil.minus(getPollIntervalPerUser());
+    }
+    return null;
+  }
+
+  /** Update the poll index with the current next poll time of given user. */
+  private void reschedule(User user) {
+    pollIndex.updateIfPresent(user, nextPoll(user));
+  }
+
+  /** Reschedule the user with given ID if this route was idle for the user. */
+  private void wake(String userId, Set<String> idleRoutes) {
+    if (idleRoutes.contains(routeName)) {
+      User user = pollIndex.get(userId);
+      if (user != null) {
+        reschedule(user);
+      }
+    }
+  }
+
+  /**
+   * Whether given request reaches the most recent day that this route polls. Empty responses
+   * for earlier days, which are being caught up on, do not show that the user is idle.
+   */
+  private boolean reachesRecentDay(FitbitRestRequest request) {
+    Instant recentDay = lastPoll.minus(getLookbackTime()).truncatedTo(DAYS);
+    return !request.getDateRange().end().toInstant().isBefore(recentDay);
+  }
+
+  /** Source partition of the records of given user in this route. */
+  protected Map<String, Object> getPartition(User user) {
     return partitions.computeIfAbsent(user.getVersionedId(),
-        k -> generator.getPartition(routeName, user));
+        k -> generator.getPartition(routeName, lane, user));
+  }
+
+  /** Backfill range of given user, or {@code null} if the user is not being backfilled. */
+  protected BackfillRanges.Range getBackfillRange(User user) {
+    return backfill.getRange(user);
   }
 
   /**
@@ -262,9 +535,22 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
       Request request = builder
           .header("Authorization", "Bearer " + userRepository.getAccessToken(user))
           .build();
-      return new FitbitRestRequest(this, request, user, getPartition(user),
-          generator.getClient(user), dateRange,
-          req -> !tooManyRequestsForUser.contains(((FitbitRestRequest)req).getUser()));
+      FitbitRestRequest fitbitRequest = new FitbitRestRequest(this, request, user,
+          getPartition(user), generator.getClient(user), dateRange,
+          req -> {
+            User reqUser = ((FitbitRestRequest) req).getUser();
+            return !responseBackoff.hasTooManyRequests(reqUser.getId())
+                && generator.getRateLimits().pausedUntil(reqUser, getLaneRateLimitReserve())
+                    == null;
+          });
+      backfill.setOffsetAttributes(fitbitRequest);
+      if (recentSamples != null) {
+        String userKey = user.getVersionedId();
+        Instant offset = getOffset(user);
+        fitbitRequest.setNewSampleFilter(
+            time -> recentSamples.isNew(userKey, offset, time));
+      }
+      return fitbitRequest;
     } catch (UserNotAuthorizedException | IOException ex) {
       logger.warn("User {} does not have a configured access token: {}. Skipping.",
           user, ex.toString());
@@ -275,11 +561,15 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
   @Override
   public void setOffsetStorageReader(OffsetStorageReader offsetStorageReader) {
     if (offsetStorageReader != null) {
-      offsets = offsetStorageReader.offsets(partitions.values()).entrySet().stream()
+      Map<Map<String, Object>, Map<String, Object>> storedOffsets =
+          offsetStorageReader.offsets(partitions.values());
+      offsets = storedOffsets.entrySet().stream()
               .filter(e -> e.getValue() != null && e.getValue().containsKey(TIMESTAMP_OFFSET_KEY))
-              .collect(Collectors.toMap(
+              .collect(Collectors.toConcurrentMap(
                   e -> (String) e.getKey().get("user"),
                   e -> Instant.ofEpochMilli((Long) e.getValue().get(TIMESTAMP_OFFSET_KEY))));
+      // the live lane restores the backfill ranges before the backfill lane
+      backfill.restore(storedOffsets);
     } else {
       logger.warn("Offset storage reader is null, will resume from an empty state.");
     }
@@ -290,25 +580,48 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
     return pollInterval;
   }
 
+  /**
+   * Earliest next poll time of any user, from the poll index. Next poll times of later users are
+   * not needed to schedule this route.
+   */
   @Override
   public Stream<Instant> nextPolls() {
-    try {
-      return userRepository.stream()
-          .map(this::nextPoll);
-    } catch (IOException e) {
-      logger.warn("Failed to read users for polling interval: {}", e.toString());
-      return Stream.of(getLastPoll().plus(getPollInterval()));
-    }
+    syncUsers();
+    Instant earliest = pollIndex.earliest();
+    return earliest != null ? Stream.of(earliest) : Stream.empty();
   }
 
   public Instant getLastPoll() {
     return lastPoll;
   }
 
+  /**
+   * Offset of given user in this lane. The live lane starts after the backfill range of the
+   * user, and the backfill lane starts after the part of the backfill range that is covered
+   * without gaps.
+   */
   protected Instant getOffset(User user) {
+    return backfill.getOffset(user, getStoredOffset(user));
+  }
+
+  /** Offset of the records of given user in the partition of this lane. */
+  private Instant getStoredOffset(User user) {
     return offsets.getOrDefault(user.getVersionedId(), user.getStartDate().minus(ONE_NANO));
   }
 
+  /**
+   * Start time of the next request for given user, at given time resolution of the route. This
+   * is the first time after the offset or, in near-real-time mode, the start of the re-scan
+   * window before the offset.
+   */
+  protected Instant getRequestStart(User user, ChronoUnit resolution) {
+    Instant offset = getOffset(user);
+    if (recentSamples != null) {
+      offset = max(offset.minus(realtimeRescan), user.getStartDate().minus(ONE_NANO));
+    }
+    return offset.plus(resolution.getDuration()).truncatedTo(resolution);
+  }
+
   /**
    * URL String format. The format arguments should be provided to
    * {@link #newRequest(User, DateRange, Object...)}
@@ -319,32 +632,88 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
    * Get the poll interval for a single user on a single route.
    */
   protected Duration getPollIntervalPerUser() {
-    return pollIntervalPerUser;
+    return realtimePollInterval != null ? realtimePollInterval : pollIntervalPerUser;
+  }
+
+  /**
+   * Poll interval of given user on this route. With idle backoff, it grows while requests of the
+   * user on this route return no data.
+   */
+  private Duration getIdlePollInterval(User user) {
+    if (idleBackoffMaxInterval == null) {
+      return getPollIntervalPerUser();
+    }
+    return generator.getIdleBackoff().getPollInterval(
+        user.getId(), routeName, getPollIntervalPerUser(), idleBackoffMaxInterval);
+  }
+
+  /**
+   * Number of requests in the Fitbit rate limit of a user that this route leaves for other
+   * routes. High priority routes override this to use the full budget.
+   */
+  protected int getRateLimitReserve() {
+    return rateLimitReserve;
+  }
+
+  /**
+   * Whether this route only polls a user when a device of the user synced after the current
+   * offset. Routes that do not read device data override this to always poll.
+   */
+  protected boolean isGatedByDeviceSync() {
+    return true;
   }
 
   protected Duration getTooManyRequestsCooldown() {
     return tooManyRequestsCooldown;
   }
 
+  /**
+   * Rate limit reserve of this lane. The backfill lane keeps at least the configured backfill
+   * reserve for the live lanes.
+   */
+  private int getLaneRateLimitReserve() {
+    return lane == Lane.BACKFILL
+        ? Math.max(getRateLimitReserve(), backfillRateLimitReserve)
+        : getRateLimitReserve();
+  }
+
   /**
    * Time that should not be polled to avoid duplicate data.
    */
   protected Duration getLookbackTime() {
-    return LOOKBACK_TIME;
+    return recentSamples != null ? REALTIME_LOOKBACK_TIME : LOOKBACK_TIME;
   }
 
   /**
-   * Next time that given user should be polled.
+   * Whether this route can poll recent data in near-real-time mode. Only routes whose requests
+   * are generated by {@link #startDateGenerator(User, ChronoUnit)} and whose records are single
+   * samples should override this.
+   */
+  protected boolean supportsRealtime() {
+    return false;
+  }
+
+  /**
+   * Next time that given user should be polled. With adaptive polling, this is postponed to the
+   * next hour in which the user usually syncs, unless the next page of a response is still to
+   * be polled.
    */
   protected Instant nextPoll(User user) {
     Instant offset = getOffset(user);
     if (offset.isAfter(user.getEndDate().minus(getEndDateThreshold()))) {
       return nearFuture();
-    } else {
-      Instant nextPoll = lastPollPerUser.getOrDefault(user.getId(), MIN_INSTANT)
-          .plus(getPollIntervalPerUser());
-      return max(offset.plus(getLookbackTime()), nextPoll);
     }
+    Instant lastUserPoll = lastPollPerUser.getOrDefault(user.getId(), MIN_INSTANT);
+    if (nextPageUsers.contains(user.getId())) {
+      return max(offset.plus(getLookbackTime()), lastUserPoll.plus(getPollIntervalPerUser()));
+    }
+    Instant nextPoll = max(offset.plus(getLookbackTime()),
+        lastUserPoll.plus(getIdlePollInterval(user)));
+    if (adaptivePollingMaxDelay != null) {
+      nextPoll = generator.getSyncPatterns()
+          .nextPollTime(user.getId(), nextPoll, adaptivePollingMaxDelay);
+    }
+    return nextPoll;
   }
 
   private TemporalAmount getEndDateThreshold() {
@@ -352,13 +721,26 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
   }
 
   /**
-   * Generate one date per day (or specified rangeInterval), using UTC time zone. The first date will have the time from the
-   * given startDate. Following time stamps will start at 00:00. This will not up to the date of
-   * {@link #getLookbackTime()} (exclusive).
+   * Generate date ranges to poll for given user, starting at
+   * {@link #getRequestStart(User, ChronoUnit)} with given time resolution, up to
+   * {@link #getLookbackTime()} ago. In the backfill lane, date ranges are generated for the gaps
+   * in the backfill range, see
+   * {@link LaneBackfill#gapDateRanges(User, Instant, ChronoUnit, java.util.function.BiFunction)}.
    */
-  Stream<DateRange> startDateGenerator(Instant startDate) {
+  Stream<DateRange> startDateGenerator(User user, ChronoUnit resolution) {
     Instant lookBack = lastPoll.minus(getLookbackTime());
+    if (lane == Lane.LIVE) {
+      return startDateGenerator(getRequestStart(user, resolution), lookBack);
+    }
+    return backfill.gapDateRanges(user, lookBack, resolution, this::startDateGenerator);
+  }
 
+  /**
+   * Generate one date per day (or specified rangeInterval), using UTC time zone. The first date will have the time from the
+   * given startDate. Following time stamps will start at 00:00. This will not up to the date of
+   * given lookBack time (exclusive).
+   */
+  Stream<DateRange> startDateGenerator(Instant startDate, Instant lookBack) {
     ZonedDateTime dateTime = startDate.atZone(UTC);
     ZonedDateTime lookBackDate = lookBack.atZone(UTC);
     ZonedDateTime lookBackDateStart = lookBackDate.truncatedTo(DAYS);
@@ -373,10 +755,17 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
     } else {
       Duration rangeInterval = getDateRangeInterval();
 
+      // ranges of multiple days end before the last, partial, day
       Stream<DateRange> elements = Stream
           .iterate(dateTime, t -> t.plus(rangeInterval).truncatedTo(DAYS))
           .takeWhile(u -> u.isBefore(lookBackDateStart))
-          .map(s -> new DateRange(s, s.plus(rangeInterval).truncatedTo(DAYS).minus(ONE_NANO)));
+          .map(s -> {
+            ZonedDateTime end = s.plus(rangeInterval).truncatedTo(DAYS);
+            if (end.isAfter(lookBackDateStart)) {
+              end = lookBackDateStart;
+            }
+            return new DateRange(s, end.minus(ONE_NANO));
+          });
 
       // we're polling at exactly 00:00, should not poll the last date
       if (lookBackDateStart.equals(lookBackDate)) {
@@ -389,6 +778,10 @@ public abstract class FitbitPollingRoute implements PollingRequestRoute {
     }
   }
 
+  /**
+   * Widest date range that a single request of this route may query. Historical data is
+   * requested in ranges of this size, while the most recent day is always requested on its own.
+   */
   Duration getDateRangeInterval() {
     return ONE_DAY;
   }
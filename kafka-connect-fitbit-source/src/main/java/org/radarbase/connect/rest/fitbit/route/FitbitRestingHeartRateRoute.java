@@ -17,25 +17,27 @@
 
 package org.radarbase.connect.rest.fitbit.route;
 
-import static java.time.ZoneOffset.UTC;
 import static java.time.temporal.ChronoUnit.SECONDS;
 
 import io.confluent.connect.avro.AvroData;
 
 import java.time.Duration;
-import java.time.ZonedDateTime;
+import java.time.Instant;
 import java.time.format.DateTimeFormatter;
+import java.util.Map;
 import java.util.stream.Stream;
 
+import org.radarbase.connect.rest.fitbit.converter.FitbitIntradayHeartRateAvroConverter.RestingHeartRateReceiver;
 import org.radarbase.connect.rest.fitbit.converter.FitbitRestingHeartRateAvroConverter;
 import org.radarbase.connect.rest.fitbit.request.FitbitRequestGenerator;
 import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
 import org.radarbase.connect.rest.fitbit.user.User;
 import org.radarbase.connect.rest.fitbit.user.UserRepository;
-import org.radarbase.connect.rest.fitbit.util.DateRange;
 
-public class FitbitRestingHeartRateRoute extends FitbitPollingRoute {
+public class FitbitRestingHeartRateRoute extends FitbitPollingRoute
+    implements RestingHeartRateReceiver {
   private static final Duration RESTING_HEART_RATE_POLL_INTERVAL = Duration.ofDays(1);
+  private static final Duration RESTING_HEART_RATE_RANGE_INTERVAL = Duration.ofDays(365);
 
   private final FitbitRestingHeartRateAvroConverter converter;
 
@@ -47,16 +49,20 @@ public class FitbitRestingHeartRateRoute extends FitbitPollingRoute {
 
   @Override
   protected Stream<FitbitRestRequest> createRequests(User user) {
-    ZonedDateTime startDate = this.getOffset(user).plus(ONE_SECOND)
-        .atZone(UTC)
-        .truncatedTo(SECONDS);
-    return Stream.of(newRequest(user, new DateRange(startDate, ZonedDateTime.now(UTC)),
-        user.getExternalUserId(), DATE_FORMAT.format(startDate)));
+    return startDateGenerator(user, SECONDS)
+        .map(dateRange -> newRequest(user, dateRange, user.getExternalUserId(),
+            DATE_FORMAT.format(dateRange.start()), DATE_FORMAT.format(dateRange.end())));
   }
 
   @Override
   protected String getUrlFormat(String baseUrl) {
-    return baseUrl + "/1/user/%s/activities/heart/date/%s/1d.json?timezone=UTC";
+    return baseUrl + "/1/user/%s/activities/heart/date/%s/%s.json?timezone=UTC";
+  }
+
+  /** Limit range to one year as documented here: https://dev.fitbit.com/build/reference/web-api/heartrate-timeseries/get-heartrate-timeseries-by-date-range/ */
+  @Override
+  Duration getDateRangeInterval() {
+    return RESTING_HEART_RATE_RANGE_INTERVAL;
   }
 
   @Override
@@ -68,4 +74,18 @@ public class FitbitRestingHeartRateRoute extends FitbitPollingRoute {
   public FitbitRestingHeartRateAvroConverter converter() {
     return converter;
   }
+
+  /**
+   * Partition of the resting heart rate records of given user. Records are not shared while the
+   * user is backfilled, so that the offsets of this route keep the backfill range.
+   */
+  @Override
+  public Map<String, Object> getRestingHeartRatePartition(User user) {
+    return getBackfillRange(user) == null ? getPartition(user) : null;
+  }
+
+  @Override
+  public void restingHeartRateReceived(User user, Instant offset) {
+    sharedRecordsReceived(user, offset);
+  }
 }
@@ -74,4 +74,9 @@ public class FitbitSleepRoute extends FitbitPollingRoute {
   public FitbitSleepAvroConverter converter() {
     return converter;
   }
+
+  @Override
+  protected int getRateLimitReserve() {
+    return 0;
+  }
 }
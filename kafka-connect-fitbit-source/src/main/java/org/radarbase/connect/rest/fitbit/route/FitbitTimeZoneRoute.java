@@ -38,7 +38,7 @@ public class FitbitTimeZoneRoute extends FitbitPollingRoute {
   public FitbitTimeZoneRoute(FitbitRequestGenerator generator,
       UserRepository userRepository, AvroData avroData) {
     super(generator, userRepository, "timezone");
-    this.converter = new FitbitTimeZoneAvroConverter(avroData);
+    this.converter = new FitbitTimeZoneAvroConverter(avroData, generator.getUserTimeZones());
   }
 
   @Override
@@ -65,4 +65,9 @@ public class FitbitTimeZoneRoute extends FitbitPollingRoute {
   protected Duration getLookbackTime() {
     return Duration.ZERO;
   }
+
+  @Override
+  protected boolean isGatedByDeviceSync() {
+    return false;
+  }
 }
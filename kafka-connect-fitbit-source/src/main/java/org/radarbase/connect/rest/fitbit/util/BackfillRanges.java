@@ -0,0 +1,167 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Historical ranges per user that are polled by the backfill lane of a route, while the live
+ * lane of the route polls the time after the range. The live and backfill lanes of a route share
+ * a single instance.
+ */
+public class BackfillRanges {
+  private final Map<String, Range> ranges;
+
+  public BackfillRanges() {
+    ranges = new ConcurrentHashMap<>();
+  }
+
+  /** Backfill range of given user, or {@code null} if there is none. */
+  public Range get(String userKey) {
+    return ranges.get(userKey);
+  }
+
+  /** Set the backfill range of a user, unless it already has one. Returns the current range. */
+  public Range putIfAbsent(String userKey, Range range) {
+    Range previous = ranges.putIfAbsent(userKey, range);
+    return previous != null ? previous : range;
+  }
+
+  /** Remove given backfill range of a user. */
+  public void remove(String userKey, Range range) {
+    ranges.remove(userKey, range);
+  }
+
+  /** Remove the ranges of all users whose versioned ID is not in given set. */
+  public void retainAll(Set<String> userKeys) {
+    ranges.keySet().retainAll(userKeys);
+  }
+
+  /**
+   * Range of time after given offset, up to given end time (exclusive). The range keeps track of
+   * the parts of the range that were covered, so that parts can be polled in any order. Covered
+   * parts are stored as intervals that exclude their start time and include their end time.
+   */
+  public static class Range {
+    private final Instant start;
+    private final Instant end;
+    private final NavigableMap<Instant, Instant> covered;
+    private volatile boolean complete;
+
+    public Range(Instant start, Instant end) {
+      this.start = start;
+      this.end = end;
+      this.covered = new TreeMap<>();
+    }
+
+    /** Offset before the first time in the range. */
+    public Instant getStart() {
+      return start;
+    }
+
+    /** End of the range, exclusive. */
+    public Instant getEnd() {
+      return end;
+    }
+
+    /** Whether the backfill lane has polled the full range. */
+    public boolean isComplete() {
+      return complete;
+    }
+
+    public void setComplete() {
+      this.complete = true;
+    }
+
+    /**
+     * Mark the time after given time, up to and including given time, as covered. Overlapping
+     * and adjacent intervals are merged.
+     */
+    public synchronized void cover(Instant after, Instant until) {
+      if (after.isBefore(start)) {
+        after = start;
+      }
+      if (!until.isAfter(after)) {
+        return;
+      }
+      Map.Entry<Instant, Instant> previous = covered.floorEntry(after);
+      if (previous != null && !previous.getValue().isBefore(after)) {
+        after = previous.getKey();
+        if (previous.getValue().isAfter(until)) {
+          until = previous.getValue();
+        }
+      }
+      Map.Entry<Instant, Instant> next = covered.ceilingEntry(after);
+      while (next != null && !next.getKey().isAfter(until)) {
+        if (next.getValue().isAfter(until)) {
+          until = next.getValue();
+        }
+        covered.remove(next.getKey());
+        next = covered.higherEntry(next.getKey());
+      }
+      covered.put(after, until);
+    }
+
+    /** Offset up to which the range is covered without gaps. */
+    public synchronized Instant getWatermark() {
+      Map.Entry<Instant, Instant> first = covered.firstEntry();
+      return first != null && first.getKey().equals(start) ? first.getValue() : start;
+    }
+
+    /** Copy of the covered intervals, mapping the excluded start to the included end time. */
+    public synchronized NavigableMap<Instant, Instant> getCovered() {
+      return new TreeMap<>(covered);
+    }
+
+    /**
+     * Covered intervals as text, in epoch milliseconds. Since times are rounded down, text
+     * that is read with {@link #cover(String)} may cover slightly less than this range.
+     */
+    public synchronized String coveredToString() {
+      return covered.entrySet().stream()
+          .map(e -> e.getKey().toEpochMilli() + "/" + e.getValue().toEpochMilli())
+          .collect(Collectors.joining(","));
+    }
+
+    /**
+     * Mark the intervals written by {@link #coveredToString()} as covered.
+     * @throws NumberFormatException if the text cannot be parsed.
+     */
+    public void cover(String text) {
+      if (text.isEmpty()) {
+        return;
+      }
+      for (String interval : text.split(",")) {
+        int separator = interval.indexOf('/');
+        cover(Instant.ofEpochMilli(Long.parseLong(interval.substring(0, separator))),
+            Instant.ofEpochMilli(Long.parseLong(interval.substring(separator + 1))));
+      }
+    }
+
+    @Override
+    public String toString() {
+      return "Range{start=" + start + ", end=" + end + ", complete=" + complete + '}';
+    }
+  }
+}
@@ -0,0 +1,337 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.DAYS;
+import static java.time.temporal.ChronoUnit.NANOS;
+import static org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter.TIMESTAMP_OFFSET_KEY;
+import static org.radarbase.connect.rest.request.PollingRequestRoute.max;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiFunction;
+import java.util.stream.Stream;
+import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.fitbit.route.FitbitPollingRoute.Lane;
+import org.radarbase.connect.rest.fitbit.user.User;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Backfill state of a single lane of a route. The live lane starts a backfill range when a user
+ * is further behind than the live lane window, and polls only the time after the range. The
+ * backfill lane polls the gaps of the range that were not covered yet, in any order, until the
+ * range is complete. The live lane then continues its offset after the range. Without backfill
+ * ranges, the live lane polls all data and this keeps no state.
+ */
+public class LaneBackfill {
+  private static final Logger logger = LoggerFactory.getLogger(LaneBackfill.class);
+  private static final Duration ONE_DAY = DAYS.getDuration();
+  private static final Duration ONE_NANO = NANOS.getDuration();
+  private static final String BACKFILL_START_KEY = "backfill_start";
+  private static final String BACKFILL_END_KEY = "backfill_end";
+  private static final String BACKFILL_AFTER_KEY = "backfill_after";
+  private static final String BACKFILL_COVERED_KEY = "backfill_covered";
+
+  private final String routeName;
+  private final Lane lane;
+  private final BackfillRanges ranges;
+  private final Duration liveLaneWindow;
+  private final boolean newestFirst;
+
+  /**
+   * Backfill state of a lane.
+   * @param routeName name of the route, for logging.
+   * @param lane lane of the route.
+   * @param ranges backfill ranges shared by the lanes of the route, or {@code null} if the route
+   *               has no backfill lane.
+   * @param liveLaneWindow time before now that the live lane polls.
+   * @param newestFirst whether the backfill lane polls the most recent gaps first.
+   */
+  public LaneBackfill(String routeName, Lane lane, BackfillRanges ranges,
+      Duration liveLaneWindow, boolean newestFirst) {
+    if (lane == Lane.BACKFILL && ranges == null) {
+      throw new IllegalArgumentException("Backfill lane of route " + routeName
+          + " needs backfill ranges");
+    }
+    this.routeName = routeName;
+    this.lane = lane;
+    this.ranges = ranges;
+    this.liveLaneWindow = liveLaneWindow;
+    this.newestFirst = newestFirst;
+  }
+
+  public Lane getLane() {
+    return lane;
+  }
+
+  /** Backfill range of given user, or {@code null} if the user is not being backfilled. */
+  public BackfillRanges.Range getRange(User user) {
+    BackfillRanges.Range range = ranges != null ? ranges.get(user.getVersionedId()) : null;
+    return range != null && !range.isComplete() ? range : null;
+  }
+
+  /**
+   * Update the backfill range of given user before polling. The live lane removes a completed
+   * range and starts a new range when the user is further behind than the live lane window. The
+   * backfill lane marks the range as complete once it is covered up to a day before its end.
+   * @param user user to update.
+   * @param storedOffset offset of the records of the user in the partition of this lane.
+   * @param now current time.
+   * @return offset of the user in the partition of this lane. For the live lane, this is after
+   *         the backfill range that was completed, if any.
+   */
+  public Instant update(User user, Instant storedOffset, Instant now) {
+    if (ranges == null) {
+      return storedOffset;
+    }
+    String userKey = user.getVersionedId();
+    BackfillRanges.Range range = ranges.get(userKey);
+    if (lane == Lane.BACKFILL) {
+      if (range != null && !range.isComplete() && !hasWork(range)) {
+        logger.info("Completed backfill of route {} for user {}", routeName, user);
+        range.setComplete();
+      }
+      return storedOffset;
+    }
+    Instant offset = storedOffset;
+    if (range != null && range.isComplete()) {
+      offset = max(offset, range.getEnd().minus(ONE_NANO));
+      ranges.remove(userKey, range);
+      range = null;
+    }
+    if (range == null) {
+      Instant liveStart = now.minus(liveLaneWindow).atZone(UTC).truncatedTo(DAYS).toInstant();
+      if (offset.isBefore(liveStart.minus(ONE_NANO))) {
+        ranges.putIfAbsent(userKey, new BackfillRanges.Range(offset, liveStart));
+        logger.info("Backfilling route {} for user {} from {} to {}",
+            routeName, user, offset, liveStart);
+      }
+    }
+    return offset;
+  }
+
+  /** Whether this lane has data to poll for given user. This does not change any state. */
+  public boolean hasWork(User user) {
+    if (lane == Lane.LIVE) {
+      return true;
+    }
+    BackfillRanges.Range range = getRange(user);
+    return range != null && hasWork(range);
+  }
+
+  /** Whether given range has not been covered up to a day before its end. */
+  private static boolean hasWork(BackfillRanges.Range range) {
+    return range.getWatermark().plus(ONE_DAY).isBefore(range.getEnd());
+  }
+
+  /**
+   * Offset of given user in this lane. The live lane starts after the backfill range of the
+   * user, and the backfill lane starts after the part of the backfill range that is covered
+   * without gaps.
+   * @param storedOffset offset of the records of the user in the partition of this lane.
+   */
+  public Instant getOffset(User user, Instant storedOffset) {
+    BackfillRanges.Range range = getRange(user);
+    if (range == null) {
+      return storedOffset;
+    } else if (lane == Lane.LIVE) {
+      return max(storedOffset, range.getEnd().minus(ONE_NANO));
+    } else {
+      return range.getWatermark();
+    }
+  }
+
+  /**
+   * Date ranges of the backfill lane for given user. Date ranges are generated for each gap in
+   * the covered intervals of the backfill range, up to the end of the range or given time,
+   * whichever is earlier. The time between a covered interval and the first time of the next gap
+   * at given resolution has no data, so it is marked as covered.
+   * @param dateRanges generates the date ranges from the first time of a gap up to its end.
+   */
+  public Stream<DateRange> gapDateRanges(User user, Instant until, ChronoUnit resolution,
+      BiFunction<Instant, Instant, Stream<DateRange>> dateRanges) {
+    BackfillRanges.Range range = lane == Lane.BACKFILL ? getRange(user) : null;
+    if (range == null) {
+      return Stream.empty();
+    }
+    if (range.getEnd().isBefore(until)) {
+      until = range.getEnd();
+    }
+
+    List<DateRange> result = new ArrayList<>();
+    Instant gapAfter = range.getWatermark();
+    for (Map.Entry<Instant, Instant> covered : range.getCovered().entrySet()) {
+      if (covered.getKey().isAfter(gapAfter)) {
+        addGap(range, gapAfter, covered.getKey(), resolution, dateRanges, result);
+      }
+      gapAfter = max(gapAfter, covered.getValue());
+    }
+    addGap(range, gapAfter, until, resolution, dateRanges, result);
+
+    if (newestFirst) {
+      Collections.reverse(result);
+    }
+    return result.stream();
+  }
+
+  /**
+   * Add the date ranges of the gap after given offset, up to given time. The time before the
+   * first time of the gap at given resolution is marked as covered.
+   */
+  private static void addGap(BackfillRanges.Range range, Instant after, Instant until,
+      ChronoUnit resolution, BiFunction<Instant, Instant, Stream<DateRange>> dateRanges,
+      List<DateRange> result) {
+    Instant start = after.plus(resolution.getDuration()).truncatedTo(resolution);
+    if (start.isBefore(until)) {
+      range.cover(after, start.minus(ONE_NANO));
+      dateRanges.apply(start, until).forEach(result::add);
+    } else {
+      range.cover(after, until);
+    }
+  }
+
+  /**
+   * Mark the time of given request of the backfill lane as covered, up to given time.
+   * @return whether the request belongs to a backfill range that is not complete.
+   */
+  public boolean cover(FitbitRestRequest request, Instant until) {
+    BackfillRanges.Range range = lane == Lane.BACKFILL ? getRange(request.getUser()) : null;
+    if (range == null) {
+      return false;
+    }
+    range.cover(getCoveredAfter(request), until);
+    return true;
+  }
+
+  /**
+   * Mark the dates of given request of the backfill lane as covered after its response had no
+   * data. The backfill range ends before the live lane window, so a device has usually synced
+   * the data of those dates already. If the last device sync of the user is known and it is not
+   * after the requested dates, the dates are not covered, so they are requested again.
+   * @param lastSync last device sync of the user, or {@code null} if it is not known.
+   * @return whether the dates were covered.
+   */
+  public boolean coverEmpty(FitbitRestRequest request, Instant lastSync) {
+    Instant end = request.getDateRange().end().toInstant();
+    if (lastSync != null && !lastSync.isAfter(end)) {
+      return false;
+    }
+    return cover(request, end);
+  }
+
+  /**
+   * Store the backfill state in the offsets of the records of given request. The live lane
+   * stores the backfill range, and the backfill lane stores the covered intervals. Requests of
+   * the backfill lane may be fetched in any order.
+   */
+  public void setOffsetAttributes(FitbitRestRequest request) {
+    BackfillRanges.Range range = getRange(request.getUser());
+    if (range == null) {
+      return;
+    }
+    if (lane == Lane.LIVE) {
+      request.setOffsetAttributes(Map.of(
+          BACKFILL_START_KEY, range.getStart().toEpochMilli(),
+          BACKFILL_END_KEY, range.getEnd().toEpochMilli()));
+    } else {
+      // the covered intervals are only final once previous responses have been converted
+      long after = getCoveredAfter(request).toEpochMilli();
+      request.setOffsetAttributes(() -> Map.of(
+          BACKFILL_AFTER_KEY, after,
+          BACKFILL_COVERED_KEY, range.coveredToString()));
+      request.setFetchedInOrder(false);
+    }
+  }
+
+  /**
+   * Restore the backfill state from the stored offsets of the partitions of this lane. The live
+   * lane restores the backfill ranges, so it should be restored before the backfill lane, which
+   * restores the covered intervals of the ranges.
+   */
+  public void restore(Map<Map<String, Object>, Map<String, Object>> storedOffsets) {
+    if (ranges == null) {
+      return;
+    }
+    storedOffsets.forEach((partition, offset) -> {
+      if (offset == null) {
+        return;
+      }
+      String userKey = (String) partition.get("user");
+      if (lane == Lane.LIVE) {
+        if (offset.get(BACKFILL_START_KEY) instanceof Long
+            && offset.get(BACKFILL_END_KEY) instanceof Long) {
+          ranges.putIfAbsent(userKey, new BackfillRanges.Range(
+              Instant.ofEpochMilli((Long) offset.get(BACKFILL_START_KEY)),
+              Instant.ofEpochMilli((Long) offset.get(BACKFILL_END_KEY))));
+        }
+      } else {
+        BackfillRanges.Range range = ranges.get(userKey);
+        if (range != null) {
+          restoreCovered(range, offset);
+        }
+      }
+    });
+  }
+
+  /**
+   * Restore the covered intervals of a backfill range from the offset of the backfill lane. The
+   * offset stores the intervals that were covered before its request, and its request covered
+   * the time after {@code BACKFILL_AFTER_KEY} up to the offset timestamp.
+   */
+  private static void restoreCovered(BackfillRanges.Range range, Map<String, Object> offset) {
+    Object timestamp = offset.get(TIMESTAMP_OFFSET_KEY);
+    if (!(timestamp instanceof Long)) {
+      return;
+    }
+    Object after = offset.get(BACKFILL_AFTER_KEY);
+    range.cover(after instanceof Long ? Instant.ofEpochMilli((Long) after) : range.getStart(),
+        Instant.ofEpochMilli((Long) timestamp));
+    Object covered = offset.get(BACKFILL_COVERED_KEY);
+    if (covered instanceof String) {
+      try {
+        range.cover((String) covered);
+      } catch (RuntimeException ex) {
+        logger.warn("Cannot restore covered backfill intervals {}: {}", covered, ex.toString());
+      }
+    }
+  }
+
+  /** Remove the ranges of all users whose versioned ID is not in given set. */
+  public void retainAll(Set<String> userKeys) {
+    if (ranges != null && lane == Lane.LIVE) {
+      ranges.retainAll(userKeys);
+    }
+  }
+
+  /**
+   * Offset after which a request of the backfill lane covers the backfill range. The time
+   * between the previous covered interval and the start of the request was covered when the
+   * request was generated.
+   */
+  private static Instant getCoveredAfter(FitbitRestRequest request) {
+    return request.getDateRange().start().toInstant().minus(ONE_NANO);
+  }
+}
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.BitSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Sample times per user that were already emitted in a trailing window. Requests that re-scan
+ * the window before the current offset use this to only emit samples that arrived late, without
+ * duplicating samples that were emitted before.
+ *
+ * <p>The tracker is not stored in the source offsets; it only complements them:
+ * <ul>
+ *   <li>All samples at or before the offset of the first request of a user are considered
+ *   emitted. After a restart, samples after the committed offset are emitted again, as with any
+ *   route, but samples that arrive late for times before the committed offset are not.</li>
+ *   <li>A sample is checked with {@link #isNew} while a response is converted, and only marked
+ *   with {@link #markEmitted} once the whole response was converted. Samples of a response that
+ *   failed to convert are emitted by the next request.</li>
+ *   <li>The offset of a user is the latest emitted sample, so late samples never move it back.
+ *   Samples more than the window before the latest marked sample are considered emitted.</li>
+ * </ul>
+ */
+public class RecentSampleTracker {
+  private final int capacity;
+  private final Map<String, Window> windows;
+
+  /**
+   * Tracker that remembers emitted samples of given duration before the latest emitted sample,
+   * at second resolution.
+   */
+  public RecentSampleTracker(Duration window) {
+    this.capacity = (int) Math.max(1L, window.getSeconds());
+    this.windows = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Whether a sample of given user at given time was not emitted yet.
+   * @param userKey versioned user ID.
+   * @param offset offset of the user at the time the request was made. This starts the window of
+   *               a user that is not tracked yet.
+   * @param time time of the sample.
+   */
+  public boolean isNew(String userKey, Instant offset, Instant time) {
+    Window window = windows.computeIfAbsent(userKey, k -> new Window(offset.getEpochSecond()));
+    return window.isNew(time.getEpochSecond());
+  }
+
+  /**
+   * Register that a sample of given user at given time was emitted. This has no effect if the
+   * user is not tracked.
+   * @param userKey versioned user ID.
+   * @param time time of the sample.
+   */
+  public void markEmitted(String userKey, Instant time) {
+    Window window = windows.get(userKey);
+    if (window != null) {
+      window.mark(time.getEpochSecond());
+    }
+  }
+
+  /** Remove the windows of all users whose versioned ID is not in given set. */
+  public void retainAll(Set<String> userKeys) {
+    windows.keySet().retainAll(userKeys);
+  }
+
+  private class Window {
+    /** All samples up to and including this second are considered emitted. */
+    private long floor;
+    /** Bit {@code i} is set if the sample at second {@code floor + 1 + i} was emitted. */
+    private BitSet emitted;
+
+    private Window(long floor) {
+      this.floor = floor;
+      this.emitted = new BitSet(capacity);
+    }
+
+    private synchronized boolean isNew(long second) {
+      if (second <= floor) {
+        return false;
+      }
+      long index = second - floor - 1;
+      return index >= capacity || !emitted.get((int) index);
+    }
+
+    private synchronized void mark(long second) {
+      if (second <= floor) {
+        return;
+      }
+      long index = second - floor - 1;
+      if (index >= capacity) {
+        int shift = (int) Math.min(index - capacity + 1, Integer.MAX_VALUE);
+        emitted = shift < emitted.length() ? emitted.get(shift, emitted.length()) : new BitSet();
+        floor += shift;
+        index -= shift;
+      }
+      emitted.set((int) index);
+    }
+  }
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Backoff of users after error responses of a single route. After a 429 Too Many Requests
+ * response, a user is not polled for the time in its Retry-After header. After a number of
+ * consecutive 403 Forbidden responses, a user is not polled for a fixed cooldown.
+ */
+public class ResponseBackoff {
+  private final Duration tooManyRequestsCooldown;
+  private final int maxForbiddenResponses;
+  private final Duration forbiddenCooldown;
+  private final Set<String> tooManyRequestsUsers;
+  private final Map<String, Integer> forbiddenCounter;
+
+  /**
+   * Backoff with given cooldowns.
+   * @param tooManyRequestsCooldown cooldown after a 429 response without valid Retry-After header.
+   * @param maxForbiddenResponses number of consecutive 403 responses before backing off.
+   * @param forbiddenCooldown cooldown after the maximum number of 403 responses.
+   */
+  public ResponseBackoff(Duration tooManyRequestsCooldown, int maxForbiddenResponses,
+      Duration forbiddenCooldown) {
+    this.tooManyRequestsCooldown = tooManyRequestsCooldown;
+    this.maxForbiddenResponses = maxForbiddenResponses;
+    this.forbiddenCooldown = forbiddenCooldown;
+    this.tooManyRequestsUsers = ConcurrentHashMap.newKeySet();
+    this.forbiddenCounter = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Register a 429 Too Many Requests response for given user.
+   * @param retryAfter value of the Retry-After header in seconds, or {@code null} if absent.
+   * @return time that the user should not be polled.
+   */
+  public Duration tooManyRequests(String userId, String retryAfter) {
+    tooManyRequestsUsers.add(userId);
+    if (retryAfter != null) {
+      try {
+        return Duration.ofSeconds(Long.parseLong(retryAfter.trim()));
+      } catch (NumberFormatException ex) {
+        // use the default cooldown
+      }
+    }
+    return tooManyRequestsCooldown;
+  }
+
+  /**
+   * Whether a 429 response was received for given user since the last call to
+   * {@link #clearTooManyRequests()}. Further requests of the user are then skipped.
+   */
+  public boolean hasTooManyRequests(String userId) {
+    return tooManyRequestsUsers.contains(userId);
+  }
+
+  /** Forget the 429 responses, to try the users again in a new poll. */
+  public void clearTooManyRequests() {
+    tooManyRequestsUsers.clear();
+  }
+
+  /**
+   * Register a 403 Forbidden response for given user.
+   * @return time that the user should not be polled, or {@code null} if the maximum number of
+   *         consecutive 403 responses was not reached yet.
+   */
+  public Duration forbidden(String userId) {
+    int count = forbiddenCounter.merge(userId, 1, Integer::sum);
+    if (count < maxForbiddenResponses) {
+      return null;
+    }
+    forbiddenCounter.remove(userId);
+    return forbiddenCooldown;
+  }
+
+  /** Register a successful response for given user, resetting its 403 count. */
+  public void succeeded(String userId) {
+    forbiddenCounter.remove(userId);
+  }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import org.radarbase.connect.rest.fitbit.user.User;
+
+/**
+ * Index of users ordered by the next time they should be polled. Updating the poll time of a
+ * single user and retrieving the users that are due take logarithmic time in the number of
+ * users, instead of recomputing the poll time of every user.
+ */
+public class UserPollIndex {
+  private final TreeSet<Entry> schedule;
+  private final Map<String, Entry> entries;
+
+  public UserPollIndex() {
+    schedule = new TreeSet<>(Comparator
+        .comparing((Entry e) -> e.nextPoll)
+        .thenComparing(e -> e.user.getId()));
+    entries = new HashMap<>();
+  }
+
+  /** Set the next poll time of given user, adding the user if it was not indexed yet. */
+  public synchronized void update(User user, Instant nextPoll) {
+    Entry previous = entries.get(user.getId());
+    if (previous != null) {
+      if (previous.nextPoll.equals(nextPoll) && previous.user.equals(user)) {
+        return;
+      }
+      schedule.remove(previous);
+    }
+    Entry entry = new Entry(user, nextPoll);
+    entries.put(user.getId(), entry);
+    schedule.add(entry);
+  }
+
+  /**
+   * Set the next poll time of given user, only if the user is already indexed. This prevents
+   * adding users that were removed while a request for them was being made.
+   */
+  public synchronized void updateIfPresent(User user, Instant nextPoll) {
+    if (entries.containsKey(user.getId())) {
+      update(user, nextPoll);
+    }
+  }
+
+  /** Indexed user with given ID, or {@code null} if it is not indexed. */
+  public synchronized User get(String userId) {
+    Entry entry = entries.get(userId);
+    return entry != null ? entry.user : null;
+  }
+
+  /** Remove all users whose ID is not in given set. */
+  public synchronized void retainAll(Set<String> userIds) {
+    entries.values().removeIf(e -> {
+      if (userIds.contains(e.user.getId())) {
+        return false;
+      } else {
+        schedule.remove(e);
+        return true;
+      }
+    });
+  }
+
+  /** Users with a next poll time before given time, ordered by their next poll time. */
+  public synchronized List<User> dueBefore(Instant time) {
+    List<User> result = new ArrayList<>();
+    for (Entry entry : schedule) {
+      if (!entry.nextPoll.isBefore(time)) {
+        break;
+      }
+      result.add(entry.user);
+    }
+    return result;
+  }
+
+  /** Earliest next poll time of any user, or {@code null} if no users are indexed. */
+  public synchronized Instant earliest() {
+    return schedule.isEmpty() ? null : schedule.first().nextPoll;
+  }
+
+  private static class Entry {
+    private final User user;
+    private final Instant nextPoll;
+
+    private Entry(User user, Instant nextPoll) {
+      this.user = user;
+      this.nextPoll = nextPoll;
+    }
+  }
+}
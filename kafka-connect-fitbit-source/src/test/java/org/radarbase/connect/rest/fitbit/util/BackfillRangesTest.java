@@ -0,0 +1,184 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.NavigableMap;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+
+class BackfillRangesTest {
+  private static final Instant START = Instant.parse("2020-01-01T00:00:00Z");
+  private static final Instant END = START.plusSeconds(100);
+
+  private static Instant t(long seconds) {
+    return START.plusSeconds(seconds);
+  }
+
+  private static BackfillRanges.Range range() {
+    return new BackfillRanges.Range(START, END);
+  }
+
+  private static NavigableMap<Instant, Instant> intervals(long... bounds) {
+    NavigableMap<Instant, Instant> result = new TreeMap<>();
+    for (int i = 0; i < bounds.length; i += 2) {
+      result.put(t(bounds[i]), t(bounds[i + 1]));
+    }
+    return result;
+  }
+
+  @Test
+  void mergesOverlappingAndAdjacentIntervals() {
+    BackfillRanges.Range range = range();
+    range.cover(t(10), t(20));
+    range.cover(t(30), t(40));
+    assertEquals(intervals(10, 20, 30, 40), range.getCovered());
+
+    // adjacent to the end of the first interval
+    range.cover(t(20), t(25));
+    assertEquals(intervals(10, 25, 30, 40), range.getCovered());
+
+    // contained in an interval
+    range.cover(t(32), t(35));
+    assertEquals(intervals(10, 25, 30, 40), range.getCovered());
+
+    // overlapping both intervals
+    range.cover(t(5), t(50));
+    assertEquals(intervals(5, 50), range.getCovered());
+  }
+
+  @Test
+  void ignoresEmptyIntervalsAndTimeBeforeStart() {
+    BackfillRanges.Range range = range();
+    range.cover(t(10), t(10));
+    range.cover(t(20), t(15));
+    assertEquals(intervals(), range.getCovered());
+
+    range.cover(t(-10), t(5));
+    assertEquals(intervals(0, 5), range.getCovered());
+    assertEquals(t(5), range.getWatermark());
+  }
+
+  @Test
+  void watermarkStopsAtFirstGap() {
+    BackfillRanges.Range range = range();
+    assertEquals(START, range.getWatermark());
+
+    range.cover(t(10), t(20));
+    assertEquals(START, range.getWatermark());
+
+    range.cover(t(0), t(5));
+    assertEquals(t(5), range.getWatermark());
+
+    range.cover(t(5), t(10));
+    assertEquals(t(20), range.getWatermark());
+  }
+
+  @Test
+  void outOfOrderCoverageMatchesInOrderCoverage() {
+    Random random = new Random(42L);
+    for (int round = 0; round < 100; round++) {
+      List<Integer> days = new ArrayList<>();
+      for (int i = 0; i < 10; i++) {
+        days.add(i);
+      }
+      Collections.shuffle(days, random);
+
+      BackfillRanges.Range range = range();
+      int covered = 0;
+      boolean[] isCovered = new boolean[10];
+      for (int day : days) {
+        range.cover(t(day * 10L), t(day * 10L + 10));
+        isCovered[day] = true;
+        while (covered < 10 && isCovered[covered]) {
+          covered++;
+        }
+        assertEquals(t(covered * 10L), range.getWatermark());
+      }
+      assertEquals(intervals(0, 100), range.getCovered());
+    }
+  }
+
+  @Test
+  void coveredIntervalsSurviveText() {
+    BackfillRanges.Range range = range();
+    range.cover(t(10), t(20));
+    range.cover(t(30), t(40));
+    assertEquals(t(10).toEpochMilli() + "/" + t(20).toEpochMilli() + ","
+        + t(30).toEpochMilli() + "/" + t(40).toEpochMilli(), range.coveredToString());
+
+    BackfillRanges.Range restored = range();
+    restored.cover(range.coveredToString());
+    assertEquals(range.getCovered(), restored.getCovered());
+
+    // covering the same text twice changes nothing
+    restored.cover(range.coveredToString());
+    assertEquals(range.getCovered(), restored.getCovered());
+
+    BackfillRanges.Range empty = range();
+    empty.cover(empty.coveredToString());
+    assertEquals(intervals(), empty.getCovered());
+  }
+
+  @Test
+  void textRoundsDownToMilliseconds() {
+    BackfillRanges.Range range = range();
+    range.cover(t(10).minusNanos(1), t(20).minusNanos(1));
+
+    BackfillRanges.Range restored = range();
+    restored.cover(range.coveredToString());
+    assertEquals(Collections.singletonMap(t(10).minusMillis(1), t(20).minusMillis(1)),
+        restored.getCovered());
+  }
+
+  @Test
+  void invalidTextFails() {
+    BackfillRanges.Range range = range();
+    assertThrows(NumberFormatException.class, () -> range.cover("a/b"));
+    assertThrows(RuntimeException.class, () -> range.cover("10"));
+  }
+
+  @Test
+  void rangesPerUser() {
+    BackfillRanges ranges = new BackfillRanges();
+    BackfillRanges.Range first = range();
+    BackfillRanges.Range second = range();
+
+    assertSame(first, ranges.putIfAbsent("a", first));
+    assertSame(first, ranges.putIfAbsent("a", second));
+    assertSame(second, ranges.putIfAbsent("b", second));
+
+    // only removes the given range
+    ranges.remove("a", second);
+    assertSame(first, ranges.get("a"));
+    ranges.remove("a", first);
+    assertNull(ranges.get("a"));
+
+    ranges.retainAll(Collections.emptySet());
+    assertNull(ranges.get("b"));
+  }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import static java.time.ZoneOffset.UTC;
+import static java.time.temporal.ChronoUnit.MINUTES;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter.TIMESTAMP_OFFSET_KEY;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import okhttp3.Request;
+import org.junit.jupiter.api.Test;
+import org.radarbase.connect.rest.fitbit.request.FitbitRestRequest;
+import org.radarbase.connect.rest.fitbit.route.FitbitPollingRoute.Lane;
+import org.radarbase.connect.rest.fitbit.user.LocalUser;
+import org.radarbase.connect.rest.fitbit.user.User;
+
+class LaneBackfillTest {
+  private static final Instant NOW = Instant.parse("2020-03-01T12:00:00Z");
+  private static final Instant START = Instant.parse("2020-01-01T00:00:00Z").minusNanos(1);
+  private static final Instant LIVE_START = Instant.parse("2020-02-27T00:00:00Z");
+  private static final Duration WINDOW = Duration.ofDays(3);
+
+  private final User user = user("a");
+  private final BackfillRanges ranges = new BackfillRanges();
+  private final LaneBackfill live = new LaneBackfill("test", Lane.LIVE, ranges, WINDOW, false);
+  private final LaneBackfill backfill = new LaneBackfill(
+      "test", Lane.BACKFILL, ranges, WINDOW, false);
+
+  private static User user(String id) {
+    LocalUser user = new LocalUser();
+    user.setId(id);
+    return user;
+  }
+
+  private static Instant day(int day) {
+    return Instant.parse("2020-01-01T00:00:00Z").plus(Duration.ofDays(day));
+  }
+
+  /** Single date range per gap, to show the gap boundaries. */
+  private static Stream<DateRange> gap(Instant start, Instant end) {
+    return Stream.of(new DateRange(start.atZone(UTC), end.atZone(UTC)));
+  }
+
+  private List<DateRange> gaps(LaneBackfill lane) {
+    return lane.gapDateRanges(user, NOW, MINUTES, LaneBackfillTest::gap)
+        .collect(Collectors.toList());
+  }
+
+  private FitbitRestRequest request(Instant start, Instant end) {
+    return new FitbitRestRequest(null, new Request.Builder().url("http://localhost/").build(),
+        user, Collections.singletonMap("user", user.getVersionedId()), null,
+        new DateRange(start.atZone(UTC), end.atZone(UTC)), null);
+  }
+
+  @Test
+  void liveLaneStartsRangeWhenBehind() {
+    assertEquals(START, live.update(user, START, NOW));
+
+    BackfillRanges.Range range = live.getRange(user);
+    assertNotNull(range);
+    assertEquals(START, range.getStart());
+    assertEquals(LIVE_START, range.getEnd());
+    // the live lane continues after the range
+    assertEquals(LIVE_START.minusNanos(1), live.getOffset(user, START));
+    assertEquals(START, backfill.getOffset(user, START));
+    assertTrue(live.hasWork(user));
+    assertTrue(backfill.hasWork(user));
+  }
+
+  @Test
+  void liveLaneDoesNotBackfillRecentUser() {
+    Instant offset = LIVE_START.plusSeconds(60);
+    assertEquals(offset, live.update(user, offset, NOW));
+
+    assertNull(live.getRange(user));
+    assertEquals(offset, live.getOffset(user, offset));
+    assertTrue(live.hasWork(user));
+    assertFalse(backfill.hasWork(user));
+    assertEquals(Collections.emptyList(), gaps(backfill));
+  }
+
+  @Test
+  void withoutRangesLiveLanePollsEverything() {
+    LaneBackfill single = new LaneBackfill("test", Lane.LIVE, null, WINDOW, false);
+    assertEquals(START, single.update(user, START, NOW));
+    assertNull(single.getRange(user));
+    assertEquals(START, single.getOffset(user, START));
+    assertTrue(single.hasWork(user));
+    assertEquals(Collections.emptyList(), gaps(single));
+  }
+
+  @Test
+  void gapsBetweenCoveredIntervals() {
+    live.update(user, START, NOW);
+    BackfillRanges.Range range = live.getRange(user);
+    range.cover(day(10).minusNanos(1), day(20).minusNanos(1));
+
+    assertEquals(Arrays.asList(
+        new DateRange(day(0).atZone(UTC), day(10).minusNanos(1).atZone(UTC)),
+        new DateRange(day(20).atZone(UTC), LIVE_START.atZone(UTC))),
+        gaps(backfill));
+
+    LaneBackfill newestFirst = new LaneBackfill("test", Lane.BACKFILL, ranges, WINDOW, true);
+    assertEquals(Arrays.asList(
+        new DateRange(day(20).atZone(UTC), LIVE_START.atZone(UTC)),
+        new DateRange(day(0).atZone(UTC), day(10).minusNanos(1).atZone(UTC))),
+        gaps(newestFirst));
+
+    // the live lane has no gaps to poll
+    assertEquals(Collections.emptyList(), gaps(live));
+  }
+
+  @Test
+  void gapStartsAtResolution() {
+    live.update(user, START, NOW);
+    BackfillRanges.Range range = live.getRange(user);
+    // covered up to half a minute, so the next minute starts the gap
+    range.cover(START, day(1).plusSeconds(30));
+
+    assertEquals(day(1).plusSeconds(60).atZone(UTC), gaps(backfill).get(0).start());
+    // the time before the start of the gap has no data at this resolution
+    assertEquals(day(1).plusSeconds(60).minusNanos(1), range.getWatermark());
+  }
+
+  @Test
+  void outOfOrderCompletion() {
+    live.update(user, START, NOW);
+    BackfillRanges.Range range = live.getRange(user);
+
+    // a later day completes first
+    assertTrue(backfill.cover(request(day(1), day(2).minusNanos(1)), day(2).minusNanos(1)));
+    assertEquals(START, range.getWatermark());
+    assertEquals(START, backfill.getOffset(user, START));
+
+    assertTrue(backfill.cover(request(day(0), day(1).minusNanos(1)), day(1).minusNanos(1)));
+    assertEquals(day(2).minusNanos(1), range.getWatermark());
+    assertEquals(1, range.getCovered().size());
+
+    // a partial response covers up to its last record
+    backfill.cover(request(day(2), day(3).minusNanos(1)), day(2).plusSeconds(3600));
+    assertEquals(day(2).plusSeconds(3600), backfill.getOffset(user, START));
+
+    // the live lane does not cover the backfill range
+    assertFalse(live.cover(request(day(3), day(4).minusNanos(1)), day(4).minusNanos(1)));
+    assertEquals(day(2).plusSeconds(3600), range.getWatermark());
+  }
+
+  @Test
+  void emptyResponsesAreCoveredUnlessNotSynced() {
+    live.update(user, START, NOW);
+    BackfillRanges.Range range = live.getRange(user);
+
+    // a recent empty day is covered, so it is not requested on every poll
+    FitbitRestRequest recent = request(LIVE_START.minus(Duration.ofDays(1)),
+        LIVE_START.minusNanos(1));
+    FitbitRestRequest first = request(day(0), day(1).minusNanos(1));
+    assertTrue(backfill.coverEmpty(first, null));
+    assertTrue(backfill.coverEmpty(recent, null));
+    assertEquals(day(1).minusNanos(1), range.getWatermark());
+    assertEquals(LIVE_START.minusNanos(1), range.getCovered().lastEntry().getValue());
+
+    // the user did not sync after the requested day, so data may still arrive
+    FitbitRestRequest second = request(day(1), day(2).minusNanos(1));
+    assertFalse(backfill.coverEmpty(second, day(1).plusSeconds(3600)));
+    assertEquals(day(1).minusNanos(1), range.getWatermark());
+    assertEquals(Arrays.asList(
+        new DateRange(day(1).atZone(UTC),
+            LIVE_START.minus(Duration.ofDays(1)).minusNanos(1).atZone(UTC))),
+        gaps(backfill));
+
+    assertTrue(backfill.coverEmpty(second, day(2)));
+    assertEquals(day(2).minusNanos(1), range.getWatermark());
+    assertFalse(live.coverEmpty(request(LIVE_START, NOW), null));
+  }
+
+  @Test
+  void liveLaneContinuesAfterCompletedRange() {
+    live.update(user, START, NOW);
+    BackfillRanges.Range range = live.getRange(user);
+
+    range.cover(START, LIVE_START.minus(Duration.ofDays(2)));
+    assertTrue(backfill.hasWork(user));
+    backfill.update(user, START, NOW);
+    assertFalse(range.isComplete());
+
+    // covered up to a day before the end
+    range.cover(START, LIVE_START.minus(Duration.ofDays(1)));
+    assertFalse(backfill.hasWork(user));
+    assertFalse(range.isComplete(), "checking for work does not change the range");
+    backfill.update(user, START, NOW);
+    assertTrue(range.isComplete());
+    assertNull(backfill.getRange(user));
+
+    // the live lane moves its offset to the end of the range
+    assertEquals(LIVE_START.minusNanos(1), live.update(user, START, NOW));
+    assertNull(ranges.get(user.getVersionedId()));
+    assertEquals(LIVE_START.minusNanos(1), live.update(user, LIVE_START.minusNanos(1), NOW));
+    assertNull(ranges.get(user.getVersionedId()));
+  }
+
+  @Test
+  void offsetsRestoreRangeAndCoveredIntervals() {
+    live.update(user, START, NOW);
+    BackfillRanges.Range range = live.getRange(user);
+    range.cover(day(10).minusNanos(1), day(20).minusNanos(1));
+
+    FitbitRestRequest liveRequest = request(LIVE_START, NOW);
+    live.setOffsetAttributes(liveRequest);
+    assertTrue(liveRequest.isFetchedInOrder());
+
+    FitbitRestRequest backfillRequest = request(day(0), day(1).minusNanos(1));
+    backfill.setOffsetAttributes(backfillRequest);
+    assertFalse(backfillRequest.isFetchedInOrder());
+    // the response of a later day completes before the request is converted
+    range.cover(day(30).minusNanos(1), day(31).minusNanos(1));
+
+    Map<String, Object> liveOffset = new HashMap<>(liveRequest.getOffsetAttributes());
+    liveOffset.put(TIMESTAMP_OFFSET_KEY, NOW.toEpochMilli());
+    Map<String, Object> backfillOffset = new HashMap<>(backfillRequest.getOffsetAttributes());
+    backfillOffset.put(TIMESTAMP_OFFSET_KEY, day(1).minusSeconds(60).toEpochMilli());
+    Map<String, Object> partition = Collections.singletonMap("user", user.getVersionedId());
+
+    BackfillRanges restored = new BackfillRanges();
+    new LaneBackfill("test", Lane.LIVE, restored, WINDOW, false)
+        .restore(Collections.singletonMap(partition, liveOffset));
+    LaneBackfill restoredBackfill = new LaneBackfill(
+        "test", Lane.BACKFILL, restored, WINDOW, false);
+    restoredBackfill.restore(Collections.singletonMap(partition, backfillOffset));
+
+    BackfillRanges.Range restoredRange = restored.get(user.getVersionedId());
+    assertNotNull(restoredRange);
+    assertEquals(START.plusNanos(1).minusMillis(1), restoredRange.getStart());
+    assertEquals(LIVE_START, restoredRange.getEnd());
+    assertEquals(day(1).minusSeconds(60), restoredRange.getWatermark());
+    // intervals are stored in milliseconds, so they may cover slightly less
+    Map<Instant, Instant> covered = restoredRange.getCovered();
+    assertEquals(3, covered.size());
+    assertEquals(day(20).minusMillis(1), covered.get(day(10).minusMillis(1)));
+    assertEquals(day(31).minusMillis(1), covered.get(day(30).minusMillis(1)));
+  }
+
+  @Test
+  void restoreIgnoresInvalidCoveredIntervals() {
+    live.update(user, START, NOW);
+    Map<String, Object> offset = new HashMap<>();
+    offset.put(TIMESTAMP_OFFSET_KEY, day(1).toEpochMilli());
+    offset.put("backfill_covered", "abc");
+    backfill.restore(Collections.singletonMap(
+        Collections.singletonMap("user", user.getVersionedId()), offset));
+
+    assertEquals(day(1), live.getRange(user).getWatermark());
+  }
+
+  @Test
+  void liveLaneRemovesRangesOfRemovedUsers() {
+    live.update(user, START, NOW);
+    User other = user("b");
+    live.update(other, START, NOW);
+
+    backfill.retainAll(Collections.singleton(other.getVersionedId()));
+    assertNotNull(live.getRange(user));
+
+    live.retainAll(Collections.singleton(other.getVersionedId()));
+    assertNull(live.getRange(user));
+    assertNotNull(live.getRange(other));
+  }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import org.junit.jupiter.api.Test;
+
+class RecentSampleTrackerTest {
+  private static final Instant OFFSET = Instant.parse("2020-01-01T00:00:00Z");
+  private static final Duration WINDOW = Duration.ofMinutes(10);
+
+  @Test
+  void samplesUpToOffsetAreEmitted() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    assertFalse(tracker.isNew("a", OFFSET, OFFSET.minusSeconds(60)));
+    assertFalse(tracker.isNew("a", OFFSET, OFFSET));
+    // fractions of a second at the offset are part of the same sample
+    assertFalse(tracker.isNew("a", OFFSET, OFFSET.plusMillis(500)));
+    assertTrue(tracker.isNew("a", OFFSET, OFFSET.plusSeconds(1)));
+  }
+
+  @Test
+  void sampleIsNewUntilMarked() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    Instant sample = OFFSET.plusSeconds(60);
+    assertTrue(tracker.isNew("a", OFFSET, sample));
+    // a response that failed to convert does not mark its samples
+    assertTrue(tracker.isNew("a", OFFSET, sample));
+
+    tracker.markEmitted("a", sample);
+    assertFalse(tracker.isNew("a", OFFSET, sample));
+    assertTrue(tracker.isNew("a", OFFSET, sample.plusSeconds(1)));
+    assertTrue(tracker.isNew("a", OFFSET, sample.minusSeconds(1)));
+  }
+
+  @Test
+  void lateSampleInRescanIsNew() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    tracker.isNew("a", OFFSET, OFFSET.plusSeconds(1));
+    tracker.markEmitted("a", OFFSET.plusSeconds(60));
+    tracker.markEmitted("a", OFFSET.plusSeconds(180));
+
+    // the next request re-scans from before the new offset at 180 seconds
+    Instant newOffset = OFFSET.plusSeconds(180);
+    assertFalse(tracker.isNew("a", newOffset, OFFSET.plusSeconds(60)));
+    assertTrue(tracker.isNew("a", newOffset, OFFSET.plusSeconds(120)));
+    assertFalse(tracker.isNew("a", newOffset, OFFSET.plusSeconds(180)));
+  }
+
+  @Test
+  void markingUntrackedUserHasNoEffect() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    tracker.markEmitted("a", OFFSET.plusSeconds(60));
+    assertTrue(tracker.isNew("a", OFFSET, OFFSET.plusSeconds(60)));
+  }
+
+  @Test
+  void windowSlidesWithLatestSample() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    tracker.isNew("a", OFFSET, OFFSET.plusSeconds(1));
+    Instant early = OFFSET.plusSeconds(10);
+    tracker.markEmitted("a", early);
+
+    // a sample far in the future is new, even though it exceeds the window
+    Instant late = early.plus(WINDOW).plusSeconds(30);
+    assertTrue(tracker.isNew("a", OFFSET, late));
+    tracker.markEmitted("a", late);
+
+    // samples more than the window before the latest sample count as emitted
+    assertFalse(tracker.isNew("a", OFFSET, early.plusSeconds(5)));
+    assertFalse(tracker.isNew("a", OFFSET, late.minus(WINDOW)));
+    assertTrue(tracker.isNew("a", OFFSET, late.minus(WINDOW).plusSeconds(1)));
+    assertFalse(tracker.isNew("a", OFFSET, late));
+  }
+
+  @Test
+  void usersAreTrackedSeparately() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    Instant sample = OFFSET.plusSeconds(60);
+    tracker.isNew("a", OFFSET, sample);
+    tracker.isNew("b", OFFSET, sample);
+    tracker.markEmitted("a", sample);
+
+    assertFalse(tracker.isNew("a", OFFSET, sample));
+    assertTrue(tracker.isNew("b", OFFSET, sample));
+  }
+
+  @Test
+  void restartStartsFromCommittedOffset() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    tracker.isNew("a", OFFSET, OFFSET.plusSeconds(1));
+    tracker.markEmitted("a", OFFSET.plusSeconds(60));
+    tracker.markEmitted("a", OFFSET.plusSeconds(120));
+
+    // only the sample at 60 seconds was committed before the restart
+    Instant committed = OFFSET.plusSeconds(60);
+    RecentSampleTracker restarted = new RecentSampleTracker(WINDOW);
+    assertFalse(restarted.isNew("a", committed, OFFSET.plusSeconds(30)));
+    assertFalse(restarted.isNew("a", committed, committed));
+    assertTrue(restarted.isNew("a", committed, OFFSET.plusSeconds(120)));
+  }
+
+  @Test
+  void retainAllRemovesUsers() {
+    RecentSampleTracker tracker = new RecentSampleTracker(WINDOW);
+    Instant sample = OFFSET.plusSeconds(60);
+    tracker.isNew("a", OFFSET, sample);
+    tracker.markEmitted("a", sample);
+    tracker.isNew("b", OFFSET, sample);
+    tracker.markEmitted("b", sample);
+
+    tracker.retainAll(Collections.singleton("b"));
+
+    // a removed user starts again from the offset of its next request
+    assertTrue(tracker.isNew("a", OFFSET, sample));
+    assertFalse(tracker.isNew("b", OFFSET, sample));
+  }
+}
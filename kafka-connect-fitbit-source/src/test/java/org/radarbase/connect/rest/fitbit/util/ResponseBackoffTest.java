@@ -0,0 +1,72 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import org.junit.jupiter.api.Test;
+
+class ResponseBackoffTest {
+  private static final Duration TOO_MANY_REQUESTS_COOLDOWN = Duration.ofMinutes(15);
+  private static final Duration FORBIDDEN_COOLDOWN = Duration.ofHours(1);
+
+  private final ResponseBackoff backoff = new ResponseBackoff(
+      TOO_MANY_REQUESTS_COOLDOWN, 3, FORBIDDEN_COOLDOWN);
+
+  @Test
+  void tooManyRequestsUsesRetryAfter() {
+    assertEquals(Duration.ofSeconds(120), backoff.tooManyRequests("a", "120"));
+    assertEquals(TOO_MANY_REQUESTS_COOLDOWN, backoff.tooManyRequests("a", null));
+    assertEquals(TOO_MANY_REQUESTS_COOLDOWN, backoff.tooManyRequests("a", "soon"));
+  }
+
+  @Test
+  void tooManyRequestsSkipsUserUntilCleared() {
+    assertFalse(backoff.hasTooManyRequests("a"));
+    backoff.tooManyRequests("a", null);
+    assertTrue(backoff.hasTooManyRequests("a"));
+    assertFalse(backoff.hasTooManyRequests("b"));
+
+    backoff.clearTooManyRequests();
+    assertFalse(backoff.hasTooManyRequests("a"));
+  }
+
+  @Test
+  void forbiddenBacksOffAfterMaxResponses() {
+    assertNull(backoff.forbidden("a"));
+    assertNull(backoff.forbidden("a"));
+    assertNull(backoff.forbidden("b"));
+    assertEquals(FORBIDDEN_COOLDOWN, backoff.forbidden("a"));
+    // the count starts again after backing off
+    assertNull(backoff.forbidden("a"));
+  }
+
+  @Test
+  void successResetsForbiddenCount() {
+    backoff.forbidden("a");
+    backoff.forbidden("a");
+    backoff.succeeded("a");
+    assertNull(backoff.forbidden("a"));
+    assertNull(backoff.forbidden("a"));
+    assertEquals(FORBIDDEN_COOLDOWN, backoff.forbidden("a"));
+  }
+}
@@ -0,0 +1,152 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.fitbit.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.radarbase.connect.rest.fitbit.user.LocalUser;
+import org.radarbase.connect.rest.fitbit.user.User;
+
+class UserPollIndexTest {
+  private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+  private static User user(String id) {
+    LocalUser user = new LocalUser();
+    user.setId(id);
+    return user;
+  }
+
+  private static List<String> ids(List<User> users) {
+    return users.stream().map(User::getId).collect(Collectors.toList());
+  }
+
+  @Test
+  void ordersByNextPoll() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW.plusSeconds(30));
+    index.update(user("b"), NOW.plusSeconds(10));
+    index.update(user("c"), NOW.plusSeconds(20));
+
+    assertEquals(Arrays.asList("b", "c", "a"), ids(index.dueBefore(NOW.plusSeconds(60))));
+    assertEquals(NOW.plusSeconds(10), index.earliest());
+  }
+
+  @Test
+  void dueBeforeIsExclusive() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW);
+    index.update(user("b"), NOW.plusSeconds(10));
+
+    assertEquals(Collections.emptyList(), ids(index.dueBefore(NOW)));
+    assertEquals(Collections.singletonList("a"), ids(index.dueBefore(NOW.plusSeconds(10))));
+  }
+
+  @Test
+  void reordersAfterUpdate() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW.plusSeconds(10));
+    index.update(user("b"), NOW.plusSeconds(20));
+
+    index.update(user("a"), NOW.plusSeconds(30));
+    assertEquals(Arrays.asList("b", "a"), ids(index.dueBefore(NOW.plusSeconds(60))));
+    assertEquals(NOW.plusSeconds(20), index.earliest());
+
+    index.update(user("a"), NOW.plusSeconds(5));
+    assertEquals(Arrays.asList("a", "b"), ids(index.dueBefore(NOW.plusSeconds(60))));
+    assertEquals(NOW.plusSeconds(5), index.earliest());
+  }
+
+  @Test
+  void tiesAreOrderedById() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("c"), NOW);
+    index.update(user("a"), NOW);
+    index.update(user("b"), NOW);
+
+    assertEquals(Arrays.asList("a", "b", "c"), ids(index.dueBefore(NOW.plusSeconds(1))));
+
+    // moving a user to the same time as another keeps both
+    index.update(user("c"), NOW.plusSeconds(10));
+    index.update(user("a"), NOW.plusSeconds(10));
+    assertEquals(Arrays.asList("b", "a", "c"), ids(index.dueBefore(NOW.plusSeconds(11))));
+  }
+
+  @Test
+  void updateReplacesChangedUser() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW);
+
+    LocalUser changed = new LocalUser();
+    changed.setId("a");
+    changed.setVersion("2");
+    index.update(changed, NOW);
+
+    List<User> due = index.dueBefore(NOW.plusSeconds(1));
+    assertEquals(1, due.size());
+    assertEquals("2", due.get(0).getVersion());
+  }
+
+  @Test
+  void retainAllRemovesUsers() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW.plusSeconds(10));
+    index.update(user("b"), NOW.plusSeconds(20));
+    index.update(user("c"), NOW.plusSeconds(30));
+
+    index.retainAll(new HashSet<>(Arrays.asList("b", "d")));
+    assertEquals(Collections.singletonList("b"), ids(index.dueBefore(NOW.plusSeconds(60))));
+    assertEquals(NOW.plusSeconds(20), index.earliest());
+
+    index.retainAll(Collections.emptySet());
+    assertEquals(Collections.emptyList(), ids(index.dueBefore(NOW.plusSeconds(60))));
+    assertNull(index.earliest());
+  }
+
+  @Test
+  void getsIndexedUser() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW);
+
+    assertEquals("a", index.get("a").getId());
+    assertNull(index.get("b"));
+    index.retainAll(Collections.emptySet());
+    assertNull(index.get("a"));
+  }
+
+  @Test
+  void updateIfPresentSkipsRemovedUsers() {
+    UserPollIndex index = new UserPollIndex();
+    index.update(user("a"), NOW.plusSeconds(10));
+    index.retainAll(Collections.emptySet());
+
+    index.updateIfPresent(user("a"), NOW);
+    assertNull(index.earliest());
+
+    index.update(user("b"), NOW.plusSeconds(10));
+    index.updateIfPresent(user("b"), NOW);
+    assertEquals(NOW, index.earliest());
+  }
+}
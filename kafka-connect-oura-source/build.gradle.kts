@@ -8,6 +8,7 @@ dependencies {
     implementation("io.netty:netty-handler-proxy:${Versions.nettyVersion}")
     implementation("io.netty:netty-handler:${Versions.nettyVersion}")
 
+    api(project(":kafka-connect-rest-source"))
     api(project(":oura-library"))
     api("io.confluent:kafka-connect-avro-converter:${Versions.confluent}")
     api("org.radarbase:radar-schemas-commons:${Versions.radarSchemas}")
@@ -54,6 +54,29 @@ public class OuraRestSourceConnectorConfig extends AbstractConfig {
   private static final String SOURCE_POLL_INTERVAL_DISPLAY = "Polling interval";
   private static final Long SOURCE_POLL_INTERVAL_DEFAULT = 60000L;
 
+  public static final String SOURCE_BATCH_MAX_RECORDS_CONFIG = "rest.source.batch.max.records";
+  private static final String SOURCE_BATCH_MAX_RECORDS_DOC =
+      "Number of records after which a poll returns its batch. Once a request returns records, "
+          + "further ready requests are made until the batch has at least this many records or "
+          + "the batch latency has passed. With the default of 1, a poll returns after the first "
+          + "request that returns records.";
+  private static final String SOURCE_BATCH_MAX_RECORDS_DISPLAY = "Maximum records per batch";
+  private static final Integer SOURCE_BATCH_MAX_RECORDS_DEFAULT = 1;
+
+  public static final String SOURCE_BATCH_MAX_LATENCY_CONFIG = "rest.source.batch.max.latency.ms";
+  private static final String SOURCE_BATCH_MAX_LATENCY_DOC =
+      "Maximum time to keep making requests for a batch after the first records were received.";
+  private static final String SOURCE_BATCH_MAX_LATENCY_DISPLAY = "Maximum batch latency";
+  private static final Long SOURCE_BATCH_MAX_LATENCY_DEFAULT = 5000L;
+
+  public static final String SOURCE_CONVERSION_THREADS_CONFIG = "rest.source.conversion.threads";
+  private static final String SOURCE_CONVERSION_THREADS_DOC =
+      "Number of threads to run the converters of a single response on in parallel. Each "
+          + "response is parsed once and shared by all converters of its route. With 0, the "
+          + "converters run on the polling thread.";
+  private static final String SOURCE_CONVERSION_THREADS_DISPLAY = "Conversion threads";
+  private static final Integer SOURCE_CONVERSION_THREADS_DEFAULT = 0;
+
   static final String SOURCE_URL_CONFIG = "rest.source.base.url";
   private static final String SOURCE_URL_DOC = "Base URL for REST source connector.";
   private static final String SOURCE_URL_DISPLAY = "Base URL for REST source connector.";
@@ -102,6 +125,48 @@ public class OuraRestSourceConnectorConfig extends AbstractConfig {
   private static final String OURA_USER_REPOSITORY_TOKEN_URL_DOC = "OAuth 2.0 token url for retrieving client credentials.";
   private static final String OURA_USER_REPOSITORY_TOKEN_URL_DISPLAY = "OAuth 2.0 token URL.";
 
+  public static final String OURA_LIVE_LANE_DAYS_CONFIG = "oura.live.lane.days";
+  private static final String OURA_LIVE_LANE_DAYS_DOC =
+      "Number of recent days that are polled in the live lane. Routes of users whose offset is "
+          + "further behind are polled in the backfill lane, after the live lane of all users.";
+  private static final String OURA_LIVE_LANE_DAYS_DISPLAY = "Live lane days";
+  private static final int OURA_LIVE_LANE_DAYS_DEFAULT = 3;
+
+  public static final String OURA_BACKFILL_LANE_MAX_REQUESTS_CONFIG = "oura.backfill.lane.max.requests";
+  private static final String OURA_BACKFILL_LANE_MAX_REQUESTS_DOC =
+      "Maximum number of requests of the backfill lane per poll.";
+  private static final String OURA_BACKFILL_LANE_MAX_REQUESTS_DISPLAY = "Backfill lane requests per poll";
+  private static final int OURA_BACKFILL_LANE_MAX_REQUESTS_DEFAULT = 20;
+
+  public static final String OURA_ADAPTIVE_POLLING_ENABLED_CONFIG = "oura.adaptive.polling.enabled";
+  private static final String OURA_ADAPTIVE_POLLING_ENABLED_DOC =
+      "Learn at which hours of the day the ring of each user syncs, from the times at which "
+          + "responses with recent data are received. Routes without new data are polled again in the next hour "
+          + "in which the user usually syncs, instead of after a fixed backoff.";
+  private static final String OURA_ADAPTIVE_POLLING_ENABLED_DISPLAY = "Adaptive polling enabled";
+  private static final boolean OURA_ADAPTIVE_POLLING_ENABLED_DEFAULT = false;
+
+  public static final String OURA_ADAPTIVE_POLLING_MAX_DELAY_CONFIG = "oura.adaptive.polling.max.delay.s";
+  private static final String OURA_ADAPTIVE_POLLING_MAX_DELAY_DOC =
+      "Maximum time in seconds that adaptive polling postpones the next request of a route.";
+  private static final String OURA_ADAPTIVE_POLLING_MAX_DELAY_DISPLAY = "Adaptive polling maximum delay (s)";
+  private static final int OURA_ADAPTIVE_POLLING_MAX_DELAY_DEFAULT = 10800;
+
+  public static final String OURA_IDLE_BACKOFF_ENABLED_CONFIG = "oura.idle.backoff.enabled";
+  private static final String OURA_IDLE_BACKOFF_ENABLED_DOC =
+      "Double the backoff of a route for a user with each consecutive response without data "
+          + "up to the present, after the first two. Responses for older data that is caught up "
+          + "on do not count. As soon as any route returns recent data for that user, all "
+          + "its routes are polled at the normal backoff again.";
+  private static final String OURA_IDLE_BACKOFF_ENABLED_DISPLAY = "Idle backoff enabled";
+  private static final boolean OURA_IDLE_BACKOFF_ENABLED_DEFAULT = false;
+
+  public static final String OURA_IDLE_BACKOFF_MAX_INTERVAL_CONFIG = "oura.idle.backoff.max.interval.s";
+  private static final String OURA_IDLE_BACKOFF_MAX_INTERVAL_DOC =
+      "Maximum backoff in seconds per user per route that idle backoff grows to.";
+  private static final String OURA_IDLE_BACKOFF_MAX_INTERVAL_DISPLAY = "Idle backoff maximum interval (s)";
+  private static final int OURA_IDLE_BACKOFF_MAX_INTERVAL_DEFAULT = 21600;
+
   private OuraUserRepository userRepository;
   private final Headers clientCredentials;
 
@@ -140,6 +205,39 @@ public class OuraRestSourceConnectorConfig extends AbstractConfig {
             Width.SHORT,
             SOURCE_POLL_INTERVAL_DISPLAY)
 
+        .define(SOURCE_BATCH_MAX_RECORDS_CONFIG,
+            Type.INT,
+            SOURCE_BATCH_MAX_RECORDS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SOURCE_BATCH_MAX_RECORDS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_BATCH_MAX_RECORDS_DISPLAY)
+
+        .define(SOURCE_BATCH_MAX_LATENCY_CONFIG,
+            Type.LONG,
+            SOURCE_BATCH_MAX_LATENCY_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            SOURCE_BATCH_MAX_LATENCY_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_BATCH_MAX_LATENCY_DISPLAY)
+
+        .define(SOURCE_CONVERSION_THREADS_CONFIG,
+            Type.INT,
+            SOURCE_CONVERSION_THREADS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            SOURCE_CONVERSION_THREADS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_CONVERSION_THREADS_DISPLAY)
+
         .define(SOURCE_URL_CONFIG,
             Type.STRING,
             NO_DEFAULT_VALUE,
@@ -240,6 +338,70 @@ public class OuraRestSourceConnectorConfig extends AbstractConfig {
             ++orderInGroup,
             Width.SHORT,
             OURA_USER_REPOSITORY_TOKEN_URL_DISPLAY)
+
+        .define(OURA_LIVE_LANE_DAYS_CONFIG,
+            Type.INT,
+            OURA_LIVE_LANE_DAYS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            OURA_LIVE_LANE_DAYS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            OURA_LIVE_LANE_DAYS_DISPLAY)
+
+        .define(OURA_BACKFILL_LANE_MAX_REQUESTS_CONFIG,
+            Type.INT,
+            OURA_BACKFILL_LANE_MAX_REQUESTS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            OURA_BACKFILL_LANE_MAX_REQUESTS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            OURA_BACKFILL_LANE_MAX_REQUESTS_DISPLAY)
+
+        .define(OURA_ADAPTIVE_POLLING_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            OURA_ADAPTIVE_POLLING_ENABLED_DEFAULT,
+            Importance.LOW,
+            OURA_ADAPTIVE_POLLING_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            OURA_ADAPTIVE_POLLING_ENABLED_DISPLAY)
+
+        .define(OURA_ADAPTIVE_POLLING_MAX_DELAY_CONFIG,
+            Type.INT,
+            OURA_ADAPTIVE_POLLING_MAX_DELAY_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            OURA_ADAPTIVE_POLLING_MAX_DELAY_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            OURA_ADAPTIVE_POLLING_MAX_DELAY_DISPLAY)
+
+        .define(OURA_IDLE_BACKOFF_ENABLED_CONFIG,
+            Type.BOOLEAN,
+            OURA_IDLE_BACKOFF_ENABLED_DEFAULT,
+            Importance.LOW,
+            OURA_IDLE_BACKOFF_ENABLED_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            OURA_IDLE_BACKOFF_ENABLED_DISPLAY)
+
+        .define(OURA_IDLE_BACKOFF_MAX_INTERVAL_CONFIG,
+            Type.INT,
+            OURA_IDLE_BACKOFF_MAX_INTERVAL_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            OURA_IDLE_BACKOFF_MAX_INTERVAL_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            OURA_IDLE_BACKOFF_MAX_INTERVAL_DISPLAY)
         ;
   }
 
@@ -303,6 +465,42 @@ public class OuraRestSourceConnectorConfig extends AbstractConfig {
     return Duration.ofSeconds(getInt(OURA_USER_POLL_INTERVAL));
   }
 
+  public int getBatchMaxRecords() {
+    return getInt(SOURCE_BATCH_MAX_RECORDS_CONFIG);
+  }
+
+  public Duration getBatchMaxLatency() {
+    return Duration.ofMillis(getLong(SOURCE_BATCH_MAX_LATENCY_CONFIG));
+  }
+
+  public int getConversionThreads() {
+    return getInt(SOURCE_CONVERSION_THREADS_CONFIG);
+  }
+
+  public Duration getOuraLiveLaneWindow() {
+    return Duration.ofDays(getInt(OURA_LIVE_LANE_DAYS_CONFIG));
+  }
+
+  public int getOuraBackfillLaneMaxRequests() {
+    return getInt(OURA_BACKFILL_LANE_MAX_REQUESTS_CONFIG);
+  }
+
+  /** Maximum delay of adaptive polling, or {@code null} if adaptive polling is disabled. */
+  public Duration getOuraAdaptivePollingMaxDelay() {
+    if (!getBoolean(OURA_ADAPTIVE_POLLING_ENABLED_CONFIG)) {
+      return null;
+    }
+    return Duration.ofSeconds(getInt(OURA_ADAPTIVE_POLLING_MAX_DELAY_CONFIG));
+  }
+
+  /** Maximum interval of idle backoff, or {@code null} if idle backoff is disabled. */
+  public Duration getOuraIdleBackoffMaxInterval() {
+    if (!getBoolean(OURA_IDLE_BACKOFF_ENABLED_CONFIG)) {
+      return null;
+    }
+    return Duration.ofSeconds(getInt(OURA_IDLE_BACKOFF_MAX_INTERVAL_CONFIG));
+  }
+
   public Duration getTooManyRequestsCooldownInterval() {
     return Duration.ofHours(1);
   }
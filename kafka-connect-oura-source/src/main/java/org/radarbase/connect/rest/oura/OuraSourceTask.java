@@ -21,12 +21,16 @@ import static java.time.temporal.ChronoUnit.MILLIS;
 
 import java.io.IOException;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
 import org.apache.kafka.connect.data.SchemaAndValue;
@@ -36,7 +40,9 @@ import org.apache.kafka.connect.source.SourceTask;
 import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.radarbase.connect.rest.oura.offset.KafkaOffsetManager;
 import org.radarbase.connect.rest.oura.user.OuraUserRepository;
+import org.radarbase.connect.rest.oura.util.UserRecordCache;
 import org.radarbase.connect.rest.oura.util.VersionUtil;
+import org.radarbase.connect.rest.util.AvroStructConverter;
 import org.radarbase.oura.converter.TopicData;
 import org.radarbase.oura.request.OuraRequestGenerator;
 import org.radarbase.oura.request.OuraResult;
@@ -61,9 +67,15 @@ public class OuraSourceTask extends SourceTask {
   private List<Route> routes;
   private OuraRequestGenerator ouraRequestGenerator;
   private AvroData avroData = new AvroData(20);
+  private AvroStructConverter structConverter = new AvroStructConverter(avroData);
+  private UserRecordCache userRecordCache = new UserRecordCache(structConverter);
   private KafkaOffsetManager offsetManager;
   String TIMESTAMP_OFFSET_KEY = "timestamp";
   long TIMEOUT = 60000L;
+  private int batchMaxRecords;
+  private long batchMaxLatencyNanos;
+  private ExecutorService conversionExecutor;
+  private int backfillMaxRequests;
 
   public void initialize(OuraRestSourceConnectorConfig config, OffsetStorageReader offsetStorageReader) {
     OuraRestSourceConnectorConfig ouraConfig = (OuraRestSourceConnectorConfig) config;
@@ -74,6 +86,25 @@ public class OuraSourceTask extends SourceTask {
     this.ouraRequestGenerator = new OuraRequestGenerator(this.userRepository, this.offsetManager);
     this.routes = this.ouraRequestGenerator.getRoutes();
     this.offsetManager.initialize(getPartitions());
+    this.batchMaxRecords = ouraConfig.getBatchMaxRecords();
+    this.batchMaxLatencyNanos = ouraConfig.getBatchMaxLatency().toNanos();
+    this.ouraRequestGenerator.setLiveLaneWindow(ouraConfig.getOuraLiveLaneWindow());
+    this.ouraRequestGenerator.setAdaptivePollingMaxDelay(
+        ouraConfig.getOuraAdaptivePollingMaxDelay());
+    this.ouraRequestGenerator.setIdleBackOffMaxInterval(
+        ouraConfig.getOuraIdleBackoffMaxInterval());
+    this.backfillMaxRequests = ouraConfig.getOuraBackfillLaneMaxRequests();
+
+    int conversionThreads = ouraConfig.getConversionThreads();
+    if (conversionThreads > 0) {
+      AtomicInteger threadCount = new AtomicInteger();
+      this.conversionExecutor = Executors.newFixedThreadPool(conversionThreads, r -> {
+        Thread thread = new Thread(r, "oura-conversion-" + threadCount.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+      });
+      this.ouraRequestGenerator.setConverterExecutor(conversionExecutor);
+    }
   }
 
     public List<Map<String, Object>> getPartitions() {
@@ -88,27 +119,45 @@ public class OuraSourceTask extends SourceTask {
   }
 
   public Map<String, Object> getPartition(String route, User user) {
-    Map<String, Object> partition = new HashMap<>(4);
-    partition.put("user", user.getVersionedId());
-    partition.put("route", route);
-    return partition;
+    return userRecordCache.getPartition(user, route);
   }
 
+  /**
+   * Requests of the live lane of all routes, followed by at most {@code backfillMaxRequests}
+   * requests of the backfill lane.
+   */
   public Stream<RestRequest> requests() {
-    Stream<Route> routes = this.routes.stream();
-    return routes.flatMap((Route r) -> StreamsKt.asStream(ouraRequestGenerator.requests(r, 100)));
+    Stream<RestRequest> live = this.routes.stream()
+        .flatMap((Route r) -> StreamsKt.asStream(ouraRequestGenerator.requests(r, 100, false)));
+    Stream<RestRequest> backfill = this.routes.stream()
+        .flatMap((Route r) -> StreamsKt.asStream(ouraRequestGenerator.requests(r, 100, true)))
+        .limit(backfillMaxRequests);
+    return Stream.concat(live, backfill);
   }
 
+  /**
+   * Make given request and convert its records. The source offset of the last record is the offset
+   * of the route after the request, including the ranges that were covered out of order. Other
+   * records store the offset from before the request, so that the request is repeated if only
+   * part of its records were committed.
+   */
   public Stream<SourceRecord> handleRequest(RestRequest req) throws IOException {
+    Map<String, Object> previousOffset =
+        ouraRequestGenerator.getSourceOffset(req.getRoute(), req.getUser());
     try (Response response = baseClient.newCall(req.getRequest()).execute()) {
       OuraResult result = this.ouraRequestGenerator.handleResponse(req, response);
       if (result instanceof OuraResult.Success) {
         OuraResult.Success<List<TopicData>> success = (Success<List<TopicData>>) result;
-        return success.getValue().stream().map(r -> {
-          SchemaAndValue avro = avroData.toConnectData(r.getValue().getSchema(), r.getValue());
-          SchemaAndValue key = avroData.toConnectData(r.getKey().getSchema(), r.getKey());
-          Map<String, Object> partition = getPartition(req.getRoute().toString(), req.getUser());
-          Map<String, ?> offset = Collections.singletonMap(TIMESTAMP_OFFSET_KEY, r.getOffset());
+        // all records of a request share the user key and partition
+        SchemaAndValue key = userRecordCache.getKey(req.getUser());
+        Map<String, Object> partition = getPartition(req.getRoute().toString(), req.getUser());
+        Map<String, Object> nextOffset =
+            ouraRequestGenerator.getSourceOffset(req.getRoute(), req.getUser());
+        List<TopicData> values = success.getValue();
+        return IntStream.range(0, values.size()).mapToObj(i -> {
+          TopicData r = values.get(i);
+          SchemaAndValue avro = structConverter.toConnectData(r.getValue());
+          Map<String, ?> offset = i == values.size() - 1 ? nextOffset : previousOffset;
 
           return new SourceRecord(partition, offset, r.getTopic(),
                 key.schema(), key.value(), avro.schema(), avro.value());
@@ -119,6 +168,7 @@ public class OuraSourceTask extends SourceTask {
         return Stream.empty();
       }
     } catch (IOException ex) {
+      this.ouraRequestGenerator.requestFailed(req, ex);
       throw ex;
     }
   }
@@ -142,25 +192,34 @@ public class OuraSourceTask extends SourceTask {
   @Override
   public List<SourceRecord> poll() throws InterruptedException {
     long requestsGenerated = 0;
-    List<SourceRecord> sourceRecords = Collections.emptyList();
+    List<SourceRecord> sourceRecords = new ArrayList<>();
+    long batchStartTime = 0L;
 
     do {
-      Thread.sleep(TIMEOUT);
+      long timeout = timeUntilNextRequest();
+      if (timeout > 0) {
+        logger.info("Waiting {} milliseconds for next available request", timeout);
+        Thread.sleep(timeout);
+      }
 
       Map<String, String> configs = context.configs();
       Iterator<? extends RestRequest> requestIterator = this.requests()
           .iterator();
 
 
-      while (sourceRecords.isEmpty() && requestIterator.hasNext()) {
+      while (!isBatchComplete(sourceRecords, batchStartTime) && requestIterator.hasNext()) {
         RestRequest request = requestIterator.next();
 
         logger.info("Requesting for user {}, url: {}", request.getUser().getUserId(), request.getRequest().url());
         requestsGenerated++;
 
         try {
-          sourceRecords = this.handleRequest(request)
+          List<SourceRecord> records = this.handleRequest(request)
               .collect(Collectors.toList());
+          if (sourceRecords.isEmpty() && !records.isEmpty()) {
+            batchStartTime = System.nanoTime();
+          }
+          sourceRecords.addAll(records);
         } catch (IOException ex) {
           logger.warn("Failed to make request: {}", ex.toString());
         }
@@ -173,9 +232,38 @@ public class OuraSourceTask extends SourceTask {
     return sourceRecords;
   }
 
+  /**
+   * Whether the records collected in a poll should be returned. This is the case when there are
+   * at least the maximum number of records, or when the maximum latency has passed since the first
+   * records were collected.
+   */
+  private boolean isBatchComplete(List<SourceRecord> records, long batchStartTime) {
+    return !records.isEmpty()
+        && (records.size() >= batchMaxRecords
+        || System.nanoTime() - batchStartTime >= batchMaxLatencyNanos);
+  }
+
+  /**
+   * Time in milliseconds until the request generator has requests available, at most
+   * {@code TIMEOUT} so that new users are picked up in time.
+   */
+  private long timeUntilNextRequest() {
+    Instant now = Instant.now();
+    Instant nextRequest = ouraRequestGenerator.getTimeOfNextRequest();
+    if (!nextRequest.isAfter(now)) {
+      return 0L;
+    }
+    Instant maxWait = now.plusMillis(TIMEOUT);
+    return MILLIS.between(now, nextRequest.isBefore(maxWait) ? nextRequest : maxWait);
+  }
+
   @Override
   public void stop() {
     logger.debug("Stopping source task");
+    if (conversionExecutor != null) {
+      conversionExecutor.shutdownNow();
+      conversionExecutor = null;
+    }
   }
 
   @Override
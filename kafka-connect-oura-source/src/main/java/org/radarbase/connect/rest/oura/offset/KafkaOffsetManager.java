@@ -16,10 +16,12 @@ import org.radarbase.oura.offset.Offset;
 import org.radarbase.oura.route.Route;
 import org.radarbase.oura.user.User;
 import org.radarbase.oura.request.OuraOffsetManager;
+import org.radarbase.oura.request.OuraRequestGenerator;
 
 public class KafkaOffsetManager implements OuraOffsetManager {
   private OffsetStorageReader offsetStorageReader;
   private Map<String, Instant> offsets;
+  private Map<String, String> coveredRanges;
   private static final Logger logger = LoggerFactory.getLogger(KafkaOffsetManager.class);
 
   String TIMESTAMP_OFFSET_KEY = "timestamp";
@@ -32,11 +34,19 @@ public class KafkaOffsetManager implements OuraOffsetManager {
 
   public void initialize(List<Map<String, Object>> partitions) {
     if (this.offsetStorageReader != null) {
-      this.offsets = this.offsetStorageReader.offsets(partitions).entrySet().stream()
+      Map<Map<String, Object>, Map<String, Object>> storedOffsets =
+          this.offsetStorageReader.offsets(partitions);
+      this.offsets = storedOffsets.entrySet().stream()
       .filter(e -> e.getValue() != null && e.getValue().containsKey(TIMESTAMP_OFFSET_KEY))
       .collect(Collectors.toMap(
           e -> (String) e.getKey().get("user") + "-" + e.getKey().get("route"),
           e -> Instant.ofEpochSecond(((Number) e.getValue().get(TIMESTAMP_OFFSET_KEY)).longValue())));
+      this.coveredRanges = storedOffsets.entrySet().stream()
+      .filter(e -> e.getValue() != null
+          && e.getValue().get(OuraRequestGenerator.COVERED_OFFSET_KEY) instanceof String)
+      .collect(Collectors.toMap(
+          e -> (String) e.getKey().get("user") + "-" + e.getKey().get("route"),
+          e -> (String) e.getValue().get(OuraRequestGenerator.COVERED_OFFSET_KEY)));
     } else {
       logger.warn("Offset storage reader is null, will resume from an empty state.");
     }
@@ -45,7 +55,8 @@ public class KafkaOffsetManager implements OuraOffsetManager {
   @Override
   public Offset getOffset(Route route, User user) {
     Instant offset = offsets.getOrDefault(getOffsetKey(route, user), user.getStartDate().minus(ONE_NANO));
-    return new Offset(user, route, offset);
+    String covered = coveredRanges != null ? coveredRanges.get(getOffsetKey(route, user)) : null;
+    return new Offset(user, route, offset, covered);
   }
 
   @Override
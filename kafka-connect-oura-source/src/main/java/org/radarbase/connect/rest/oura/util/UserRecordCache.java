@@ -0,0 +1,78 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.oura.util;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.radarbase.connect.rest.util.AvroStructConverter;
+import org.radarbase.oura.user.User;
+
+/**
+ * Cache of the Connect record key and the source partitions of each user. Entries are stored per
+ * user ID and replaced when the versioned ID of the user changes, so the cache does not grow with
+ * user updates and changed user properties are picked up.
+ */
+public class UserRecordCache {
+  private final AvroStructConverter structConverter;
+  private final ConcurrentMap<String, Entry> entries;
+
+  public UserRecordCache(AvroStructConverter structConverter) {
+    this.structConverter = structConverter;
+    this.entries = new ConcurrentHashMap<>();
+  }
+
+  /** Connect key of the records of given user. */
+  public SchemaAndValue getKey(User user) {
+    Entry entry = entry(user);
+    SchemaAndValue key = entry.key;
+    if (key == null) {
+      key = structConverter.toConnectData(user.getObservationKey());
+      entry.key = key;
+    }
+    return key;
+  }
+
+  /** Immutable source partition of given user and route. */
+  public Map<String, Object> getPartition(User user, String route) {
+    return entry(user).partitions.computeIfAbsent(route,
+        r -> Map.<String, Object>of("user", user.getVersionedId(), "route", r));
+  }
+
+  private Entry entry(User user) {
+    String versionedId = user.getVersionedId();
+    Entry entry = entries.get(user.getId());
+    if (entry == null || !entry.versionedId.equals(versionedId)) {
+      entry = entries.compute(user.getId(), (id, e) ->
+          e != null && e.versionedId.equals(versionedId) ? e : new Entry(versionedId));
+    }
+    return entry;
+  }
+
+  private static class Entry {
+    private final String versionedId;
+    private final ConcurrentMap<String, Map<String, Object>> partitions;
+    private volatile SchemaAndValue key;
+
+    private Entry(String versionedId) {
+      this.versionedId = versionedId;
+      this.partitions = new ConcurrentHashMap<>();
+    }
+  }
+}
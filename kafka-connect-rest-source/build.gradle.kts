@@ -6,11 +6,15 @@ dependencies {
     // included in runtime
     compileOnly("org.apache.kafka:connect-api:${Versions.kafka}")
     compileOnly("org.slf4j:slf4j-api:${Versions.slf4j}")
+    // included by connectors that produce Avro data
+    compileOnly("io.confluent:kafka-connect-avro-converter:${Versions.confluent}")
 
     testImplementation("org.mockito:mockito-core:${Versions.mockito}")
     testImplementation("com.github.tomakehurst:wiremock:${Versions.wiremock}")
 
     testImplementation("org.apache.kafka:connect-api:${Versions.kafka}")
+    testImplementation("io.confluent:kafka-connect-avro-converter:${Versions.confluent}")
+    testImplementation("org.radarbase:radar-schemas-commons:${Versions.radarSchemas}")
 
     // Application monitoring
     // These dependencies are not used by the REST connector, but copied into the Docker image (Dockerfile)
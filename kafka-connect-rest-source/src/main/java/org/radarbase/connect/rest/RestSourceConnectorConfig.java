@@ -36,6 +36,8 @@ import org.apache.kafka.connect.errors.ConnectException;
 import org.radarbase.connect.rest.config.ValidClass;
 import org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter;
 import org.radarbase.connect.rest.converter.StringPayloadConverter;
+import org.radarbase.connect.rest.request.RateLimitKey;
+import org.radarbase.connect.rest.request.RateLimiter;
 import org.radarbase.connect.rest.request.RequestGenerator;
 import org.radarbase.connect.rest.selector.SimpleTopicSelector;
 import org.radarbase.connect.rest.selector.TopicSelector;
@@ -91,6 +93,72 @@ public class RestSourceConnectorConfig extends AbstractConfig {
   private static final String USER_CACHE_REFRESH_INTERVAL_DISPLAY = "Refresh interval";
   private static final Long USER_CACHE_REFRESH_INTERVAL_DEFAULT = 3600000L; // 1 hour
 
+  public static final String SOURCE_MAX_CONCURRENT_REQUESTS_CONFIG =
+      "rest.source.max.concurrent.requests";
+  private static final String SOURCE_MAX_CONCURRENT_REQUESTS_DOC =
+      "Maximum number of HTTP requests that a task keeps in flight at the same time. Responses "
+          + "for the same source partition are always converted in order, and requests for it are "
+          + "made in order unless the route allows otherwise. With the default of 1, requests are "
+          + "made sequentially.";
+  private static final String SOURCE_MAX_CONCURRENT_REQUESTS_DISPLAY = "Maximum concurrent requests";
+  private static final Integer SOURCE_MAX_CONCURRENT_REQUESTS_DEFAULT = 1;
+
+  public static final String SOURCE_CONVERSION_THREADS_CONFIG = "rest.source.conversion.threads";
+  private static final String SOURCE_CONVERSION_THREADS_DOC =
+      "Number of threads that convert response bodies to records, while other requests are "
+          + "being made. With the default of 0, responses are converted on the thread that made "
+          + "the request.";
+  private static final String SOURCE_CONVERSION_THREADS_DISPLAY = "Conversion threads";
+  private static final Integer SOURCE_CONVERSION_THREADS_DEFAULT = 0;
+
+  public static final String SOURCE_CONVERSION_QUEUE_SIZE_CONFIG =
+      "rest.source.conversion.queue.size";
+  private static final String SOURCE_CONVERSION_QUEUE_SIZE_DOC =
+      "Maximum number of fetched responses waiting for conversion. When the queue is full, the "
+          + "request thread converts the response itself, so it stops fetching until it is done.";
+  private static final String SOURCE_CONVERSION_QUEUE_SIZE_DISPLAY = "Conversion queue size";
+  private static final Integer SOURCE_CONVERSION_QUEUE_SIZE_DEFAULT = 8;
+
+  public static final String SOURCE_RATE_LIMITER_CONFIG = "rest.source.rate.limiter.class";
+  private static final String SOURCE_RATE_LIMITER_DOC =
+      "Class to limit the rate of requests with. Requests wait locally until a permit is "
+          + "available. If not set, the request rate is not limited.";
+  private static final String SOURCE_RATE_LIMITER_DISPLAY = "Rate limiter class";
+
+  public static final String SOURCE_RATE_LIMIT_KEY_CONFIG = "rest.source.rate.limit.key";
+  private static final String SOURCE_RATE_LIMIT_KEY_DOC =
+      "Which requests share a rate limit: requests to the same host, requests of the same route, "
+          + "requests for the same user, or requests with the same source partition.";
+  private static final String SOURCE_RATE_LIMIT_KEY_DISPLAY = "Rate limit key";
+  private static final String SOURCE_RATE_LIMIT_KEY_DEFAULT = "host";
+
+  public static final String SOURCE_RATE_LIMIT_PERMITS_CONFIG = "rest.source.rate.limit.permits";
+  private static final String SOURCE_RATE_LIMIT_PERMITS_DOC =
+      "Number of requests allowed per rate limit key within the rate limit window.";
+  private static final String SOURCE_RATE_LIMIT_PERMITS_DISPLAY = "Rate limit permits";
+  private static final Integer SOURCE_RATE_LIMIT_PERMITS_DEFAULT = 150;
+
+  public static final String SOURCE_RATE_LIMIT_WINDOW_CONFIG = "rest.source.rate.limit.window.ms";
+  private static final String SOURCE_RATE_LIMIT_WINDOW_DOC =
+      "Window in which the rate limit permits may be used.";
+  private static final String SOURCE_RATE_LIMIT_WINDOW_DISPLAY = "Rate limit window";
+  private static final Long SOURCE_RATE_LIMIT_WINDOW_DEFAULT = 3600000L; // 1 hour
+
+  public static final String SOURCE_BATCH_MAX_RECORDS_CONFIG = "rest.source.batch.max.records";
+  private static final String SOURCE_BATCH_MAX_RECORDS_DOC =
+      "Number of records after which a poll returns its batch. Once a request returns records, "
+          + "further ready requests are made until the batch has at least this many records or "
+          + "the batch latency has passed. With the default of 1, a poll returns after the first "
+          + "request that returns records.";
+  private static final String SOURCE_BATCH_MAX_RECORDS_DISPLAY = "Maximum records per batch";
+  private static final Integer SOURCE_BATCH_MAX_RECORDS_DEFAULT = 1;
+
+  public static final String SOURCE_BATCH_MAX_LATENCY_CONFIG = "rest.source.batch.max.latency.ms";
+  private static final String SOURCE_BATCH_MAX_LATENCY_DOC =
+      "Maximum time to keep making requests for a batch after the first records were received.";
+  private static final String SOURCE_BATCH_MAX_LATENCY_DISPLAY = "Maximum batch latency";
+  private static final Long SOURCE_BATCH_MAX_LATENCY_DEFAULT = 5000L; // 5 seconds
+
   private final TopicSelector topicSelector;
   private final PayloadToSourceRecordConverter payloadToSourceRecordConverter;
   private final RequestGenerator requestGenerator;
@@ -182,6 +250,105 @@ public class RestSourceConnectorConfig extends AbstractConfig {
             Width.SHORT,
             REQUEST_GENERATOR_DISPLAY)
 
+        .define(SOURCE_MAX_CONCURRENT_REQUESTS_CONFIG,
+            Type.INT,
+            SOURCE_MAX_CONCURRENT_REQUESTS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SOURCE_MAX_CONCURRENT_REQUESTS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_MAX_CONCURRENT_REQUESTS_DISPLAY)
+
+        .define(SOURCE_CONVERSION_THREADS_CONFIG,
+            Type.INT,
+            SOURCE_CONVERSION_THREADS_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            SOURCE_CONVERSION_THREADS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_CONVERSION_THREADS_DISPLAY)
+
+        .define(SOURCE_CONVERSION_QUEUE_SIZE_CONFIG,
+            Type.INT,
+            SOURCE_CONVERSION_QUEUE_SIZE_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SOURCE_CONVERSION_QUEUE_SIZE_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_CONVERSION_QUEUE_SIZE_DISPLAY)
+
+        .define(SOURCE_RATE_LIMITER_CONFIG,
+            Type.CLASS,
+            null,
+            ValidClass.isSubclassOf(RateLimiter.class),
+            Importance.LOW,
+            SOURCE_RATE_LIMITER_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_RATE_LIMITER_DISPLAY)
+
+        .define(SOURCE_RATE_LIMIT_KEY_CONFIG,
+            Type.STRING,
+            SOURCE_RATE_LIMIT_KEY_DEFAULT,
+            ConfigDef.CaseInsensitiveValidString.in("host", "route", "user", "partition"),
+            Importance.LOW,
+            SOURCE_RATE_LIMIT_KEY_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_RATE_LIMIT_KEY_DISPLAY)
+
+        .define(SOURCE_RATE_LIMIT_PERMITS_CONFIG,
+            Type.INT,
+            SOURCE_RATE_LIMIT_PERMITS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SOURCE_RATE_LIMIT_PERMITS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_RATE_LIMIT_PERMITS_DISPLAY)
+
+        .define(SOURCE_RATE_LIMIT_WINDOW_CONFIG,
+            Type.LONG,
+            SOURCE_RATE_LIMIT_WINDOW_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SOURCE_RATE_LIMIT_WINDOW_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_RATE_LIMIT_WINDOW_DISPLAY)
+
+        .define(SOURCE_BATCH_MAX_RECORDS_CONFIG,
+            Type.INT,
+            SOURCE_BATCH_MAX_RECORDS_DEFAULT,
+            ConfigDef.Range.atLeast(1),
+            Importance.LOW,
+            SOURCE_BATCH_MAX_RECORDS_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_BATCH_MAX_RECORDS_DISPLAY)
+
+        .define(SOURCE_BATCH_MAX_LATENCY_CONFIG,
+            Type.LONG,
+            SOURCE_BATCH_MAX_LATENCY_DEFAULT,
+            ConfigDef.Range.atLeast(0),
+            Importance.LOW,
+            SOURCE_BATCH_MAX_LATENCY_DOC,
+            group,
+            ++orderInGroup,
+            Width.SHORT,
+            SOURCE_BATCH_MAX_LATENCY_DISPLAY)
+
         .define(APPLICATION_LOOP_INTERVAL_CONFIG,
             Type.LONG,
             APPLICATION_LOOP_INTERVAL_DEFAULT,
@@ -217,6 +384,58 @@ public class RestSourceConnectorConfig extends AbstractConfig {
     return Duration.ofMillis(this.getLong(SOURCE_POLL_INTERVAL_CONFIG));
   }
 
+  public int getMaxConcurrentRequests() {
+    return this.getInt(SOURCE_MAX_CONCURRENT_REQUESTS_CONFIG);
+  }
+
+  public int getConversionThreads() {
+    return this.getInt(SOURCE_CONVERSION_THREADS_CONFIG);
+  }
+
+  public int getConversionQueueSize() {
+    return this.getInt(SOURCE_CONVERSION_QUEUE_SIZE_CONFIG);
+  }
+
+  /**
+   * Get the configured rate limiter.
+   * @return initialized rate limiter, or {@code null} if the request rate should not be limited.
+   */
+  @SuppressWarnings("unchecked")
+  public RateLimiter getRateLimiter() {
+    Class<? extends RateLimiter> rateLimiterClass =
+        (Class<? extends RateLimiter>) getClass(SOURCE_RATE_LIMITER_CONFIG);
+    if (rateLimiterClass == null) {
+      return null;
+    }
+    try {
+      RateLimiter rateLimiter = rateLimiterClass.getDeclaredConstructor().newInstance();
+      rateLimiter.initialize(this);
+      return rateLimiter;
+    } catch (ReflectiveOperationException e) {
+      throw new ConnectException("Invalid class for: " + SOURCE_RATE_LIMITER_CONFIG, e);
+    }
+  }
+
+  public RateLimitKey getRateLimitKey() {
+    return RateLimitKey.parse(this.getString(SOURCE_RATE_LIMIT_KEY_CONFIG));
+  }
+
+  public int getRateLimitPermits() {
+    return this.getInt(SOURCE_RATE_LIMIT_PERMITS_CONFIG);
+  }
+
+  public Duration getRateLimitWindow() {
+    return Duration.ofMillis(this.getLong(SOURCE_RATE_LIMIT_WINDOW_CONFIG));
+  }
+
+  public int getBatchMaxRecords() {
+    return this.getInt(SOURCE_BATCH_MAX_RECORDS_CONFIG);
+  }
+
+  public Duration getBatchMaxLatency() {
+    return Duration.ofMillis(this.getLong(SOURCE_BATCH_MAX_LATENCY_CONFIG));
+  }
+
   public String getUrl() {
     return this.getString(SOURCE_URL_CONFIG);
   }
@@ -20,25 +20,52 @@ package org.radarbase.connect.rest;
 import static java.time.temporal.ChronoUnit.MILLIS;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
 import java.time.Instant;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 import org.apache.kafka.connect.errors.ConnectException;
 import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.source.SourceTask;
+import org.radarbase.connect.rest.request.ConcurrencyBudget;
+import org.radarbase.connect.rest.request.RateLimiter;
 import org.radarbase.connect.rest.request.RequestGenerator;
 import org.radarbase.connect.rest.request.RestRequest;
+import org.radarbase.connect.rest.request.RestResponse;
 import org.radarbase.connect.rest.util.VersionUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class RestSourceTask extends SourceTask {
   private static final Logger logger = LoggerFactory.getLogger(RestSourceTask.class);
+  /** Time after which a request whose concurrency budget was used up is retried. */
+  private static final long BUDGET_RETRY_NANOS = TimeUnit.MILLISECONDS.toNanos(50L);
 
   private RequestGenerator requestGenerator;
+  private RateLimiter rateLimiter;
+  private int maxConcurrentRequests;
+  private ExecutorService executor;
+  private ExecutorService conversionExecutor;
+  private int batchMaxRecords;
+  private Duration batchMaxLatency;
 
   @Override
   public void start(Map<String, String> map) {
@@ -55,12 +82,39 @@ public class RestSourceTask extends SourceTask {
     }
     requestGenerator = connectorConfig.getRequestGenerator();
     requestGenerator.setOffsetStorageReader(context.offsetStorageReader());
+    rateLimiter = connectorConfig.getRateLimiter();
+    batchMaxRecords = connectorConfig.getBatchMaxRecords();
+    batchMaxLatency = connectorConfig.getBatchMaxLatency();
+    maxConcurrentRequests = connectorConfig.getMaxConcurrentRequests();
+    int conversionThreads = connectorConfig.getConversionThreads();
+    if (maxConcurrentRequests > 1 || conversionThreads > 0) {
+      executor = Executors.newFixedThreadPool(maxConcurrentRequests,
+          daemonThreads("rest-source-request-"));
+    }
+    if (conversionThreads > 0) {
+      // When the queue is full, the request thread converts the response itself, so fetching
+      // slows down to the conversion rate.
+      conversionExecutor = new ThreadPoolExecutor(conversionThreads, conversionThreads,
+          0L, TimeUnit.MILLISECONDS,
+          new ArrayBlockingQueue<>(connectorConfig.getConversionQueueSize()),
+          daemonThreads("rest-source-conversion-"),
+          new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+  }
+
+  private static ThreadFactory daemonThreads(String prefix) {
+    AtomicInteger threadCount = new AtomicInteger(0);
+    return r -> {
+      Thread thread = new Thread(r, prefix + threadCount.incrementAndGet());
+      thread.setDaemon(true);
+      return thread;
+    };
   }
 
   @Override
   public List<SourceRecord> poll() throws InterruptedException {
     long requestsGenerated = 0;
-    List<SourceRecord> requests = Collections.emptyList();
+    RecordBatch batch = new RecordBatch(batchMaxRecords, batchMaxLatency);
 
     do {
       long timeout = MILLIS.between(Instant.now(), requestGenerator.getTimeOfNextRequest());
@@ -72,8 +126,12 @@ public class RestSourceTask extends SourceTask {
       Iterator<? extends RestRequest> requestIterator = requestGenerator.requests()
           .iterator();
 
+      if (executor != null) {
+        requestsGenerated += pollConcurrently(requestIterator, batch);
+        continue;
+      }
 
-      while (requests.isEmpty() && requestIterator.hasNext()) {
+      while (!batch.isComplete() && requestIterator.hasNext()) {
         RestRequest request = requestIterator.next();
 
         if (!request.isStillValid()) {
@@ -84,26 +142,323 @@ public class RestSourceTask extends SourceTask {
         requestsGenerated++;
 
         try {
-          requests = request.handleRequest()
-              .collect(Collectors.toList());
+          batch.addAll(request.handleRequest(rateLimiter)
+              .collect(Collectors.toList()));
         } catch (IOException ex) {
           logger.warn("Failed to make request: {}", ex.toString());
         }
       }
-    } while (requests.isEmpty());
+    } while (batch.isEmpty());
+
+    List<SourceRecord> records = batch.getRecords();
+    logger.info("Processed {} records from {} URLs", records.size(), requestsGenerated);
+
+    return records;
+  }
+
+  /**
+   * Make requests with at most {@code maxConcurrentRequests} in flight, adding their records to
+   * given batch. Requests for the same source partition are chained: a request is made after the
+   * previous request of its partition was fetched, unless it need not be fetched in order, and its
+   * response is converted after the previous response of its partition was converted. Records of
+   * a partition are therefore added in request order. Response bodies are read as a stream while
+   * they are converted, so a request keeps its slot until its response was converted. If a
+   * conversion pool is configured, responses are converted there, so that the request threads
+   * are free to make further requests. No new requests are started
+   * once the batch is complete, but all requests that were started are completed before
+   * returning.
+   *
+   * <p>Permits of the rate limiter are only acquired once a request has one of the concurrent
+   * slots and the batch is not complete yet, so that no permit is used up by a request that is
+   * not made. A throttled request releases its slot and is deferred, together with any later
+   * requests of its partition, and other requests are made in the meantime.
+   *
+   * <p>Requests of routes that share a {@link ConcurrencyBudget} also take a slot of that budget
+   * while they are in flight. If the budget has no free slot, the request is deferred in the same
+   * way, so that requests of other routes can use the remaining slots.
+   * @return number of requests made.
+   */
+  private int pollConcurrently(Iterator<? extends RestRequest> requestIterator, RecordBatch batch)
+      throws InterruptedException {
+    Semaphore inFlight = new Semaphore(maxConcurrentRequests);
+    Map<Map<String, Object>, CompletableFuture<?>> fetchTails = new HashMap<>();
+    Map<Map<String, Object>, CompletableFuture<?>> conversionTails = new HashMap<>();
+    List<CompletableFuture<?>> results = new ArrayList<>();
+    DeferredRequests deferred = new DeferredRequests();
+
+    try {
+      while (true) {
+        RestRequest request = nextRequest(requestIterator, deferred, batch);
+        if (request == null) {
+          break;
+        }
+
+        ConcurrencyBudget budget = request.getConcurrencyBudget();
+        if (budget != null && !budget.tryAcquire()) {
+          deferred.retryLater(request, System.nanoTime() + BUDGET_RETRY_NANOS);
+          continue;
+        }
+
+        inFlight.acquire();
+        if (batch.isComplete()) {
+          inFlight.release();
+          release(budget);
+          break;
+        }
+
+        if (rateLimiter != null) {
+          Duration waitTime = rateLimiter.tryAcquire(request);
+          if (!waitTime.isZero()) {
+            inFlight.release();
+            release(budget);
+            deferred.retryLater(request, System.nanoTime() + waitTime.toNanos());
+            continue;
+          }
+        }
+        logger.info("Requesting {}", request.getRequest().url());
+
+        Map<String, Object> partition = request.getPartition();
+        CompletableFuture<RestResponse> fetched = afterPrevious(
+            request.isFetchedInOrder() ? fetchTails.get(partition) : null)
+            .thenApplyAsync(v -> {
+              try {
+                // the rate limit permit was already acquired
+                return request.fetch();
+              } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+              }
+            }, executor);
+
+        CompletableFuture<Void> converted = fetched
+            .thenCombine(afterPrevious(conversionTails.get(partition)), (r, v) -> r)
+            .thenAcceptAsync(response -> {
+              if (response == null) {
+                return;
+              }
+              try {
+                batch.addAll(request.convert(response)
+                    .collect(Collectors.toList()));
+              } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+              }
+            }, conversionExecutor != null ? conversionExecutor : Runnable::run);
+
+        // The response body is read while it is converted, so the request keeps its slots
+        // until then. A response that is not converted is closed to release its connection.
+        converted.whenComplete((r, ex) -> {
+          if (ex != null) {
+            RestResponse response = fetched.isCompletedExceptionally()
+                ? null : fetched.getNow(null);
+            if (response != null) {
+              response.close();
+            }
+          }
+          inFlight.release();
+          release(budget);
+        });
+
+        fetchTails.put(partition, fetched);
+        conversionTails.put(partition, converted);
+        results.add(converted);
+      }
+    } finally {
+      // wait for started requests, even when interrupted, so route state stays consistent.
+      CompletableFuture.allOf(results.toArray(new CompletableFuture<?>[0]))
+          .handle((r, ex) -> null)
+          .join();
+    }
+
+    for (CompletableFuture<?> result : results) {
+      try {
+        result.get();
+      } catch (ExecutionException ex) {
+        if (ex.getCause() instanceof UncheckedIOException) {
+          logger.warn("Failed to make request: {}", ex.getCause().getCause().toString());
+        } else if (ex.getCause() instanceof RuntimeException) {
+          throw (RuntimeException) ex.getCause();
+        } else {
+          throw new ConnectException("Failed to process request", ex.getCause());
+        }
+      }
+    }
+
+    return results.size();
+  }
+
+  /**
+   * Next request to make: a deferred request whose wait time passed, otherwise the next valid
+   * request of the iterator. If only deferred requests remain, this waits for the first of them.
+   * @return next request, or {@code null} if no requests remain or the batch is complete.
+   */
+  private static RestRequest nextRequest(Iterator<? extends RestRequest> requestIterator,
+      DeferredRequests deferred, RecordBatch batch) throws InterruptedException {
+    while (!batch.isComplete()) {
+      RestRequest request = deferred.pollReady(System.nanoTime());
+      if (request != null) {
+        return request;
+      }
+      if (requestIterator.hasNext()) {
+        request = requestIterator.next();
+        if (!request.isStillValid()) {
+          continue;
+        }
+        if (deferred.contains(request.getPartition())) {
+          deferred.append(request);
+          continue;
+        }
+        return request;
+      }
+      if (deferred.isEmpty()) {
+        return null;
+      }
+      long waitNanos = deferred.nextReadyNanos() - System.nanoTime();
+      if (waitNanos > 0L) {
+        // wake up regularly to check whether the batch was completed in the meantime
+        TimeUnit.NANOSECONDS.sleep(Math.min(waitNanos, TimeUnit.SECONDS.toNanos(1)));
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Requests that were throttled by the rate limiter or by their concurrency budget. Requests are
+   * kept per source partition in request order, and the first request of each partition is
+   * retried once its wait time passed.
+   */
+  private static class DeferredRequests {
+    private final Map<Map<String, Object>, Deque<RestRequest>> partitions = new LinkedHashMap<>();
+    private final Map<Map<String, Object>, Long> readyNanos = new HashMap<>();
+
+    boolean isEmpty() {
+      return partitions.isEmpty();
+    }
+
+    boolean contains(Map<String, Object> partition) {
+      return partitions.containsKey(partition);
+    }
+
+    /** Defer given request until after the deferred requests of its partition. */
+    void append(RestRequest request) {
+      partitions.get(request.getPartition()).addLast(request);
+    }
+
+    /** Defer given request before any other requests of its partition, until given time. */
+    void retryLater(RestRequest request, long nanos) {
+      Map<String, Object> partition = request.getPartition();
+      partitions.computeIfAbsent(partition, p -> new ArrayDeque<>()).addFirst(request);
+      readyNanos.put(partition, nanos);
+    }
+
+    /** First deferred request of a partition whose wait time passed, or {@code null} if none. */
+    RestRequest pollReady(long nowNanos) {
+      for (Map.Entry<Map<String, Object>, Deque<RestRequest>> entry : partitions.entrySet()) {
+        Map<String, Object> partition = entry.getKey();
+        if (readyNanos.get(partition) - nowNanos <= 0L) {
+          Deque<RestRequest> requests = entry.getValue();
+          RestRequest request = requests.removeFirst();
+          if (requests.isEmpty()) {
+            partitions.remove(partition);
+            readyNanos.remove(partition);
+          }
+          return request;
+        }
+      }
+      return null;
+    }
+
+    /** Earliest time at which a deferred request may be retried. */
+    long nextReadyNanos() {
+      Iterator<Long> times = readyNanos.values().iterator();
+      long earliest = times.next();
+      while (times.hasNext()) {
+        long time = times.next();
+        if (time - earliest < 0L) {
+          earliest = time;
+        }
+      }
+      return earliest;
+    }
+  }
 
-    logger.info("Processed {} records from {} URLs", requests.size(), requestsGenerated);
+  /** Return a slot of given budget, if any. */
+  private static void release(ConcurrencyBudget budget) {
+    if (budget != null) {
+      budget.release();
+    }
+  }
 
-    return requests;
+  /** Future that completes when given future completes, regardless of its outcome. */
+  private static CompletableFuture<?> afterPrevious(CompletableFuture<?> previous) {
+    return previous != null
+        ? previous.handle((r, ex) -> null)
+        : CompletableFuture.completedFuture(null);
   }
 
   @Override
   public void stop() {
     logger.debug("Stopping source task");
+    shutdown(executor);
+    shutdown(conversionExecutor);
+  }
+
+  private static void shutdown(ExecutorService executorService) {
+    if (executorService == null) {
+      return;
+    }
+    executorService.shutdown();
+    try {
+      if (!executorService.awaitTermination(30, TimeUnit.SECONDS)) {
+        executorService.shutdownNow();
+      }
+    } catch (InterruptedException ex) {
+      executorService.shutdownNow();
+      Thread.currentThread().interrupt();
+    }
   }
 
   @Override
   public String version() {
     return VersionUtil.getVersion();
   }
+
+  /**
+   * Records collected in a single poll. The batch is complete when it contains at least the
+   * maximum number of records, or when the maximum latency has passed since the first records were
+   * added.
+   */
+  private static class RecordBatch {
+    private final List<SourceRecord> records;
+    private final int maxRecords;
+    private final long maxLatencyNanos;
+    private long startTime;
+
+    private RecordBatch(int maxRecords, Duration maxLatency) {
+      this.records = new ArrayList<>();
+      this.maxRecords = maxRecords;
+      this.maxLatencyNanos = maxLatency.toNanos();
+    }
+
+    synchronized void addAll(List<SourceRecord> newRecords) {
+      if (newRecords.isEmpty()) {
+        return;
+      }
+      if (records.isEmpty()) {
+        startTime = System.nanoTime();
+      }
+      records.addAll(newRecords);
+    }
+
+    synchronized boolean isEmpty() {
+      return records.isEmpty();
+    }
+
+    synchronized boolean isComplete() {
+      return !records.isEmpty()
+          && (records.size() >= maxRecords || System.nanoTime() - startTime >= maxLatencyNanos);
+    }
+
+    synchronized List<SourceRecord> getRecords() {
+      return records;
+    }
+  }
 }
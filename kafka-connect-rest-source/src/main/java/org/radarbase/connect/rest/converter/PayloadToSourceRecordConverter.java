@@ -18,6 +18,7 @@
 package org.radarbase.connect.rest.converter;
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.TemporalAmount;
@@ -35,6 +36,18 @@ public interface PayloadToSourceRecordConverter extends RestSourceTool {
   Collection<SourceRecord> convert(
       RestRequest request, Headers headers, byte[] data) throws IOException;
 
+  /**
+   * Convert a response body that is read as a stream. Converters that parse the body
+   * incrementally override this, so that the body is never held in memory as a whole. By
+   * default, the whole body is read and converted with
+   * {@link #convert(RestRequest, Headers, byte[])}.
+   * @param body response body, or {@code null} if the response had no body.
+   */
+  default Collection<SourceRecord> convert(
+      RestRequest request, Headers headers, InputStream body) throws IOException {
+    return convert(request, headers, body != null ? body.readAllBytes() : null);
+  }
+
   static Instant nearFuture() {
     return Instant.now().plus(NEAR_FUTURE);
   }
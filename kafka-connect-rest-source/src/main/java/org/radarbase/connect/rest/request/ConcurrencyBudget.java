@@ -0,0 +1,68 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.util.concurrent.Semaphore;
+
+/**
+ * Maximum number of requests of a group of routes that may be in flight at the same time. Routes
+ * that share a budget can use only part of the concurrent requests of a task, so that other routes
+ * always have a free slot.
+ */
+public class ConcurrencyBudget {
+  private final int maxRequests;
+  private final Semaphore permits;
+
+  /**
+   * Budget of given number of concurrent requests.
+   * @param maxRequests maximum number of requests in flight, at least one.
+   */
+  public ConcurrencyBudget(int maxRequests) {
+    if (maxRequests < 1) {
+      throw new IllegalArgumentException("Concurrency budget must be at least 1, not "
+          + maxRequests);
+    }
+    this.maxRequests = maxRequests;
+    this.permits = new Semaphore(maxRequests);
+  }
+
+  /** Take a slot of this budget, if one is free. */
+  public boolean tryAcquire() {
+    return permits.tryAcquire();
+  }
+
+  /** Return a slot that was taken with {@link #tryAcquire()}. */
+  public void release() {
+    permits.release();
+  }
+
+  /** Number of slots that are currently free. */
+  public int available() {
+    return permits.availablePermits();
+  }
+
+  public int getMaxRequests() {
+    return maxRequests;
+  }
+
+  @Override
+  public String toString() {
+    return "ConcurrencyBudget{maxRequests=" + maxRequests
+        + ", available=" + available() + '}';
+  }
+}
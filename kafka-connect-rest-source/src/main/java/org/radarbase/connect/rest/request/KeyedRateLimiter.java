@@ -0,0 +1,110 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.radarbase.connect.rest.RestSourceConnectorConfig;
+
+/**
+ * Rate limiter that keeps a separate limit per {@link RateLimitKey}. The number of permits and
+ * the window in which they may be used are configured by the connector configuration. Keys that
+ * did not acquire a permit for a full window are evicted, since their state is then equivalent to
+ * that of a new key.
+ * @param <S> state kept per key.
+ */
+public abstract class KeyedRateLimiter<S> implements RateLimiter {
+  private final Map<Object, Entry<S>> states = new ConcurrentHashMap<>();
+  private final AtomicLong lastEviction = new AtomicLong(System.nanoTime());
+  private RateLimitKey key;
+  protected int permits;
+  protected Duration window;
+
+  @Override
+  public void initialize(RestSourceConnectorConfig config) {
+    this.key = config.getRateLimitKey();
+    this.permits = config.getRateLimitPermits();
+    this.window = config.getRateLimitWindow();
+    this.states.clear();
+  }
+
+  @Override
+  public Duration tryAcquire(RestRequest request) {
+    Object requestKey = key.keyOf(request);
+    long nowNanos = System.nanoTime();
+    evictIdle(nowNanos);
+    while (true) {
+      Entry<S> entry = states.computeIfAbsent(requestKey, k -> new Entry<>(createState()));
+      synchronized (entry) {
+        // retry with a new entry if this one was evicted concurrently
+        if (entry.isEvicted) {
+          continue;
+        }
+        entry.lastUsed = nowNanos;
+        long waitNanos = tryAcquire(entry.state, nowNanos);
+        return waitNanos <= 0L ? Duration.ZERO : Duration.ofNanos(waitNanos);
+      }
+    }
+  }
+
+  /** Number of keys that currently have a state. */
+  int size() {
+    return states.size();
+  }
+
+  /** Remove the states of keys that were not used for a full window, at most once per window. */
+  private void evictIdle(long nowNanos) {
+    long windowNanos = window.toNanos();
+    long previous = lastEviction.get();
+    if (nowNanos - previous < windowNanos || !lastEviction.compareAndSet(previous, nowNanos)) {
+      return;
+    }
+    states.values().removeIf(entry -> {
+      synchronized (entry) {
+        entry.isEvicted = nowNanos - entry.lastUsed >= windowNanos;
+        return entry.isEvicted;
+      }
+    });
+  }
+
+  /** Create the state for a new key. */
+  protected abstract S createState();
+
+  /**
+   * Try to acquire a permit from given state. This is never called concurrently for the same
+   * state.
+   * @param state state of the request key.
+   * @param nowNanos current {@link System#nanoTime()}.
+   * @return zero if a permit was acquired, otherwise the nanoseconds to wait for the next permit.
+   */
+  protected abstract long tryAcquire(S state, long nowNanos);
+
+  private static class Entry<S> {
+    private final S state;
+    private long lastUsed;
+    private boolean isEvicted;
+
+    private Entry(S state) {
+      this.state = state;
+      this.lastUsed = System.nanoTime();
+      this.isEvicted = false;
+    }
+  }
+}
@@ -0,0 +1,55 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/** Determines which requests share the same rate limit. */
+public enum RateLimitKey {
+  /** All requests to the same host. */
+  HOST(r -> r.getRequest().url().host()),
+  /** All requests of the same route, as named in the source partition. */
+  ROUTE(r -> partitionValue(r, "route")),
+  /** All requests for the same user, as named in the source partition. */
+  USER(r -> partitionValue(r, "user")),
+  /** All requests with the same source partition. */
+  PARTITION(RestRequest::getPartition);
+
+  private final Function<RestRequest, Object> keyFunction;
+
+  RateLimitKey(Function<RestRequest, Object> keyFunction) {
+    this.keyFunction = keyFunction;
+  }
+
+  /** Key of given request. */
+  public Object keyOf(RestRequest request) {
+    return keyFunction.apply(request);
+  }
+
+  /** Parse a key from its case-insensitive name. */
+  public static RateLimitKey parse(String name) {
+    return valueOf(name.trim().toUpperCase(Locale.US));
+  }
+
+  private static Object partitionValue(RestRequest request, String key) {
+    Object value = request.getPartition().get(key);
+    // without the given key, fall back to the partition as a whole
+    return value != null ? value : request.getPartition();
+  }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.time.Duration;
+import org.radarbase.connect.rest.config.RestSourceTool;
+
+/**
+ * Limits the rate at which requests are made. A request should only be made after a permit was
+ * acquired for it, so that requests that would be rejected by the server wait locally instead.
+ */
+public interface RateLimiter extends RestSourceTool {
+  /**
+   * Try to acquire a permit for given request.
+   * @return {@link Duration#ZERO} if a permit was acquired, otherwise the minimum time until a
+   *         permit may become available.
+   */
+  Duration tryAcquire(RestRequest request);
+
+  /**
+   * Acquire a permit for given request, waiting until one is available.
+   * @throws InterruptedException if the thread is interrupted while waiting.
+   */
+  default void acquire(RestRequest request) throws InterruptedException {
+    Duration waitTime = tryAcquire(request);
+    while (!waitTime.isZero()) {
+      Thread.sleep(Math.max(1L, waitTime.toMillis()));
+      waitTime = tryAcquire(request);
+    }
+  }
+}
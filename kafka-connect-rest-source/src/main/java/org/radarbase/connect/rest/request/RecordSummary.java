@@ -0,0 +1,73 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.util.Collections;
+import java.util.List;
+import org.apache.kafka.connect.source.SourceRecord;
+
+/**
+ * Summary of the records that were converted from a single successful request. Records are
+ * produced in offset order, so the last record holds the offset to continue from.
+ */
+public class RecordSummary {
+  private final List<SourceRecord> records;
+  private final List<SourceRecord> sharedRecords;
+
+  /**
+   * Summary of given records.
+   * @param records non-empty records in offset order.
+   */
+  public RecordSummary(List<SourceRecord> records) {
+    this(records, Collections.emptyList());
+  }
+
+  /**
+   * Summary of given records, with records of other source partitions that were converted from
+   * the same response.
+   * @param records non-empty records in offset order.
+   * @param sharedRecords records of other source partitions.
+   */
+  public RecordSummary(List<SourceRecord> records, List<SourceRecord> sharedRecords) {
+    this.records = records;
+    this.sharedRecords = sharedRecords;
+  }
+
+  /** Records that were converted, in offset order. */
+  public List<SourceRecord> getRecords() {
+    return records;
+  }
+
+  /**
+   * Records of other source partitions that were converted from the same response, for example
+   * data that another route would otherwise request separately.
+   */
+  public List<SourceRecord> getSharedRecords() {
+    return sharedRecords;
+  }
+
+  /** Number of records that were converted. */
+  public int getCount() {
+    return records.size();
+  }
+
+  /** Last record that was converted. */
+  public SourceRecord getLastRecord() {
+    return records.get(records.size() - 1);
+  }
+}
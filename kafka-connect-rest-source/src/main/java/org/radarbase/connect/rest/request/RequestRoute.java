@@ -33,6 +33,48 @@ public interface RequestRoute extends RequestGenerator {
    * @param record non-null resulting record
    */
   void requestSucceeded(RestRequest request, SourceRecord record);
+
+  /**
+   * Called once when the request from this route succeeded and all its records were converted.
+   * By default, this calls {@link #requestSucceeded(RestRequest, SourceRecord)} for each record.
+   * Routes that only need the final state of a request can override this to process a response
+   * at once.
+   *
+   * @param request non-null generated request
+   * @param summary non-null summary of the resulting records in the partition of the request,
+   *                containing at least one record
+   */
+  default void requestSucceeded(RestRequest request, RecordSummary summary) {
+    for (SourceRecord record : summary.getRecords()) {
+      requestSucceeded(request, record);
+    }
+  }
+
+  /**
+   * Called when a response was received for a request of this route, before it is processed
+   * as a success or failure. This can be used to inspect response headers.
+   *
+   * @param request non-null generated request
+   * @param response non-null response
+   */
+  default void responseReceived(RestRequest request, Response response) {
+  }
+
+  /**
+   * Called when the request from this route succeeded, but it did not result in any records in
+   * the partition of the request.
+   *
+   * @param request non-null generated request
+   */
   void requestEmpty(RestRequest request);
+
   void requestFailed(RestRequest request, Response response);
+
+  /**
+   * Budget of concurrent requests that this route shares with other routes, or {@code null} if
+   * requests of this route may take any of the concurrent slots of the task.
+   */
+  default ConcurrencyBudget concurrencyBudget() {
+    return null;
+  }
 }
@@ -18,21 +18,27 @@
 package org.radarbase.connect.rest.request;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.function.Predicate;
 import java.util.stream.Stream;
-import okhttp3.Headers;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.Response;
-import okhttp3.ResponseBody;
 import org.apache.kafka.connect.source.SourceRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Single request. This must originate from a RequestRoute and have a predefined source partition.
  */
 public class RestRequest {
+  private static final Logger logger = LoggerFactory.getLogger(RestRequest.class);
+
   private final Request request;
   private final Map<String, Object> partition;
   private final RequestRoute route;
@@ -72,41 +78,160 @@ public class RestRequest {
     return isValid == null || isValid.test(this);
   }
 
+  /**
+   * Whether this request must be fetched after the previous requests of its source partition.
+   * Routes that keep track of which parts of a partition were polled may fetch requests of a
+   * partition concurrently. Responses of a partition are always converted in request order.
+   */
+  public boolean isFetchedInOrder() {
+    return true;
+  }
+
+  /**
+   * Budget of concurrent requests that this request takes a slot of while it is in flight, or
+   * {@code null} if it only takes a slot of the task.
+   */
+  public ConcurrencyBudget getConcurrencyBudget() {
+    return route.concurrencyBudget();
+  }
+
   /**
    * Handle the request using the internal client, using the request route converter.
    * @return stream of resulting source records.
    * @throws IOException if making or parsing the request failed.
    */
   public Stream<SourceRecord> handleRequest() throws IOException {
-    if (!isStillValid()) {
+    return handleRequest(null);
+  }
+
+  /**
+   * Handle the request using the internal client, using the request route converter. A permit is
+   * acquired from the rate limiter before the request is made.
+   * @param rateLimiter rate limiter to acquire a permit from, may be null.
+   * @return stream of resulting source records.
+   * @throws IOException if making or parsing the request failed.
+   */
+  public Stream<SourceRecord> handleRequest(RateLimiter rateLimiter) throws IOException {
+    RestResponse response = fetch(rateLimiter);
+    if (response == null) {
       return Stream.empty();
     }
+    return convert(response);
+  }
 
-    Collection<SourceRecord> records;
+  /**
+   * Make the request using the internal client, without reading the response body. If the
+   * request is no longer valid or the response is not successful, this returns {@code null}.
+   * Otherwise, the response must be converted with {@link #convert(RestResponse)} or closed.
+   * @return response with headers and an unread body, or {@code null} if there is no data to
+   *         convert.
+   * @throws IOException if making the request failed.
+   */
+  public RestResponse fetch() throws IOException {
+    return fetch(null);
+  }
 
-    byte[] data;
-    Headers headers;
-    try (Response response = client.newCall(request).execute()) {
-      if (!response.isSuccessful()) {
-        route.requestFailed(this, response);
-        return Stream.empty();
+  /**
+   * Make the request using the internal client, without reading the response body. Before the
+   * request is made, a permit is acquired from the rate limiter, waiting if needed. If the
+   * request is no longer valid or the response is not successful, this returns {@code null}.
+   * Otherwise, the response must be converted with {@link #convert(RestResponse)} or closed.
+   * @param rateLimiter rate limiter to acquire a permit from, may be null.
+   * @return response with headers and an unread body, or {@code null} if there is no data to
+   *         convert.
+   * @throws IOException if making the request failed.
+   * @throws InterruptedIOException if interrupted while waiting for a permit.
+   */
+  public RestResponse fetch(RateLimiter rateLimiter) throws IOException {
+    Response response = execute(rateLimiter);
+    return response != null ? new RestResponse(response) : null;
+  }
+
+  /**
+   * Make the request, after acquiring a permit from the rate limiter. If the request is no longer
+   * valid or the response is not successful, this returns {@code null}. Otherwise, the caller is
+   * responsible for closing the response.
+   */
+  private Response execute(RateLimiter rateLimiter) throws IOException {
+    if (!isStillValid()) {
+      return null;
+    }
+
+    if (rateLimiter != null) {
+      try {
+        rateLimiter.acquire(this);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while waiting for rate limit");
+      }
+      // the request may have become invalid while waiting
+      if (!isStillValid()) {
+        return null;
       }
+    }
 
-      headers = response.headers();
-      ResponseBody body = response.body();
-      data = body != null ? body.bytes() : null;
+    Response response;
+    try {
+      response = client.newCall(request).execute();
     } catch (IOException ex) {
       route.requestFailed(this, null);
       throw ex;
     }
+    route.responseReceived(this, response);
+    if (!response.isSuccessful()) {
+      try (response) {
+        route.requestFailed(this, response);
+      }
+      return null;
+    }
+    return response;
+  }
 
-    records = route.converter().convert(this, headers, data);
+  /**
+   * Convert a response previously fetched with {@link #fetch()} using the request route converter,
+   * and notify the route of the result. The converter reads the response body as a stream, and
+   * the response is closed afterwards. The route is only notified once the whole body was
+   * converted.
+   * @return stream of resulting source records.
+   * @throws IOException if reading or parsing the response failed.
+   */
+  public Stream<SourceRecord> convert(RestResponse response) throws IOException {
+    Collection<SourceRecord> records;
+    try (response) {
+      records = route.converter().convert(this, response.getHeaders(), response.getBody());
+    } catch (IOException ex) {
+      route.requestFailed(this, null);
+      throw ex;
+    }
 
-    if (records.isEmpty()) {
+    List<SourceRecord> ownRecords = new ArrayList<>(records.size());
+    List<SourceRecord> sharedRecords = new ArrayList<>();
+    for (SourceRecord record : records) {
+      if (isOwnRecord(record)) {
+        ownRecords.add(record);
+      } else {
+        sharedRecords.add(record);
+      }
+    }
+    if (ownRecords.isEmpty()) {
+      if (!sharedRecords.isEmpty()) {
+        logger.debug("Not reporting {} records of other partitions to route of partition {}",
+            sharedRecords.size(), partition);
+      }
       route.requestEmpty(this);
     } else {
-      records.forEach(r -> route.requestSucceeded(this, r));
+      route.requestSucceeded(this, new RecordSummary(ownRecords, sharedRecords));
     }
     return records.stream();
   }
+
+  /**
+   * Whether given record belongs to the source partition of this request. Converters may also
+   * produce records of other partitions from the same response; those are only reported to the
+   * route of this request as shared records.
+   */
+  private boolean isOwnRecord(SourceRecord record) {
+    Map<String, ?> recordPartition = record.sourcePartition();
+    return recordPartition == partition || Objects.equals(recordPartition, partition);
+  }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.io.Closeable;
+import java.io.InputStream;
+import okhttp3.Headers;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Successful response to a RestRequest, whose body was not read yet. It can be converted with
+ * {@link RestRequest#convert(RestResponse)}, which reads the body as a stream and closes the
+ * response. A response that is not converted must be closed, so that its connection is released.
+ */
+public class RestResponse implements Closeable {
+  private final Response response;
+
+  public RestResponse(Response response) {
+    this.response = response;
+  }
+
+  public Headers getHeaders() {
+    return response.headers();
+  }
+
+  /** Response body stream, or {@code null} if the response had no body. */
+  public InputStream getBody() {
+    ResponseBody body = response.body();
+    return body != null ? body.byteStream() : null;
+  }
+
+  @Override
+  public void close() {
+    response.close();
+  }
+}
@@ -0,0 +1,48 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Sliding window rate limiter. For each key, at most the configured number of permits are
+ * handed out in any window of the configured length. This matches APIs that count requests
+ * over a rolling period.
+ */
+public class SlidingWindowRateLimiter extends KeyedRateLimiter<Deque<Long>> {
+  @Override
+  protected Deque<Long> createState() {
+    return new ArrayDeque<>();
+  }
+
+  @Override
+  protected long tryAcquire(Deque<Long> permitTimes, long nowNanos) {
+    long windowNanos = window.toNanos();
+    while (!permitTimes.isEmpty() && nowNanos - permitTimes.peekFirst() >= windowNanos) {
+      permitTimes.removeFirst();
+    }
+
+    if (permitTimes.size() < permits) {
+      permitTimes.addLast(nowNanos);
+      return 0L;
+    } else {
+      return permitTimes.peekFirst() + windowNanos - nowNanos;
+    }
+  }
+}
@@ -0,0 +1,64 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import org.radarbase.connect.rest.RestSourceConnectorConfig;
+
+/**
+ * Token bucket rate limiter. Each key has a bucket that holds at most the configured number of
+ * permits, and it is refilled at a constant rate so that it is full again after the configured
+ * window. This allows short bursts while keeping the average rate.
+ */
+public class TokenBucketRateLimiter extends KeyedRateLimiter<TokenBucketRateLimiter.Bucket> {
+  private double permitsPerNano;
+
+  @Override
+  public void initialize(RestSourceConnectorConfig config) {
+    super.initialize(config);
+    permitsPerNano = (double) permits / window.toNanos();
+  }
+
+  @Override
+  protected Bucket createState() {
+    return new Bucket(permits, System.nanoTime());
+  }
+
+  @Override
+  protected long tryAcquire(Bucket bucket, long nowNanos) {
+    bucket.tokens = Math.min(permits,
+        bucket.tokens + (nowNanos - bucket.lastRefill) * permitsPerNano);
+    bucket.lastRefill = nowNanos;
+
+    if (bucket.tokens >= 1.0) {
+      bucket.tokens -= 1.0;
+      return 0L;
+    } else {
+      return (long) Math.ceil((1.0 - bucket.tokens) / permitsPerNano);
+    }
+  }
+
+  static class Bucket {
+    private double tokens;
+    private long lastRefill;
+
+    private Bucket(double tokens, long lastRefill) {
+      this.tokens = tokens;
+      this.lastRefill = lastRefill;
+    }
+  }
+}
@@ -39,6 +39,7 @@ import org.apache.kafka.connect.source.SourceRecord;
 import org.apache.kafka.connect.storage.OffsetStorageReader;
 import org.radarbase.connect.rest.RestSourceConnectorConfig;
 import org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter;
+import org.radarbase.connect.rest.request.RecordSummary;
 import org.radarbase.connect.rest.request.RequestRoute;
 import org.radarbase.connect.rest.request.RestRequest;
 import org.slf4j.Logger;
@@ -106,6 +107,11 @@ public class SingleRequestGenerator implements RequestRoute {
     lastPoll = Instant.now();
   }
 
+  @Override
+  public void requestSucceeded(RestRequest processedResponse, RecordSummary summary) {
+    requestSucceeded(processedResponse, summary.getLastRecord());
+  }
+
   @Override
   public void requestEmpty(RestRequest request) {
     lastPoll = Instant.now();
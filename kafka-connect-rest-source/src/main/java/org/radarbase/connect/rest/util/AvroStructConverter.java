@@ -0,0 +1,217 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import io.confluent.connect.avro.AvroData;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.kafka.connect.data.Field;
+import org.apache.kafka.connect.data.Schema;
+import org.apache.kafka.connect.data.SchemaAndValue;
+import org.apache.kafka.connect.data.Struct;
+
+/**
+ * Converts Avro records to Connect data. For each Avro schema, the Connect schema and the
+ * conversion of each field are computed once, so converting a record only copies its fields.
+ * Schemas that cannot be converted directly, for example because they contain logical types,
+ * bytes or unions of multiple non-null types, are converted with {@link AvroData} instead.
+ */
+public class AvroStructConverter {
+  private final AvroData avroData;
+  private final ConcurrentMap<org.apache.avro.Schema, RecordConverter> converters;
+
+  public AvroStructConverter(AvroData avroData) {
+    this.avroData = avroData;
+    this.converters = new ConcurrentHashMap<>();
+  }
+
+  /** Convert given Avro record to a Connect struct with its schema. */
+  public SchemaAndValue toConnectData(IndexedRecord record) {
+    return converters.computeIfAbsent(record.getSchema(), this::createConverter)
+        .convert(record);
+  }
+
+  private RecordConverter createConverter(org.apache.avro.Schema avroSchema) {
+    Schema connectSchema = avroData.toConnectSchema(avroSchema);
+    ValueConverter converter = valueConverter(avroSchema, connectSchema);
+    if (converter == null) {
+      return record -> avroData.toConnectData(avroSchema, record);
+    }
+    return record -> new SchemaAndValue(connectSchema, converter.convert(record));
+  }
+
+  /**
+   * Converter of values of given Avro schema to values of given Connect schema, or {@code null}
+   * if the values cannot be converted directly.
+   */
+  private static ValueConverter valueConverter(
+      org.apache.avro.Schema avroSchema, Schema connectSchema) {
+    if (avroSchema.getLogicalType() != null) {
+      return null;
+    }
+    switch (avroSchema.getType()) {
+      case NULL:
+        return value -> null;
+      case BOOLEAN:
+        return identity(connectSchema, Schema.Type.BOOLEAN);
+      case INT:
+        return identity(connectSchema, Schema.Type.INT32);
+      case LONG:
+        return identity(connectSchema, Schema.Type.INT64);
+      case FLOAT:
+        return identity(connectSchema, Schema.Type.FLOAT32);
+      case DOUBLE:
+        return identity(connectSchema, Schema.Type.FLOAT64);
+      case STRING:
+      case ENUM:
+        if (connectSchema.type() != Schema.Type.STRING) {
+          return null;
+        }
+        return value -> value != null ? value.toString() : null;
+      case UNION:
+        return unionConverter(avroSchema, connectSchema);
+      case ARRAY:
+        return arrayConverter(avroSchema, connectSchema);
+      case MAP:
+        return mapConverter(avroSchema, connectSchema);
+      case RECORD:
+        return structConverter(avroSchema, connectSchema);
+      default:
+        return null;
+    }
+  }
+
+  /** Values that are the same in Avro and in Connect, if the schema has given Connect type. */
+  private static ValueConverter identity(Schema connectSchema, Schema.Type type) {
+    return connectSchema.type() == type ? value -> value : null;
+  }
+
+  /** Only optional values, i.e. unions of null and a single other type, are supported. */
+  private static ValueConverter unionConverter(
+      org.apache.avro.Schema avroSchema, Schema connectSchema) {
+    List<org.apache.avro.Schema> types = avroSchema.getTypes();
+    if (types.size() != 2) {
+      return null;
+    }
+    org.apache.avro.Schema valueSchema;
+    if (types.get(0).getType() == org.apache.avro.Schema.Type.NULL) {
+      valueSchema = types.get(1);
+    } else if (types.get(1).getType() == org.apache.avro.Schema.Type.NULL) {
+      valueSchema = types.get(0);
+    } else {
+      return null;
+    }
+    ValueConverter converter = valueConverter(valueSchema, connectSchema);
+    if (converter == null) {
+      return null;
+    }
+    return value -> value != null ? converter.convert(value) : null;
+  }
+
+  private static ValueConverter arrayConverter(
+      org.apache.avro.Schema avroSchema, Schema connectSchema) {
+    if (connectSchema.type() != Schema.Type.ARRAY) {
+      return null;
+    }
+    ValueConverter converter = valueConverter(
+        avroSchema.getElementType(), connectSchema.valueSchema());
+    if (converter == null) {
+      return null;
+    }
+    return value -> {
+      if (value == null) {
+        return null;
+      }
+      List<?> values = (List<?>) value;
+      List<Object> result = new ArrayList<>(values.size());
+      for (Object v : values) {
+        result.add(converter.convert(v));
+      }
+      return result;
+    };
+  }
+
+  private static ValueConverter mapConverter(
+      org.apache.avro.Schema avroSchema, Schema connectSchema) {
+    if (connectSchema.type() != Schema.Type.MAP) {
+      return null;
+    }
+    ValueConverter converter = valueConverter(
+        avroSchema.getValueType(), connectSchema.valueSchema());
+    if (converter == null) {
+      return null;
+    }
+    return value -> {
+      if (value == null) {
+        return null;
+      }
+      Map<?, ?> values = (Map<?, ?>) value;
+      Map<String, Object> result = new HashMap<>(values.size() * 4 / 3 + 1);
+      values.forEach((k, v) -> result.put(k.toString(), converter.convert(v)));
+      return result;
+    };
+  }
+
+  private static ValueConverter structConverter(
+      org.apache.avro.Schema avroSchema, Schema connectSchema) {
+    if (connectSchema.type() != Schema.Type.STRUCT) {
+      return null;
+    }
+    List<org.apache.avro.Schema.Field> avroFields = avroSchema.getFields();
+    int numFields = avroFields.size();
+    Field[] connectFields = new Field[numFields];
+    ValueConverter[] fieldConverters = new ValueConverter[numFields];
+    for (int i = 0; i < numFields; i++) {
+      org.apache.avro.Schema.Field avroField = avroFields.get(i);
+      connectFields[i] = connectSchema.field(avroField.name());
+      if (connectFields[i] == null) {
+        return null;
+      }
+      fieldConverters[i] = valueConverter(avroField.schema(), connectFields[i].schema());
+      if (fieldConverters[i] == null) {
+        return null;
+      }
+    }
+    return value -> {
+      if (value == null) {
+        return null;
+      }
+      IndexedRecord record = (IndexedRecord) value;
+      Struct struct = new Struct(connectSchema);
+      for (int i = 0; i < numFields; i++) {
+        struct.put(connectFields[i], fieldConverters[i].convert(record.get(i)));
+      }
+      return struct;
+    };
+  }
+
+  @FunctionalInterface
+  private interface ValueConverter {
+    Object convert(Object value);
+  }
+
+  @FunctionalInterface
+  private interface RecordConverter {
+    SchemaAndValue convert(IndexedRecord record);
+  }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+/**
+ * Consecutive responses without data per user and route. The poll interval of a route doubles
+ * with each empty response after the first few, so users that stopped wearing their device are
+ * polled less and less often. As soon as any route of a user returns data, the counts of all
+ * routes of that user are reset and wake listeners are notified, so that the routes poll at their
+ * base interval again.
+ *
+ * <p>Only empty responses for the most recent data of a user should be registered. Older data
+ * that is still being caught up on may be empty even if the user is active.
+ */
+public class IdleBackoff {
+  /** Number of consecutive empty responses that does not yet increase the poll interval. */
+  public static final int GRACE_RESPONSES = 2;
+
+  private final Map<String, Map<String, Integer>> emptyResponses;
+  private final List<BiConsumer<String, Set<String>>> wakeListeners;
+
+  public IdleBackoff() {
+    emptyResponses = new ConcurrentHashMap<>();
+    wakeListeners = new CopyOnWriteArrayList<>();
+  }
+
+  /**
+   * Add a listener that is called when a user with idle routes returns data again. It is called
+   * with the key of the user and the routes of the user that returned no data before.
+   */
+  public void addWakeListener(BiConsumer<String, Set<String>> listener) {
+    wakeListeners.add(listener);
+  }
+
+  /** Register that a request of given route for the user with given key returned no data. */
+  public void responseEmpty(String userKey, String route) {
+    emptyResponses.computeIfAbsent(userKey, k -> new ConcurrentHashMap<>())
+        .merge(route, 1, Integer::sum);
+  }
+
+  /**
+   * Reset the count of given route of the user with given key, for example because the route
+   * backs off for another reason. Other routes and wake listeners are not affected.
+   */
+  public void reset(String userKey, String route) {
+    Map<String, Integer> routes = emptyResponses.get(userKey);
+    if (routes != null) {
+      routes.remove(route);
+    }
+  }
+
+  /**
+   * Register that a request for the user with given key returned recent data. All routes of the
+   * user return to their base poll interval.
+   */
+  public void dataReceived(String userKey) {
+    Map<String, Integer> routes = emptyResponses.remove(userKey);
+    if (routes != null && !routes.isEmpty()) {
+      Set<String> idleRoutes = Collections.unmodifiableSet(new HashSet<>(routes.keySet()));
+      wakeListeners.forEach(l -> l.accept(userKey, idleRoutes));
+    }
+  }
+
+  /** Number of consecutive empty responses of given route of the user with given key. */
+  public int getEmptyResponses(String userKey, String route) {
+    Map<String, Integer> routes = emptyResponses.get(userKey);
+    return routes != null ? routes.getOrDefault(route, 0) : 0;
+  }
+
+  /**
+   * Poll interval of given route for the user with given key. This is the base interval, doubled
+   * for each consecutive empty response after the first {@link #GRACE_RESPONSES}, up to given
+   * maximum. If the maximum is smaller than the base interval, the base interval is used.
+   */
+  public Duration getPollInterval(String userKey, String route, Duration base, Duration max) {
+    int count = getEmptyResponses(userKey, route);
+    Duration interval = base;
+    for (int i = GRACE_RESPONSES; i < count && interval.compareTo(max) < 0; i++) {
+      interval = interval.multipliedBy(2);
+    }
+    return interval.compareTo(max) > 0 && max.compareTo(base) > 0 ? max : interval;
+  }
+}
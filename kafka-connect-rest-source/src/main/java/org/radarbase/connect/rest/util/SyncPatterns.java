@@ -0,0 +1,128 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Learned distribution of the hours of the day at which each user syncs their device. Polls
+ * that fall in hours in which a user rarely syncs are postponed until the next hour in which the
+ * user usually syncs.
+ *
+ * <p>Observations should be sync times reported by the data source, or timestamps of the newest
+ * records, and not the times at which polls happened to find new data. Otherwise, postponed polls
+ * would only find data in the hours that are already polled, and the pattern would reinforce
+ * itself.
+ *
+ * <p>Hours are counted in UTC. The hour after a frequent sync hour is polled as well, so that
+ * syncs late in an hour and daylight saving time shifts are still picked up promptly. Older
+ * observations decay, so the pattern follows changes in the routine of a user.
+ */
+public class SyncPatterns {
+  static final int HOURS_PER_DAY = 24;
+  /** Weight of an observation halves after this time. */
+  static final Duration HALF_LIFE = Duration.ofDays(14);
+  /** Minimum total weight of observations before polls are postponed. */
+  static final double MIN_WEIGHT = 7.0;
+  /** Minimum share of the observations in an hour for it to be polled. */
+  static final double ACTIVE_SHARE = 0.02;
+
+  private static final long SECONDS_PER_HOUR = 3600L;
+
+  private final Map<String, Pattern> patterns;
+
+  public SyncPatterns() {
+    patterns = new ConcurrentHashMap<>();
+  }
+
+  /**
+   * Register that the user with given key synced at given time. Observations in the same hour as
+   * the latest observation of the user, for example the same sync time read again or records of
+   * other routes, are counted once. Observations before that hour are ignored.
+   */
+  public void observe(String userKey, Instant syncTime) {
+    patterns.computeIfAbsent(userKey, k -> new Pattern()).observe(syncTime.getEpochSecond());
+  }
+
+  /**
+   * First time at or after given time at which the user with given key may be polled. If the
+   * user usually syncs in the hour of given time, or not enough syncs of the user were observed,
+   * this is given time. Otherwise it is the start of the next hour in which the user usually
+   * syncs, but no later than given maximum delay after given time.
+   */
+  public Instant nextPollTime(String userKey, Instant time, Duration maxDelay) {
+    Pattern pattern = patterns.get(userKey);
+    if (pattern == null) {
+      return time;
+    }
+    long second = time.getEpochSecond();
+    long delayed = pattern.nextActiveSecond(second, second + maxDelay.getSeconds());
+    return delayed == second ? time : Instant.ofEpochSecond(delayed);
+  }
+
+  private static class Pattern {
+    private final double[] weights = new double[HOURS_PER_DAY];
+    private double totalWeight = 0.0;
+    private long lastHour = Long.MIN_VALUE;
+
+    private synchronized void observe(long second) {
+      long hour = Math.floorDiv(second, SECONDS_PER_HOUR);
+      if (hour <= lastHour) {
+        return;
+      }
+      if (lastHour != Long.MIN_VALUE) {
+        double decay = Math.pow(0.5,
+            (double) (hour - lastHour) * SECONDS_PER_HOUR / HALF_LIFE.getSeconds());
+        totalWeight = 0.0;
+        for (int i = 0; i < HOURS_PER_DAY; i++) {
+          weights[i] *= decay;
+          totalWeight += weights[i];
+        }
+      }
+      weights[Math.floorMod(hour, HOURS_PER_DAY)] += 1.0;
+      totalWeight += 1.0;
+      lastHour = hour;
+    }
+
+    private synchronized long nextActiveSecond(long second, long maxSecond) {
+      if (totalWeight < MIN_WEIGHT) {
+        return second;
+      }
+      long hour = Math.floorDiv(second, SECONDS_PER_HOUR);
+      if (isActive(hour)) {
+        return second;
+      }
+      for (long next = hour + 1; next * SECONDS_PER_HOUR < maxSecond; next++) {
+        if (isActive(next)) {
+          return next * SECONDS_PER_HOUR;
+        }
+      }
+      return maxSecond;
+    }
+
+    /** Whether the user usually syncs in given hour or the hour before it. */
+    private boolean isActive(long hour) {
+      double threshold = ACTIVE_SHARE * totalWeight;
+      return weights[Math.floorMod(hour, HOURS_PER_DAY)] >= threshold
+          || weights[Math.floorMod(hour - 1, HOURS_PER_DAY)] >= threshold;
+    }
+  }
+}
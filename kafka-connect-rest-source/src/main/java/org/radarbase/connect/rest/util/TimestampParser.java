@@ -0,0 +1,245 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+
+/**
+ * Parser of the fixed timestamp formats returned by the Fitbit API: {@code HH:mm:ss},
+ * {@code yyyy-MM-dd'T'HH:mm:ss[.SSS]} and ISO offset date-times. Timestamps are parsed directly
+ * to epoch milliseconds. The start of the last parsed day in the time zone of the parser is
+ * cached, so that parsing all timestamps of a single day only computes it once. Text in other
+ * formats is parsed with {@link java.time} instead.
+ *
+ * <p>Instances are not thread-safe; use a single instance per response.
+ */
+public class TimestampParser {
+  private static final long SECONDS_PER_DAY = 86_400L;
+  private static final int MAX_OFFSET_SECONDS = 18 * 3600;
+
+  private final ZoneRules rules;
+  private final ZoneId zone;
+
+  private long cachedEpochDay = Long.MIN_VALUE;
+  /** Epoch second of local midnight of the cached day, if that day is regular. */
+  private long cachedDayStart;
+  private boolean cachedDayIsRegular;
+
+  /** Parser of local timestamps in given zone. */
+  public TimestampParser(ZoneId zone) {
+    this.zone = zone;
+    this.rules = zone.getRules();
+  }
+
+  /**
+   * Parse a local time {@code HH:mm:ss} on given date.
+   * @return epoch milliseconds.
+   * @throws DateTimeParseException if the time cannot be parsed.
+   */
+  public long parseLocalTime(LocalDate date, CharSequence text) {
+    int secondOfDay = text.length() == 8 ? parseSecondOfDay(text, 0) : -1;
+    if (secondOfDay < 0) {
+      return toEpochMilli(LocalDateTime.of(date, LocalTime.parse(text)));
+    }
+    return epochMilli(date.toEpochDay(), secondOfDay, 0);
+  }
+
+  /**
+   * Parse a local date-time {@code yyyy-MM-dd'T'HH:mm:ss} with optional milliseconds.
+   * @return epoch milliseconds.
+   * @throws DateTimeParseException if the date-time cannot be parsed.
+   */
+  public long parseLocalDateTime(CharSequence text) {
+    int length = text.length();
+    long epochDay = length >= 19 && text.charAt(10) == 'T' ? parseEpochDay(text) : Long.MIN_VALUE;
+    int secondOfDay = epochDay != Long.MIN_VALUE ? parseSecondOfDay(text, 11) : -1;
+    int millis = length == 19 ? 0 : length == 23 ? parseMillis(text, 19) : -1;
+    if (secondOfDay < 0 || millis < 0) {
+      return toEpochMilli(LocalDateTime.parse(text));
+    }
+    return epochMilli(epochDay, secondOfDay, millis);
+  }
+
+  /**
+   * Parse an ISO offset date-time, e.g. {@code 2021-03-04T05:06:07.000+01:00} or
+   * {@code 2021-03-04T05:06:07Z}.
+   * @return epoch milliseconds.
+   * @throws DateTimeParseException if the date-time cannot be parsed.
+   */
+  public static long parseOffsetDateTime(CharSequence text) {
+    int length = text.length();
+    long epochDay = length >= 20 && text.charAt(10) == 'T' ? parseEpochDay(text) : Long.MIN_VALUE;
+    int secondOfDay = epochDay != Long.MIN_VALUE ? parseSecondOfDay(text, 11) : -1;
+    int millis = 0;
+    int offsetIndex = 19;
+    if (secondOfDay >= 0 && text.charAt(19) == '.' && length >= 24) {
+      millis = parseMillis(text, 19);
+      offsetIndex = 23;
+    }
+    int offsetSeconds = millis >= 0 && secondOfDay >= 0
+        ? parseOffsetSeconds(text, offsetIndex) : Integer.MIN_VALUE;
+    if (offsetSeconds == Integer.MIN_VALUE) {
+      return OffsetDateTime.parse(text).toInstant().toEpochMilli();
+    }
+    return (epochDay * SECONDS_PER_DAY + secondOfDay - offsetSeconds) * 1000L + millis;
+  }
+
+  /**
+   * Parse an ISO offset date-time, see {@link #parseOffsetDateTime(CharSequence)}.
+   * @return instant with millisecond precision.
+   * @throws DateTimeParseException if the date-time cannot be parsed.
+   */
+  public static Instant parseInstant(CharSequence text) {
+    return Instant.ofEpochMilli(parseOffsetDateTime(text));
+  }
+
+  private long epochMilli(long epochDay, int secondOfDay, int millis) {
+    if (epochDay != cachedEpochDay) {
+      cacheDay(epochDay);
+    }
+    if (!cachedDayIsRegular) {
+      return toEpochMilli(LocalDateTime.of(
+          LocalDate.ofEpochDay(epochDay),
+          LocalTime.ofSecondOfDay(secondOfDay).withNano(millis * 1_000_000)));
+    }
+    return (cachedDayStart + secondOfDay) * 1000L + millis;
+  }
+
+  /**
+   * Compute the start of given day. A day is regular if it has a single offset from local
+   * midnight until the next local midnight; other days are parsed with {@link java.time}.
+   */
+  private void cacheDay(long epochDay) {
+    LocalDateTime midnight = LocalDate.ofEpochDay(epochDay).atStartOfDay();
+    cachedEpochDay = epochDay;
+    if (rules.isFixedOffset()) {
+      cachedDayStart = epochDay * SECONDS_PER_DAY - rules.getOffset(midnight).getTotalSeconds();
+      cachedDayIsRegular = true;
+    } else if (rules.getValidOffsets(midnight).size() == 1) {
+      cachedDayStart = epochDay * SECONDS_PER_DAY - rules.getOffset(midnight).getTotalSeconds();
+      ZoneOffsetTransition next = rules.nextTransition(Instant.ofEpochSecond(cachedDayStart));
+      cachedDayIsRegular = next == null
+          || next.toEpochSecond() >= cachedDayStart + SECONDS_PER_DAY;
+    } else {
+      cachedDayIsRegular = false;
+    }
+  }
+
+  private long toEpochMilli(LocalDateTime dateTime) {
+    return dateTime.atZone(zone).toInstant().toEpochMilli();
+  }
+
+  /** Epoch day of {@code yyyy-MM-dd} at the start of the text, or Long.MIN_VALUE if invalid. */
+  private static long parseEpochDay(CharSequence text) {
+    int year = parseDigits(text, 0, 4);
+    int month = parseDigits(text, 5, 2);
+    int day = parseDigits(text, 8, 2);
+    if (year < 0 || month < 1 || month > 12 || day < 1 || day > lengthOfMonth(year, month)
+        || text.charAt(4) != '-' || text.charAt(7) != '-') {
+      return Long.MIN_VALUE;
+    }
+    // Days from the civil calendar, see http://howardhinnant.github.io/date_algorithms.html
+    int y = month <= 2 ? year - 1 : year;
+    int era = Math.floorDiv(y, 400);
+    int yearOfEra = y - era * 400;
+    int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146_097L + dayOfEra - 719_468L;
+  }
+
+  private static int lengthOfMonth(int year, int month) {
+    switch (month) {
+      case 2:
+        return (year % 4 == 0 && year % 100 != 0) || year % 400 == 0 ? 29 : 28;
+      case 4:
+      case 6:
+      case 9:
+      case 11:
+        return 30;
+      default:
+        return 31;
+    }
+  }
+
+  /** Second of day of {@code HH:mm:ss} at given index, or -1 if invalid. */
+  private static int parseSecondOfDay(CharSequence text, int index) {
+    if (text.length() < index + 8
+        || text.charAt(index + 2) != ':' || text.charAt(index + 5) != ':') {
+      return -1;
+    }
+    int hour = parseDigits(text, index, 2);
+    int minute = parseDigits(text, index + 3, 2);
+    int second = parseDigits(text, index + 6, 2);
+    if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+      return -1;
+    }
+    return hour * 3600 + minute * 60 + second;
+  }
+
+  /** Milliseconds of {@code .SSS} at given index, or -1 if invalid. */
+  private static int parseMillis(CharSequence text, int index) {
+    if (text.length() < index + 4 || text.charAt(index) != '.') {
+      return -1;
+    }
+    return parseDigits(text, index + 1, 3);
+  }
+
+  /**
+   * Offset in seconds of {@code Z} or {@code +HH:mm} at given index, which must end the text,
+   * or Integer.MIN_VALUE if invalid.
+   */
+  private static int parseOffsetSeconds(CharSequence text, int index) {
+    int length = text.length();
+    if (length == index + 1 && text.charAt(index) == 'Z') {
+      return 0;
+    }
+    if (length != index + 6 || text.charAt(index + 3) != ':') {
+      return Integer.MIN_VALUE;
+    }
+    char sign = text.charAt(index);
+    int hours = parseDigits(text, index + 1, 2);
+    int minutes = parseDigits(text, index + 4, 2);
+    int offset = hours * 3600 + minutes * 60;
+    if (hours < 0 || minutes < 0 || minutes > 59 || offset > MAX_OFFSET_SECONDS
+        || (sign != '+' && sign != '-')) {
+      return Integer.MIN_VALUE;
+    }
+    return sign == '-' ? -offset : offset;
+  }
+
+  /** Parse given number of decimal digits at given index, or -1 if not all are digits. */
+  private static int parseDigits(CharSequence text, int index, int count) {
+    int result = 0;
+    for (int i = index; i < index + count; i++) {
+      int digit = text.charAt(i) - '0';
+      if (digit < 0 || digit > 9) {
+        return -1;
+      }
+      result = result * 10 + digit;
+    }
+    return result;
+  }
+}
@@ -36,13 +36,24 @@ import org.junit.jupiter.api.extension.ParameterResolver;
 import org.radarbase.connect.rest.RestTaskTest.WireMockRule;
 import org.radarbase.connect.rest.converter.BytesPayloadConverter;
 import org.radarbase.connect.rest.converter.StringPayloadConverter;
+import org.radarbase.connect.rest.request.ConcurrencyBudget;
+import org.radarbase.connect.rest.request.RateLimiter;
+import org.radarbase.connect.rest.request.RestRequest;
 import org.radarbase.connect.rest.selector.SimpleTopicSelector;
 import org.radarbase.connect.rest.single.SingleRestSourceConnector;
+import org.radarbase.connect.rest.single.SingleRequestGenerator;
 import org.radarbase.connect.rest.single.SingleRestSourceConnectorConfig;
 
+import java.time.Duration;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
 
 import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
 import static com.github.tomakehurst.wiremock.client.WireMock.equalTo;
@@ -56,6 +67,7 @@ import static com.github.tomakehurst.wiremock.client.WireMock.urlMatching;
 import static com.github.tomakehurst.wiremock.client.WireMock.verify;
 import static com.github.tomakehurst.wiremock.core.WireMockConfiguration.wireMockConfig;
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @ExtendWith(WireMockRule.class)
 public class RestTaskTest {
@@ -143,6 +155,198 @@ public class RestTaskTest {
     verify(postRequestedFor(urlMatching(PATH))
       .withRequestBody(equalTo(DATA))
       .withHeader(CONTENT_TYPE, matching(APPLICATION_JSON)));
+
+    props.put(RestSourceConnectorConfig.SOURCE_MAX_CONCURRENT_REQUESTS_CONFIG, "4");
+    props.put(RestSourceConnectorConfig.SOURCE_CONVERSION_THREADS_CONFIG, "2");
+
+    sourceTask = new RestSourceTask();
+    sourceTask.initialize(context);
+    sourceTask.start(props);
+    messages = sourceTask.poll();
+    sourceTask.stop();
+
+    assertEquals(1, messages.size(), "Message count: ");
+    assertEquals(RESPONSE_BODY, new String((byte[]) messages.get(0).value()), "Response body: ");
+    assertEquals(TOPIC, messages.get(0).topic(), "Topic: ");
+  }
+
+  @Test
+  public void concurrencyBudgetLimitsRoutes(WireMockRule wireMock) throws InterruptedException {
+    stubFor(post(urlEqualTo(PATH))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withFixedDelay(200)
+        .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+        .withBody(RESPONSE_BODY)));
+
+    Map<String, String> props = new HashMap<>();
+    props.put("connector.class", SingleRestSourceConnector.class.getName());
+    props.put(SingleRestSourceConnectorConfig.SOURCE_METHOD_CONFIG, METHOD);
+    props.put(SingleRestSourceConnectorConfig.SOURCE_PROPERTIES_LIST_CONFIG, PROPERTIES_LIST);
+    props.put(RestSourceConnectorConfig.SOURCE_URL_CONFIG, wireMock.url(PATH));
+    props.put(SingleRestSourceConnectorConfig.SOURCE_DATA_CONFIG, DATA);
+    props.put(RestSourceConnectorConfig.SOURCE_TOPIC_SELECTOR_CONFIG, TOPIC_SELECTOR);
+    props.put(RestSourceConnectorConfig.SOURCE_TOPIC_LIST_CONFIG, REST_SOURCE_DESTINATION_TOPIC_LIST);
+    props.put(RestSourceConnectorConfig.SOURCE_PAYLOAD_CONVERTER_CONFIG, STRING_PAYLOAD_CONVERTER);
+    props.put("rest.source.request.generator.class", BudgetedRequestGenerator.class.getName());
+    props.put(RestSourceConnectorConfig.SOURCE_MAX_CONCURRENT_REQUESTS_CONFIG, "4");
+    props.put(RestSourceConnectorConfig.SOURCE_BATCH_MAX_RECORDS_CONFIG, "100");
+
+    BudgetedRequestGenerator.reset();
+    RestSourceTask sourceTask = new RestSourceTask();
+    sourceTask.initialize(new SourceTaskContext() {
+      @Override
+      public Map<String, String> configs() {
+        return props;
+      }
+
+      @Override
+      public OffsetStorageReader offsetStorageReader() {
+        return null;
+      }
+    });
+    sourceTask.start(props);
+    List<SourceRecord> messages = sourceTask.poll();
+    sourceTask.stop();
+
+    assertEquals(8, messages.size(), "Message count: ");
+    assertEquals(1, BudgetedRequestGenerator.maxBudgetedInFlight.get(),
+        "Budgeted requests in flight: ");
+    assertTrue(BudgetedRequestGenerator.maxInFlight.get() > 1,
+        "Other requests should use the remaining slots");
+    assertTrue(BudgetedRequestGenerator.maxInFlight.get() <= 4, "Requests in flight: ");
+  }
+
+  @Test
+  public void rateLimitPermitsAreOnlyUsedByRequests(WireMockRule wireMock)
+      throws InterruptedException {
+    stubFor(post(urlEqualTo(PATH))
+      .willReturn(aResponse()
+        .withStatus(200)
+        .withFixedDelay(200)
+        .withHeader(CONTENT_TYPE, APPLICATION_JSON)
+        .withBody(RESPONSE_BODY)));
+
+    Map<String, String> props = new HashMap<>();
+    props.put("connector.class", SingleRestSourceConnector.class.getName());
+    props.put(SingleRestSourceConnectorConfig.SOURCE_METHOD_CONFIG, METHOD);
+    props.put(SingleRestSourceConnectorConfig.SOURCE_PROPERTIES_LIST_CONFIG, PROPERTIES_LIST);
+    props.put(RestSourceConnectorConfig.SOURCE_URL_CONFIG, wireMock.url(PATH));
+    props.put(SingleRestSourceConnectorConfig.SOURCE_DATA_CONFIG, DATA);
+    props.put(RestSourceConnectorConfig.SOURCE_TOPIC_SELECTOR_CONFIG, TOPIC_SELECTOR);
+    props.put(RestSourceConnectorConfig.SOURCE_TOPIC_LIST_CONFIG, REST_SOURCE_DESTINATION_TOPIC_LIST);
+    props.put(RestSourceConnectorConfig.SOURCE_PAYLOAD_CONVERTER_CONFIG, STRING_PAYLOAD_CONVERTER);
+    props.put("rest.source.request.generator.class", BudgetedRequestGenerator.class.getName());
+    props.put(RestSourceConnectorConfig.SOURCE_RATE_LIMITER_CONFIG,
+        CountingRateLimiter.class.getName());
+    props.put(RestSourceConnectorConfig.SOURCE_MAX_CONCURRENT_REQUESTS_CONFIG, "2");
+    // the batch is complete while later requests wait for a slot
+    props.put(RestSourceConnectorConfig.SOURCE_BATCH_MAX_RECORDS_CONFIG, "1");
+
+    BudgetedRequestGenerator.reset();
+    CountingRateLimiter.permits.set(0);
+    RestSourceTask sourceTask = new RestSourceTask();
+    sourceTask.initialize(new SourceTaskContext() {
+      @Override
+      public Map<String, String> configs() {
+        return props;
+      }
+
+      @Override
+      public OffsetStorageReader offsetStorageReader() {
+        return null;
+      }
+    });
+    sourceTask.start(props);
+    List<SourceRecord> messages = sourceTask.poll();
+    sourceTask.stop();
+
+    int requestsMade = WireMock.findAll(postRequestedFor(urlMatching(PATH))).size();
+    assertTrue(messages.size() < 8, "Batch should be complete before all requests are made");
+    assertEquals(messages.size(), requestsMade, "Requests made: ");
+    assertEquals(requestsMade, CountingRateLimiter.permits.get(), "Rate limit permits: ");
+  }
+
+  /** Rate limiter that always grants a permit, and counts the permits it granted. */
+  public static class CountingRateLimiter implements RateLimiter {
+    private static final AtomicInteger permits = new AtomicInteger();
+
+    @Override
+    public void initialize(RestSourceConnectorConfig config) {
+      // nothing to initialize
+    }
+
+    @Override
+    public Duration tryAcquire(RestRequest request) {
+      permits.incrementAndGet();
+      return Duration.ZERO;
+    }
+  }
+
+  /**
+   * Generates four requests of a route with a concurrency budget of one and four requests of a
+   * route without a budget, each with its own partition. The maximum number of requests in
+   * flight is recorded by the HTTP client.
+   */
+  public static class BudgetedRequestGenerator extends SingleRequestGenerator {
+    private static final AtomicInteger inFlight = new AtomicInteger();
+    private static final AtomicInteger maxInFlight = new AtomicInteger();
+    private static final AtomicInteger budgetedInFlight = new AtomicInteger();
+    private static final AtomicInteger maxBudgetedInFlight = new AtomicInteger();
+
+    private final ConcurrencyBudget budget = new ConcurrencyBudget(1);
+    private final SingleRequestGenerator budgetedRoute = new SingleRequestGenerator() {
+      @Override
+      public ConcurrencyBudget concurrencyBudget() {
+        return budget;
+      }
+    };
+    private OkHttpClient client;
+    private Request request;
+
+    static void reset() {
+      inFlight.set(0);
+      maxInFlight.set(0);
+      budgetedInFlight.set(0);
+      maxBudgetedInFlight.set(0);
+    }
+
+    @Override
+    public void initialize(RestSourceConnectorConfig config) {
+      super.initialize(config);
+      budgetedRoute.initialize(config);
+      request = super.requests().findFirst().orElseThrow().getRequest();
+      client = new OkHttpClient.Builder()
+          .addInterceptor(chain -> {
+            boolean isBudgeted = "true".equals(chain.request().header("X-Budgeted"));
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            if (isBudgeted) {
+              maxBudgetedInFlight.accumulateAndGet(
+                  budgetedInFlight.incrementAndGet(), Math::max);
+            }
+            try {
+              return chain.proceed(chain.request().newBuilder()
+                  .removeHeader("X-Budgeted")
+                  .build());
+            } finally {
+              inFlight.decrementAndGet();
+              if (isBudgeted) {
+                budgetedInFlight.decrementAndGet();
+              }
+            }
+          })
+          .build();
+    }
+
+    @Override
+    public Stream<RestRequest> requests() {
+      return IntStream.range(0, 8).mapToObj(i -> {
+        boolean isBudgeted = i < 4;
+        return new RestRequest(isBudgeted ? budgetedRoute : this, client,
+            request.newBuilder().header("X-Budgeted", String.valueOf(isBudgeted)).build(),
+            Collections.singletonMap("request", i), null);
+      });
+    }
   }
 
   public static class WireMockRule extends WireMockServer implements BeforeEachCallback,
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import okhttp3.Request;
+import org.junit.jupiter.api.Test;
+import org.radarbase.connect.rest.RestSourceConnectorConfig;
+
+class RateLimiterTest {
+  private static RestSourceConnectorConfig config(String key) {
+    return config(key, 60000L);
+  }
+
+  private static RestSourceConnectorConfig config(String key, long windowMs) {
+    Map<String, String> props = new HashMap<>();
+    props.put("rest.source.base.url", "http://localhost");
+    props.put(RestSourceConnectorConfig.SOURCE_RATE_LIMIT_KEY_CONFIG, key);
+    props.put(RestSourceConnectorConfig.SOURCE_RATE_LIMIT_PERMITS_CONFIG, "2");
+    props.put(RestSourceConnectorConfig.SOURCE_RATE_LIMIT_WINDOW_CONFIG, Long.toString(windowMs));
+    return new RestSourceConnectorConfig(props, false);
+  }
+
+  private static RestRequest request(String user) {
+    Map<String, Object> partition = new HashMap<>();
+    partition.put("user", user);
+    partition.put("route", "test");
+    return new RestRequest(null, null,
+        new Request.Builder().url("http://localhost/" + user).build(), partition, null);
+  }
+
+  private static void assertLimited(RateLimiter rateLimiter) {
+    RestRequest a = request("a");
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(a));
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(a));
+    Duration waitTime = rateLimiter.tryAcquire(a);
+    assertTrue(waitTime.compareTo(Duration.ZERO) > 0, "Third request should wait");
+    assertTrue(waitTime.compareTo(Duration.ofMinutes(1)) <= 0, "Wait at most one window");
+
+    // other users have their own limit
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(request("b")));
+  }
+
+  @Test
+  void tokenBucket() {
+    RateLimiter rateLimiter = new TokenBucketRateLimiter();
+    rateLimiter.initialize(config("user"));
+    assertLimited(rateLimiter);
+  }
+
+  @Test
+  void slidingWindow() {
+    RateLimiter rateLimiter = new SlidingWindowRateLimiter();
+    rateLimiter.initialize(config("user"));
+    assertLimited(rateLimiter);
+  }
+
+  @Test
+  void hostKey() {
+    RateLimiter rateLimiter = new SlidingWindowRateLimiter();
+    rateLimiter.initialize(config("host"));
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(request("a")));
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(request("b")));
+    assertTrue(rateLimiter.tryAcquire(request("c")).compareTo(Duration.ZERO) > 0);
+  }
+
+  @Test
+  void evictsIdleKeys() throws InterruptedException {
+    SlidingWindowRateLimiter rateLimiter = new SlidingWindowRateLimiter();
+    rateLimiter.initialize(config("user", 50L));
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(request("a")));
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(request("b")));
+    assertEquals(2, rateLimiter.size());
+
+    Thread.sleep(100L);
+    // keys that were not used for a full window are evicted on the next acquire
+    assertEquals(Duration.ZERO, rateLimiter.tryAcquire(request("b")));
+    assertEquals(1, rateLimiter.size());
+
+    // an evicted key starts with all permits
+    assertLimited(rateLimiter);
+  }
+}
@@ -0,0 +1,188 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.request;
+
+import static com.github.tomakehurst.wiremock.client.WireMock.aResponse;
+import static com.github.tomakehurst.wiremock.client.WireMock.get;
+import static com.github.tomakehurst.wiremock.client.WireMock.stubFor;
+import static com.github.tomakehurst.wiremock.client.WireMock.urlEqualTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.ArgumentMatchers.same;
+import static org.mockito.Mockito.CALLS_REAL_METHODS;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.github.tomakehurst.wiremock.http.Fault;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.Collectors;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import org.apache.kafka.connect.source.SourceRecord;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.radarbase.connect.rest.RestTaskTest.WireMockRule;
+import org.radarbase.connect.rest.converter.PayloadToSourceRecordConverter;
+
+@ExtendWith(WireMockRule.class)
+class RestRequestTest {
+  private static final String PATH = "/data";
+
+  private static RestRequest request(WireMockRule wireMock, RequestRoute route) {
+    return new RestRequest(route, new OkHttpClient(),
+        new Request.Builder().url(wireMock.url(PATH)).build(), partition("a"), null);
+  }
+
+  private static Map<String, Object> partition(String user) {
+    Map<String, Object> partition = new HashMap<>();
+    partition.put("user", user);
+    partition.put("route", "test");
+    return partition;
+  }
+
+  private static SourceRecord record(String user, long offset) {
+    return new SourceRecord(partition(user), Collections.singletonMap("timestamp", offset),
+        "test", null, offset);
+  }
+
+  @Test
+  void bodyBreaksOffMidRead(WireMockRule wireMock) throws IOException {
+    stubFor(get(urlEqualTo(PATH))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withFault(Fault.MALFORMED_RESPONSE_CHUNK)));
+
+    RequestRoute route = mock(RequestRoute.class);
+    PayloadToSourceRecordConverter converter = mock(PayloadToSourceRecordConverter.class);
+    when(route.converter()).thenReturn(converter);
+    // the default implementation reads the full body
+    when(converter.convert(any(), any(), any(InputStream.class))).thenCallRealMethod();
+    RestRequest request = request(wireMock, route);
+
+    assertThrows(IOException.class, () -> request.handleRequest(null));
+
+    verify(route).requestFailed(same(request), isNull());
+    verify(route, never()).requestEmpty(any());
+    verify(converter, never()).convert(any(), any(), any(byte[].class));
+  }
+
+  @Test
+  void conversionFails(WireMockRule wireMock) throws IOException {
+    stubFor(get(urlEqualTo(PATH))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody("{")));
+
+    RequestRoute route = mock(RequestRoute.class);
+    PayloadToSourceRecordConverter converter = mock(PayloadToSourceRecordConverter.class);
+    when(route.converter()).thenReturn(converter);
+    when(converter.convert(any(), any(), any(InputStream.class)))
+        .thenThrow(new IOException("Unexpected end"));
+    RestRequest request = request(wireMock, route);
+
+    assertThrows(IOException.class, () -> request.handleRequest(null));
+
+    verify(route).requestFailed(same(request), isNull());
+    verify(route, never()).requestEmpty(any());
+  }
+
+  @Test
+  void successNotifiesEachRecordByDefault(WireMockRule wireMock) throws IOException {
+    stubFor(get(urlEqualTo(PATH))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody("{}")));
+
+    RequestRoute route = mock(RequestRoute.class, withSettings().defaultAnswer(CALLS_REAL_METHODS));
+    PayloadToSourceRecordConverter converter = mock(PayloadToSourceRecordConverter.class);
+    when(route.converter()).thenReturn(converter);
+    SourceRecord first = record("a", 1L);
+    SourceRecord second = record("a", 2L);
+    when(converter.convert(any(), any(), any(InputStream.class)))
+        .thenReturn(Arrays.asList(first, second));
+    RestRequest request = request(wireMock, route);
+
+    request.handleRequest(null);
+
+    InOrder inOrder = inOrder(route);
+    inOrder.verify(route).requestSucceeded(same(request), any(RecordSummary.class));
+    inOrder.verify(route).requestSucceeded(request, first);
+    inOrder.verify(route).requestSucceeded(request, second);
+    verify(route, never()).requestEmpty(any());
+  }
+
+  @Test
+  void recordsOfOtherPartitionsAreNotReported(WireMockRule wireMock) throws IOException {
+    stubFor(get(urlEqualTo(PATH))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody("{}")));
+
+    RequestRoute route = mock(RequestRoute.class);
+    PayloadToSourceRecordConverter converter = mock(PayloadToSourceRecordConverter.class);
+    when(route.converter()).thenReturn(converter);
+    SourceRecord own = record("a", 1L);
+    SourceRecord foreign = record("b", 2L);
+    when(converter.convert(any(), any(), any(InputStream.class)))
+        .thenReturn(Arrays.asList(own, foreign));
+    RestRequest request = request(wireMock, route);
+
+    // all records are still produced
+    assertEquals(Arrays.asList(own, foreign),
+        request.handleRequest(null).collect(Collectors.toList()));
+
+    ArgumentCaptor<RecordSummary> summary = ArgumentCaptor.forClass(RecordSummary.class);
+    verify(route).requestSucceeded(same(request), summary.capture());
+    assertEquals(Collections.singletonList(own), summary.getValue().getRecords());
+    assertEquals(own, summary.getValue().getLastRecord());
+    assertEquals(Collections.singletonList(foreign), summary.getValue().getSharedRecords());
+  }
+
+  @Test
+  void onlyOtherPartitionsCountsAsEmpty(WireMockRule wireMock) throws IOException {
+    stubFor(get(urlEqualTo(PATH))
+        .willReturn(aResponse()
+            .withStatus(200)
+            .withBody("{}")));
+
+    RequestRoute route = mock(RequestRoute.class);
+    PayloadToSourceRecordConverter converter = mock(PayloadToSourceRecordConverter.class);
+    when(route.converter()).thenReturn(converter);
+    when(converter.convert(any(), any(), any(InputStream.class)))
+        .thenReturn(Collections.singletonList(record("b", 2L)));
+    RestRequest request = request(wireMock, route);
+
+    assertEquals(1, request.handleRequest(null).count());
+
+    verify(route).requestEmpty(request);
+    verify(route, never()).requestSucceeded(any(), any(RecordSummary.class));
+  }
+}
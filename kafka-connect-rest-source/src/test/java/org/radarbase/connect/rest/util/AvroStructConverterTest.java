@@ -0,0 +1,282 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import io.confluent.connect.avro.AvroData;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.avro.LogicalTypes;
+import org.apache.avro.Schema;
+import org.apache.avro.SchemaBuilder;
+import org.apache.avro.generic.GenericData;
+import org.apache.avro.generic.GenericRecordBuilder;
+import org.apache.avro.generic.IndexedRecord;
+import org.apache.avro.util.Utf8;
+import org.apache.kafka.connect.errors.DataException;
+import org.junit.jupiter.api.Test;
+import org.radarcns.connector.fitbit.FitbitActivityLogRecord;
+import org.radarcns.connector.fitbit.FitbitBreathingRate;
+import org.radarcns.connector.fitbit.FitbitIntradayCalories;
+import org.radarcns.connector.fitbit.FitbitIntradayHeartRate;
+import org.radarcns.connector.fitbit.FitbitIntradayHeartRateVariability;
+import org.radarcns.connector.fitbit.FitbitIntradaySpo2;
+import org.radarcns.connector.fitbit.FitbitIntradaySteps;
+import org.radarcns.connector.fitbit.FitbitRestingHeartRate;
+import org.radarcns.connector.fitbit.FitbitSleepClassic;
+import org.radarcns.connector.fitbit.FitbitSleepStage;
+import org.radarcns.connector.fitbit.FitbitTimeZone;
+import org.radarcns.connector.oura.OuraActivityClass;
+import org.radarcns.connector.oura.OuraDailyActivity;
+import org.radarcns.connector.oura.OuraDailyReadiness;
+import org.radarcns.connector.oura.OuraDailySleep;
+import org.radarcns.connector.oura.OuraDailySpo2;
+import org.radarcns.connector.oura.OuraHeartRate;
+import org.radarcns.connector.oura.OuraHeartRateVariability;
+import org.radarcns.connector.oura.OuraMet;
+import org.radarcns.connector.oura.OuraMotionCount;
+import org.radarcns.connector.oura.OuraPersonalInfo;
+import org.radarcns.connector.oura.OuraRecommendedSleepTime;
+import org.radarcns.connector.oura.OuraRestModePeriod;
+import org.radarcns.connector.oura.OuraRingConfiguration;
+import org.radarcns.connector.oura.OuraSession;
+import org.radarcns.connector.oura.OuraSleep;
+import org.radarcns.connector.oura.OuraSleepMovement;
+import org.radarcns.connector.oura.OuraSleepPhase;
+import org.radarcns.connector.oura.OuraTag;
+import org.radarcns.connector.oura.OuraWorkout;
+import org.radarcns.kafka.ObservationKey;
+
+class AvroStructConverterTest {
+  private static final List<Schema> SCHEMAS = Arrays.asList(
+      ObservationKey.getClassSchema(),
+      FitbitActivityLogRecord.getClassSchema(),
+      FitbitBreathingRate.getClassSchema(),
+      FitbitIntradayCalories.getClassSchema(),
+      FitbitIntradayHeartRate.getClassSchema(),
+      FitbitIntradayHeartRateVariability.getClassSchema(),
+      FitbitIntradaySpo2.getClassSchema(),
+      FitbitIntradaySteps.getClassSchema(),
+      FitbitRestingHeartRate.getClassSchema(),
+      FitbitSleepClassic.getClassSchema(),
+      FitbitSleepStage.getClassSchema(),
+      FitbitTimeZone.getClassSchema(),
+      OuraActivityClass.getClassSchema(),
+      OuraDailyActivity.getClassSchema(),
+      OuraDailyReadiness.getClassSchema(),
+      OuraDailySleep.getClassSchema(),
+      OuraDailySpo2.getClassSchema(),
+      OuraHeartRate.getClassSchema(),
+      OuraHeartRateVariability.getClassSchema(),
+      OuraMet.getClassSchema(),
+      OuraMotionCount.getClassSchema(),
+      OuraPersonalInfo.getClassSchema(),
+      OuraRecommendedSleepTime.getClassSchema(),
+      OuraRestModePeriod.getClassSchema(),
+      OuraRingConfiguration.getClassSchema(),
+      OuraSession.getClassSchema(),
+      OuraSleep.getClassSchema(),
+      OuraSleepMovement.getClassSchema(),
+      OuraSleepPhase.getClassSchema(),
+      OuraTag.getClassSchema(),
+      OuraWorkout.getClassSchema());
+
+  private final AvroData avroData = new AvroData(100);
+  private final AvroStructConverter converter = new AvroStructConverter(avroData);
+
+  @Test
+  void schemasWithValues() {
+    for (Schema schema : SCHEMAS) {
+      for (int seed = 0; seed < 3; seed++) {
+        assertEquivalent(record(schema, seed, false, false));
+      }
+    }
+  }
+
+  @Test
+  void schemasWithNulls() {
+    for (Schema schema : SCHEMAS) {
+      assertEquivalent(record(schema, 1, true, false));
+    }
+  }
+
+  @Test
+  void schemasWithDefaults() {
+    for (Schema schema : SCHEMAS) {
+      assertEquivalent(record(schema, 2, false, true));
+    }
+  }
+
+  @Test
+  void allTypes() {
+    Schema nested = SchemaBuilder.record("Nested").namespace("test").fields()
+        .requiredInt("a")
+        .optionalString("b")
+        .endRecord();
+    Schema schema = SchemaBuilder.record("AllTypes").namespace("test").fields()
+        .requiredBoolean("boolean")
+        .requiredInt("int")
+        .requiredLong("long")
+        .requiredFloat("float")
+        .requiredDouble("double")
+        .requiredString("string")
+        .requiredBytes("bytes")
+        .name("enum").type().enumeration("Level").symbols("LOW", "HIGH").noDefault()
+        .name("array").type().array().items(nested).noDefault()
+        .name("map").type().map().values().doubleType().noDefault()
+        .name("record").type(nested).noDefault()
+        .optionalInt("optionalInt")
+        .name("nullFirst").type().unionOf().nullType().and().doubleType().endUnion().nullDefault()
+        .name("nullLast").type().unionOf().doubleType().and().nullType().endUnion()
+            .doubleDefault(1.0)
+        .name("defaultEnum").type().enumeration("Mode").symbols("A", "B").enumDefault("B")
+        .endRecord();
+
+    for (int seed = 0; seed < 3; seed++) {
+      assertEquivalent(record(schema, seed, false, false));
+    }
+    assertEquivalent(record(schema, 1, true, false));
+    assertEquivalent(record(schema, 2, false, true));
+  }
+
+  @Test
+  void logicalTypes() {
+    Schema timestamp = LogicalTypes.timestampMillis().addToSchema(Schema.create(Schema.Type.LONG));
+    Schema date = LogicalTypes.date().addToSchema(Schema.create(Schema.Type.INT));
+    Schema decimal = LogicalTypes.decimal(8, 2).addToSchema(Schema.create(Schema.Type.BYTES));
+    Schema schema = SchemaBuilder.record("Logical").namespace("test").fields()
+        .requiredDouble("time")
+        .name("timestamp").type(timestamp).noDefault()
+        .name("date").type(date).noDefault()
+        .name("decimal").type(decimal).noDefault()
+        .name("optionalTimestamp").type().unionOf().nullType().and().type(timestamp).endUnion()
+            .nullDefault()
+        .endRecord();
+
+    for (int seed = 0; seed < 3; seed++) {
+      assertEquivalent(record(schema, seed, false, false));
+    }
+    assertEquivalent(record(schema, 1, true, false));
+  }
+
+  @Test
+  void multiTypeUnion() {
+    Schema schema = SchemaBuilder.record("MultiUnion").namespace("test").fields()
+        .name("value").type().unionOf().nullType().and().intType().and().stringType().endUnion()
+            .nullDefault()
+        .endRecord();
+
+    for (int seed = 0; seed < 3; seed++) {
+      assertEquivalent(record(schema, seed, false, false));
+    }
+    assertEquivalent(record(schema, 1, true, false));
+  }
+
+  @Test
+  void requiredNull() {
+    Schema schema = SchemaBuilder.record("Required").namespace("test").fields()
+        .requiredDouble("time")
+        .requiredString("name")
+        .endRecord();
+    GenericData.Record record = new GenericData.Record(schema);
+    record.put("time", 1.0);
+
+    assertThrows(DataException.class, () -> avroData.toConnectData(schema, record));
+    assertThrows(DataException.class, () -> converter.toConnectData(record));
+  }
+
+  private void assertEquivalent(IndexedRecord record) {
+    assertEquals(avroData.toConnectData(record.getSchema(), record),
+        converter.toConnectData(record), () -> "Converting " + record);
+    // converters are cached per schema
+    assertEquals(avroData.toConnectData(record.getSchema(), record),
+        converter.toConnectData(record), () -> "Converting " + record + " again");
+  }
+
+  /**
+   * Record of given schema. Values vary with given seed. Optional values are null if
+   * {@code withNulls} is set, and fields with a default value keep it if {@code withDefaults} is
+   * set.
+   */
+  private static IndexedRecord record(
+      Schema schema, int seed, boolean withNulls, boolean withDefaults) {
+    GenericRecordBuilder builder = new GenericRecordBuilder(schema);
+    for (Schema.Field field : schema.getFields()) {
+      if (withDefaults && field.hasDefaultValue()) {
+        continue;
+      }
+      builder.set(field, value(field.schema(), seed + field.pos(), withNulls, withDefaults));
+    }
+    return builder.build();
+  }
+
+  private static Object value(Schema schema, int seed, boolean withNulls, boolean withDefaults) {
+    switch (schema.getType()) {
+      case NULL:
+        return null;
+      case BOOLEAN:
+        return seed % 2 == 0;
+      case INT:
+        return seed;
+      case LONG:
+        return 1_600_000_000_000L + seed;
+      case FLOAT:
+        return seed + 0.5f;
+      case DOUBLE:
+        return seed + 0.25;
+      case STRING:
+        return new Utf8("value" + seed);
+      case BYTES:
+        return ByteBuffer.wrap(new byte[] {(byte) seed, 1, 2});
+      case FIXED:
+        return new GenericData.Fixed(schema, new byte[schema.getFixedSize()]);
+      case ENUM:
+        List<String> symbols = schema.getEnumSymbols();
+        return new GenericData.EnumSymbol(schema, symbols.get(seed % symbols.size()));
+      case ARRAY:
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+          values.add(value(schema.getElementType(), seed + i, withNulls, withDefaults));
+        }
+        return values;
+      case MAP:
+        Map<Utf8, Object> map = new HashMap<>();
+        for (int i = 0; i < 2; i++) {
+          map.put(new Utf8("key" + i),
+              value(schema.getValueType(), seed + i, withNulls, withDefaults));
+        }
+        return map;
+      case UNION:
+        List<Schema> types = new ArrayList<>(schema.getTypes());
+        if (types.removeIf(t -> t.getType() == Schema.Type.NULL) && withNulls) {
+          return null;
+        }
+        return value(types.get(seed % types.size()), seed, withNulls, withDefaults);
+      case RECORD:
+        return record(schema, seed, withNulls, withDefaults);
+      default:
+        throw new IllegalArgumentException("Unsupported schema " + schema);
+    }
+  }
+}
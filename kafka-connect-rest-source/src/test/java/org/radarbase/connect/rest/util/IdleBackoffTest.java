@@ -0,0 +1,103 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.radarbase.connect.rest.util.IdleBackoff.GRACE_RESPONSES;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class IdleBackoffTest {
+  private static final Duration BASE = Duration.ofMinutes(10);
+  private static final Duration MAX = Duration.ofHours(1);
+
+  private static void empty(IdleBackoff backoff, String route, int count) {
+    for (int i = 0; i < count; i++) {
+      backoff.responseEmpty("a", route);
+    }
+  }
+
+  @Test
+  void graceResponsesKeepBaseInterval() {
+    IdleBackoff backoff = new IdleBackoff();
+    assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, MAX));
+    empty(backoff, "r", GRACE_RESPONSES);
+    assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, MAX));
+    empty(backoff, "r", 1);
+    assertEquals(BASE.multipliedBy(2), backoff.getPollInterval("a", "r", BASE, MAX));
+    empty(backoff, "r", 1);
+    assertEquals(BASE.multipliedBy(4), backoff.getPollInterval("a", "r", BASE, MAX));
+  }
+
+  @Test
+  void doublingIsCapped() {
+    IdleBackoff backoff = new IdleBackoff();
+    empty(backoff, "r", GRACE_RESPONSES + 3);
+    // 80 minutes is capped at an hour
+    assertEquals(MAX, backoff.getPollInterval("a", "r", BASE, MAX));
+    empty(backoff, "r", 100);
+    assertEquals(MAX, backoff.getPollInterval("a", "r", BASE, MAX));
+    // a maximum below the base interval does not shorten the base interval
+    assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, Duration.ofMinutes(5)));
+  }
+
+  @Test
+  void countsArePerUserAndRoute() {
+    IdleBackoff backoff = new IdleBackoff();
+    empty(backoff, "r", GRACE_RESPONSES + 1);
+    assertEquals(BASE, backoff.getPollInterval("a", "s", BASE, MAX));
+    assertEquals(BASE, backoff.getPollInterval("b", "r", BASE, MAX));
+
+    backoff.reset("a", "r");
+    assertEquals(0, backoff.getEmptyResponses("a", "r"));
+    assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, MAX));
+  }
+
+  @Test
+  void dataWakesAllRoutesOfUser() {
+    IdleBackoff backoff = new IdleBackoff();
+    List<String> wokenUsers = new ArrayList<>();
+    List<Set<String>> wokenRoutes = new ArrayList<>();
+    backoff.addWakeListener((user, routes) -> {
+      wokenUsers.add(user);
+      wokenRoutes.add(routes);
+    });
+    empty(backoff, "r", GRACE_RESPONSES + 2);
+    empty(backoff, "s", 1);
+    backoff.responseEmpty("b", "r");
+
+    backoff.dataReceived("a");
+    assertEquals(Collections.singletonList("a"), wokenUsers);
+    assertEquals(Collections.singletonList(new HashSet<>(Arrays.asList("r", "s"))), wokenRoutes);
+    assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, MAX));
+    assertEquals(0, backoff.getEmptyResponses("a", "s"));
+    // other users stay idle
+    assertEquals(1, backoff.getEmptyResponses("b", "r"));
+
+    // users without idle routes do not wake
+    backoff.dataReceived("a");
+    assertEquals(1, wokenUsers.size());
+  }
+}
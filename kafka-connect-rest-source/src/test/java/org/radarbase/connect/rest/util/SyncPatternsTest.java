@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.time.Duration;
+import java.time.Instant;
+import org.junit.jupiter.api.Test;
+
+class SyncPatternsTest {
+  private static final Instant START = Instant.parse("2020-01-01T08:15:00Z");
+  private static final Duration ONE_DAY = Duration.ofDays(1);
+
+  /** Observe a sync of user "a" at the time of {@link #START} on each of given days. */
+  private static SyncPatterns morningSyncs(int days) {
+    SyncPatterns patterns = new SyncPatterns();
+    for (int i = 0; i < days; i++) {
+      patterns.observe("a", START.plus(ONE_DAY.multipliedBy(i)));
+    }
+    return patterns;
+  }
+
+  @Test
+  void unknownUserIsNotPostponed() {
+    SyncPatterns patterns = morningSyncs(14);
+    Instant time = Instant.parse("2020-01-15T14:30:00Z");
+    assertEquals(time, patterns.nextPollTime("b", time, ONE_DAY));
+  }
+
+  @Test
+  void fewSyncsAreNotPostponed() {
+    SyncPatterns patterns = morningSyncs(6);
+    Instant time = Instant.parse("2020-01-07T14:30:00Z");
+    assertEquals(time, patterns.nextPollTime("a", time, ONE_DAY));
+  }
+
+  @Test
+  void postponedToSyncHour() {
+    SyncPatterns patterns = morningSyncs(14);
+    assertEquals(Instant.parse("2020-01-16T08:00:00Z"),
+        patterns.nextPollTime("a", Instant.parse("2020-01-15T14:30:00Z"), ONE_DAY));
+    assertEquals(Instant.parse("2020-01-16T08:00:00Z"),
+        patterns.nextPollTime("a", Instant.parse("2020-01-16T07:59:59Z"), ONE_DAY));
+  }
+
+  @Test
+  void syncHourAndHourAfterAreNotPostponed() {
+    SyncPatterns patterns = morningSyncs(14);
+    Instant syncHour = Instant.parse("2020-01-15T08:30:00Z");
+    assertEquals(syncHour, patterns.nextPollTime("a", syncHour, ONE_DAY));
+    Instant hourAfter = Instant.parse("2020-01-15T09:59:00Z");
+    assertEquals(hourAfter, patterns.nextPollTime("a", hourAfter, ONE_DAY));
+  }
+
+  @Test
+  void postponedAtMostMaxDelay() {
+    SyncPatterns patterns = morningSyncs(14);
+    Instant time = Instant.parse("2020-01-15T14:30:00Z");
+    assertEquals(time.plus(Duration.ofHours(3)),
+        patterns.nextPollTime("a", time, Duration.ofHours(3)));
+    assertEquals(time, patterns.nextPollTime("a", time, Duration.ZERO));
+  }
+
+  @Test
+  void sameHourCountsOnce() {
+    SyncPatterns patterns = new SyncPatterns();
+    for (int i = 0; i < 20; i++) {
+      // the same sync time read again, and records later in the same hour
+      patterns.observe("a", START);
+      patterns.observe("a", START.plus(Duration.ofMinutes(i)));
+    }
+    Instant time = Instant.parse("2020-01-01T14:30:00Z");
+    assertEquals(time, patterns.nextPollTime("a", time, ONE_DAY));
+  }
+
+  @Test
+  void earlierSyncsAreIgnored() {
+    SyncPatterns patterns = morningSyncs(14);
+    for (int i = 0; i < 14; i++) {
+      // syncs in the afternoon of earlier days
+      patterns.observe("a", Instant.parse("2019-12-01T14:15:00Z").plus(ONE_DAY.multipliedBy(i)));
+    }
+    assertEquals(Instant.parse("2020-01-16T08:00:00Z"),
+        patterns.nextPollTime("a", Instant.parse("2020-01-15T14:30:00Z"), ONE_DAY));
+  }
+
+  @Test
+  void oldSyncsDecay() {
+    SyncPatterns patterns = morningSyncs(14);
+    Instant evening = START.plus(Duration.ofHours(12));
+    for (int i = 14; i < 114; i++) {
+      patterns.observe("a", evening.plus(ONE_DAY.multipliedBy(i)));
+    }
+    // the morning syncs no longer count, so the morning is postponed to the evening
+    assertEquals(Instant.parse("2020-04-24T20:00:00Z"),
+        patterns.nextPollTime("a", Instant.parse("2020-04-24T08:30:00Z"), ONE_DAY));
+    Instant time = Instant.parse("2020-04-24T21:30:00Z");
+    assertEquals(time, patterns.nextPollTime("a", time, ONE_DAY));
+  }
+}
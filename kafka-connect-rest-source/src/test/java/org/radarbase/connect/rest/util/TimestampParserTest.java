@@ -0,0 +1,308 @@
+/*
+ * Copyright 2018 The Hyve
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.radarbase.connect.rest.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.fail;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.zone.ZoneOffsetTransition;
+import java.time.zone.ZoneRules;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Compares {@link TimestampParser} with parsing by {@link java.time}, which it must match for
+ * any input: either both return the same epoch milliseconds, or both throw a
+ * {@link DateTimeParseException}.
+ */
+class TimestampParserTest {
+  private static final List<ZoneId> ZONES = Arrays.asList(
+      ZoneOffset.UTC,
+      ZoneOffset.ofHoursMinutes(-9, -30),
+      ZoneId.of("Europe/Amsterdam"),
+      ZoneId.of("Europe/London"),
+      // negative daylight saving time
+      ZoneId.of("Europe/Dublin"),
+      ZoneId.of("America/New_York"),
+      ZoneId.of("America/St_Johns"),
+      // transitions at midnight
+      ZoneId.of("America/Sao_Paulo"),
+      ZoneId.of("America/Santiago"),
+      ZoneId.of("Asia/Kathmandu"),
+      // half hour transitions
+      ZoneId.of("Australia/Lord_Howe"),
+      ZoneId.of("Pacific/Chatham"),
+      // skipped a whole day in 2011
+      ZoneId.of("Pacific/Apia"),
+      ZoneId.of("Africa/Casablanca"));
+
+  private static final DateTimeFormatter LOCAL_MILLIS =
+      DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS");
+  private static final int ITERATIONS = 20_000;
+
+  private final Random random = new Random(1L);
+
+  @Test
+  void offsetDateTimes() {
+    for (int i = 0; i < ITERATIONS; i++) {
+      assertOffsetDateTime(formatOffsetDateTime(randomDateTime(), randomOffset(), randomNanos()));
+    }
+  }
+
+  @Test
+  void localDateTimes() {
+    for (ZoneId zone : ZONES) {
+      TimestampParser parser = new TimestampParser(zone);
+      for (int i = 0; i < ITERATIONS / ZONES.size(); i++) {
+        LocalDateTime dateTime = randomDateTime();
+        assertLocalDateTime(parser, zone, dateTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+        assertLocalDateTime(parser, zone, dateTime.withNano(random.nextInt(1000) * 1_000_000)
+            .format(LOCAL_MILLIS));
+      }
+    }
+  }
+
+  @Test
+  void daylightSavingTransitions() {
+    Instant start = Instant.parse("1990-01-01T00:00:00Z");
+    Instant end = Instant.parse("2040-01-01T00:00:00Z");
+    for (ZoneId zone : ZONES) {
+      ZoneRules rules = zone.getRules();
+      TimestampParser parser = new TimestampParser(zone);
+      for (ZoneOffsetTransition transition = rules.nextTransition(start);
+          transition != null && transition.getInstant().isBefore(end);
+          transition = rules.nextTransition(transition.getInstant())) {
+        LocalDateTime local = transition.getDateTimeBefore();
+        // every quarter hour from the day before until the day after the transition
+        for (LocalDateTime dateTime = local.toLocalDate().minusDays(1).atStartOfDay();
+            dateTime.isBefore(local.toLocalDate().plusDays(2).atStartOfDay());
+            dateTime = dateTime.plusMinutes(15)) {
+          String text = dateTime.withSecond(1).format(DateTimeFormatter.ISO_LOCAL_DATE_TIME);
+          assertLocalDateTime(parser, zone, text);
+          assertLocalTime(parser, zone, dateTime.toLocalDate(), text.substring(11));
+          assertOffsetDateTime(text + transition.getOffsetBefore());
+          assertOffsetDateTime(text + transition.getOffsetAfter());
+        }
+      }
+    }
+  }
+
+  @Test
+  void leapDays() {
+    for (String date : Arrays.asList(
+        "2000-02-29", "2020-02-29", "2024-02-29", "1900-02-29", "2100-02-29", "2023-02-29",
+        "2024-02-30", "2000-12-31", "0000-02-29", "0000-03-01", "0001-01-01", "9999-12-31")) {
+      assertOffsetDateTime(date + "T00:00:00Z");
+      assertOffsetDateTime(date + "T23:59:59.999-11:30");
+      for (ZoneId zone : ZONES) {
+        assertLocalDateTime(new TimestampParser(zone), zone, date + "T12:00:00");
+      }
+    }
+  }
+
+  @Test
+  void negativeOffsets() {
+    for (String offset : Arrays.asList(
+        "-00:00", "-00:01", "-01:00", "-03:30", "-09:30", "-12:00", "-18:00", "-18:01", "-19:00",
+        "+18:00", "+18:30", "+14:00", "+05:45")) {
+      assertOffsetDateTime("2021-03-04T05:06:07" + offset);
+      assertOffsetDateTime("2021-03-04T05:06:07.123" + offset);
+      assertOffsetDateTime("1970-01-01T00:00:00" + offset);
+      assertOffsetDateTime("1969-12-31T23:59:59.999" + offset);
+    }
+  }
+
+  @Test
+  void fractionalSeconds() {
+    for (String fraction : Arrays.asList(
+        "", ".0", ".1", ".12", ".123", ".1234", ".12345", ".123456", ".999999999", ".9999999999",
+        ".", ".12a")) {
+      assertOffsetDateTime("2021-03-04T05:06:07" + fraction + "Z");
+      assertOffsetDateTime("2021-03-04T05:06:07" + fraction + "+01:00");
+      assertOffsetDateTime("1969-12-31T23:59:59" + fraction + "-01:00");
+      assertLocalDateTime(new TimestampParser(ZoneOffset.UTC), ZoneOffset.UTC,
+          "2021-03-04T05:06:07" + fraction);
+    }
+  }
+
+  @Test
+  void malformedInput() {
+    TimestampParser parser = new TimestampParser(ZoneId.of("Europe/Amsterdam"));
+    for (String text : Arrays.asList(
+        "", "T", "2021", "2021-03-04", "2021-03-04T", "2021-03-04T05:06", "2021-03-04T05:06:07",
+        "2021-03-04T05:06:07+", "2021-03-04T05:06:07+01", "2021-03-04T05:06:07+0100",
+        "2021-03-04T05:06:07+01:00:00", "2021-03-04T05:06:07 +01:00", "2021-03-04 05:06:07Z",
+        "2021-3-04T05:06:07Z", "2021-03-04T5:06:07Z", "2021-13-04T05:06:07Z",
+        "2021-00-04T05:06:07Z", "2021-03-00T05:06:07Z", "2021-04-31T05:06:07Z",
+        "2021-03-04T24:00:00Z", "2021-03-04T23:60:00Z", "2021-03-04T23:59:60Z",
+        "2021-03-04T05:06:07.Z", "2021-03-04T05:06:07z", "2021-03-04t05:06:07Z",
+        "+2021-03-04T05:06:07Z", "-2021-03-04T05:06:07Z", "20210-03-04T05:06:07Z",
+        "2021/03/04T05:06:07Z", "2021-03-04T05-06-07Z", "2021-03-04T05:06:07ZZ",
+        "2021-03-04T05:06:07+01:60", "2021-03-04T05:06:07*01:00", "abcdefghijklmnopqrstuvwxyz",
+        "2021-03-04T05:06:07.123456789012Z")) {
+      assertOffsetDateTime(text);
+      assertLocalDateTime(parser, ZoneId.of("Europe/Amsterdam"), text);
+    }
+    for (String text : Arrays.asList(
+        "", "05:06", "5:06:07", "05:06:7", "24:00:00", "23:60:00", "23:59:60", "05-06-07",
+        "05:06:07Z", "05:06:07.1", "05:06:07.123", "ab:cd:ef")) {
+      assertLocalTime(parser, ZoneId.of("Europe/Amsterdam"), LocalDate.of(2021, 3, 28), text);
+    }
+  }
+
+  @Test
+  void mutatedInput() {
+    String alphabet = "0123456789-:T.Z+ x";
+    TimestampParser parser = new TimestampParser(ZoneId.of("Europe/Amsterdam"));
+    for (int i = 0; i < ITERATIONS; i++) {
+      StringBuilder text = new StringBuilder(
+          formatOffsetDateTime(randomDateTime(), randomOffset(), randomNanos()));
+      int mutations = 1 + random.nextInt(3);
+      for (int j = 0; j < mutations; j++) {
+        int index = random.nextInt(text.length());
+        switch (random.nextInt(3)) {
+          case 0:
+            text.setCharAt(index, alphabet.charAt(random.nextInt(alphabet.length())));
+            break;
+          case 1:
+            text.deleteCharAt(index);
+            break;
+          default:
+            text.insert(index, alphabet.charAt(random.nextInt(alphabet.length())));
+            break;
+        }
+        if (text.length() == 0) {
+          break;
+        }
+      }
+      assertOffsetDateTime(text.toString());
+      assertLocalDateTime(parser, ZoneId.of("Europe/Amsterdam"), text.toString());
+    }
+  }
+
+  @Test
+  void parsesLocalTimeOnDate() {
+    ZoneId zone = ZoneId.of("Europe/Amsterdam");
+    TimestampParser parser = new TimestampParser(zone);
+    LocalDate date = LocalDate.of(2021, 3, 28);
+    // parse a whole day, including the skipped hour, and the days around it
+    for (LocalDate day = date.minusDays(1); !day.isAfter(date.plusDays(1)); day = day.plusDays(1)) {
+      for (int second = 0; second < 86_400; second += 7) {
+        assertLocalTime(parser, zone, day, LocalTime.ofSecondOfDay(second).toString());
+      }
+    }
+    assertEquals(
+        Instant.parse("2021-03-28T01:30:00Z").toEpochMilli(),
+        parser.parseLocalTime(date, "02:30:00"));
+    assertEquals(
+        Instant.parse("2021-10-31T00:30:00Z").toEpochMilli(),
+        parser.parseLocalTime(LocalDate.of(2021, 10, 31), "02:30:00"));
+  }
+
+  @Test
+  void parsesInstant() {
+    assertEquals(Instant.parse("2021-03-04T04:06:07.123Z"),
+        TimestampParser.parseInstant("2021-03-04T05:06:07.123+01:00"));
+    assertThrows(DateTimeParseException.class, () -> TimestampParser.parseInstant("now"));
+  }
+
+  private static void assertOffsetDateTime(String text) {
+    assertSameResult(text,
+        () -> OffsetDateTime.parse(text).toInstant().toEpochMilli(),
+        () -> TimestampParser.parseOffsetDateTime(text));
+  }
+
+  private static void assertLocalDateTime(TimestampParser parser, ZoneId zone, String text) {
+    assertSameResult(text + " in " + zone,
+        () -> LocalDateTime.parse(text).atZone(zone).toInstant().toEpochMilli(),
+        () -> parser.parseLocalDateTime(text));
+  }
+
+  private static void assertLocalTime(
+      TimestampParser parser, ZoneId zone, LocalDate date, String text) {
+    assertSameResult(text + " on " + date + " in " + zone,
+        () -> LocalDateTime.of(date, LocalTime.parse(text)).atZone(zone).toInstant()
+            .toEpochMilli(),
+        () -> parser.parseLocalTime(date, text));
+  }
+
+  private static void assertSameResult(
+      String description, Supplier<Long> expected, Supplier<Long> actual) {
+    long expectedValue;
+    try {
+      expectedValue = expected.get();
+    } catch (DateTimeParseException ex) {
+      try {
+        long actualValue = actual.get();
+        fail("Parsed invalid " + description + " to " + actualValue);
+      } catch (DateTimeParseException ex2) {
+        // expected
+      }
+      return;
+    }
+    assertEquals(expectedValue, actual.get(), () -> "Parsing " + description);
+  }
+
+  private LocalDateTime randomDateTime() {
+    long minDay = LocalDate.of(1, 1, 1).toEpochDay();
+    long maxDay = LocalDate.of(9999, 12, 31).toEpochDay();
+    // mostly recent dates, where most transitions happen
+    long epochDay = random.nextInt(4) == 0
+        ? minDay + (long) (random.nextDouble() * (maxDay - minDay))
+        : LocalDate.of(1960, 1, 1).toEpochDay() + random.nextInt(100 * 365);
+    return LocalDate.ofEpochDay(epochDay).atTime(LocalTime.ofSecondOfDay(random.nextInt(86_400)));
+  }
+
+  private ZoneOffset randomOffset() {
+    if (random.nextInt(4) == 0) {
+      return ZoneOffset.UTC;
+    }
+    return ZoneOffset.ofTotalSeconds((random.nextInt(18 * 4 * 2 + 1) - 18 * 4) * 15 * 60);
+  }
+
+  private int randomNanos() {
+    switch (random.nextInt(4)) {
+      case 0:
+        return 0;
+      case 1:
+        return random.nextInt(1000) * 1_000_000;
+      case 2:
+        return random.nextInt(1_000_000) * 1_000;
+      default:
+        return random.nextInt(1_000_000_000);
+    }
+  }
+
+  private static String formatOffsetDateTime(LocalDateTime dateTime, ZoneOffset offset, int nanos) {
+    return OffsetDateTime.of(dateTime.withNano(nanos), offset)
+        .format(DateTimeFormatter.ISO_OFFSET_DATE_TIME);
+  }
+}
@@ -0,0 +1,118 @@
+package org.radarbase.oura.converter
+
+import java.time.Instant
+import java.time.OffsetDateTime
+
+/**
+ * Parser of the ISO 8601 offset date-times returned by the Oura API, for example
+ * `2021-11-01T01:23:45+02:00` or `2021-11-01T01:23:45.000Z`. The fixed format is parsed directly
+ * to epoch milliseconds, without the intermediate objects of [OffsetDateTime.parse]. Text in any
+ * other format is parsed with [OffsetDateTime.parse] instead.
+ */
+object OffsetDateTimeParser {
+    private const val SECONDS_PER_DAY = 86_400L
+    private const val MAX_OFFSET_SECONDS = 18 * 3600
+
+    /**
+     * Epoch milliseconds of given date-time.
+     * @throws java.time.format.DateTimeParseException if the text cannot be parsed.
+     */
+    fun parseEpochMilli(text: CharSequence): Long {
+        val epochDay = if (text.length >= 20 && text[10] == 'T') epochDay(text) else -1L
+        val secondOfDay = if (epochDay >= 0) secondOfDay(text, 11) else -1
+        var millis = 0
+        var offsetIndex = 19
+        if (secondOfDay >= 0 && text[19] == '.' && text.length >= 24) {
+            millis = digits(text, 20, 3)
+            offsetIndex = 23
+        }
+        val offset = if (secondOfDay >= 0 && millis >= 0) {
+            offsetSeconds(text, offsetIndex)
+        } else {
+            Int.MIN_VALUE
+        }
+        if (offset == Int.MIN_VALUE) {
+            return OffsetDateTime.parse(text).toInstant().toEpochMilli()
+        }
+        return (epochDay * SECONDS_PER_DAY + secondOfDay - offset) * 1000L + millis
+    }
+
+    /** Instant of given date-time. */
+    fun parseInstant(text: CharSequence): Instant = Instant.ofEpochMilli(parseEpochMilli(text))
+
+    /** Epoch day of `yyyy-MM-dd` at the start of the text, or -1 if invalid or before 1970. */
+    private fun epochDay(text: CharSequence): Long {
+        val year = digits(text, 0, 4)
+        val month = digits(text, 5, 2)
+        val day = digits(text, 8, 2)
+        if (year < 1970 || month !in 1..12 || day < 1 || day > lengthOfMonth(year, month) ||
+            text[4] != '-' || text[7] != '-'
+        ) {
+            return -1L
+        }
+        // Days from the civil calendar, see http://howardhinnant.github.io/date_algorithms.html
+        val y = if (month <= 2) year - 1 else year
+        val era = y / 400
+        val yearOfEra = y - era * 400
+        val dayOfYear = (153 * (if (month > 2) month - 3 else month + 9) + 2) / 5 + day - 1
+        val dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear
+        return era * 146_097L + dayOfEra - 719_468L
+    }
+
+    private fun lengthOfMonth(year: Int, month: Int): Int = when (month) {
+        2 -> if ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) 29 else 28
+        4, 6, 9, 11 -> 30
+        else -> 31
+    }
+
+    /** Second of day of `HH:mm:ss` at given index, or -1 if invalid. */
+    private fun secondOfDay(text: CharSequence, index: Int): Int {
+        if (text[index + 2] != ':' || text[index + 5] != ':') {
+            return -1
+        }
+        val hour = digits(text, index, 2)
+        val minute = digits(text, index + 3, 2)
+        val second = digits(text, index + 6, 2)
+        if (hour !in 0..23 || minute !in 0..59 || second !in 0..59) {
+            return -1
+        }
+        return hour * 3600 + minute * 60 + second
+    }
+
+    /**
+     * Offset in seconds of `Z` or `+HH:mm` at given index, which must end the text, or
+     * [Int.MIN_VALUE] if invalid.
+     */
+    private fun offsetSeconds(text: CharSequence, index: Int): Int {
+        if (text.length == index + 1 && text[index] == 'Z') {
+            return 0
+        }
+        if (text.length != index + 6 || text[index + 3] != ':') {
+            return Int.MIN_VALUE
+        }
+        val sign = text[index]
+        val hours = digits(text, index + 1, 2)
+        val minutes = digits(text, index + 4, 2)
+        val offset = hours * 3600 + minutes * 60
+        // java.time rejects offsets beyond +-18:00
+        if (hours < 0 || minutes !in 0..59 || offset > MAX_OFFSET_SECONDS ||
+            (sign != '+' && sign != '-')
+        ) {
+            return Int.MIN_VALUE
+        }
+        return if (sign == '-') -offset else offset
+    }
+
+    /** Parse given number of decimal digits at given index, or -1 if not all are digits. */
+    private fun digits(text: CharSequence, index: Int, count: Int): Int {
+        var result = 0
+        for (i in index until index + count) {
+            val digit = text[i] - '0'
+            if (digit !in 0..9) {
+                return -1
+            }
+            result = result * 10 + digit
+        }
+        return result
+    }
+}
@@ -5,7 +5,6 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraDailyActivity
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraDailyActivityConverter(
     private val topic: String = "connect_oura_daily_activity",
@@ -18,8 +17,7 @@ class OuraDailyActivityConverter(
             ?: return emptySequence()
         return array.asSequence()
             .mapCatching {
-                val startTime = OffsetDateTime.parse(it["timestamp"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(it["timestamp"].textValue())
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
@@ -5,7 +5,6 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraDailyReadiness
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraDailyReadinessConverter(
     private val topic: String = "connect_oura_daily_readiness",
@@ -18,8 +17,7 @@ class OuraDailyReadinessConverter(
             ?: return emptySequence()
         return array.asSequence()
             .mapCatching {
-                val startTime = OffsetDateTime.parse(it["timestamp"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(it["timestamp"].textValue())
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
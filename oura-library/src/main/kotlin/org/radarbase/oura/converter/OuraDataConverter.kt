@@ -5,6 +5,7 @@ import okhttp3.Headers
 import org.radarbase.oura.request.OuraRequestGenerator.Companion.JSON_READER
 import org.radarbase.oura.request.RestRequest
 import org.radarbase.oura.user.User
+import java.io.InputStream
 import java.time.Instant
 
 /**
@@ -21,10 +22,24 @@ interface OuraDataConverter : RecordConverter {
         request: RestRequest,
         headers: Headers,
         data: ByteArray,
-    ): List<TopicData> {
-        val node = JSON_READER.readTree(data)
+    ): List<TopicData> = convert(request, JSON_READER.readTree(data))
+
+    override fun convert(
+        request: RestRequest,
+        headers: Headers,
+        body: InputStream,
+    ): List<TopicData> = convert(request, JSON_READER.readTree(body))
 
-        return this.processRecords(node, request.user)
+    /**
+     * Convert an already parsed response. This allows a single parsed response to be shared
+     * between all converters of a route. The tree is only read, so it may be shared between
+     * threads.
+     */
+    fun convert(
+        request: RestRequest,
+        root: JsonNode,
+    ): List<TopicData> {
+        return this.processRecords(root, request.user)
             .mapNotNull { r ->
                 r.fold(
                     {
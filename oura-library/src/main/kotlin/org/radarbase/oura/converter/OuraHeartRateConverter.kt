@@ -6,7 +6,6 @@ import org.radarcns.connector.oura.OuraHeartRate
 import org.radarcns.connector.oura.OuraHeartRateSource
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraHeartRateConverter(
     private val topic: String = "connect_oura_heart_rate",
@@ -19,8 +18,7 @@ class OuraHeartRateConverter(
             ?: return emptySequence()
         return array.asSequence()
             .mapCatching {
-                val startTime = OffsetDateTime.parse(it["timestamp"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(it["timestamp"].textValue())
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
@@ -5,7 +5,6 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraRestModePeriod
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraRestModePeriodConverter(
     private val topic: String = "connect_oura_rest_mode_period",
@@ -18,8 +17,7 @@ class OuraRestModePeriodConverter(
             ?: return emptySequence()
         return array.asSequence()
             .mapCatching {
-                val startTime = OffsetDateTime.parse(it["start_time"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(it["start_time"].textValue())
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
@@ -36,8 +34,9 @@ class OuraRestModePeriodConverter(
         return OuraRestModePeriod.newBuilder().apply {
             time = startTime.toEpochMilli() / 1000.0
             timeReceived = System.currentTimeMillis() / 1000.0
-            endTime = OffsetDateTime.parse(data.get("end_time").textValue())
-                .toInstant().toEpochMilli() / 1000.0
+            endTime = OffsetDateTimeParser.parseEpochMilli(
+                data.get("end_time").textValue(),
+            ) / 1000.0
             id = data.get("id").textValue()
             startDay = data.get("start_day").textValue()
             endDay = data.get("end_day").textValue()
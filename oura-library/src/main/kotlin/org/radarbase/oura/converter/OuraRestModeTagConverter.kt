@@ -5,7 +5,6 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraTag
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraRestModeTagConverter(
     private val topic: String = "connect_oura_tag",
@@ -26,8 +25,9 @@ class OuraRestModeTagConverter(
                     episodes.asSequence()
                         .flatMap {
                             val tags = it.get("tags")
-                            val startTime = OffsetDateTime.parse(it["timestamp"].textValue())
-                            val startInstant = startTime.toInstant()
+                            val startInstant = OffsetDateTimeParser.parseInstant(
+                                it["timestamp"].textValue(),
+                            )
                             tags.asSequence().mapCatching {
                                 TopicData(
                                     key = user.observationKey,
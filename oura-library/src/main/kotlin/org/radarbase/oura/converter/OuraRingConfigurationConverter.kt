@@ -8,7 +8,6 @@ import org.radarcns.connector.oura.OuraRingDesign
 import org.radarcns.connector.oura.OuraRingHardwareType
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraRingConfigurationConverter(
     private val topic: String = "connect_oura_ring_configuration",
@@ -24,11 +23,7 @@ class OuraRingConfigurationConverter(
             .mapCatching {
                 val setUpAt = it["set_up_at"]
                 val setupTimeInstant =
-                    setUpAt?.textValue()?.let {
-                        OffsetDateTime.parse(
-                            it,
-                        )
-                    }?.toInstant()
+                    setUpAt?.textValue()?.let { OffsetDateTimeParser.parseInstant(it) }
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
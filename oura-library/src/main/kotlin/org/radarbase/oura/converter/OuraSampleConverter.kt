@@ -0,0 +1,114 @@
+package org.radarbase.oura.converter
+
+import com.fasterxml.jackson.databind.JsonNode
+import org.radarbase.oura.request.RestRequest
+import org.radarbase.oura.user.User
+
+/**
+ * Converter of Oura documents that contain a series of samples at a fixed interval. Records of
+ * all samples are added to a single list, without wrapping each sample in a sequence element or
+ * a [Result].
+ */
+interface OuraSampleConverter : OuraDataConverter {
+    /**
+     * Add the records of the samples in a single document of the `data` array to [records].
+     * Samples that cannot be converted should be added with [addSample], so that only that
+     * sample is skipped.
+     * @throws Exception if the document cannot be converted.
+     */
+    fun addSamples(
+        document: JsonNode,
+        user: User,
+        timeReceived: Double,
+        records: MutableList<TopicData>,
+    )
+
+    override fun convert(
+        request: RestRequest,
+        root: JsonNode,
+    ): List<TopicData> = convertSamples(root, request.user)
+
+    override fun processRecords(
+        root: JsonNode,
+        user: User,
+    ): Sequence<Result<TopicData>> = convertSamples(root, user)
+        .asSequence()
+        .map { Result.success(it) }
+
+    private fun convertSamples(
+        root: JsonNode,
+        user: User,
+    ): List<TopicData> {
+        val array = root.get("data") ?: return emptyList()
+        val timeReceived = System.currentTimeMillis() / 1000.0
+        val records = ArrayList<TopicData>()
+        array.forEach { document ->
+            try {
+                addSamples(document, user, timeReceived, records)
+            } catch (ex: Exception) {
+                logger.error("Error processing records: {}", ex.toString())
+            }
+        }
+        return records
+    }
+}
+
+/**
+ * Add the record created by [create] to this list. If the record cannot be created, the error is
+ * logged and only this sample is skipped.
+ */
+internal inline fun MutableList<TopicData>.addSample(create: () -> TopicData) {
+    try {
+        add(create())
+    } catch (ex: Exception) {
+        logger.error("Data conversion failed.. {}", ex.toString())
+    }
+}
+
+/**
+ * Numeric samples at a fixed interval, stored in a primitive array. Samples that are not a
+ * number are stored as 0, the same as [JsonNode.intValue] and [JsonNode.floatValue] read them.
+ */
+class SampleSeries(
+    private val startTime: Double,
+    private val interval: Int,
+    private val values: DoubleArray,
+) {
+    /** Call [action] with the time in epoch seconds and value of each sample. */
+    inline fun forEachSample(action: (time: Double, value: Double) -> Unit) {
+        for (index in indices()) {
+            action(timeAt(index), valueAt(index))
+        }
+    }
+
+    fun indices(): IntRange = values.indices
+
+    fun valueAt(index: Int): Double = values[index]
+
+    fun timeAt(index: Int): Double = startTime + interval * index
+
+    companion object {
+        /**
+         * Read a sample object with `interval` and `items` fields. Returns null if either field
+         * is missing.
+         */
+        fun read(
+            node: JsonNode?,
+            startTime: Double,
+        ): SampleSeries? {
+            val interval = node?.get("interval")?.intValue()
+                ?: return null
+            val items = node.get("items")?.takeIf { it.isArray }
+                ?: return null
+            val values = DoubleArray(items.size()) { i ->
+                val item = items[i]
+                if (item.isNumber) item.doubleValue() else 0.0
+            }
+            return SampleSeries(startTime, interval, values)
+        }
+    }
+}
+
+/** Time of given ISO 8601 date-time field, in epoch seconds. */
+internal fun JsonNode.epochSeconds(field: String): Double =
+    OffsetDateTimeParser.parseEpochMilli(this[field].textValue()) / 1000.0
@@ -5,60 +5,35 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraHeartRate
 import org.radarcns.connector.oura.OuraHeartRateSource
 import org.slf4j.LoggerFactory
-import java.io.IOException
-import java.time.OffsetDateTime
 
 class OuraSessionHeartRateConverter(
     private val topic: String = "connect_oura_heart_rate",
     private val sampleKey: String = "heart_rate",
-) : OuraDataConverter {
+) : OuraSampleConverter {
 
-    @Throws(IOException::class)
-    override fun processRecords(
-        root: JsonNode,
+    override fun addSamples(
+        document: JsonNode,
         user: User,
-    ): Sequence<Result<TopicData>> {
-        val array = root.get("data")
-            ?: return emptySequence()
-        return array.asSequence()
-            .flatMap {
-                runCatching {
-                    it.processSamples(user)
-                }.getOrElse {
-                    logger.error("Error processing records", it.message)
-                    emptySequence()
-                }
+        timeReceived: Double,
+        records: MutableList<TopicData>,
+    ) {
+        val startTime = document.epochSeconds("start_datetime")
+        val id = document.get("id").textValue()
+        val series = SampleSeries.read(document.get(sampleKey), startTime) ?: return
+        series.forEachSample { time, value ->
+            records.addSample {
+                TopicData(
+                    key = user.observationKey,
+                    topic = topic,
+                    offset = time.toLong(),
+                    value = toHeartRate(
+                        time,
+                        timeReceived,
+                        id,
+                        value.toInt(),
+                    ),
+                )
             }
-    }
-
-    private fun JsonNode.processSamples(
-        user: User,
-    ): Sequence<Result<TopicData>> {
-        val startTime = OffsetDateTime.parse(this["start_datetime"].textValue())
-        val startTimeEpoch = startTime.toInstant().toEpochMilli() / 1000.0
-        val timeReceivedEpoch = System.currentTimeMillis() / 1000.0
-        val id = this.get("id").textValue()
-        val interval = this.get(sampleKey)?.get("interval")?.intValue()
-        val items = this.get(sampleKey)?.get("items")
-        return if (items == null || interval == null) {
-            emptySequence()
-        } else {
-            items.asSequence()
-                .mapIndexedCatching { index, value ->
-                    val offset = interval * index
-                    val time = startTimeEpoch + offset
-                    TopicData(
-                        key = user.observationKey,
-                        topic = topic,
-                        offset = time.toLong(),
-                        value = toHeartRate(
-                            time,
-                            timeReceivedEpoch,
-                            id,
-                            value.intValue(),
-                        ),
-                    )
-                }
         }
     }
 
@@ -6,7 +6,6 @@ import org.radarcns.connector.oura.OuraSleep
 import org.radarcns.connector.oura.OuraSleepType
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraSleepConverter(
     private val topic: String = "connect_oura_sleep",
@@ -19,8 +18,9 @@ class OuraSleepConverter(
             ?: return emptySequence()
         return array.asSequence()
             .mapCatching {
-                val startTime = OffsetDateTime.parse(it["bedtime_start"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(
+                    it["bedtime_start"].textValue(),
+                )
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
@@ -5,55 +5,40 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraSleepMovement
 import org.radarcns.connector.oura.OuraSleepMovementType
 import org.slf4j.LoggerFactory
-import java.io.IOException
-import java.time.OffsetDateTime
 
 class OuraSleepMovementConverter(
     private val topic: String = "connect_oura_sleep_movement",
-) : OuraDataConverter {
+) : OuraSampleConverter {
 
     final val SLEEP_MOVEMENT_INTERVAL = 30 // in seconds
 
-    @Throws(IOException::class)
-    override fun processRecords(
-        root: JsonNode,
+    override fun addSamples(
+        document: JsonNode,
         user: User,
-    ): Sequence<Result<TopicData>> {
-        val array = root.get("data")
-            ?: return emptySequence()
-        return array.asSequence()
-            .flatMap {
-                it.processSamples(user)
+        timeReceived: Double,
+        records: MutableList<TopicData>,
+    ) {
+        val items = document.get("movement_30_sec")?.textValue()
+        if (items.isNullOrEmpty()) {
+            return
+        }
+        val startTime = document.epochSeconds("bedtime_start")
+        val id = document.get("id").textValue()
+        for (index in items.indices) {
+            val time = startTime + SLEEP_MOVEMENT_INTERVAL * index
+            records.addSample {
+                TopicData(
+                    key = user.observationKey,
+                    topic = topic,
+                    offset = time.toLong(),
+                    value = toSleepMovement(
+                        time,
+                        timeReceived,
+                        id,
+                        items[index].classify(),
+                    ),
+                )
             }
-    }
-
-    private fun JsonNode.processSamples(
-        user: User,
-    ): Sequence<Result<TopicData>> {
-        val startTime = OffsetDateTime.parse(this["bedtime_start"].textValue())
-        val startTimeEpoch = startTime.toInstant().toEpochMilli() / 1000.0
-        val timeReceivedEpoch = System.currentTimeMillis() / 1000.0
-        val id = this.get("id").textValue()
-        val items = this.get("movement_30_sec").textValue().toCharArray()
-        return if (items.isEmpty()) {
-            emptySequence()
-        } else {
-            items.asSequence()
-                .mapIndexedCatching { index, value ->
-                    val offset = SLEEP_MOVEMENT_INTERVAL * index
-                    val time = startTimeEpoch + offset
-                    TopicData(
-                        key = user.observationKey,
-                        topic = topic,
-                        offset = time.toLong(),
-                        value = toSleepMovement(
-                            time,
-                            timeReceivedEpoch,
-                            id,
-                            value.toString(),
-                        ),
-                    )
-                }
         }
     }
 
@@ -61,22 +46,22 @@ class OuraSleepMovementConverter(
         startTimeEpoch: Double,
         timeReceivedEpoch: Double,
         idString: String,
-        value: String,
+        value: OuraSleepMovementType,
     ): OuraSleepMovement {
         return OuraSleepMovement.newBuilder().apply {
             id = idString
             time = startTimeEpoch
             timeReceived = timeReceivedEpoch
-            movement = value.classify()
+            movement = value
         }.build()
     }
 
-    private fun String.classify(): OuraSleepMovementType {
+    private fun Char.classify(): OuraSleepMovementType {
         return when (this) {
-            "1" -> OuraSleepMovementType.NO_MOTION
-            "2" -> OuraSleepMovementType.RESTLESS
-            "3" -> OuraSleepMovementType.TOSSING_AND_TURNING
-            "4" -> OuraSleepMovementType.ACTIVE
+            '1' -> OuraSleepMovementType.NO_MOTION
+            '2' -> OuraSleepMovementType.RESTLESS
+            '3' -> OuraSleepMovementType.TOSSING_AND_TURNING
+            '4' -> OuraSleepMovementType.ACTIVE
             else -> OuraSleepMovementType.UNKNOWN
         }
     }
@@ -5,55 +5,40 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraSleepPhase
 import org.radarcns.connector.oura.OuraSleepPhaseType
 import org.slf4j.LoggerFactory
-import java.io.IOException
-import java.time.OffsetDateTime
 
 class OuraSleepPhaseConverter(
     private val topic: String = "connect_oura_sleep_phase",
-) : OuraDataConverter {
+) : OuraSampleConverter {
 
     final val SLEEP_PHASE_INTERVAL = 300 // in seconds
 
-    @Throws(IOException::class)
-    override fun processRecords(
-        root: JsonNode,
+    override fun addSamples(
+        document: JsonNode,
         user: User,
-    ): Sequence<Result<TopicData>> {
-        val array = root.get("data")
-            ?: return emptySequence()
-        return array.asSequence()
-            .flatMap {
-                it.processSamples(user)
+        timeReceived: Double,
+        records: MutableList<TopicData>,
+    ) {
+        val items = document.get("sleep_phase_5_min")?.textValue()
+        if (items.isNullOrEmpty()) {
+            return
+        }
+        val startTime = document.epochSeconds("bedtime_start")
+        val id = document.get("id").textValue()
+        for (index in items.indices) {
+            val time = startTime + SLEEP_PHASE_INTERVAL * index
+            records.addSample {
+                TopicData(
+                    key = user.observationKey,
+                    topic = topic,
+                    offset = time.toLong(),
+                    value = toSleepPhase(
+                        time,
+                        timeReceived,
+                        id,
+                        items[index].classify(),
+                    ),
+                )
             }
-    }
-
-    private fun JsonNode.processSamples(
-        user: User,
-    ): Sequence<Result<TopicData>> {
-        val startTime = OffsetDateTime.parse(this["bedtime_start"].textValue())
-        val startTimeEpoch = startTime.toInstant().toEpochMilli() / 1000.0
-        val timeReceivedEpoch = System.currentTimeMillis() / 1000.0
-        val id = this.get("id").textValue()
-        val items = this.get("sleep_phase_5_min")?.textValue()?.toCharArray()
-        return if (items == null) {
-            emptySequence()
-        } else {
-            items.asSequence()
-                .mapIndexedCatching { index, value ->
-                    val offset = SLEEP_PHASE_INTERVAL * index
-                    val time = startTimeEpoch + offset
-                    TopicData(
-                        key = user.observationKey,
-                        topic = topic,
-                        offset = time.toLong(),
-                        value = toSleepPhase(
-                            time,
-                            timeReceivedEpoch,
-                            id,
-                            value.toString(),
-                        ),
-                    )
-                }
         }
     }
 
@@ -61,22 +46,22 @@ class OuraSleepPhaseConverter(
         startTimeEpoch: Double,
         timeReceivedEpoch: Double,
         idString: String,
-        value: String,
+        value: OuraSleepPhaseType,
     ): OuraSleepPhase {
         return OuraSleepPhase.newBuilder().apply {
             id = idString
             time = startTimeEpoch
             timeReceived = timeReceivedEpoch
-            phase = value.classify()
+            phase = value
         }.build()
     }
 
-    private fun String.classify(): OuraSleepPhaseType {
+    private fun Char.classify(): OuraSleepPhaseType {
         return when (this) {
-            "1" -> OuraSleepPhaseType.DEEP
-            "2" -> OuraSleepPhaseType.LIGHT
-            "3" -> OuraSleepPhaseType.REM
-            "4" -> OuraSleepPhaseType.AWAKE
+            '1' -> OuraSleepPhaseType.DEEP
+            '2' -> OuraSleepPhaseType.LIGHT
+            '3' -> OuraSleepPhaseType.REM
+            '4' -> OuraSleepPhaseType.AWAKE
             else -> OuraSleepPhaseType.UNKNOWN
         }
     }
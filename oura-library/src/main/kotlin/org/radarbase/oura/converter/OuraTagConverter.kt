@@ -5,7 +5,6 @@ import org.radarbase.oura.user.User
 import org.radarcns.connector.oura.OuraTag
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraTagConverter(
     private val topic: String = "connect_oura_tag",
@@ -18,8 +17,7 @@ class OuraTagConverter(
             ?: return emptySequence()
         return array.asSequence()
             .flatMap {
-                val startTime = OffsetDateTime.parse(it["timestamp"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(it["timestamp"].textValue())
                 val tags = it.get("tags")
                 val data = it
                 if (tags == null) {
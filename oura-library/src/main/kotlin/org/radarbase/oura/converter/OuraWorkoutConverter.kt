@@ -7,7 +7,6 @@ import org.radarcns.connector.oura.OuraWorkoutIntensity
 import org.radarcns.connector.oura.OuraWorkoutSource
 import org.slf4j.LoggerFactory
 import java.time.Instant
-import java.time.OffsetDateTime
 
 class OuraWorkoutConverter(
     private val topic: String = "connect_oura_workout",
@@ -20,8 +19,9 @@ class OuraWorkoutConverter(
             ?: return emptySequence()
         return array.asSequence()
             .mapCatching {
-                val startTime = OffsetDateTime.parse(it["start_datetime"].textValue())
-                val startInstant = startTime.toInstant()
+                val startInstant = OffsetDateTimeParser.parseInstant(
+                    it["start_datetime"].textValue(),
+                )
                 TopicData(
                     key = user.observationKey,
                     topic = topic,
@@ -38,8 +38,7 @@ class OuraWorkoutConverter(
         return OuraWorkout.newBuilder().apply {
             time = startTime.toEpochMilli() / 1000.0
             endTime = data.get("end_datetime")?.let {
-                val endTime = OffsetDateTime.parse(it.textValue())
-                endTime.toInstant().toEpochMilli() / 1000.0
+                OffsetDateTimeParser.parseEpochMilli(it.textValue()) / 1000.0
             } ?: (startTime.toEpochMilli() / 1000.0)
             timeReceived = System.currentTimeMillis() / 1000.0
             id = data.get("id")?.textValue()
@@ -4,6 +4,7 @@ import okhttp3.Headers
 import org.radarbase.oura.request.RestRequest
 import org.slf4j.LoggerFactory
 import java.io.IOException
+import java.io.InputStream
 
 interface RecordConverter {
     @Throws(IOException::class)
@@ -13,6 +14,18 @@ interface RecordConverter {
         data: ByteArray,
     ): List<TopicData>
 
+    /**
+     * Convert a response body that is read as a stream. Converters that parse the body
+     * incrementally override this, so that the body is not held in memory as a whole. By default,
+     * the whole body is read and converted with the byte array variant.
+     */
+    @Throws(IOException::class)
+    fun convert(
+        request: RestRequest,
+        headers: Headers,
+        body: InputStream,
+    ): List<TopicData> = convert(request, headers, body.readBytes())
+
     companion object {
         var logger = LoggerFactory.getLogger(RecordConverter::class.java)
     }
@@ -0,0 +1,97 @@
+package org.radarbase.oura.offset
+
+import java.time.Instant
+import java.util.TreeMap
+
+/**
+ * Time ranges of a single user and route that were polled after its offset. Ranges may be polled
+ * in any order, but the offset only advances over ranges that were polled without gaps. Ranges
+ * include their start time and exclude their end time.
+ */
+class CoveredRanges {
+    private val ranges = TreeMap<Instant, Instant>()
+
+    /** Mark given range as covered, merging it with overlapping and adjacent ranges. */
+    @Synchronized
+    fun cover(start: Instant, end: Instant) {
+        if (end <= start) {
+            return
+        }
+        var from = start
+        var until = end
+        ranges.floorEntry(start)?.let { previous ->
+            if (previous.value >= start) {
+                from = previous.key
+                until = maxOf(until, previous.value)
+            }
+        }
+        var next = ranges.ceilingEntry(from)
+        while (next != null && next.key <= until) {
+            until = maxOf(until, next.value)
+            ranges.remove(next.key)
+            next = ranges.higherEntry(next.key)
+        }
+        ranges[from] = until
+    }
+
+    /**
+     * Advance given offset over the ranges that are covered without gaps after it. Ranges before
+     * the returned offset are no longer kept.
+     */
+    @Synchronized
+    fun advance(offset: Instant): Instant {
+        var result = offset
+        while (true) {
+            val first = ranges.firstEntry() ?: break
+            if (first.key > result) {
+                break
+            }
+            result = maxOf(result, first.value)
+            ranges.remove(first.key)
+        }
+        return result
+    }
+
+    /** Whether any time after given time was covered. */
+    @Synchronized
+    fun isCoveredAfter(time: Instant): Boolean = ranges.lastEntry()?.let { it.value > time } ?: false
+
+    /** Ranges between given offset and end time that were not covered. */
+    @Synchronized
+    fun gaps(offset: Instant, end: Instant): List<Pair<Instant, Instant>> {
+        val result = mutableListOf<Pair<Instant, Instant>>()
+        var gapStart = offset
+        for ((start, until) in ranges) {
+            if (start >= end) {
+                break
+            }
+            if (start > gapStart) {
+                result += Pair(gapStart, start)
+            }
+            gapStart = maxOf(gapStart, until)
+        }
+        if (gapStart < end) {
+            result += Pair(gapStart, end)
+        }
+        return result
+    }
+
+    /** Covered ranges as text, in epoch seconds. */
+    @Synchronized
+    override fun toString(): String = ranges.entries.joinToString(",") { (start, end) ->
+        "${start.epochSecond}/${end.epochSecond}"
+    }
+
+    companion object {
+        /** Parse covered ranges written by [toString]. Invalid ranges are ignored. */
+        fun parse(text: String?): CoveredRanges = CoveredRanges().apply {
+            text?.splitToSequence(',')?.forEach { range ->
+                val start = range.substringBefore('/').toLongOrNull()
+                val end = range.substringAfter('/', "").toLongOrNull()
+                if (start != null && end != null) {
+                    cover(Instant.ofEpochSecond(start), Instant.ofEpochSecond(end))
+                }
+            }
+        }
+    }
+}
@@ -4,8 +4,12 @@ import org.radarbase.oura.route.Route
 import org.radarbase.oura.user.User
 import java.time.Instant
 
-data class Offset(
+data class Offset
+@JvmOverloads
+constructor(
     val user: User,
     val route: Route,
     val offset: Instant,
+    /** Ranges after the offset that were already polled, as written by [CoveredRanges]. */
+    val covered: String? = null,
 )
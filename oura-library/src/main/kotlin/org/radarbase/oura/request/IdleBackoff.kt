@@ -0,0 +1,79 @@
+package org.radarbase.oura.request
+
+import java.time.Duration
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.CopyOnWriteArrayList
+
+/**
+ * Consecutive responses without data per user and route. The poll interval of a route doubles
+ * with each empty response after the first few, so users that stopped wearing their device are
+ * polled less and less often. As soon as any route of a user returns data, the counts of all
+ * routes of that user are reset and wake listeners are notified, so that the routes poll at
+ * their base interval again.
+ *
+ * Only empty responses for the most recent data of a user should be registered. Older data
+ * that is still being caught up on may be empty even if the user is active.
+ */
+class IdleBackoff {
+    private val emptyResponses = ConcurrentHashMap<String, MutableMap<String, Int>>()
+    private val wakeListeners = CopyOnWriteArrayList<(String, Set<String>) -> Unit>()
+
+    /**
+     * Add a listener that is called when a user with idle routes returns data again. It is called
+     * with the key of the user and the routes of the user that returned no data before.
+     */
+    fun addWakeListener(listener: (userKey: String, idleRoutes: Set<String>) -> Unit) {
+        wakeListeners += listener
+    }
+
+    /** Register that a request of given route for the user with given key returned no data. */
+    fun responseEmpty(userKey: String, route: String) {
+        emptyResponses.computeIfAbsent(userKey) { ConcurrentHashMap() }
+            .merge(route, 1, Int::plus)
+    }
+
+    /**
+     * Reset the count of given route of the user with given key, for example because the route
+     * backs off for another reason. Other routes and wake listeners are not affected.
+     */
+    fun reset(userKey: String, route: String) {
+        emptyResponses[userKey]?.remove(route)
+    }
+
+    /**
+     * Register that a request for the user with given key returned recent data. All routes of
+     * the user return to their base poll interval.
+     */
+    fun dataReceived(userKey: String) {
+        val routes = emptyResponses.remove(userKey)
+        if (!routes.isNullOrEmpty()) {
+            val idleRoutes = routes.keys.toSet()
+            wakeListeners.forEach { it(userKey, idleRoutes) }
+        }
+    }
+
+    /** Number of consecutive empty responses of given route of the user with given key. */
+    fun getEmptyResponses(userKey: String, route: String): Int =
+        emptyResponses[userKey]?.get(route) ?: 0
+
+    /**
+     * Poll interval of given route for the user with given key. This is the base interval,
+     * doubled for each consecutive empty response after the first [GRACE_RESPONSES], up to given
+     * maximum. If the maximum is smaller than the base interval, the base interval is used.
+     */
+    fun getPollInterval(userKey: String, route: String, base: Duration, max: Duration): Duration {
+        val count = getEmptyResponses(userKey, route)
+        var interval = base
+        var i = GRACE_RESPONSES
+        while (i < count && interval < max) {
+            interval = interval.multipliedBy(2)
+            i++
+        }
+        return if (interval > max && max > base) max else interval
+    }
+
+    companion object {
+        /** Number of consecutive empty responses that does not yet increase the poll interval. */
+        const val GRACE_RESPONSES = 2
+    }
+}
@@ -1,11 +1,13 @@
 package org.radarbase.oura.request
 
 import com.fasterxml.jackson.core.JsonFactory
+import com.fasterxml.jackson.databind.JsonNode
 import com.fasterxml.jackson.databind.ObjectMapper
 import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule
 import okhttp3.Response
-import okhttp3.ResponseBody
 import org.radarbase.oura.converter.TopicData
+import org.radarbase.oura.offset.CoveredRanges
+import org.radarbase.oura.offset.Offset
 import org.radarbase.oura.route.OuraRouteFactory
 import org.radarbase.oura.route.Route
 import org.radarbase.oura.user.User
@@ -14,6 +16,11 @@ import org.slf4j.LoggerFactory
 import java.io.IOException
 import java.time.Duration
 import java.time.Instant
+import java.time.ZonedDateTime
+import java.time.format.DateTimeFormatter
+import java.time.format.DateTimeParseException
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.Executor
 import kotlin.streams.asSequence
 
 class OuraRequestGenerator
@@ -26,6 +33,59 @@ constructor(
 ) : RequestGenerator {
     private val routeNextRequest: MutableMap<String, Instant> = mutableMapOf()
 
+    /** Ranges after the offset that were polled, keyed by route key. */
+    private val coveredRanges: MutableMap<String, CoveredRanges> = mutableMapOf()
+
+    /** Rate limit backoff per user, keyed by versioned user ID. */
+    private val userNextRequest: MutableMap<String, Instant> = mutableMapOf()
+
+    /** Rate limit backoff per access token, keyed by a fingerprint of the token. */
+    private val tokenNextRequest: MutableMap<String, Instant> = mutableMapOf()
+
+    /** Fingerprint of the access token last used for each versioned user ID. */
+    private val userTokens: MutableMap<String, String> = mutableMapOf()
+
+    /** Recent rate limit responses, used to detect the app-wide rate limit. */
+    private val recentRateLimits: ArrayDeque<Pair<Instant, String>> = ArrayDeque()
+
+    /**
+     * Executor to run the converters of a single response on in parallel. If null, converters run
+     * on the calling thread.
+     */
+    var converterExecutor: Executor? = null
+
+    /**
+     * Window of recent data that is polled in the live lane. Routes of users that are further
+     * behind are polled in the backfill lane, see [isBackfill].
+     */
+    var liveLaneWindow: Duration = LIVE_LANE_WINDOW
+
+    /**
+     * Maximum time that a route without new data is postponed until the next hour in which the
+     * user usually syncs. If null, routes without new data are polled again after a fixed
+     * backoff.
+     */
+    var adaptivePollingMaxDelay: Duration? = null
+
+    /**
+     * Learned sync times of day per versioned user ID, used when [adaptivePollingMaxDelay] is set.
+     * The time at which a response with recent data was received counts as a sync time. Record
+     * times are not used, because daily routes stamp their records with the start of the day.
+     */
+    internal val syncPatterns = SyncPatterns()
+
+    /**
+     * Maximum backoff of a route whose responses keep returning no data. If null, routes without
+     * data are always polled again after [BACK_OFF_TIME].
+     */
+    var idleBackOffMaxInterval: Duration? = null
+
+    /** Consecutive responses without data, keyed by versioned user ID and route. */
+    private val idleBackoff = IdleBackoff().apply {
+        addWakeListener { userKey, idleRoutes -> wakeRoutes(userKey, idleRoutes) }
+    }
+
+    /** Backoff of the app-wide rate limit. Only set if many tokens are rate limited at once. */
     public var nextRequestTime: Instant = Instant.MIN
 
     private val shouldBackoff: Boolean
@@ -35,6 +95,10 @@ constructor(
         user: User,
         max: Int,
     ): Sequence<RestRequest> {
+        if (shouldBackoff) {
+            logger.info("Skip requests for {}: rate limited until {}", user.versionedId, nextRequestTime)
+            return emptySequence()
+        }
         return routes.asSequence()
             .flatMap { route ->
                 if (routeReady(user, route)) {
@@ -44,7 +108,7 @@ constructor(
                         "Skip {} for {}: route in backoff until {}",
                         route,
                         user.versionedId,
-                        routeNextRequest[routeKey(route, user)],
+                        nextRouteRequest(user, route),
                     )
                     return@flatMap emptySequence()
                 }
@@ -55,21 +119,60 @@ constructor(
         route: Route,
         max: Int,
     ): Sequence<RestRequest> {
+        if (shouldBackoff) {
+            logger.info("Skip requests for {}: rate limited until {}", route, nextRequestTime)
+            return emptySequence()
+        }
         return userRepository
             .stream()
-            .flatMap { user ->
-                if (routeReady(user, route)) {
-                    generateRequests(route, user)
-                } else {
-                    logger.info(
-                        "Skip {} for {}: route in backoff until {}",
-                        route,
-                        user.versionedId,
-                        routeNextRequest[routeKey(route, user)],
-                    )
-                    emptySequence()
-                }
-            }
+            .flatMap { user -> readyRequests(route, user) }
+    }
+
+    /**
+     * Requests of given route for the users in the backfill lane if [backfill] is true, or in the
+     * live lane otherwise. Requests of the live lane of all routes should be made before those of
+     * the backfill lane, so that recent data of all users is not delayed by the backfill of users
+     * that are far behind.
+     */
+    fun requests(
+        route: Route,
+        max: Int,
+        backfill: Boolean,
+    ): Sequence<RestRequest> {
+        if (shouldBackoff) {
+            logger.info("Skip requests for {}: rate limited until {}", route, nextRequestTime)
+            return emptySequence()
+        }
+        return userRepository
+            .stream()
+            .filter { user -> isBackfill(route, user) == backfill }
+            .flatMap { user -> readyRequests(route, user) }
+    }
+
+    /** Whether the offset of given route of given user is older than the [liveLaneWindow]. */
+    fun isBackfill(
+        route: Route,
+        user: User,
+    ): Boolean {
+        val offset = ouraOffsetManager.getOffset(route, user)?.offset ?: user.startDate
+        return offset.coerceAtLeast(user.startDate) < Instant.now() - liveLaneWindow
+    }
+
+    private fun readyRequests(
+        route: Route,
+        user: User,
+    ): Sequence<RestRequest> {
+        return if (routeReady(user, route)) {
+            generateRequests(route, user)
+        } else {
+            logger.info(
+                "Skip {} for {}: route in backoff until {}",
+                route,
+                user.versionedId,
+                nextRouteRequest(user, route),
+            )
+            emptySequence()
+        }
     }
 
     override fun requests(
@@ -77,6 +180,10 @@ constructor(
         user: User,
         max: Int,
     ): Sequence<RestRequest> {
+        if (shouldBackoff) {
+            logger.info("Skip {} for {}: rate limited until {}", route, user.versionedId, nextRequestTime)
+            return emptySequence()
+        }
         return if (routeReady(user, route)) {
             generateRequests(route, user)
         } else {
@@ -84,7 +191,7 @@ constructor(
                 "Skip {} for {}: route in backoff until {}",
                 route,
                 user.versionedId,
-                routeNextRequest[routeKey(route, user)],
+                nextRouteRequest(user, route),
             )
             emptySequence()
         }
@@ -111,11 +218,12 @@ constructor(
             // and we've reached or surpassed it (startOffset >= endDate),
             // permanently disable future requests for this user+route.
             val userEnd = user.endDate
+            val key = routeKey(route, user)
             if (userEnd != null && endDate == userEnd &&
                 Duration.between(userEnd, Instant.now()) > Duration.ofDays(30)
             ) {
-                val key = routeKey(route, user)
                 routeNextRequest[key] = Instant.MAX
+                idleBackoff.reset(user.versionedId, route.toString())
                 logger.info(
                     "Disable future requests for {}: user={}, " +
                         "endDate={} (>30d ago), startOffset={}",
@@ -124,6 +232,15 @@ constructor(
                     userEnd,
                     startOffset,
                 )
+            } else {
+                // Nothing to request until the offset has passed, so the scheduler does not
+                // consider this route ready before then.
+                val now = Instant.now()
+                routeNextRequest[key] = if (startOffset > now) {
+                    startOffset
+                } else {
+                    backOffWithoutData(user, now)
+                }
             }
             logger.info(
                 "Skip {} for {}: interval empty (startOffset={} >= endDate={}), " +
@@ -137,30 +254,133 @@ constructor(
             )
             return emptySequence()
         }
-        val timeSinceStart = Duration.between(startOffset, Instant.now())
-        return if (timeSinceStart > HISTORICAL_DATA_THRESHOLD) {
-            // Historical data: use 1-year chunks without max request limit
-            val endTime = (startOffset + HISTORICAL_QUERY_RANGE).coerceAtMost(endDate)
-            route.generateRequests(user, startOffset, endTime)
-        } else {
-            // Recent data: use normal chunking with max request limit
-            route.generateRequests(user, startOffset, endDate, USER_MAX_REQUESTS)
+        // Only request the time that was not covered by earlier requests
+        return coveredRanges(route, user, offset).gaps(startOffset, endDate).asSequence()
+            .flatMap { (gapStart, gapEnd) ->
+                val timeSinceStart = Duration.between(gapStart, Instant.now())
+                if (timeSinceStart > HISTORICAL_DATA_THRESHOLD) {
+                    // Historical data: use 1-year chunks without max request limit
+                    val endTime = (gapStart + HISTORICAL_QUERY_RANGE).coerceAtMost(gapEnd)
+                    route.generateRequests(user, gapStart, endTime)
+                } else {
+                    // Recent data: use normal chunking with max request limit
+                    route.generateRequests(user, gapStart, gapEnd, USER_MAX_REQUESTS)
+                }
+            }
+            .take(USER_MAX_REQUESTS)
+    }
+
+    /**
+     * Source offset of given route of given user, with the ranges that were covered after the
+     * offset. Polling resumes from the same state when this offset is restored.
+     */
+    fun getSourceOffset(
+        route: Route,
+        user: User,
+    ): Map<String, Any> {
+        val offset = ouraOffsetManager.getOffset(route, user)
+        return mapOf(
+            TIMESTAMP_OFFSET_KEY to (offset?.offset ?: user.startDate).epochSecond,
+            COVERED_OFFSET_KEY to coveredRanges(route, user, offset).toString(),
+        )
+    }
+
+    /**
+     * Mark the time of given request up to given time as covered, and advance the offset of its
+     * route over the time that is covered without gaps. Requests may complete in any order.
+     */
+    private fun coverRequest(
+        request: RestRequest,
+        until: Instant,
+    ) {
+        val offset = ouraOffsetManager.getOffset(request.route, request.user)
+        val startDate = request.user.startDate
+        val current = offset?.offset?.coerceAtLeast(startDate) ?: startDate
+        val covered = coveredRanges(request.route, request.user, offset)
+        covered.cover(request.startDate, until)
+        val next = covered.advance(current)
+        if (next > current) {
+            ouraOffsetManager.updateOffsets(request.route, request.user, next)
+        }
+    }
+
+    /**
+     * Backoff of the route of given request after a response without data, see [IdleBackoff].
+     * Only empty responses of the live lane up to the present count, since older data that is
+     * still being caught up on may be empty even if the user is active.
+     */
+    private fun idleBackOff(
+        request: RestRequest,
+        now: Instant,
+    ): Duration {
+        val maxInterval = idleBackOffMaxInterval ?: return BACK_OFF_TIME
+        val userKey = request.user.versionedId
+        val route = request.route.toString()
+        if (!isBackfill(request.route, request.user) &&
+            Duration.between(request.endDate, now) < ONE_DAY
+        ) {
+            idleBackoff.responseEmpty(userKey, route)
+        }
+        return idleBackoff.getPollInterval(userKey, route, BACK_OFF_TIME, maxInterval)
+    }
+
+    /**
+     * Poll given idle routes of the user with given versioned ID at the normal backoff again,
+     * because one of its routes returned recent data. Routes that are backing off for other
+     * reasons are not affected.
+     */
+    private fun wakeRoutes(
+        userKey: String,
+        idleRoutes: Set<String>,
+    ) {
+        val wakeTime = Instant.now() + BACK_OFF_TIME
+        idleRoutes.forEach { route ->
+            val key = "$userKey#$route"
+            val nextRequest = routeNextRequest[key]
+            if (nextRequest != null && nextRequest > wakeTime) {
+                routeNextRequest[key] = wakeTime
+            }
         }
     }
 
+    private fun coveredRanges(
+        route: Route,
+        user: User,
+        offset: Offset?,
+    ): CoveredRanges = coveredRanges.getOrPut(routeKey(route, user)) {
+        CoveredRanges.parse(offset?.covered)
+    }
+
+    /**
+     * Earliest time at which any route may be requested for any user. Routes without a recorded
+     * backoff are ready immediately, routes of rate limited users or tokens are ready when their
+     * rate limit resets, and no request is ready before the app-wide [nextRequestTime].
+     * Returns [Instant.MAX] if there are no users.
+     */
+    override fun getTimeOfNextRequest(): Instant {
+        val earliestRouteRequest = try {
+            userRepository.stream()
+                .flatMap { user ->
+                    routes.asSequence().map { route -> nextRouteRequest(user, route) }
+                }
+                .minOrNull()
+        } catch (ex: IOException) {
+            logger.warn("Failed to read users for the next request time: {}", ex.toString())
+            null
+        } ?: return Instant.MAX
+
+        return maxOf(earliestRouteRequest, nextRequestTime)
+    }
+
     fun handleResponse(
         req: RestRequest,
         response: Response,
     ): OuraResult<List<TopicData>> {
-        if (response.isSuccessful) {
-            return OuraResult.Success<List<TopicData>>(requestSuccessful(req, response))
+        tokenKey(req)?.let { userTokens[req.user.versionedId] = it }
+        return if (response.isSuccessful) {
+            OuraResult.Success<List<TopicData>>(requestSuccessful(req, response))
         } else {
-            try {
-                OuraResult.Error(requestFailed(req, response))
-            } catch (e: TooManyRequestsException) {
-            } finally {
-                return OuraResult.Success(listOf<TopicData>())
-            }
+            OuraResult.Error(requestFailed(req, response))
         }
     }
 
@@ -169,10 +389,9 @@ constructor(
         response: Response,
     ): List<TopicData> {
         logger.debug("Request successful: {}..", request.request)
-        val body: ResponseBody? = response.body
-        val data = body?.bytes()!!
-        val records =
-            request.route.converters.flatMap { it.convert(request, response.headers, data) }
+        val root = response.body?.byteStream()?.use { JSON_READER.readTree(it) }
+            ?: throw IOException("Failed to read body")
+        val records = convert(request, root)
         val offset = records.maxByOrNull { it -> it.offset }?.offset
         if (offset != null) {
             logger.info("Writing ${records.size} records to offsets...")
@@ -184,11 +403,14 @@ constructor(
             } else {
                 maxOf(maxOffsetTime.plus(OFFSET_BUFFER), request.endDate)
             }
-            ouraOffsetManager.updateOffsets(
-                request.route,
-                request.user,
-                nextOffset,
-            )
+            coverRequest(request, nextOffset)
+            idleBackoff.reset(request.user.versionedId, request.route.toString())
+            if (dataAge <= liveLaneWindow) {
+                if (adaptivePollingMaxDelay != null) {
+                    syncPatterns.observe(request.user.versionedId, Instant.now())
+                }
+                idleBackoff.dataReceived(request.user.versionedId)
+            }
             val nextRequestTime = Instant.now().plus(SUCCESS_BACK_OFF_TIME)
             val key = routeKey(request.route, request.user)
             routeNextRequest[key] =
@@ -196,31 +418,52 @@ constructor(
                     if (it > nextRequestTime) it else nextRequestTime
                 } ?: nextRequestTime
         } else {
-            if (request.startDate.plus(TIME_AFTER_REQUEST).isBefore(Instant.now())) {
+            val isCoveredAfter = coveredRanges[routeKey(request.route, request.user)]
+                ?.isCoveredAfter(request.endDate) == true
+            // Data after the request was already found, so no more data is expected before it
+            if (request.startDate.plus(TIME_AFTER_REQUEST).isBefore(Instant.now()) ||
+                isCoveredAfter
+            ) {
                 logger.info("No records found, updating offsets to end date..")
-                ouraOffsetManager.updateOffsets(
-                    request.route,
-                    request.user,
-                    request.endDate,
-                )
+                coverRequest(request, request.endDate)
                 val key = routeKey(request.route, request.user)
                 routeNextRequest[key] = Instant.now().plus(SUCCESS_BACK_OFF_TIME)
             } else {
                 val key = routeKey(request.route, request.user)
-                routeNextRequest[key] = Instant.now().plus(BACK_OFF_TIME)
+                val now = Instant.now()
+                routeNextRequest[key] = backOffWithoutData(
+                    request.user,
+                    now,
+                    idleBackOff(request, now),
+                )
             }
         }
         return records
     }
 
+    /**
+     * Time to poll a route of given user again after it had no new data. With adaptive polling,
+     * this is postponed to the next hour in which the user usually syncs.
+     */
+    private fun backOffWithoutData(
+        user: User,
+        now: Instant,
+        backOff: Duration = BACK_OFF_TIME,
+    ): Instant {
+        val nextRequest = now + backOff
+        val maxDelay = adaptivePollingMaxDelay ?: return nextRequest
+        return syncPatterns.nextPollTime(user.versionedId, nextRequest, maxDelay)
+    }
+
     override fun requestFailed(
         request: RestRequest,
         response: Response,
     ): OuraError {
+        // the backoff of the failure replaces any idle backoff
+        idleBackoff.reset(request.user.versionedId, request.route.toString())
         return when (response.code) {
             429 -> {
-                logger.info("Too many requests, rate limit reached. Backing off...")
-                nextRequestTime = Instant.now() + BACK_OFF_TIME
+                rateLimitReached(request, response)
                 OuraRateLimitError("Rate limit reached..", TooManyRequestsException(), "429")
             }
             403 -> {
@@ -251,7 +494,6 @@ constructor(
             }
             400 -> {
                 logger.warn("Client exception..")
-                nextRequestTime = Instant.now() + BACK_OFF_TIME
                 routeNextRequest[routeKey(request.route, request.user)] =
                     Instant.now().plus(BACK_OFF_TIME)
                 OuraClientException(
@@ -289,13 +531,92 @@ constructor(
         }
     }
 
-    private fun routeReady(user: User, route: Route): Boolean {
-        val key = routeKey(route, user)
-        return routeNextRequest[key]?.let { Instant.now() > it } ?: true
+    /**
+     * Convert a response with all converters of its route. The response is parsed only once and
+     * the tree is shared between converters. If a [converterExecutor] is set, converters run in
+     * parallel.
+     */
+    private fun convert(
+        request: RestRequest,
+        root: JsonNode,
+    ): List<TopicData> {
+        val converters = request.route.converters
+        val executor = converterExecutor
+        return if (executor == null || converters.size <= 1) {
+            converters.flatMap { it.convert(request, root) }
+        } else {
+            converters
+                .map { converter ->
+                    CompletableFuture.supplyAsync({ converter.convert(request, root) }, executor)
+                }
+                .flatMap { it.join() }
+        }
+    }
+
+    /**
+     * Back off the route of given request after the request could not be made or read, so that
+     * it is not immediately retried.
+     */
+    fun requestFailed(
+        request: RestRequest,
+        ex: IOException,
+    ) {
+        logger.warn("Request {} failed: {}", request.request.url, ex.toString())
+        idleBackoff.reset(request.user.versionedId, request.route.toString())
+        routeNextRequest[routeKey(request.route, request.user)] =
+            Instant.now().plus(BACK_OFF_TIME)
+    }
+
+    /**
+     * Back off the user and access token of a rate limited request until the rate limit resets,
+     * as given by the Retry-After header. If many different tokens are rate limited in a short
+     * time, the app-wide rate limit was reached and all requests back off.
+     */
+    private fun rateLimitReached(
+        request: RestRequest,
+        response: Response,
+    ) {
+        val now = Instant.now()
+        val retryAfter = parseRetryAfter(response.header("Retry-After"), now) ?: BACK_OFF_TIME
+        val resetTime = now + retryAfter
+        val user = request.user.versionedId
+        logger.info("Too many requests for user {}, backing off until {}", user, resetTime)
+        userNextRequest[user] = resetTime
+
+        val token = tokenKey(request) ?: user
+        tokenNextRequest[token] = resetTime
+
+        recentRateLimits.addLast(Pair(now, token))
+        while (recentRateLimits.first().first < now - APP_RATE_LIMIT_WINDOW) {
+            recentRateLimits.removeFirst()
+        }
+        if (recentRateLimits.distinctBy { it.second }.size >= APP_RATE_LIMIT_TOKENS) {
+            logger.warn("Rate limit reached for multiple users. Backing off until {}", resetTime)
+            nextRequestTime = maxOf(nextRequestTime, resetTime)
+            recentRateLimits.clear()
+        }
+    }
+
+    private fun routeReady(user: User, route: Route): Boolean =
+        Instant.now() > nextRouteRequest(user, route)
+
+    /** Time after which given route may be requested for given user. */
+    private fun nextRouteRequest(user: User, route: Route): Instant {
+        val routeTime = routeNextRequest[routeKey(route, user)] ?: Instant.MIN
+        val userTime = userNextRequest[user.versionedId] ?: Instant.MIN
+        val tokenTime = userTokens[user.versionedId]
+            ?.let { tokenNextRequest[it] }
+            ?: Instant.MIN
+        return maxOf(routeTime, userTime, tokenTime)
     }
 
     private fun routeKey(route: Route, user: User): String = user.versionedId + "#" + route
 
+    /** Fingerprint of the access token of a request, so the token itself is not retained. */
+    private fun tokenKey(request: RestRequest): String? =
+        request.request.header("Authorization")
+            ?.let { Integer.toHexString(it.hashCode()) }
+
     companion object {
         private val logger = LoggerFactory.getLogger(OuraRequestGenerator::class.java)
         private val BACK_OFF_TIME = Duration.ofMinutes(10L)
@@ -307,7 +628,27 @@ constructor(
         private val USER_MAX_REQUESTS = 1000
         private val HISTORICAL_DATA_THRESHOLD = Duration.ofDays(365L)
         private val HISTORICAL_QUERY_RANGE = Duration.ofDays(365L)
+        private val LIVE_LANE_WINDOW = Duration.ofDays(3L)
+        const val TIMESTAMP_OFFSET_KEY = "timestamp"
+        const val COVERED_OFFSET_KEY = "covered"
+        private val APP_RATE_LIMIT_WINDOW = Duration.ofMinutes(1L)
+        private const val APP_RATE_LIMIT_TOKENS = 3
         val JSON_FACTORY = JsonFactory()
         val JSON_READER = ObjectMapper(JSON_FACTORY).registerModule(JavaTimeModule()).reader()
+
+        /**
+         * Parse a Retry-After header, given either in seconds or as an HTTP date.
+         * Returns null if the header is missing or cannot be parsed.
+         */
+        fun parseRetryAfter(value: String?, now: Instant = Instant.now()): Duration? {
+            val trimmed = value?.trim() ?: return null
+            trimmed.toLongOrNull()?.let { return Duration.ofSeconds(it.coerceAtLeast(0L)) }
+            return try {
+                val time = ZonedDateTime.parse(trimmed, DateTimeFormatter.RFC_1123_DATE_TIME)
+                Duration.between(now, time.toInstant()).takeUnless { it.isNegative } ?: Duration.ZERO
+            } catch (ex: DateTimeParseException) {
+                null
+            }
+        }
     }
 }
@@ -4,6 +4,7 @@ import okhttp3.Response
 import org.radarbase.oura.converter.TopicData
 import org.radarbase.oura.route.Route
 import org.radarbase.oura.user.User
+import java.time.Instant
 
 interface RequestGenerator {
 
@@ -13,6 +14,9 @@ interface RequestGenerator {
 
     fun requests(route: Route, max: Int): Sequence<RestRequest>
 
+    /** Earliest time at which any request may become available. */
+    fun getTimeOfNextRequest(): Instant
+
     fun requestSuccessful(request: RestRequest, response: Response): List<TopicData>
 
     fun requestFailed(request: RestRequest, response: Response): OuraError
@@ -0,0 +1,125 @@
+package org.radarbase.oura.request
+
+import java.time.Duration
+import java.time.Instant
+import java.util.concurrent.ConcurrentHashMap
+
+/**
+ * Learned distribution of the hours of the day at which each user syncs their device. Polls
+ * that fall in hours in which a user rarely syncs are postponed until the next hour in which the
+ * user usually syncs.
+ *
+ * Observations are the times at which polls found new data of a user. Postponed polls only find
+ * data in hours that are polled, so the maximum delay of a postponed poll bounds how late syncs
+ * at other times are found, and learned.
+ *
+ * Hours are counted in UTC. The hour after a frequent sync hour is polled as well, so that
+ * syncs late in an hour and daylight saving time shifts are still picked up promptly. Older
+ * observations decay, so the pattern follows changes in the routine of a user.
+ */
+class SyncPatterns {
+    private val patterns = ConcurrentHashMap<String, Pattern>()
+
+    /**
+     * Register that the user with given key synced at given time. Observations in the same hour
+     * as the latest observation of the user, for example the same sync time read again or records
+     * of other routes, are counted once. Observations before that hour are ignored.
+     */
+    fun observe(userKey: String, syncTime: Instant) {
+        patterns.computeIfAbsent(userKey) { Pattern() }.observe(syncTime.epochSecond)
+    }
+
+    /**
+     * First time at or after given time at which the user with given key may be polled. If the
+     * user usually syncs in the hour of given time, or not enough syncs of the user were
+     * observed, this is given time. Otherwise it is the start of the next hour in which the user
+     * usually syncs, but no later than given maximum delay after given time.
+     */
+    fun nextPollTime(userKey: String, time: Instant, maxDelay: Duration): Instant {
+        val pattern = patterns[userKey] ?: return time
+        val second = time.epochSecond
+        val delayed = pattern.nextActiveSecond(second, second + maxDelay.seconds)
+        return if (delayed == second) time else Instant.ofEpochSecond(delayed)
+    }
+
+    /** Start of the hour of the latest observation of the user with given key, if any. */
+    internal fun lastObservedHour(userKey: String): Instant? = patterns[userKey]?.lastObservedHour()
+
+    private class Pattern {
+        private val weights = DoubleArray(HOURS_PER_DAY)
+        private var totalWeight = 0.0
+        private var lastHour = Long.MIN_VALUE
+
+        @Synchronized
+        fun observe(second: Long) {
+            val hour = Math.floorDiv(second, SECONDS_PER_HOUR)
+            if (hour <= lastHour) {
+                return
+            }
+            if (lastHour != Long.MIN_VALUE) {
+                val decay = Math.pow(
+                    0.5,
+                    (hour - lastHour).toDouble() * SECONDS_PER_HOUR / HALF_LIFE.seconds,
+                )
+                totalWeight = 0.0
+                for (i in 0 until HOURS_PER_DAY) {
+                    weights[i] *= decay
+                    totalWeight += weights[i]
+                }
+            }
+            weights[hourOfDay(hour)] += 1.0
+            totalWeight += 1.0
+            lastHour = hour
+        }
+
+        @Synchronized
+        fun nextActiveSecond(second: Long, maxSecond: Long): Long {
+            if (totalWeight < MIN_WEIGHT) {
+                return second
+            }
+            val hour = Math.floorDiv(second, SECONDS_PER_HOUR)
+            if (isActive(hour)) {
+                return second
+            }
+            var next = hour + 1
+            while (next * SECONDS_PER_HOUR < maxSecond) {
+                if (isActive(next)) {
+                    return next * SECONDS_PER_HOUR
+                }
+                next++
+            }
+            return maxSecond
+        }
+
+        @Synchronized
+        fun lastObservedHour(): Instant? = if (lastHour != Long.MIN_VALUE) {
+            Instant.ofEpochSecond(lastHour * SECONDS_PER_HOUR)
+        } else {
+            null
+        }
+
+        /** Whether the user usually syncs in given hour or the hour before it. */
+        private fun isActive(hour: Long): Boolean {
+            val threshold = ACTIVE_SHARE * totalWeight
+            return weights[hourOfDay(hour)] >= threshold ||
+                weights[hourOfDay(hour - 1)] >= threshold
+        }
+
+        private fun hourOfDay(hour: Long): Int = Math.floorMod(hour, HOURS_PER_DAY.toLong()).toInt()
+    }
+
+    companion object {
+        const val HOURS_PER_DAY = 24
+
+        /** Weight of an observation halves after this time. */
+        val HALF_LIFE: Duration = Duration.ofDays(14)
+
+        /** Minimum total weight of observations before polls are postponed. */
+        const val MIN_WEIGHT = 7.0
+
+        /** Minimum share of the observations in an hour for it to be polled. */
+        const val ACTIVE_SHARE = 0.02
+
+        private const val SECONDS_PER_HOUR = 3600L
+    }
+}
@@ -0,0 +1,65 @@
+package org.radarbase.oura.converter
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertThrows
+import org.junit.jupiter.api.Test
+import java.time.Instant
+import java.time.OffsetDateTime
+import java.time.ZoneOffset
+import java.time.format.DateTimeParseException
+import kotlin.random.Random
+
+class OffsetDateTimeParserTest {
+    @Test
+    fun parsesLikeJavaTime() {
+        listOf(
+            "2021-11-01T01:23:45+02:00",
+            "2021-11-01T01:23:45.678Z",
+            "2021-11-01T01:23:45-18:00",
+            "2020-02-29T23:59:59.999+14:00",
+            "1969-12-31T23:59:59Z",
+            "2021-11-01T01:23+02:00",
+        ).forEach { assertParsedLikeJavaTime(it) }
+    }
+
+    @Test
+    fun parsesRandomTimestampsLikeJavaTime() {
+        val random = Random(42)
+        repeat(10_000) {
+            val offsetSeconds = random.nextInt(-18 * 60, 18 * 60 + 1) * 60
+            val time = OffsetDateTime.ofInstant(
+                Instant.ofEpochSecond(random.nextLong(0L, 4_102_444_800L)),
+                ZoneOffset.ofTotalSeconds(offsetSeconds),
+            )
+            val text = if (random.nextBoolean()) {
+                time.toString()
+            } else {
+                time.withNano(random.nextInt(1000) * 1_000_000).toString()
+            }
+            assertParsedLikeJavaTime(text)
+        }
+    }
+
+    @Test
+    fun rejectsInvalidText() {
+        listOf(
+            "2021-11-01T01:23:45+18:30",
+            "2021-02-29T01:23:45Z",
+            "2021-11-01T24:00:00Z",
+            "2021-11-01 01:23:45Z",
+            "2021-11-01T01:23:45",
+        ).forEach { text ->
+            assertThrows(DateTimeParseException::class.java) {
+                OffsetDateTimeParser.parseEpochMilli(text)
+            }
+        }
+    }
+
+    private fun assertParsedLikeJavaTime(text: String) {
+        assertEquals(
+            OffsetDateTime.parse(text).toInstant().toEpochMilli(),
+            OffsetDateTimeParser.parseEpochMilli(text),
+            text,
+        )
+    }
+}
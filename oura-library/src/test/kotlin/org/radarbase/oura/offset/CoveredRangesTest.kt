@@ -0,0 +1,125 @@
+package org.radarbase.oura.offset
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertFalse
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import java.time.Instant
+import kotlin.random.Random
+
+class CoveredRangesTest {
+    private fun t(seconds: Long): Instant = START.plusSeconds(seconds)
+
+    private fun gaps(vararg bounds: Long): List<Pair<Instant, Instant>> =
+        bounds.toList().chunked(2) { (start, end) -> Pair(t(start), t(end)) }
+
+    @Test
+    fun mergesOverlappingAndAdjacentRanges() {
+        val covered = CoveredRanges()
+        covered.cover(t(10), t(20))
+        covered.cover(t(30), t(40))
+        assertEquals(gaps(0, 10, 20, 30, 40, 50), covered.gaps(t(0), t(50)))
+
+        // adjacent to the end of the first range
+        covered.cover(t(20), t(25))
+        assertEquals(gaps(0, 10, 25, 30, 40, 50), covered.gaps(t(0), t(50)))
+
+        // contained in a range
+        covered.cover(t(32), t(35))
+        assertEquals(gaps(0, 10, 25, 30, 40, 50), covered.gaps(t(0), t(50)))
+
+        // overlapping both ranges
+        covered.cover(t(5), t(45))
+        assertEquals(gaps(0, 5, 45, 50), covered.gaps(t(0), t(50)))
+    }
+
+    @Test
+    fun ignoresEmptyRanges() {
+        val covered = CoveredRanges()
+        covered.cover(t(10), t(10))
+        covered.cover(t(20), t(15))
+        assertEquals("", covered.toString())
+        assertFalse(covered.isCoveredAfter(t(0)))
+    }
+
+    @Test
+    fun gapsAreLimitedToOffsetAndEnd() {
+        val covered = CoveredRanges()
+        covered.cover(t(10), t(20))
+        covered.cover(t(60), t(70))
+
+        assertEquals(gaps(20, 50), covered.gaps(t(15), t(50)))
+        assertEquals(emptyList<Pair<Instant, Instant>>(), covered.gaps(t(12), t(18)))
+        assertEquals(gaps(0, 100), CoveredRanges().gaps(t(0), t(100)))
+    }
+
+    @Test
+    fun advancesOverRangesWithoutGaps() {
+        val covered = CoveredRanges()
+        covered.cover(t(10), t(20))
+        covered.cover(t(30), t(40))
+
+        assertEquals(t(0), covered.advance(t(0)))
+        assertEquals(t(20), covered.advance(t(10)))
+        // ranges before the offset are no longer kept
+        assertEquals("${t(30).epochSecond}/${t(40).epochSecond}", covered.toString())
+        assertTrue(covered.isCoveredAfter(t(35)))
+        assertFalse(covered.isCoveredAfter(t(40)))
+
+        covered.cover(t(20), t(30))
+        assertEquals(t(40), covered.advance(t(20)))
+        assertEquals("", covered.toString())
+    }
+
+    @Test
+    fun outOfOrderCompletionAdvancesLikeInOrder() {
+        val random = Random(42)
+        repeat(100) {
+            val covered = CoveredRanges()
+            var offset = t(0)
+            val isCovered = BooleanArray(10)
+            var inOrder = 0
+            (0 until 10).shuffled(random).forEach { day ->
+                covered.cover(t(day * 10L), t(day * 10L + 10))
+                isCovered[day] = true
+                while (inOrder < 10 && isCovered[inOrder]) {
+                    inOrder++
+                }
+                offset = covered.advance(offset)
+                assertEquals(t(inOrder * 10L), offset)
+            }
+            assertEquals("", covered.toString())
+        }
+    }
+
+    @Test
+    fun survivesOffsetStorage() {
+        val covered = CoveredRanges()
+        covered.cover(t(10), t(20))
+        covered.cover(t(30), t(40))
+
+        val text = covered.toString()
+        assertEquals(
+            "${t(10).epochSecond}/${t(20).epochSecond},${t(30).epochSecond}/${t(40).epochSecond}",
+            text,
+        )
+        val restored = CoveredRanges.parse(text)
+        assertEquals(text, restored.toString())
+        assertEquals(covered.gaps(t(0), t(50)), restored.gaps(t(0), t(50)))
+        assertEquals(t(0), restored.advance(t(0)))
+        assertEquals(t(20), restored.advance(t(10)))
+    }
+
+    @Test
+    fun parseIgnoresInvalidRanges() {
+        assertEquals("", CoveredRanges.parse(null).toString())
+        assertEquals("", CoveredRanges.parse("").toString())
+
+        val restored = CoveredRanges.parse("a/b,10,${t(10).epochSecond}/${t(20).epochSecond},5/")
+        assertEquals("${t(10).epochSecond}/${t(20).epochSecond}", restored.toString())
+    }
+
+    companion object {
+        private val START = Instant.parse("2020-01-01T00:00:00Z")
+    }
+}
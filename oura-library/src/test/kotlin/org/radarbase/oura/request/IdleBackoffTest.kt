@@ -0,0 +1,53 @@
+package org.radarbase.oura.request
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import org.radarbase.oura.request.IdleBackoff.Companion.GRACE_RESPONSES
+import java.time.Duration
+
+class IdleBackoffTest {
+    private fun IdleBackoff.empty(route: String, count: Int) {
+        repeat(count) { responseEmpty("a", route) }
+    }
+
+    @Test
+    fun intervalDoublesAfterGraceResponses() {
+        val backoff = IdleBackoff()
+        backoff.empty("r", GRACE_RESPONSES)
+        assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, MAX))
+        backoff.empty("r", 2)
+        assertEquals(BASE.multipliedBy(4), backoff.getPollInterval("a", "r", BASE, MAX))
+        backoff.empty("r", 100)
+        assertEquals(MAX, backoff.getPollInterval("a", "r", BASE, MAX))
+        // a maximum below the base interval does not shorten the base interval
+        assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, Duration.ofMinutes(5)))
+
+        backoff.reset("a", "r")
+        assertEquals(BASE, backoff.getPollInterval("a", "r", BASE, MAX))
+    }
+
+    @Test
+    fun dataWakesAllRoutesOfUser() {
+        val backoff = IdleBackoff()
+        val woken = mutableListOf<Pair<String, Set<String>>>()
+        backoff.addWakeListener { user, routes -> woken += Pair(user, routes) }
+        backoff.empty("r", GRACE_RESPONSES + 2)
+        backoff.empty("s", 1)
+        backoff.responseEmpty("b", "r")
+
+        backoff.dataReceived("a")
+        assertEquals(listOf(Pair("a", setOf("r", "s"))), woken)
+        assertEquals(0, backoff.getEmptyResponses("a", "r"))
+        // other users stay idle
+        assertEquals(1, backoff.getEmptyResponses("b", "r"))
+
+        // users without idle routes do not wake
+        backoff.dataReceived("a")
+        assertEquals(1, woken.size)
+    }
+
+    companion object {
+        private val BASE = Duration.ofMinutes(10)
+        private val MAX = Duration.ofHours(1)
+    }
+}
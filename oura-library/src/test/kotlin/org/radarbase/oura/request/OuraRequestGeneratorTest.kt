@@ -0,0 +1,85 @@
+package org.radarbase.oura.request
+
+import okhttp3.Protocol
+import okhttp3.Request
+import okhttp3.Response
+import okhttp3.ResponseBody.Companion.toResponseBody
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Assertions.assertTrue
+import org.junit.jupiter.api.Test
+import org.radarbase.oura.offset.Offset
+import org.radarbase.oura.route.OuraDailySleepRoute
+import org.radarbase.oura.route.Route
+import org.radarbase.oura.user.OuraUser
+import org.radarbase.oura.user.User
+import org.radarbase.oura.user.UserRepository
+import java.time.Duration
+import java.time.Instant
+import java.time.LocalDate
+import java.time.ZoneOffset.UTC
+import java.time.temporal.ChronoUnit.HOURS
+
+class OuraRequestGeneratorTest {
+    private val user = OuraUser(
+        id = "u",
+        createdAt = Instant.EPOCH,
+        projectId = "p",
+        userId = "u",
+        humanReadableUserId = null,
+        sourceId = "s",
+        externalId = null,
+        isAuthorized = true,
+        startDate = Instant.EPOCH,
+        serviceUserId = "o",
+    )
+
+    private val userRepository = object : UserRepository {
+        override fun get(key: String): User? = user.takeIf { it.id == key }
+        override fun stream(): Sequence<User> = sequenceOf(user)
+        override fun getAccessToken(user: User): String = "token"
+    }
+
+    private val offsetManager = object : OuraOffsetManager {
+        override fun getOffset(route: Route, user: User): Offset? = null
+        override fun updateOffsets(route: Route, user: User, offset: Instant) = Unit
+    }
+
+    @Test
+    fun dailyRouteLearnsTimeDataWasFound() {
+        val generator = OuraRequestGenerator(
+            userRepository = userRepository,
+            ouraOffsetManager = offsetManager,
+        ).apply {
+            adaptivePollingMaxDelay = Duration.ofHours(3)
+        }
+        // daily records are stamped with the start of their day
+        val day = LocalDate.now(UTC).minusDays(1)
+        val dayStart = day.atStartOfDay(UTC).toInstant()
+        val httpRequest = Request.Builder().url("https://api.ouraring.com/daily_sleep").build()
+        val request = RestRequest(
+            httpRequest,
+            user,
+            OuraDailySleepRoute(userRepository),
+            dayStart,
+            dayStart.plus(Duration.ofDays(2)),
+        )
+        val body = """{"data": [{"id": "a", "day": "$day", "score": 80,""" +
+            """ "timestamp": "${day}T00:00:00+00:00"}]}"""
+        val response = Response.Builder()
+            .request(httpRequest)
+            .protocol(Protocol.HTTP_1_1)
+            .code(200)
+            .message("OK")
+            .body(body.toResponseBody())
+            .build()
+
+        val before = Instant.now().truncatedTo(HOURS)
+        assertEquals(1, generator.requestSuccessful(request, response).size)
+        val after = Instant.now().truncatedTo(HOURS)
+
+        val observed = generator.syncPatterns.lastObservedHour(user.versionedId)
+        assertTrue(observed != null && observed >= before && observed <= after) {
+            "Observed $observed instead of the current hour"
+        }
+    }
+}
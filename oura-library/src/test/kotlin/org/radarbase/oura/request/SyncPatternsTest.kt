@@ -0,0 +1,77 @@
+package org.radarbase.oura.request
+
+import org.junit.jupiter.api.Assertions.assertEquals
+import org.junit.jupiter.api.Test
+import java.time.Duration
+import java.time.Instant
+
+class SyncPatternsTest {
+    @Test
+    fun unknownUserIsNotPostponed() {
+        val patterns = morningSyncs(14)
+        val time = Instant.parse("2020-01-15T14:30:00Z")
+        assertEquals(time, patterns.nextPollTime("b", time, ONE_DAY))
+    }
+
+    @Test
+    fun fewSyncsAreNotPostponed() {
+        val patterns = morningSyncs(6)
+        val time = Instant.parse("2020-01-07T14:30:00Z")
+        assertEquals(time, patterns.nextPollTime("a", time, ONE_DAY))
+    }
+
+    @Test
+    fun postponedToSyncHour() {
+        val patterns = morningSyncs(14)
+        assertEquals(
+            Instant.parse("2020-01-16T08:00:00Z"),
+            patterns.nextPollTime("a", Instant.parse("2020-01-15T14:30:00Z"), ONE_DAY),
+        )
+        // the sync hour and the hour after it are not postponed
+        val hourAfter = Instant.parse("2020-01-15T09:59:00Z")
+        assertEquals(hourAfter, patterns.nextPollTime("a", hourAfter, ONE_DAY))
+        // postponed at most the maximum delay
+        val time = Instant.parse("2020-01-15T14:30:00Z")
+        assertEquals(
+            time.plus(Duration.ofHours(3)),
+            patterns.nextPollTime("a", time, Duration.ofHours(3)),
+        )
+    }
+
+    @Test
+    fun sameAndEarlierHoursCountOnce() {
+        val patterns = SyncPatterns()
+        repeat(20) { i ->
+            patterns.observe("a", START)
+            patterns.observe("a", START.plus(Duration.ofMinutes(i.toLong())))
+            patterns.observe("a", START.minus(Duration.ofHours(i.toLong())))
+        }
+        val time = Instant.parse("2020-01-01T14:30:00Z")
+        assertEquals(time, patterns.nextPollTime("a", time, ONE_DAY))
+    }
+
+    @Test
+    fun oldSyncsDecay() {
+        val patterns = morningSyncs(14)
+        val evening = START.plus(Duration.ofHours(12))
+        for (i in 14L until 114L) {
+            patterns.observe("a", evening.plus(ONE_DAY.multipliedBy(i)))
+        }
+        assertEquals(
+            Instant.parse("2020-04-24T20:00:00Z"),
+            patterns.nextPollTime("a", Instant.parse("2020-04-24T08:30:00Z"), ONE_DAY),
+        )
+    }
+
+    companion object {
+        private val START = Instant.parse("2020-01-01T08:15:00Z")
+        private val ONE_DAY = Duration.ofDays(1)
+
+        /** Observe a sync of user "a" at the time of [START] on each of given days. */
+        private fun morningSyncs(days: Int) = SyncPatterns().apply {
+            for (i in 0 until days) {
+                observe("a", START.plus(ONE_DAY.multipliedBy(i.toLong())))
+            }
+        }
+    }
+}